@@ -28,6 +28,7 @@ import org.apache.commons.cli.ParseException;
 import org.apache.jena.graph.Node;
 import org.apache.jena.query.ARQ;
 import org.apache.jena.query.QueryFactory;
+import org.apache.jena.update.UpdateFactory;
 import org.apache.jena.util.FileUtils;
 
 import de.uni_koblenz.west.koral.common.config.impl.Configuration;
@@ -91,18 +92,33 @@ public class KoralClient {
 
   public void loadGraph(CoverStrategyType graphCover, int nHopReplicationPathLength,
           int maxMoleculeDiameter, String... inputPaths) {
+    loadGraph(graphCover, nHopReplicationPathLength, maxMoleculeDiameter, false, inputPaths);
+  }
+
+  /**
+   * @param graphCover
+   * @param nHopReplicationPathLength
+   * @param maxMoleculeDiameter
+   * @param isIncremental
+   *          if <code>true</code>, the graph is added to the already loaded
+   *          graph
+   * @param inputPaths
+   */
+  public void loadGraph(CoverStrategyType graphCover, int nHopReplicationPathLength,
+          int maxMoleculeDiameter, boolean isIncremental, String... inputPaths) {
     List<File> files = getFiles(inputPaths);
     System.out.println("loadGraph method called");
     if (files.isEmpty()) {
       throw new RuntimeException("No graph file could be found.");
     }
-    byte[][] args = new byte[5 + files.size()][];
+    byte[][] args = new byte[6 + files.size()][];
     args[0] = NumberConversion.int2bytes(args.length - 1);
     args[1] = NumberConversion.int2bytes(graphCover.ordinal());
     args[2] = NumberConversion.int2bytes(nHopReplicationPathLength);
     args[3] = NumberConversion.int2bytes(maxMoleculeDiameter);
     args[4] = NumberConversion.int2bytes(files.size());
-    fillWithFileEndings(args, 5, files);
+    args[5] = NumberConversion.int2bytes(isIncremental ? 1 : 0);
+    fillWithFileEndings(args, 6, files);
     connection.sendCommand("load", args);
 
     byte[][] response = connection.getResponse();
@@ -322,6 +338,45 @@ public class KoralClient {
     }
   }
 
+  public void processUpdateFromFile(String updateFile) throws FileNotFoundException, IOException {
+    processUpdate(readQueryFromFile(new File(updateFile)));
+  }
+
+  /**
+   * Applies a SPARQL update request that consists of <code>INSERT DATA</code>
+   * and <code>DELETE DATA</code> operations.
+   * 
+   * @param update
+   */
+  public void processUpdate(String update) {
+    // check syntax
+    String updateString = UpdateFactory.create(update).toString();
+    byte[][] args = new byte[2][];
+    args[0] = NumberConversion.int2bytes(args.length - 1);
+    try {
+      args[1] = updateString.getBytes("UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+    connection.sendCommand("update", args);
+    byte[][] response = connection.getResponse();
+    while (response != null) {
+      MessageType mtype = MessageType.valueOf(response[0][0]);
+      if (mtype == MessageType.MASTER_WORK_IN_PROGRESS) {
+        if (response[0].length > 1) {
+          System.out.println(MessageUtils.extractMessageString(response[0], null));
+        }
+      } else {
+        if ((mtype == MessageType.CLIENT_COMMAND_SUCCEEDED) && (response[0].length > 1)) {
+          System.out.println(MessageUtils.extractMessageString(response[0], null));
+        }
+        processCommandResponse("update", response);
+        break;
+      }
+      response = connection.getResponse();
+    }
+  }
+
   public void dropDatabase() {
     connection.sendCommand("drop", new byte[][] { NumberConversion.int2bytes(0), { 0 } });
     byte[][] response = connection.getResponse();
@@ -464,6 +519,9 @@ public class KoralClient {
         case "query":
           KoralClient.queryGraph(client, args);
           break;
+        case "update":
+          KoralClient.updateGraph(client, args);
+          break;
         case "drop":
           KoralClient.dropDatabase(client, args);
           break;
@@ -492,11 +550,13 @@ public class KoralClient {
       maxMoleculeDiameter = Integer.parseInt(commandLine.getOptionValue("d"));
     }
 
+    boolean isIncremental = commandLine.hasOption("i");
+
     List<String> inputPaths = commandLine.getArgList();
     if (inputPaths.isEmpty()) {
       throw new ParseException("Please specify at least one graph file to load.");
     }
-    client.loadGraph(graphCover, nHopReplicationPathLength, maxMoleculeDiameter,
+    client.loadGraph(graphCover, nHopReplicationPathLength, maxMoleculeDiameter, isIncremental,
             inputPaths.toArray(new String[inputPaths.size()]));
   }
 
@@ -555,6 +615,33 @@ public class KoralClient {
     }
   }
 
+  private static void updateGraph(KoralClient client, String[] args) throws ParseException {
+    Options options = KoralClient.createUpdateOptions();
+    CommandLineParser parser = new DefaultParser();
+    CommandLine commandLine = parser.parse(options, args);
+
+    if (commandLine.hasOption("u")) {
+      try {
+        client.processUpdateFromFile(commandLine.getOptionValue("u"));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    } else {
+      List<String> inputUpdate = commandLine.getArgList();
+      if (inputUpdate.isEmpty()) {
+        throw new ParseException("Please define the update to be requested.");
+      }
+      StringBuilder sb = new StringBuilder();
+      String delim = "";
+      for (String string : inputUpdate) {
+        sb.append(delim);
+        sb.append(string);
+        delim = " ";
+      }
+      client.processUpdate(sb.toString());
+    }
+  }
+
   private static void dropDatabase(KoralClient client, String[] args) {
     client.dropDatabase();
   }
@@ -584,10 +671,17 @@ public class KoralClient {
             .desc("Performs an n-hop replication on the chosen graph cover strategy.")
             .required(false).build();
 
+    Option incremental = Option.builder("i").longOpt("incremental").hasArg(false)
+            .desc("Adds the graph to the already loaded graph instead of replacing it. Only the "
+                    + "graph cover strategies " + CoverStrategyType.getIncrementalStrategyNames()
+                    + " without n-hop replication are supported.")
+            .required(false).build();
+
     Options options = new Options();
     options.addOption(coverStrategy);
     options.addOption(maxMoleculeDiameter);
     options.addOption(nHopReplication);
+    options.addOption(incremental);
     return options;
   }
 
@@ -624,6 +718,17 @@ public class KoralClient {
     return options;
   }
 
+  private static Options createUpdateOptions() {
+    Option updateFile = Option.builder("u").longOpt("updateFile").hasArg()
+            .argName("SPARQLUpdateFile")
+            .desc("A file with the SPARQL update that should be applied.").required(false)
+            .build();
+
+    Options options = new Options();
+    options.addOption(updateFile);
+    return options;
+  }
+
   private static String[][] splitArgs(String[] args) {
     String[][] parts = new String[2][];
     int i = 0;
@@ -652,6 +757,7 @@ public class KoralClient {
       case "quit":
       case "load":
       case "query":
+      case "update":
       case "drop":
         return true;
       default:
@@ -699,12 +805,16 @@ public class KoralClient {
     System.out.println("exit\tquits the client");
     System.out.println("quit\tquits the client");
     HelpFormatter formatter = new HelpFormatter();
-    formatter.printHelp("load -c <graphCoverStrategy> [-n <pathLength>] <fileOrFolder>...",
+    formatter.printHelp("load -c <graphCoverStrategy> [-n <pathLength>] [-i] <fileOrFolder>...",
             KoralClient.createLoadOptions());
     formatter.printHelp(
             "query [-t <treeType>] [-o <outputFile>] <SPARQL query>\n"
                     + "query [-t <treeType>] [-o <outputFile>] -q <SPARQLQueryFile>",
             KoralClient.createQueryOptions());
+    formatter.printHelp(
+            "update <SPARQL update>\n" + "update -u <SPARQLUpdateFile>\n"
+                    + "Only INSERT DATA and DELETE DATA operations are supported.",
+            KoralClient.createUpdateOptions());
     System.out.println(
             "drop\tdeletes the database and its content. All running tasks, e.g., executed queries are terminated.");
   }
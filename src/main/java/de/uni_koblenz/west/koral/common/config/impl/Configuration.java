@@ -20,10 +20,12 @@ import de.uni_koblenz.west.koral.common.config.Configurable;
 import de.uni_koblenz.west.koral.common.config.ConfigurableDeserializer;
 import de.uni_koblenz.west.koral.common.config.ConfigurableSerializer;
 import de.uni_koblenz.west.koral.common.config.Property;
+import de.uni_koblenz.west.koral.common.io.BlockCodec;
 import de.uni_koblenz.west.koral.common.mapDB.MapDBCacheOptions;
 import de.uni_koblenz.west.koral.common.mapDB.MapDBStorageOptions;
 import de.uni_koblenz.west.koral.common.system.ConfigurationException;
 import de.uni_koblenz.west.koral.master.dictionary.impl.RocksDBDictionary;
+import de.uni_koblenz.west.koral.master.statisticsDB.StatisticsDatabaseType;
 
 import java.io.File;
 import java.io.IOException;
@@ -90,7 +92,7 @@ public class Configuration implements Configurable {
   @Property(name = "ftpServer", description = "The external ip and the internal and external port of the FTP server started at the master server, e.g., 192.168.0.1:2121."
           + " If no port is specified, the default port " + Configuration.DEFAULT_FTP_PORT
           + " is used."
-          + " The FTP server is used to upload the graph files from the client to the master and the graph chunks from the master to the slaves."
+          + " The FTP server is used to upload the graph files from the client to the master. The same port is used to stream the graph chunks from the master to the slaves."
           + " The FTP server runs only during the filetransfer.")
   private String ftpServerIP;
 
@@ -332,6 +334,98 @@ public class Configuration implements Configurable {
     this.maxDictionaryWriteBatchSize = maxDictionaryWriteBatchSize;
   }
 
+  @Property(name = "dictionaryCacheSize", description = "The maximal number of encoded resources that are cached in memory by the dictionary. The cache"
+          + " keeps the most frequently used resources. 0 disables the cache.")
+  private int dictionaryCacheSize = RocksDBDictionary.DEFAULT_CACHE_SIZE;
+
+  public int getDictionaryCacheSize() {
+    return dictionaryCacheSize;
+  }
+
+  public void setDictionaryCacheSize(int dictionaryCacheSize) {
+    this.dictionaryCacheSize = dictionaryCacheSize;
+  }
+
+  @Property(name = "bulkDictionaryEncoding", description = "If set to true, the initial encoding of a graph sorts all resources and encodes them in one"
+          + " sequential pass instead of looking up each resource in the dictionary. The graph files are"
+          + " parsed in parallel.")
+  private boolean bulkDictionaryEncoding = true;
+
+  public boolean isBulkDictionaryEncodingEnabled() {
+    return bulkDictionaryEncoding;
+  }
+
+  public void setBulkDictionaryEncoding(boolean bulkDictionaryEncoding) {
+    this.bulkDictionaryEncoding = bulkDictionaryEncoding;
+  }
+
+  @Property(name = "compressDictionaryNamespaces", description = "If set to true, the dictionary replaces the namespaces of IRIs by short ids in its"
+          + " databases. This saves disk space, but each lookup has to compress or decompress the value."
+          + " An existing dictionary keeps its format until it is dropped.")
+  private boolean compressDictionaryNamespaces = false;
+
+  public boolean isDictionaryNamespaceCompressionEnabled() {
+    return compressDictionaryNamespaces;
+  }
+
+  public void setCompressDictionaryNamespaces(boolean compressDictionaryNamespaces) {
+    this.compressDictionaryNamespaces = compressDictionaryNamespaces;
+  }
+
+  @Property(name = "partitionedDictionary", description = "If set to true, each slave additionally stores the dictionary entries of the resources that"
+          + " occur in its graph chunk. The slaves decode the query results before they are sent to the"
+          + " master. Values that are unknown to a slave are decoded by the master.")
+  private boolean partitionedDictionary = false;
+
+  public boolean isDictionaryPartitioningEnabled() {
+    return partitionedDictionary;
+  }
+
+  public void setPartitionedDictionary(boolean partitionedDictionary) {
+    this.partitionedDictionary = partitionedDictionary;
+  }
+
+  @Property(name = "encodedFileCodec", description = "Defines how the blocks of the encoded graph files that are created while loading a graph are"
+          + " compressed: NONE, SNAPPY or DEFLATE. Files of the old gzip format can still be read.")
+  private BlockCodec encodedFileCodec = BlockCodec.SNAPPY;
+
+  public BlockCodec getEncodedFileCodec() {
+    return encodedFileCodec;
+  }
+
+  public void setEncodedFileCodec(BlockCodec encodedFileCodec) {
+    this.encodedFileCodec = encodedFileCodec;
+  }
+
+  @Property(name = "statisticsDatabaseType", description = "Defines how the statistics of the loaded graph are stored on the master: MULTI_FILE = the"
+          + " statistics are stored in several files on disk. OFF_HEAP = the statistics are kept in memory"
+          + " outside of the Java heap and are written to disk as a snapshot. It requires memory for"
+          + " 3*numberOfSlaves counters per resource. The statistics have to be recreated after changing"
+          + " this value.")
+  private StatisticsDatabaseType statisticsDatabaseType = StatisticsDatabaseType.MULTI_FILE;
+
+  public StatisticsDatabaseType getStatisticsDatabaseType() {
+    return statisticsDatabaseType;
+  }
+
+  public void setStatisticsDatabaseType(StatisticsDatabaseType statisticsDatabaseType) {
+    this.statisticsDatabaseType = statisticsDatabaseType;
+  }
+
+  @Property(name = "coverCreationMemoryBudget", description = "Defines how many MB of main memory the molecule hash cover may use for sorting and for caching"
+          + " the molecule frontiers. The maximal number of simultaneously opened files is derived from it,"
+          + " as well. The parallel edge coloring cover keeps the colors of all edges in this memory if"
+          + " they fit into it.")
+  private int coverCreationMemoryBudget = 64;
+
+  public int getCoverCreationMemoryBudget() {
+    return coverCreationMemoryBudget;
+  }
+
+  public void setCoverCreationMemoryBudget(int coverCreationMemoryBudget) {
+    this.coverCreationMemoryBudget = coverCreationMemoryBudget;
+  }
+
   private final String statisticsDir = "statistics";
 
   public String getStatisticsDir(boolean flagIsMaster) {
@@ -400,6 +494,56 @@ public class Configuration implements Configurable {
     this.tripleStoreCacheType = tripleStoreCacheType;
   }
 
+  @Property(name = "tripleStoreWritersPerIndex", description = "Defines how many threads write into each of the SPO, OSP and POS index while a graph chunk is"
+          + " loaded. If more than one writer is used, the triples of an index are split into disjoint"
+          + " ranges of the key space and each range is written by its own thread.")
+  private int tripleStoreWritersPerIndex = 1;
+
+  public int getTripleStoreWritersPerIndex() {
+    return tripleStoreWritersPerIndex;
+  }
+
+  public void setTripleStoreWritersPerIndex(int tripleStoreWritersPerIndex) {
+    this.tripleStoreWritersPerIndex = tripleStoreWritersPerIndex;
+  }
+
+  @Property(name = "tripleStoreLoaderQueueSize", description = "Defines how many batches of decoded triples may wait for each index writer thread while a graph"
+          + " chunk is loaded.")
+  private int tripleStoreLoaderQueueSize = 16;
+
+  public int getTripleStoreLoaderQueueSize() {
+    return tripleStoreLoaderQueueSize;
+  }
+
+  public void setTripleStoreLoaderQueueSize(int tripleStoreLoaderQueueSize) {
+    this.tripleStoreLoaderQueueSize = tripleStoreLoaderQueueSize;
+  }
+
+  @Property(name = "createCheckpoints", description = "If set to true, the master and the slaves create a checkpoint of their dictionary, statistics"
+          + " and triple store after a graph has been loaded. If a load is interrupted by a crash, the"
+          + " checkpoint is restored during the next start.")
+  private boolean createCheckpoints = true;
+
+  public boolean isCheckpointCreationEnabled() {
+    return createCheckpoints;
+  }
+
+  public void setCreateCheckpoints(boolean createCheckpoints) {
+    this.createCheckpoints = createCheckpoints;
+  }
+
+  @Property(name = "numberOfWarmedUpProperties", description = "Defines for how many of the most frequent properties the indices are read in background after a"
+          + " start in order to fill the caches. 0 disables the warmup.")
+  private int numberOfWarmedUpProperties = 0;
+
+  public int getNumberOfWarmedUpProperties() {
+    return numberOfWarmedUpProperties;
+  }
+
+  public void setNumberOfWarmedUpProperties(int numberOfWarmedUpProperties) {
+    this.numberOfWarmedUpProperties = numberOfWarmedUpProperties;
+  }
+
   @Property(name = "sizeOfMappingRecycleCache", description = "In order to prevent a frequent garbage collection, Mapping objects are recycled."
           + " This option defines how many Mapping objects should be cached for reuse.")
   private int sizeOfMappingRecycleCache = 100_000;
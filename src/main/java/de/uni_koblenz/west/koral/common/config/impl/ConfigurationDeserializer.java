@@ -20,8 +20,10 @@ import java.util.logging.Level;
 import java.util.regex.Pattern;
 
 import de.uni_koblenz.west.koral.common.config.ConfigurableDeserializer;
+import de.uni_koblenz.west.koral.common.io.BlockCodec;
 import de.uni_koblenz.west.koral.common.mapDB.MapDBCacheOptions;
 import de.uni_koblenz.west.koral.common.mapDB.MapDBStorageOptions;
+import de.uni_koblenz.west.koral.master.statisticsDB.StatisticsDatabaseType;
 
 /**
  * Provides methods to convert the property values in the configuration file to the field values of
@@ -100,6 +102,59 @@ public class ConfigurationDeserializer implements ConfigurableDeserializer {
     }
   }
 
+  public void deserializeDictionaryCacheSize(Configuration conf, String dictionaryCacheSize) {
+    if ((dictionaryCacheSize != null) && !dictionaryCacheSize.isEmpty()) {
+      conf.setDictionaryCacheSize(Integer.parseInt(dictionaryCacheSize));
+    }
+  }
+
+  public void deserializeBulkDictionaryEncoding(Configuration conf, String bulkDictionaryEncoding) {
+    if ((bulkDictionaryEncoding != null) && !bulkDictionaryEncoding.isEmpty()) {
+      conf.setBulkDictionaryEncoding(Boolean.parseBoolean(bulkDictionaryEncoding));
+    }
+  }
+
+  public void deserializeCompressDictionaryNamespaces(Configuration conf,
+          String compressDictionaryNamespaces) {
+    if ((compressDictionaryNamespaces != null) && !compressDictionaryNamespaces.isEmpty()) {
+      conf.setCompressDictionaryNamespaces(Boolean.parseBoolean(compressDictionaryNamespaces));
+    }
+  }
+
+  public void deserializePartitionedDictionary(Configuration conf, String partitionedDictionary) {
+    if ((partitionedDictionary != null) && !partitionedDictionary.isEmpty()) {
+      conf.setPartitionedDictionary(Boolean.parseBoolean(partitionedDictionary));
+    }
+  }
+
+  public void deserializeEncodedFileCodec(Configuration conf, String encodedFileCodec) {
+    if ((encodedFileCodec != null) && !encodedFileCodec.isEmpty()) {
+      try {
+        conf.setEncodedFileCodec(BlockCodec.valueOf(encodedFileCodec.toUpperCase()));
+      } catch (IllegalArgumentException e) {
+
+      }
+    }
+  }
+
+  public void deserializeStatisticsDatabaseType(Configuration conf, String statisticsDatabaseType) {
+    if ((statisticsDatabaseType != null) && !statisticsDatabaseType.isEmpty()) {
+      try {
+        conf.setStatisticsDatabaseType(
+            StatisticsDatabaseType.valueOf(statisticsDatabaseType.toUpperCase()));
+      } catch (IllegalArgumentException e) {
+
+      }
+    }
+  }
+
+  public void deserializeCoverCreationMemoryBudget(Configuration conf,
+      String coverCreationMemoryBudget) {
+    if ((coverCreationMemoryBudget != null) && !coverCreationMemoryBudget.isEmpty()) {
+      conf.setCoverCreationMemoryBudget(Integer.parseInt(coverCreationMemoryBudget));
+    }
+  }
+
   public void deserializeTripleStoreStorageType(Configuration conf, String storageType) {
     if ((storageType != null) && !storageType.isEmpty()) {
       try {
@@ -134,6 +189,33 @@ public class ConfigurationDeserializer implements ConfigurableDeserializer {
     }
   }
 
+  public void deserializeTripleStoreWritersPerIndex(Configuration conf,
+      String tripleStoreWritersPerIndex) {
+    if ((tripleStoreWritersPerIndex != null) && !tripleStoreWritersPerIndex.isEmpty()) {
+      conf.setTripleStoreWritersPerIndex(Integer.parseInt(tripleStoreWritersPerIndex));
+    }
+  }
+
+  public void deserializeTripleStoreLoaderQueueSize(Configuration conf,
+      String tripleStoreLoaderQueueSize) {
+    if ((tripleStoreLoaderQueueSize != null) && !tripleStoreLoaderQueueSize.isEmpty()) {
+      conf.setTripleStoreLoaderQueueSize(Integer.parseInt(tripleStoreLoaderQueueSize));
+    }
+  }
+
+  public void deserializeCreateCheckpoints(Configuration conf, String createCheckpoints) {
+    if ((createCheckpoints != null) && !createCheckpoints.isEmpty()) {
+      conf.setCreateCheckpoints(Boolean.parseBoolean(createCheckpoints));
+    }
+  }
+
+  public void deserializeNumberOfWarmedUpProperties(Configuration conf,
+      String numberOfWarmedUpProperties) {
+    if ((numberOfWarmedUpProperties != null) && !numberOfWarmedUpProperties.isEmpty()) {
+      conf.setNumberOfWarmedUpProperties(Integer.parseInt(numberOfWarmedUpProperties));
+    }
+  }
+
   public void deserializeSizeOfMappingRecycleCache(Configuration conf, String size) {
     conf.setSizeOfMappingRecycleCache(Integer.parseInt(size));
   }
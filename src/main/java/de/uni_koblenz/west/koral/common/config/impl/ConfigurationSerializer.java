@@ -86,6 +86,34 @@ public class ConfigurationSerializer implements ConfigurableSerializer {
     return new Integer(conf.getMaxDictionaryWriteBatchSize()).toString();
   }
 
+  public String serializeDictionaryCacheSize(Configuration conf) {
+    return new Integer(conf.getDictionaryCacheSize()).toString();
+  }
+
+  public String serializeBulkDictionaryEncoding(Configuration conf) {
+    return new Boolean(conf.isBulkDictionaryEncodingEnabled()).toString();
+  }
+
+  public String serializeCompressDictionaryNamespaces(Configuration conf) {
+    return new Boolean(conf.isDictionaryNamespaceCompressionEnabled()).toString();
+  }
+
+  public String serializePartitionedDictionary(Configuration conf) {
+    return new Boolean(conf.isDictionaryPartitioningEnabled()).toString();
+  }
+
+  public String serializeEncodedFileCodec(Configuration conf) {
+    return conf.getEncodedFileCodec().name();
+  }
+
+  public String serializeStatisticsDatabaseType(Configuration conf) {
+    return conf.getStatisticsDatabaseType().name();
+  }
+
+  public String serializeCoverCreationMemoryBudget(Configuration conf) {
+    return new Integer(conf.getCoverCreationMemoryBudget()).toString();
+  }
+
   public String serializeTripleStoreStorageType(Configuration conf) {
     return conf.getTripleStoreStorageType().name();
   }
@@ -102,6 +130,22 @@ public class ConfigurationSerializer implements ConfigurableSerializer {
     return conf.getTripleStoreCacheType().name();
   }
 
+  public String serializeTripleStoreWritersPerIndex(Configuration conf) {
+    return new Integer(conf.getTripleStoreWritersPerIndex()).toString();
+  }
+
+  public String serializeTripleStoreLoaderQueueSize(Configuration conf) {
+    return new Integer(conf.getTripleStoreLoaderQueueSize()).toString();
+  }
+
+  public String serializeCreateCheckpoints(Configuration conf) {
+    return new Boolean(conf.isCheckpointCreationEnabled()).toString();
+  }
+
+  public String serializeNumberOfWarmedUpProperties(Configuration conf) {
+    return new Integer(conf.getNumberOfWarmedUpProperties()).toString();
+  }
+
   public String serializeSizeOfMappingRecycleCache(Configuration conf) {
     return new Integer(conf.getSizeOfMappingRecycleCache()).toString();
   }
@@ -0,0 +1,137 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.common.ftp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+
+/**
+ * Requests a file from a {@link FileStreamServer}.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class FileStreamClient {
+
+  /**
+   * @param remoteFile
+   * @param ipAddress
+   * @param port
+   * @return {@link InputStream} that provides the content of the remote file
+   *         while it is received. If the connection is closed before the file
+   *         was received completely, an {@link IOException} is thrown. Closing
+   *         the stream closes the connection.
+   */
+  public InputStream openFile(String remoteFile, String ipAddress, String port) {
+    Socket socket = null;
+    try {
+      socket = new Socket(ipAddress, Integer.parseInt(port));
+      DataOutputStream out = new DataOutputStream(
+              new BufferedOutputStream(socket.getOutputStream()));
+      out.writeUTF(remoteFile);
+      out.flush();
+      return new BlockInputStream(socket);
+    } catch (IOException e) {
+      if (socket != null) {
+        try {
+          socket.close();
+        } catch (IOException e1) {
+          e.addSuppressed(e1);
+        }
+      }
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Removes the block headers sent by {@link FileStreamServer}.
+   */
+  private static class BlockInputStream extends InputStream {
+
+    private final Socket socket;
+
+    private final DataInputStream input;
+
+    private int remainingBytesInBlock;
+
+    private boolean isFinished;
+
+    public BlockInputStream(Socket socket) throws IOException {
+      this.socket = socket;
+      input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      remainingBytesInBlock = 0;
+      isFinished = false;
+    }
+
+    private boolean startNextBlockIfRequired() throws IOException {
+      while (!isFinished && (remainingBytesInBlock == 0)) {
+        try {
+          remainingBytesInBlock = input.readInt();
+        } catch (EOFException e) {
+          throw new IOException("The connection was closed before the file was received completely.",
+                  e);
+        }
+        isFinished = remainingBytesInBlock == 0;
+      }
+      return !isFinished;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!startNextBlockIfRequired()) {
+        return -1;
+      }
+      int result = input.read();
+      if (result == -1) {
+        throw new IOException("The connection was closed before the file was received completely.");
+      }
+      remainingBytesInBlock--;
+      return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!startNextBlockIfRequired()) {
+        return -1;
+      }
+      int result = input.read(b, off, Math.min(len, remainingBytesInBlock));
+      if (result == -1) {
+        throw new IOException("The connection was closed before the file was received completely.");
+      }
+      remainingBytesInBlock -= result;
+      return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+      socket.close();
+    }
+
+  }
+
+}
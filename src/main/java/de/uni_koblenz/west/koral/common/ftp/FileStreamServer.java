@@ -0,0 +1,218 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.common.ftp;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Streams files to {@link FileStreamClient}s. In contrast to {@link FTPServer},
+ * a file can be offered while it is still written. The bytes written so far
+ * are sent as blocks of the form <code>int length, byte[length]</code> via
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+ * As soon as the file is marked as complete and all its bytes are sent, a block
+ * of length 0 is sent. Thus, clients can distinguish a complete transfer from a
+ * closed connection.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class FileStreamServer implements Closeable {
+
+  private static final long POLLING_INTERVAL = 10;
+
+  private static final int MAX_BLOCK_LENGTH = 8 * 1024 * 1024;
+
+  private final Logger logger;
+
+  private final Map<String, File> offeredFiles;
+
+  private final Set<String> completedFiles;
+
+  private ServerSocketChannel serverChannel;
+
+  private volatile boolean isClosed;
+
+  public FileStreamServer(Logger logger) {
+    this.logger = logger;
+    offeredFiles = new HashMap<>();
+    completedFiles = new HashSet<>();
+  }
+
+  public void start(String ipAddress, String port) {
+    isClosed = false;
+    try {
+      serverChannel = ServerSocketChannel.open();
+      serverChannel.socket().setReuseAddress(true);
+      serverChannel.bind(new InetSocketAddress(ipAddress, Integer.parseInt(port)));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    Thread acceptor = new Thread(this::acceptConnections, "FileStreamServer");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * Makes the file available for download. The file may still be written or
+   * may not exist yet. Clients requesting it receive its content until
+   * {@link #completeFile(File)} is called.
+   * 
+   * @param file
+   */
+  public synchronized void offerFile(File file) {
+    offeredFiles.put(file.getName(), file);
+    notifyAll();
+  }
+
+  /**
+   * Marks the file as completely written. The file must have been closed before
+   * this method is called.
+   * 
+   * @param file
+   */
+  public synchronized void completeFile(File file) {
+    completedFiles.add(file.getName());
+    notifyAll();
+  }
+
+  private void acceptConnections() {
+    while (!isClosed) {
+      try {
+        SocketChannel socket = serverChannel.accept();
+        Thread sender = new Thread(() -> sendFile(socket), "FileStreamSender");
+        sender.setDaemon(true);
+        sender.start();
+      } catch (ClosedChannelException e) {
+        break;
+      } catch (IOException e) {
+        if (logger != null) {
+          logger.throwing(e.getStackTrace()[0].getClassName(), e.getStackTrace()[0].getMethodName(),
+                  e);
+        }
+      }
+    }
+  }
+
+  private void sendFile(SocketChannel socket) {
+    try (SocketChannel socketChannel = socket) {
+      String fileName = new DataInputStream(socketChannel.socket().getInputStream()).readUTF();
+      File file = waitForFile(fileName);
+      if (file == null) {
+        return;
+      }
+      try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+              FileChannel channel = raf.getChannel();) {
+        long position = 0;
+        while (!isClosed) {
+          // the completion state has to be checked before the size is read
+          boolean isComplete = isComplete(fileName);
+          long size = channel.size();
+          if (position < size) {
+            int blockLength = (int) Math.min(size - position, MAX_BLOCK_LENGTH);
+            writeBlockLength(socketChannel, blockLength);
+            long blockEnd = position + blockLength;
+            while (position < blockEnd) {
+              position += channel.transferTo(position, blockEnd - position, socketChannel);
+            }
+          } else if (isComplete) {
+            writeBlockLength(socketChannel, 0);
+            break;
+          } else {
+            waitForProgress();
+          }
+        }
+      }
+      socketChannel.shutdownOutput();
+    } catch (IOException | InterruptedException e) {
+      if (logger != null) {
+        logger.throwing(e.getStackTrace()[0].getClassName(), e.getStackTrace()[0].getMethodName(),
+                e);
+      }
+    }
+  }
+
+  private void writeBlockLength(SocketChannel socket, int blockLength) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+    header.putInt(blockLength);
+    header.flip();
+    while (header.hasRemaining()) {
+      socket.write(header);
+    }
+  }
+
+  /**
+   * @param fileName
+   * @return the offered file as soon as it exists or <code>null</code> if the
+   *         server was closed before
+   * @throws InterruptedException
+   */
+  private synchronized File waitForFile(String fileName) throws InterruptedException {
+    File file = offeredFiles.get(fileName);
+    while (!isClosed && ((file == null) || !file.exists())) {
+      wait(POLLING_INTERVAL);
+      file = offeredFiles.get(fileName);
+    }
+    return isClosed ? null : file;
+  }
+
+  private synchronized boolean isComplete(String fileName) {
+    return completedFiles.contains(fileName);
+  }
+
+  private synchronized void waitForProgress() throws InterruptedException {
+    wait(POLLING_INTERVAL);
+  }
+
+  @Override
+  public void close() {
+    isClosed = true;
+    synchronized (this) {
+      offeredFiles.clear();
+      completedFiles.clear();
+      notifyAll();
+    }
+    if (serverChannel != null) {
+      try {
+        serverChannel.close();
+      } catch (IOException e) {
+        if (logger != null) {
+          logger.throwing(e.getStackTrace()[0].getClassName(), e.getStackTrace()[0].getMethodName(),
+                  e);
+        }
+      }
+      serverChannel = null;
+    }
+  }
+
+}
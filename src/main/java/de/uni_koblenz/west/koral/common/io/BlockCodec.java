@@ -0,0 +1,181 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.common.io;
+
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses the blocks of files written by {@link EncodedFileOutputStream}.
+ * Each block is compressed independently.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public enum BlockCodec {
+
+  /**
+   * the blocks are stored uncompressed
+   */
+  NONE((byte) 0) {
+    @Override
+    public int getMaxCompressedLength(int length) {
+      return length;
+    }
+
+    @Override
+    public int compress(byte[] input, int length, byte[] output) {
+      System.arraycopy(input, 0, output, 0, length);
+      return length;
+    }
+
+    @Override
+    public void decompress(byte[] input, int length, byte[] output, int outputLength)
+            throws IOException {
+      if (length != outputLength) {
+        throw new IOException("The uncompressed block has " + length + " bytes instead of "
+                + outputLength + " bytes.");
+      }
+      System.arraycopy(input, 0, output, 0, length);
+    }
+  },
+
+  SNAPPY((byte) 1) {
+    @Override
+    public int getMaxCompressedLength(int length) {
+      return Snappy.maxCompressedLength(length);
+    }
+
+    @Override
+    public int compress(byte[] input, int length, byte[] output) throws IOException {
+      return Snappy.compress(input, 0, length, output, 0);
+    }
+
+    @Override
+    public void decompress(byte[] input, int length, byte[] output, int outputLength)
+            throws IOException {
+      int uncompressedLength = Snappy.uncompress(input, 0, length, output, 0);
+      if (uncompressedLength != outputLength) {
+        throw new IOException("The block was decompressed to " + uncompressedLength
+                + " bytes instead of " + outputLength + " bytes.");
+      }
+    }
+  },
+
+  DEFLATE((byte) 2) {
+    @Override
+    public int getMaxCompressedLength(int length) {
+      // upper bound of zlib plus some bytes for the stream header
+      return length + (length >>> 12) + (length >>> 14) + (length >>> 25) + 64;
+    }
+
+    @Override
+    public int compress(byte[] input, int length, byte[] output) throws IOException {
+      Deflater deflater = new Deflater();
+      try {
+        deflater.setInput(input, 0, length);
+        deflater.finish();
+        int compressedLength = deflater.deflate(output);
+        if (!deflater.finished()) {
+          throw new IOException("The output buffer is too small for the compressed block.");
+        }
+        return compressedLength;
+      } finally {
+        deflater.end();
+      }
+    }
+
+    @Override
+    public void decompress(byte[] input, int length, byte[] output, int outputLength)
+            throws IOException {
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(input, 0, length);
+        int uncompressedLength = inflater.inflate(output, 0, outputLength);
+        if ((uncompressedLength != outputLength) || !inflater.finished()) {
+          throw new IOException("The block could not be decompressed to " + outputLength
+                  + " bytes.");
+        }
+      } catch (DataFormatException e) {
+        throw new IOException(e);
+      } finally {
+        inflater.end();
+      }
+    }
+  };
+
+  /**
+   * the id stored in the header of each section of an encoded file. It must
+   * never change for an existing codec.
+   */
+  private final byte id;
+
+  private BlockCodec(byte id) {
+    this.id = id;
+  }
+
+  /**
+   * @param length
+   * @return the minimal size of the output buffer passed to
+   *         {@link #compress(byte[], int, byte[])}
+   */
+  public abstract int getMaxCompressedLength(int length);
+
+  /**
+   * @param input
+   * @param length
+   *          number of bytes of input that are compressed
+   * @param output
+   *          has a size of at least {@link #getMaxCompressedLength(int)}
+   * @return number of bytes written to output
+   * @throws IOException
+   */
+  public abstract int compress(byte[] input, int length, byte[] output) throws IOException;
+
+  /**
+   * @param input
+   * @param length
+   *          number of compressed bytes of input
+   * @param output
+   * @param outputLength
+   *          expected number of uncompressed bytes
+   * @throws IOException
+   *           if the block is corrupted
+   */
+  public abstract void decompress(byte[] input, int length, byte[] output, int outputLength)
+          throws IOException;
+
+  public byte getId() {
+    return id;
+  }
+
+  public static BlockCodec getCodec(byte id) throws IOException {
+    for (BlockCodec codec : BlockCodec.values()) {
+      if (codec.id == id) {
+        return codec;
+      }
+    }
+    throw new IOException("Unknown block codec " + id + ".");
+  }
+
+}
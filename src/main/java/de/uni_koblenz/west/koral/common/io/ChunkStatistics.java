@@ -0,0 +1,228 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.common.io;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Exact number of occurrences of each resource as subject, property and object
+ * in the triples stored by a slave. The counts of each position are appended
+ * in ascending order of the resources, e.g., while the index starting with
+ * this position is scanned. They are kept as delta encoded pairs of resource
+ * and count so that the summary is compact and can be sent to the master as
+ * is. The three positions may be filled concurrently by different threads.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class ChunkStatistics {
+
+  public static final int SUBJECT = 0;
+
+  public static final int PROPERTY = 1;
+
+  public static final int OBJECT = 2;
+
+  private long numberOfTriples;
+
+  /**
+   * (varint resourceDelta, varint count)* of each position
+   */
+  private final ByteArrayOutputStream[] entries;
+
+  private final int[] numberOfEntries;
+
+  private final long[] lastResources;
+
+  public ChunkStatistics() {
+    entries = new ByteArrayOutputStream[3];
+    numberOfEntries = new int[3];
+    lastResources = new long[3];
+    for (int position = 0; position < 3; position++) {
+      entries[position] = new ByteArrayOutputStream();
+    }
+  }
+
+  public long getNumberOfTriples() {
+    return numberOfTriples;
+  }
+
+  public void addNumberOfTriples(long numberOfTriples) {
+    this.numberOfTriples += numberOfTriples;
+  }
+
+  /**
+   * @param resource
+   *          must be larger than all resources added before for this position.
+   *          The resources are compared unsigned like the index keys.
+   * @param position
+   *          {@link #SUBJECT}, {@link #PROPERTY} or {@link #OBJECT}
+   * @param count
+   */
+  public void add(long resource, int position, long count) {
+    if ((numberOfEntries[position] > 0)
+            && (Long.compareUnsigned(resource, lastResources[position]) <= 0)) {
+      throw new IllegalArgumentException("The resources of a position have to be added in "
+              + "ascending order, but " + resource + " follows " + lastResources[position] + ".");
+    }
+    ChunkStatistics.writeVarLong(entries[position], resource - lastResources[position]);
+    ChunkStatistics.writeVarLong(entries[position], count);
+    lastResources[position] = resource;
+    numberOfEntries[position]++;
+  }
+
+  /**
+   * @param position
+   * @return number of resources that occur at this position
+   */
+  public int getNumberOfResources(int position) {
+    return numberOfEntries[position];
+  }
+
+  /**
+   * Passes the counts of each resource in ascending order of the resources.
+   * 
+   * @param consumer
+   */
+  public void forEach(ResourceConsumer consumer) {
+    ByteBuffer[] buffers = new ByteBuffer[3];
+    int[] remainingEntries = new int[3];
+    long[] resources = new long[3];
+    long[] entryCounts = new long[3];
+    for (int position = 0; position < 3; position++) {
+      buffers[position] = ByteBuffer.wrap(entries[position].toByteArray());
+      remainingEntries[position] = numberOfEntries[position];
+      readEntry(buffers[position], remainingEntries, resources, entryCounts, position);
+    }
+    long[] counts = new long[3];
+    while (true) {
+      long resource = 0;
+      boolean hasEntry = false;
+      for (int position = 0; position < 3; position++) {
+        if ((remainingEntries[position] >= 0) && (!hasEntry
+                || (Long.compareUnsigned(resources[position], resource) < 0))) {
+          resource = resources[position];
+          hasEntry = true;
+        }
+      }
+      if (!hasEntry) {
+        return;
+      }
+      for (int position = 0; position < 3; position++) {
+        if ((remainingEntries[position] >= 0) && (resources[position] == resource)) {
+          counts[position] = entryCounts[position];
+          readEntry(buffers[position], remainingEntries, resources, entryCounts, position);
+        } else {
+          counts[position] = 0;
+        }
+      }
+      consumer.accept(resource, counts);
+    }
+  }
+
+  /**
+   * Reads the next entry of the position. If there is none, its remaining
+   * entries become -1.
+   */
+  private static void readEntry(ByteBuffer buffer, int[] remainingEntries, long[] resources,
+          long[] counts, int position) {
+    if (remainingEntries[position] == 0) {
+      remainingEntries[position] = -1;
+      return;
+    }
+    remainingEntries[position]--;
+    resources[position] += ChunkStatistics.readVarLong(buffer);
+    counts[position] = ChunkStatistics.readVarLong(buffer);
+  }
+
+  /**
+   * @return long numberOfTriples, (varint numberOfEntries, varint
+   *         numberOfBytes, (varint resourceDelta, varint count)*)* for the
+   *         subject, property and object position
+   */
+  public byte[] serialize() {
+    int length = Long.BYTES + (6 * Integer.BYTES);
+    for (ByteArrayOutputStream entriesOfPosition : entries) {
+      length += entriesOfPosition.size();
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+    for (int i = Long.BYTES - 1; i >= 0; i--) {
+      out.write((int) (numberOfTriples >>> (8 * i)));
+    }
+    for (int position = 0; position < 3; position++) {
+      ChunkStatistics.writeVarLong(out, numberOfEntries[position]);
+      ChunkStatistics.writeVarLong(out, entries[position].size());
+      byte[] entriesOfPosition = entries[position].toByteArray();
+      out.write(entriesOfPosition, 0, entriesOfPosition.length);
+    }
+    return out.toByteArray();
+  }
+
+  public static ChunkStatistics deserialize(byte[] serialization, int offset) {
+    ByteBuffer buffer = ByteBuffer.wrap(serialization, offset, serialization.length - offset);
+    ChunkStatistics statistics = new ChunkStatistics();
+    statistics.numberOfTriples = buffer.getLong();
+    for (int position = 0; position < 3; position++) {
+      statistics.numberOfEntries[position] = (int) ChunkStatistics.readVarLong(buffer);
+      int numberOfBytes = (int) ChunkStatistics.readVarLong(buffer);
+      statistics.entries[position].write(serialization, buffer.position(), numberOfBytes);
+      buffer.position(buffer.position() + numberOfBytes);
+    }
+    return statistics;
+  }
+
+  private static void writeVarLong(ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7fL) != 0) {
+      out.write((int) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  private static long readVarLong(ByteBuffer buffer) {
+    long value = 0;
+    for (int shift = 0;; shift += 7) {
+      byte b = buffer.get();
+      value |= ((long) (b & 0x7f)) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+  }
+
+  /**
+   * Receives the counts of one resource.
+   */
+  @FunctionalInterface
+  public interface ResourceConsumer {
+
+    /**
+     * @param resource
+     * @param counts
+     *          the counts indexed by {@link ChunkStatistics#SUBJECT},
+     *          {@link ChunkStatistics#PROPERTY} and
+     *          {@link ChunkStatistics#OBJECT}. The array is reused for the next
+     *          resource.
+     */
+    public void accept(long resource, long[] counts);
+
+  }
+
+}
@@ -27,12 +27,28 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.zip.GZIPInputStream;
 
 /**
+ * <p>
  * Reads data from a file respecting the {@link EncodingFileFormat}. The v-byte
- * encoded long values in the input file are decoded.
+ * encoded long values in the input file are decoded. If the input file is a
+ * directory, its files are segments of one input and read one after the other
+ * in the lexicographic order of their names.
+ * </p>
+ * 
+ * <p>
+ * The block format written by {@link EncodedFileOutputStream} as well as the
+ * old format, i.e., a gzip compressed stream of statements, are detected
+ * automatically.
+ * </p>
  * 
  * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
  *
@@ -41,12 +57,23 @@ public class EncodedFileInputStream implements AutoCloseable, Iterable<Statement
 
   private final EncodingFileFormat inputFormat;
 
-  private final DataInputStream input;
-
   private final File inputFile;
 
+  private final EncodedFileSplit inputSplit;
+
+  /**
+   * the segments of a directory or <code>null</code> if a single file or
+   * stream is read
+   */
+  private final File[] segments;
+
+  private int nextSegment;
+
+  private StatementReader input;
+
   /**
-   * The input must be closed!
+   * The input must be closed! It must have been created from a file or a
+   * split.
    * 
    * @param input
    * @throws FileNotFoundException
@@ -54,53 +81,227 @@ public class EncodedFileInputStream implements AutoCloseable, Iterable<Statement
    */
   public EncodedFileInputStream(EncodedFileInputStream input)
           throws FileNotFoundException, IOException {
-    this(input.inputFormat, input.inputFile);
+    this(input.inputFormat, input.inputFile, input.inputSplit);
   }
 
   public EncodedFileInputStream(EncodingFileFormat inputFormat, File inputFile)
           throws FileNotFoundException, IOException {
+    this(inputFormat, inputFile, null);
+  }
+
+  /**
+   * Reads only the statements of the split.
+   * 
+   * @param inputFormat
+   * @param inputSplit
+   * @throws FileNotFoundException
+   * @throws IOException
+   */
+  public EncodedFileInputStream(EncodingFileFormat inputFormat, EncodedFileSplit inputSplit)
+          throws FileNotFoundException, IOException {
+    this(inputFormat, inputSplit.getFile(), inputSplit);
+  }
+
+  private EncodedFileInputStream(EncodingFileFormat inputFormat, File inputFile,
+          EncodedFileSplit inputSplit) throws FileNotFoundException, IOException {
     super();
     this.inputFile = inputFile;
     this.inputFormat = inputFormat;
-    input = new DataInputStream(
-            new BufferedInputStream(new GZIPInputStream(new FileInputStream(inputFile))));
+    this.inputSplit = inputSplit;
+    if (inputSplit != null) {
+      segments = null;
+      input = openSplit(inputSplit);
+    } else if (inputFile.isDirectory()) {
+      segments = EncodedFileInputStream.getSegments(inputFile);
+    } else {
+      segments = null;
+      input = openStream(new FileInputStream(inputFile), Long.MAX_VALUE);
+    }
   }
 
   /**
-   * @return {@link Statement} singleton whose content is changed for each call
-   *         of this method
-   * @throws EOFException
-   *           if the end of the file is reached
+   * Reads the statements from an arbitrary stream, e.g., a network connection.
+   * Since the stream cannot be reopened, this instance cannot be used for
+   * {@link #EncodedFileInputStream(EncodedFileInputStream)}.
+   * 
+   * @param inputFormat
+   * @param encodedInput
+   *          input in the block or the gzip compressed format which is closed
+   *          when this stream is closed
    * @throws IOException
    */
-  public Statement read() throws EOFException, IOException {
-    byte[] subject = inputFormat.isSubjectEncoded() ? readEncodedLong() : readString();
-    byte[] property = inputFormat.isPropertyEncoded() ? readEncodedLong() : readString();
-    byte[] object = inputFormat.isObjectEncoded() ? readEncodedLong() : readString();
+  public EncodedFileInputStream(EncodingFileFormat inputFormat, InputStream encodedInput)
+          throws IOException {
+    super();
+    inputFile = null;
+    inputSplit = null;
+    segments = null;
+    this.inputFormat = inputFormat;
+    input = openStream(encodedInput, Long.MAX_VALUE);
+  }
 
-    int length = input.readShort() & 0xff_ff;
-    byte[] containment = new byte[length];
-    input.readFully(containment);
-    return Statement.getStatement(inputFormat, subject, property, object, containment);
+  /**
+   * @param encodedInput
+   * @param end
+   *          offset after which no further block is read
+   * @return reader of the block or the old format
+   * @throws IOException
+   */
+  private StatementReader openStream(InputStream encodedInput, long end) throws IOException {
+    BufferedInputStream bufferedInput = new BufferedInputStream(encodedInput, 0x1_00_00);
+    bufferedInput.mark(2);
+    int firstByte = bufferedInput.read();
+    int secondByte = bufferedInput.read();
+    bufferedInput.reset();
+    if (EncodedFileOutputStream.isGzipHeader(firstByte, secondByte)) {
+      return new GzipStatementReader(new DataInputStream(
+              new BufferedInputStream(new GZIPInputStream(bufferedInput))));
+    } else {
+      return new BlockStatementReader(new DataInputStream(bufferedInput), 0, end, null);
+    }
+  }
+
+  private StatementReader openSplit(EncodedFileSplit split) throws IOException {
+    FileInputStream fileInput = new FileInputStream(split.getFile());
+    if (split.getStart() == 0) {
+      return openStream(fileInput, split.getEnd());
+    }
+    try {
+      fileInput.getChannel().position(split.getStart());
+    } catch (IOException e) {
+      fileInput.close();
+      throw e;
+    }
+    return new BlockStatementReader(
+            new DataInputStream(new BufferedInputStream(fileInput, 0x1_00_00)), split.getStart(),
+            split.getEnd(), split.getCodec());
   }
 
-  private byte[] readString() throws IOException {
-    int length = input.readInt();
-    byte[] stringContent = new byte[length];
-    input.readFully(stringContent);
-    return stringContent;
+  private static File[] getSegments(File segmentDirectory) {
+    File[] files = segmentDirectory.listFiles();
+    if (files == null) {
+      return new File[0];
+    }
+    Arrays.sort(files, (f1, f2) -> f1.getName().compareTo(f2.getName()));
+    return files;
   }
 
-  private byte[] readEncodedLong() throws IOException {
-    long result = 0;
-    byte currentBlock;
-    do {
-      currentBlock = input.readByte();
-      result = result << 7;
-      long value = currentBlock & 0b0111_1111;
-      result = result | value;
-    } while (currentBlock >= 0);
-    return NumberConversion.long2bytes(result);
+  /**
+   * Splits the file at block boundaries into at most
+   * <code>maxNumberOfSplits</code> parts of similar size. Files of the old
+   * format cannot be split. The segments of a directory are split
+   * individually.
+   * 
+   * @param file
+   * @param maxNumberOfSplits
+   * @return splits in the order of the file
+   * @throws IOException
+   */
+  public static List<EncodedFileSplit> getSplits(File file, int maxNumberOfSplits)
+          throws IOException {
+    List<EncodedFileSplit> splits = new ArrayList<>();
+    if (file.isDirectory()) {
+      File[] segmentFiles = EncodedFileInputStream.getSegments(file);
+      int splitsPerSegment = Math.max(1, maxNumberOfSplits / Math.max(1, segmentFiles.length));
+      for (File segment : segmentFiles) {
+        splits.addAll(EncodedFileInputStream.getSplits(segment, splitsPerSegment));
+      }
+      return splits;
+    }
+    EncodedFileSplit completeFile = new EncodedFileSplit(file, 0, Long.MAX_VALUE, null);
+    if ((maxNumberOfSplits <= 1) || EncodedFileOutputStream.isGzipFile(file)) {
+      splits.add(completeFile);
+      return splits;
+    }
+    // read the block indices of all sections beginning with the last one
+    List<long[]> blockOffsetsOfSections = new ArrayList<>();
+    List<BlockCodec> codecsOfSections = new ArrayList<>();
+    int numberOfBlocks = 0;
+    try (RandomAccessFile input = new RandomAccessFile(file, "r");) {
+      long sectionEnd = input.length();
+      while (sectionEnd > 0) {
+        if (sectionEnd < EncodedFileOutputStream.TRAILER_LENGTH) {
+          // the file was not closed properly
+          splits.add(completeFile);
+          return splits;
+        }
+        input.seek(sectionEnd - EncodedFileOutputStream.TRAILER_LENGTH);
+        long sectionStart = input.readLong();
+        long indexStart = input.readLong();
+        if ((input.readInt() != EncodedFileOutputStream.INDEX_MAGIC_NUMBER)
+                || (sectionStart < 0) || (indexStart <= sectionStart)) {
+          splits.add(completeFile);
+          return splits;
+        }
+        input.seek(sectionStart + Integer.BYTES + 1);
+        codecsOfSections.add(0, BlockCodec.getCodec(input.readByte()));
+        input.seek(indexStart);
+        byte[] index = new byte[input.readInt() * Long.BYTES];
+        input.readFully(index);
+        ByteBuffer indexBuffer = ByteBuffer.wrap(index);
+        long[] blockOffsets = new long[index.length / Long.BYTES];
+        for (int i = 0; i < blockOffsets.length; i++) {
+          blockOffsets[i] = indexBuffer.getLong();
+        }
+        blockOffsetsOfSections.add(0, blockOffsets);
+        numberOfBlocks += blockOffsets.length;
+        sectionEnd = sectionStart;
+      }
+    }
+    int numberOfSplits = Math.min(maxNumberOfSplits, numberOfBlocks);
+    if (numberOfSplits <= 1) {
+      splits.add(completeFile);
+      return splits;
+    }
+    long[] blockOffsets = new long[numberOfBlocks];
+    BlockCodec[] blockCodecs = new BlockCodec[numberOfBlocks];
+    int nextBlock = 0;
+    for (int section = 0; section < blockOffsetsOfSections.size(); section++) {
+      for (long blockOffset : blockOffsetsOfSections.get(section)) {
+        blockOffsets[nextBlock] = blockOffset;
+        blockCodecs[nextBlock] = codecsOfSections.get(section);
+        nextBlock++;
+      }
+    }
+    for (int split = 0; split < numberOfSplits; split++) {
+      int firstBlock = (int) (((long) split * numberOfBlocks) / numberOfSplits);
+      int nextFirstBlock = (int) (((long) (split + 1) * numberOfBlocks) / numberOfSplits);
+      long end = split == (numberOfSplits - 1) ? Long.MAX_VALUE : blockOffsets[nextFirstBlock];
+      if (split == 0) {
+        splits.add(new EncodedFileSplit(file, 0, end, null));
+      } else {
+        splits.add(new EncodedFileSplit(file, blockOffsets[firstBlock], end,
+                blockCodecs[firstBlock]));
+      }
+    }
+    return splits;
+  }
+
+  /**
+   * @return {@link Statement} singleton whose content is changed for each call
+   *         of this method
+   * @throws EOFException
+   *           if the end of the file is reached
+   * @throws IOException
+   */
+  public Statement read() throws EOFException, IOException {
+    while (true) {
+      if (input == null) {
+        if ((segments == null) || (nextSegment >= segments.length)) {
+          throw new EOFException();
+        }
+        input = openStream(new FileInputStream(segments[nextSegment++]), Long.MAX_VALUE);
+      }
+      Statement statement = input.read();
+      if (statement != null) {
+        return statement;
+      }
+      if (segments == null) {
+        throw new EOFException();
+      }
+      input.close();
+      input = null;
+    }
   }
 
   @Override
@@ -115,4 +316,255 @@ public class EncodedFileInputStream implements AutoCloseable, Iterable<Statement
     }
   }
 
+  private static interface StatementReader {
+
+    /**
+     * @return the next statement or <code>null</code> if the end of the input
+     *         is reached
+     * @throws IOException
+     */
+    public Statement read() throws IOException;
+
+    public void close() throws IOException;
+
+  }
+
+  /**
+   * Reads the old format, i.e., a gzip compressed stream of statements.
+   */
+  private class GzipStatementReader implements StatementReader {
+
+    private final DataInputStream input;
+
+    public GzipStatementReader(DataInputStream input) {
+      this.input = input;
+    }
+
+    @Override
+    public Statement read() throws IOException {
+      try {
+        byte[] subject = inputFormat.isSubjectEncoded() ? readEncodedLong() : readString();
+        byte[] property = inputFormat.isPropertyEncoded() ? readEncodedLong() : readString();
+        byte[] object = inputFormat.isObjectEncoded() ? readEncodedLong() : readString();
+
+        int length = input.readShort() & 0xff_ff;
+        byte[] containment = new byte[length];
+        input.readFully(containment);
+        return Statement.getStatement(inputFormat, subject, property, object, containment);
+      } catch (EOFException e) {
+        return null;
+      }
+    }
+
+    private byte[] readString() throws IOException {
+      int length = input.readInt();
+      byte[] stringContent = new byte[length];
+      input.readFully(stringContent);
+      return stringContent;
+    }
+
+    private byte[] readEncodedLong() throws IOException {
+      long result = 0;
+      byte currentBlock;
+      do {
+        currentBlock = input.readByte();
+        result = result << 7;
+        long value = currentBlock & 0b0111_1111;
+        result = result | value;
+      } while (currentBlock >= 0);
+      return NumberConversion.long2bytes(result);
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+
+  }
+
+  /**
+   * @param word
+   * @return the concatenation of the lower 7 bits of all bytes of word
+   */
+  private static long compact7BitBlocks(long word) {
+    long result = word & 0x7f7f_7f7f_7f7f_7f7fL;
+    result = (result & 0x007f_007f_007f_007fL) | ((result & 0x7f00_7f00_7f00_7f00L) >>> 1);
+    result = (result & 0x0000_3fff_0000_3fffL) | ((result & 0x3fff_0000_3fff_0000L) >>> 2);
+    result = (result & 0x0000_0000_0fff_ffffL) | ((result & 0x0fff_ffff_0000_0000L) >>> 4);
+    return result;
+  }
+
+  /**
+   * Reads the blocks written by {@link EncodedFileOutputStream}. The
+   * statements are decoded directly from the uncompressed block.
+   */
+  private class BlockStatementReader implements StatementReader {
+
+    private final DataInputStream input;
+
+    /**
+     * offset in the file of the next byte read from input
+     */
+    private long position;
+
+    /**
+     * offset in the file after which no further block is read
+     */
+    private final long end;
+
+    /**
+     * <code>null</code> if the header of a section is read next
+     */
+    private BlockCodec codec;
+
+    private byte[] compressedBlock;
+
+    private byte[] block;
+
+    /**
+     * wraps {@link #block} to read v-byte encoded values as a whole word
+     */
+    private ByteBuffer blockBuffer;
+
+    private int blockLength;
+
+    private int blockPosition;
+
+    public BlockStatementReader(DataInputStream input, long start, long end, BlockCodec codec) {
+      this.input = input;
+      position = start;
+      this.end = end;
+      this.codec = codec;
+      compressedBlock = new byte[0];
+      block = new byte[0];
+      blockBuffer = ByteBuffer.wrap(block);
+    }
+
+    @Override
+    public Statement read() throws IOException {
+      while (blockPosition >= blockLength) {
+        if (!readNextBlock()) {
+          return null;
+        }
+      }
+      byte[] subject = inputFormat.isSubjectEncoded() ? readEncodedLong() : readString();
+      byte[] property = inputFormat.isPropertyEncoded() ? readEncodedLong() : readString();
+      byte[] object = inputFormat.isObjectEncoded() ? readEncodedLong() : readString();
+
+      int length = ((block[blockPosition] & 0xff) << 8) | (block[blockPosition + 1] & 0xff);
+      blockPosition += 2;
+      byte[] containment = Arrays.copyOfRange(block, blockPosition, blockPosition + length);
+      blockPosition += length;
+      return Statement.getStatement(inputFormat, subject, property, object, containment);
+    }
+
+    private byte[] readString() {
+      int length = ((block[blockPosition] & 0xff) << 24)
+              | ((block[blockPosition + 1] & 0xff) << 16)
+              | ((block[blockPosition + 2] & 0xff) << 8) | (block[blockPosition + 3] & 0xff);
+      blockPosition += Integer.BYTES;
+      byte[] stringContent = Arrays.copyOfRange(block, blockPosition, blockPosition + length);
+      blockPosition += length;
+      return stringContent;
+    }
+
+    /**
+     * Reads the next eight bytes as one word. If it contains the last 7 bit
+     * block, the value is decoded without a loop. Otherwise, the remaining
+     * bytes are read one by one.
+     */
+    private byte[] readEncodedLong() {
+      long result = 0;
+      if ((blockPosition + Long.BYTES) <= blockLength) {
+        long word = blockBuffer.getLong(blockPosition);
+        long lastBlockMarkers = word & 0x8080_8080_8080_8080L;
+        if (lastBlockMarkers != 0) {
+          int numberOfBytes = (Long.numberOfLeadingZeros(lastBlockMarkers) / Byte.SIZE) + 1;
+          blockPosition += numberOfBytes;
+          return NumberConversion.long2bytes(EncodedFileInputStream
+                  .compact7BitBlocks(word >>> ((Long.BYTES - numberOfBytes) * Byte.SIZE)));
+        }
+        result = EncodedFileInputStream.compact7BitBlocks(word);
+        blockPosition += Long.BYTES;
+      }
+      byte currentBlock;
+      do {
+        currentBlock = block[blockPosition++];
+        result = (result << 7) | (currentBlock & 0b0111_1111);
+      } while (currentBlock >= 0);
+      return NumberConversion.long2bytes(result);
+    }
+
+
+    private boolean readNextBlock() throws IOException {
+      while (position < end) {
+        if (codec == null) {
+          int magicNumber;
+          try {
+            magicNumber = input.readInt();
+          } catch (EOFException e) {
+            return false;
+          }
+          if (magicNumber != EncodedFileOutputStream.MAGIC_NUMBER) {
+            throw new IOException("The input is not an encoded graph file.");
+          }
+          byte version = input.readByte();
+          if (version != EncodedFileOutputStream.FORMAT_VERSION) {
+            throw new IOException("The format version " + version + " is not supported.");
+          }
+          codec = BlockCodec.getCodec(input.readByte());
+          position += Integer.BYTES + 2;
+          // the split might end with the header
+          continue;
+        }
+        int uncompressedLength = input.readInt();
+        position += Integer.BYTES;
+        if (uncompressedLength < 0) {
+          // end of section: skip block index and trailer
+          long indexLength = ((long) input.readInt() * Long.BYTES)
+                  + EncodedFileOutputStream.TRAILER_LENGTH;
+          skipFully(indexLength);
+          position += Integer.BYTES + indexLength;
+          codec = null;
+          continue;
+        }
+        int compressedLength = input.readInt();
+        if (compressedBlock.length < compressedLength) {
+          compressedBlock = new byte[compressedLength];
+        }
+        input.readFully(compressedBlock, 0, compressedLength);
+        position += Integer.BYTES + compressedLength;
+        if (block.length < uncompressedLength) {
+          block = new byte[uncompressedLength];
+          blockBuffer = ByteBuffer.wrap(block);
+        }
+        codec.decompress(compressedBlock, compressedLength, block, uncompressedLength);
+        blockLength = uncompressedLength;
+        blockPosition = 0;
+        return true;
+      }
+      return false;
+    }
+
+    private void skipFully(long numberOfBytes) throws IOException {
+      long skippedBytes = 0;
+      while (skippedBytes < numberOfBytes) {
+        long skipped = input.skip(numberOfBytes - skippedBytes);
+        if (skipped <= 0) {
+          if (input.read() < 0) {
+            throw new EOFException();
+          }
+          skipped = 1;
+        }
+        skippedBytes += skipped;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+
+  }
+
 }
@@ -18,61 +18,264 @@
  */
 package de.uni_koblenz.west.koral.common.io;
 
+import de.uni_koblenz.west.koral.common.utils.NumberConversion;
+
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 /**
+ * <p>
  * Writes data into a file respecting the {@link EncodingFileFormat}. Long
  * values are v-byte encoded.
+ * </p>
+ * 
+ * <p>
+ * The statements are collected in blocks of about {@link #BLOCK_SIZE} bytes.
+ * Each block is compressed independently with a {@link BlockCodec}. A file
+ * consists of one section per opening of the output stream. A section has the
+ * format:
+ * </p>
+ * 
+ * <pre>
+ * header:  int MAGIC_NUMBER, byte FORMAT_VERSION, byte codecId
+ * block*:  int uncompressedLength, int compressedLength, byte[compressedLength]
+ * end:     int -1
+ * index:   int numberOfBlocks, long blockOffset*
+ * trailer: long sectionStart, long indexStart, int INDEX_MAGIC_NUMBER
+ * </pre>
+ * 
+ * <p>
+ * A statement never spans two blocks. Therefore, the block index makes the
+ * file splittable (see {@link EncodedFileInputStream#getSplits(File, int)}).
+ * Files of the old format, i.e., a gzip compressed stream of statements, can
+ * still be read by {@link EncodedFileInputStream} and are continued in the old
+ * format if they are appended.
+ * </p>
  * 
  * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
  *
  */
 public class EncodedFileOutputStream implements AutoCloseable {
 
+  static final int MAGIC_NUMBER = 0x4b_45_46_42;
+
+  static final byte FORMAT_VERSION = 1;
+
+  static final int INDEX_MAGIC_NUMBER = 0x4b_45_46_49;
+
+  /**
+   * number of bytes of the trailer of a section
+   */
+  static final int TRAILER_LENGTH = Long.BYTES + Long.BYTES + Integer.BYTES;
+
+  static final int BLOCK_SIZE = 0x4_00_00;
+
+  /**
+   * codec of streams that are created without an explicit codec
+   */
+  public static final BlockCodec DEFAULT_CODEC = BlockCodec.SNAPPY;
+
+  /**
+   * maximal number of bytes of a v-byte encoded long value
+   */
+  static final int MAX_VBYTE_LENGTH = ((Long.SIZE + 6) / 7);
+
   private final DataOutputStream out;
 
+  /**
+   * <code>null</code> if an old gzip compressed file is continued
+   */
+  private final BlockCodec codec;
+
+  private byte[] block;
+
+  /**
+   * wraps {@link #block} to store v-byte encoded values as a whole word
+   */
+  private ByteBuffer blockBuffer;
+
+  private int blockLength;
+
+  private byte[] compressedBlock;
+
+  /**
+   * offset in the file at which the next byte is written
+   */
+  private long position;
+
+  private final long sectionStart;
+
+  private long[] blockOffsets;
+
+  private int numberOfBlocks;
+
+  private boolean isClosed;
+
   public EncodedFileOutputStream(File outputFile) throws FileNotFoundException, IOException {
     this(outputFile, false);
   }
 
   public EncodedFileOutputStream(File outputFile, boolean append)
           throws FileNotFoundException, IOException {
-    out = new DataOutputStream(new BufferedOutputStream(
-            new GZIPOutputStream(new FileOutputStream(outputFile, append))));
+    this(outputFile, append, EncodedFileOutputStream.DEFAULT_CODEC);
+  }
+
+  public EncodedFileOutputStream(File outputFile, boolean append, BlockCodec codec)
+          throws FileNotFoundException, IOException {
+    boolean isOldFormat = append && EncodedFileOutputStream.isGzipFile(outputFile);
+    FileOutputStream fileOutput = new FileOutputStream(outputFile, append);
+    block = new byte[EncodedFileOutputStream.BLOCK_SIZE];
+    blockBuffer = ByteBuffer.wrap(block);
+    if (isOldFormat) {
+      this.codec = null;
+      out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(fileOutput)));
+      sectionStart = 0;
+    } else {
+      this.codec = codec;
+      position = fileOutput.getChannel().position();
+      sectionStart = position;
+      out = new DataOutputStream(new BufferedOutputStream(fileOutput, 0x1_00_00));
+      compressedBlock = new byte[codec.getMaxCompressedLength(block.length)];
+      blockOffsets = new long[16];
+      out.writeInt(EncodedFileOutputStream.MAGIC_NUMBER);
+      out.writeByte(EncodedFileOutputStream.FORMAT_VERSION);
+      out.writeByte(codec.getId());
+      position += Integer.BYTES + 2;
+    }
+  }
+
+  /**
+   * @param file
+   * @return <code>true</code> if the file exists and starts with the gzip
+   *         header, i.e., it is an encoded file of the old format
+   * @throws IOException
+   */
+  static boolean isGzipFile(File file) throws IOException {
+    if (!file.exists() || (file.length() < 2)) {
+      return false;
+    }
+    try (InputStream input = new FileInputStream(file);) {
+      return EncodedFileOutputStream.isGzipHeader(input.read(), input.read());
+    }
+  }
+
+  static boolean isGzipHeader(int firstByte, int secondByte) {
+    return (firstByte == (GZIPInputStream.GZIP_MAGIC & 0xff))
+            && (secondByte == (GZIPInputStream.GZIP_MAGIC >>> 8));
   }
 
   public void writeStatement(Statement statement) throws IOException {
     write(statement.isSubjectEncoded(), statement.getSubject());
     write(statement.isPropertyEncoded(), statement.getProperty());
     write(statement.isObjectEncoded(), statement.getObject());
-    out.writeShort(statement.getContainment().length);
-    out.write(statement.getContainment());
+    byte[] containment = statement.getContainment();
+    ensureCapacity(2 + containment.length);
+    block[blockLength++] = (byte) (containment.length >>> 8);
+    block[blockLength++] = (byte) containment.length;
+    System.arraycopy(containment, 0, block, blockLength, containment.length);
+    blockLength += containment.length;
+    if (codec == null) {
+      out.write(block, 0, blockLength);
+      blockLength = 0;
+    } else if (blockLength >= EncodedFileOutputStream.BLOCK_SIZE) {
+      writeBlock();
+    }
   }
 
   private void write(boolean isPrimitiveDataType, byte[] element) throws IOException {
     if (isPrimitiveDataType) {
+      if (element.length == Long.BYTES) {
+        writeVByte(NumberConversion.bytes2long(element));
+        return;
+      }
       // v-byte encoding
       int numberOfBits = element.length * Byte.SIZE;
       int numberOfBlocks = (numberOfBits / 7) + ((numberOfBits % 7) == 0 ? 0 : 1);
+      ensureCapacity(numberOfBlocks);
       boolean isFirstBlockWritten = false;
       for (int blockNumber = 0; blockNumber < numberOfBlocks; blockNumber++) {
         int nextBlock = get7BitBlock(element, blockNumber);
         if (isFirstBlockWritten
                 || (nextBlock != 0) /* the last block is always <0 */) {
-          out.writeByte(nextBlock);
+          block[blockLength++] = (byte) nextBlock;
           isFirstBlockWritten = true;
         }
       }
     } else {
-      out.writeInt(element.length);
-      out.write(element);
+      ensureCapacity(Integer.BYTES + element.length);
+      block[blockLength++] = (byte) (element.length >>> 24);
+      block[blockLength++] = (byte) (element.length >>> 16);
+      block[blockLength++] = (byte) (element.length >>> 8);
+      block[blockLength++] = (byte) element.length;
+      System.arraycopy(element, 0, block, blockLength, element.length);
+      blockLength += element.length;
+    }
+  }
+
+  /**
+   * Writes the same v-byte encoding as {@link #get7BitBlock(byte[], int)}. The
+   * 7 bit blocks of the lowest 56 bits are spread to the bytes of one word
+   * which is stored at once. Only the bytes of values with more than 56
+   * significant bits are written one by one.
+   */
+  private void writeVByte(long value) {
+    int numberOfBlocks = value == 0 ? 1 : ((Long.SIZE - Long.numberOfLeadingZeros(value)) + 6) / 7;
+    // the word is always stored completely
+    ensureCapacity(EncodedFileOutputStream.MAX_VBYTE_LENGTH);
+    for (int shift = (numberOfBlocks - 1) * 7; shift >= (Long.BYTES * 7); shift -= 7) {
+      block[blockLength++] = (byte) ((value >>> shift) & 0b0111_1111);
     }
+    // the last block is marked by the highest bit
+    long word = EncodedFileOutputStream.spread7BitBlocks(value) | 0b1000_0000;
+    int numberOfWordBytes = Math.min(numberOfBlocks, Long.BYTES);
+    blockBuffer.putLong(blockLength, word << ((Long.BYTES - numberOfWordBytes) * Byte.SIZE));
+    blockLength += numberOfWordBytes;
+  }
+
+  /**
+   * @param value
+   * @return the lowest 56 bits of value where the i-th 7 bit block is moved
+   *         to the lower 7 bits of the i-th byte
+   */
+  private static long spread7BitBlocks(long value) {
+    long word = value & 0x00ff_ffff_ffff_ffffL;
+    word = (word & 0x0000_0000_0fff_ffffL) | ((word & 0x00ff_ffff_f000_0000L) << 4);
+    word = (word & 0x0000_3fff_0000_3fffL) | ((word & 0x0fff_c000_0fff_c000L) << 2);
+    word = (word & 0x007f_007f_007f_007fL) | ((word & 0x3f80_3f80_3f80_3f80L) << 1);
+    return word;
+  }
+
+  private void ensureCapacity(int additionalBytes) {
+    if ((blockLength + additionalBytes) > block.length) {
+      block = Arrays.copyOf(block, Math.max(block.length * 2, blockLength + additionalBytes));
+      blockBuffer = ByteBuffer.wrap(block);
+      if (codec != null) {
+        compressedBlock = new byte[codec.getMaxCompressedLength(block.length)];
+      }
+    }
+  }
+
+  private void writeBlock() throws IOException {
+    if (numberOfBlocks == blockOffsets.length) {
+      blockOffsets = Arrays.copyOf(blockOffsets, blockOffsets.length * 2);
+    }
+    blockOffsets[numberOfBlocks++] = position;
+    int compressedLength = codec.compress(block, blockLength, compressedBlock);
+    out.writeInt(blockLength);
+    out.writeInt(compressedLength);
+    out.write(compressedBlock, 0, compressedLength);
+    position += Integer.BYTES + Integer.BYTES + compressedLength;
+    blockLength = 0;
   }
 
   private int get7BitBlock(byte[] element, int blockIndexNumber) {
@@ -186,9 +389,26 @@ public class EncodedFileOutputStream implements AutoCloseable {
 
   @Override
   public void close() throws IOException {
-    if (out != null) {
-      out.close();
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    if (codec != null) {
+      if (blockLength > 0) {
+        writeBlock();
+      }
+      out.writeInt(-1);
+      position += Integer.BYTES;
+      long indexStart = position;
+      out.writeInt(numberOfBlocks);
+      for (int i = 0; i < numberOfBlocks; i++) {
+        out.writeLong(blockOffsets[i]);
+      }
+      out.writeLong(sectionStart);
+      out.writeLong(indexStart);
+      out.writeInt(EncodedFileOutputStream.INDEX_MAGIC_NUMBER);
     }
+    out.close();
   }
 
 }
@@ -0,0 +1,79 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.common.io;
+
+import java.io.File;
+
+/**
+ * A part of an encoded file that can be read independently of the other parts
+ * by {@link EncodedFileInputStream#EncodedFileInputStream(EncodingFileFormat, EncodedFileSplit)}.
+ * See {@link EncodedFileInputStream#getSplits(File, int)}.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class EncodedFileSplit {
+
+  private final File file;
+
+  private final long start;
+
+  private final long end;
+
+  private final BlockCodec codec;
+
+  /**
+   * @param file
+   * @param start
+   *          offset of the first block or 0 if the split starts with the file
+   * @param end
+   *          offset after the last block of the split
+   * @param codec
+   *          codec of the first block or <code>null</code> if the split starts
+   *          with the file
+   */
+  EncodedFileSplit(File file, long start, long end, BlockCodec codec) {
+    this.file = file;
+    this.start = start;
+    this.end = end;
+    this.codec = codec;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  long getStart() {
+    return start;
+  }
+
+  long getEnd() {
+    return end;
+  }
+
+  BlockCodec getCodec() {
+    return codec;
+  }
+
+  @Override
+  public String toString() {
+    return file.getAbsolutePath() + "[" + start + "," + end + ")";
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.common.io;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A sequence of triple insertions and deletions that is applied to the triple
+ * store of a single slave. The operations are applied in the order in which
+ * they were added.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class TripleUpdateBatch {
+
+  private long[] triples;
+
+  private final BitSet insertions;
+
+  private int size;
+
+  public TripleUpdateBatch() {
+    this(16);
+  }
+
+  public TripleUpdateBatch(int initialCapacity) {
+    triples = new long[3 * Math.max(initialCapacity, 1)];
+    insertions = new BitSet();
+    size = 0;
+  }
+
+  public void addInsertion(long subject, long property, long object) {
+    add(true, subject, property, object);
+  }
+
+  public void addDeletion(long subject, long property, long object) {
+    add(false, subject, property, object);
+  }
+
+  private void add(boolean isInsertion, long subject, long property, long object) {
+    if ((3 * size) == triples.length) {
+      triples = Arrays.copyOf(triples, 2 * triples.length);
+    }
+    triples[3 * size] = subject;
+    triples[(3 * size) + 1] = property;
+    triples[(3 * size) + 2] = object;
+    insertions.set(size, isInsertion);
+    size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean isInsertion(int operation) {
+    return insertions.get(operation);
+  }
+
+  public long getSubject(int operation) {
+    return triples[3 * operation];
+  }
+
+  public long getProperty(int operation) {
+    return triples[(3 * operation) + 1];
+  }
+
+  public long getObject(int operation) {
+    return triples[(3 * operation) + 2];
+  }
+
+  /**
+   * @return int size, (byte isInsertion, long subject, long property, long
+   *         object)*
+   */
+  public byte[] serialize() {
+    ByteBuffer buffer =
+        ByteBuffer.allocate(Integer.BYTES + (size * (Byte.BYTES + (3 * Long.BYTES))));
+    buffer.putInt(size);
+    for (int i = 0; i < size; i++) {
+      buffer.put((byte) (isInsertion(i) ? 1 : 0));
+      buffer.putLong(getSubject(i));
+      buffer.putLong(getProperty(i));
+      buffer.putLong(getObject(i));
+    }
+    return buffer.array();
+  }
+
+  public static TripleUpdateBatch deserialize(byte[] serialization, int offset) {
+    ByteBuffer buffer = ByteBuffer.wrap(serialization, offset, serialization.length - offset);
+    int size = buffer.getInt();
+    TripleUpdateBatch batch = new TripleUpdateBatch(size);
+    for (int i = 0; i < size; i++) {
+      boolean isInsertion = buffer.get() != 0;
+      batch.add(isInsertion, buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+    return batch;
+  }
+
+}
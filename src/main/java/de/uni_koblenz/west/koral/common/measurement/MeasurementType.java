@@ -140,6 +140,12 @@ public enum MeasurementType {
    */
   LOAD_GRAPH_COVER_CREATION_RUN_METIS_END,
 
+  /**
+   * measured on master<br>
+   * numberOfPartitions;edgeCut;minPartitionSize;maxPartitionSize
+   */
+  LOAD_GRAPH_COVER_CREATION_METIS_PARTITIONING_QUALITY,
+
   /**
    * measured on master<br>
    * timestamp
@@ -351,6 +357,12 @@ public enum MeasurementType {
    */
   LOAD_GRAPH_FINAL_ENCODING_ENCODING_END,
 
+  /**
+   * measured on master<br>
+   * cacheHits, cacheMisses, evictions, cachedEntries, estimatedCacheMemoryInBytes
+   */
+  LOAD_GRAPH_DICTIONARY_CACHE_STATISTICS,
+
   /**
    * measured on master<br>
    * timestamp
@@ -405,6 +417,18 @@ public enum MeasurementType {
    */
   LOAD_GRAPH_STORING_TRIPLES_END,
 
+  /**
+   * measured on master<br>
+   * timestamp
+   */
+  LOAD_GRAPH_APPLYING_SLAVE_STATISTICS_START,
+
+  /**
+   * measured on master<br>
+   * timestamp
+   */
+  LOAD_GRAPH_APPLYING_SLAVE_STATISTICS_END,
+
   /**
    * measured on master<br>
    * timestamp
@@ -19,9 +19,14 @@
 package de.uni_koblenz.west.koral.common.messages;
 
 import de.uni_koblenz.west.koral.common.executor.messagePassing.MessageReceiverListener;
+import de.uni_koblenz.west.koral.common.io.ChunkStatistics;
+import de.uni_koblenz.west.koral.common.io.TripleUpdateBatch;
 import de.uni_koblenz.west.koral.master.tasks.GraphLoaderListener;
+import de.uni_koblenz.west.koral.master.tasks.GraphUpdateListener;
 import de.uni_koblenz.west.koral.slave.triple_store.loader.GraphChunkListener;
 
+import java.util.BitSet;
+
 /**
  * Defines the different types of messages sent between the components of Koral
  * and between the client and Koral master. These constants are used to identify
@@ -127,7 +132,11 @@ public enum MessageType {
   /**
    * master to slave (multi-part message)<br>
    * String ipAddress:port<br>
-   * String fileName
+   * String fileName<br>
+   * byte isIncremental (if 0, the slave clears its triple store before loading)<br>
+   * long[] most frequent properties (used to warm up the caches after a restart)<br>
+   * String fileName of the dictionary partition (empty if the dictionary is not
+   * partitioned)
    */
   START_FILE_TRANSFER {
     @Override
@@ -150,7 +159,8 @@ public enum MessageType {
 
   /**
    * slave to master<br>
-   * short slaveID
+   * short slaveID<br>
+   * optional byte[] serialized {@link ChunkStatistics} of the stored chunk
    */
   GRAPH_LOADING_COMPLETE {
     @Override
@@ -159,6 +169,39 @@ public enum MessageType {
     }
   },
 
+  /**
+   * master to slave<br>
+   * int update id<br>
+   * byte[] serialized {@link TripleUpdateBatch}
+   */
+  UPDATE_BATCH,
+
+  /**
+   * slave to master<br>
+   * short slaveID<br>
+   * int update id<br>
+   * byte[] {@link BitSet} of the operations that have changed the triple store
+   */
+  UPDATE_BATCH_APPLIED {
+    @Override
+    public Class<? extends MessageListener> getListenerType() {
+      return GraphUpdateListener.class;
+    }
+  },
+
+  /**
+   * slave to master<br>
+   * short slaveID<br>
+   * int update id<br>
+   * String error message
+   */
+  UPDATE_BATCH_FAILED {
+    @Override
+    public Class<? extends MessageListener> getListenerType() {
+      return GraphUpdateListener.class;
+    }
+  },
+
   /**
    * master to all slaves<br>
    * int query id<br>
@@ -23,6 +23,9 @@ import de.uni_koblenz.west.koral.common.executor.messagePassing.MessageSenderBuf
 import de.uni_koblenz.west.koral.common.messages.MessageType;
 import de.uni_koblenz.west.koral.common.utils.NumberConversion;
 
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongFunction;
+
 /**
  * <p>
  * This class represents one mapping produced by a query operation. The mapping
@@ -205,6 +208,87 @@ public class Mapping {
     set(newMapping);
   }
 
+  /**
+   * Creates a mapping that contains the serialized values instead of their
+   * ids. The values are stored in the order of <code>vars</code> either as
+   * <code>byte 1, int length, byte[] UTF-8 encoded value</code> or, if
+   * <code>valueDecoder</code> does not know the value, as
+   * <code>byte 0, long id</code>.
+   * 
+   * @param mapping
+   * @param vars
+   * @param valueDecoder
+   *          returns the UTF-8 encoded serialization of an id or
+   *          <code>null</code>
+   */
+  public void decodeMapping(Mapping mapping, long[] vars, LongFunction<byte[]> valueDecoder) {
+    byte[][] values = new byte[vars.length][];
+    int lengthOfValues = 0;
+    for (int i = 0; i < vars.length; i++) {
+      values[i] = valueDecoder.apply(mapping.getValue(vars[i], vars));
+      lengthOfValues += Byte.BYTES
+              + (values[i] == null ? Long.BYTES : Integer.BYTES + values[i].length);
+    }
+    byte[] newMapping = new byte[Mapping.getHeaderSize() + lengthOfValues
+            + getNumberOfContainmentBytes()];
+    newMapping[0] = MessageType.QUERY_MAPPING_BATCH.getValue();
+    NumberConversion.int2bytes(newMapping.length, newMapping, Byte.BYTES + Long.BYTES + Long.BYTES);
+    int nextFreeIndex = Mapping.getHeaderSize();
+    for (int i = 0; i < vars.length; i++) {
+      if (values[i] == null) {
+        newMapping[nextFreeIndex] = 0;
+        NumberConversion.long2bytes(mapping.getValue(vars[i], vars), newMapping,
+                nextFreeIndex + Byte.BYTES);
+        nextFreeIndex += Byte.BYTES + Long.BYTES;
+      } else {
+        newMapping[nextFreeIndex] = 1;
+        NumberConversion.int2bytes(values[i].length, newMapping, nextFreeIndex + Byte.BYTES);
+        System.arraycopy(values[i], 0, newMapping, nextFreeIndex + Byte.BYTES + Integer.BYTES,
+                values[i].length);
+        nextFreeIndex += Byte.BYTES + Integer.BYTES + values[i].length;
+      }
+    }
+    if (getNumberOfContainmentBytes() > 0) {
+      System.arraycopy(mapping.getByteArray(),
+              (mapping.getFirstIndexOfMappingInByteArray()
+                      + mapping.getLengthOfMappingInByteArray()) - getNumberOfContainmentBytes(),
+              newMapping, newMapping.length - getNumberOfContainmentBytes(),
+              getNumberOfContainmentBytes());
+    }
+    set(newMapping);
+  }
+
+  /**
+   * Appends the values of a mapping created by
+   * {@link #decodeMapping(Mapping, long[], LongFunction)} to <code>row</code>.
+   * 
+   * @param row
+   * @param delimiter
+   *          separates the values
+   * @param valueDecoder
+   *          decodes the ids that have not been decoded, yet
+   */
+  public void appendDecodedValues(StringBuilder row, String delimiter,
+          LongFunction<String> valueDecoder) {
+    int nextIndex = firstIndex + Mapping.getHeaderSize();
+    int endIndex = (firstIndex + length) - getNumberOfContainmentBytes();
+    String delim = "";
+    while (nextIndex < endIndex) {
+      row.append(delim);
+      if (byteArray[nextIndex] == 0) {
+        row.append(valueDecoder
+                .apply(NumberConversion.bytes2long(byteArray, nextIndex + Byte.BYTES)));
+        nextIndex += Byte.BYTES + Long.BYTES;
+      } else {
+        int valueLength = NumberConversion.bytes2int(byteArray, nextIndex + Byte.BYTES);
+        row.append(new String(byteArray, nextIndex + Byte.BYTES + Integer.BYTES, valueLength,
+                StandardCharsets.UTF_8));
+        nextIndex += Byte.BYTES + Integer.BYTES + valueLength;
+      }
+      delim = delimiter;
+    }
+  }
+
   public void joinMappings(long[] resultVarsOrdering, Mapping mapping1, long[] vars1,
           Mapping mapping2, long[] vars2) {
     if (mapping2.isEmptyMapping()) {
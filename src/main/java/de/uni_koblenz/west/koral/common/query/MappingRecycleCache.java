@@ -22,6 +22,8 @@ import de.uni_koblenz.west.koral.common.messages.MessageType;
 import de.uni_koblenz.west.koral.common.utils.NumberConversion;
 import de.uni_koblenz.west.koral.slave.triple_store.impl.IndexType;
 
+import java.util.function.LongFunction;
+
 /**
  * <p>
  * In order to prevent the garbage collector to be executed frequently, this
@@ -128,6 +130,13 @@ public class MappingRecycleCache {
     return result;
   }
 
+  public synchronized Mapping getMappingWithDecodedValues(Mapping mapping, long[] vars,
+          LongFunction<byte[]> valueDecoder) {
+    Mapping result = getMapping();
+    result.decodeMapping(mapping, vars, valueDecoder);
+    return result;
+  }
+
   public synchronized Mapping mergeMappings(long[] resultVarsOrdering, Mapping mapping1,
           long[] vars1, Mapping mapping2, long[] vars2) {
     Mapping result = getMapping();
@@ -76,6 +76,12 @@ public class QueryExecutionCoordinator extends QueryTaskBase {
 
   private long[] resultVariables;
 
+  /**
+   * if not 0, the slaves send the results with values decoded by their
+   * dictionary partitions
+   */
+  private long dictionaryPartitionVersion;
+
   private int numberOfMissingFinishNotificationsFromSlaves;
 
   private final AtomicInteger numberOfUnprocessedFinishMessagesFromSlaves;
@@ -260,6 +266,8 @@ public class QueryExecutionCoordinator extends QueryTaskBase {
                 queryExecutionTree);
       }
       resultVariables = queryExecutionTree.getResultVariables();
+      dictionaryPartitionVersion = dictionary.getPartitionVersion();
+      queryExecutionTree.setDictionaryPartitionVersion(dictionaryPartitionVersion);
       if (measurementCollector != null) {
         measurementCollector.measureValue(MeasurementType.QUERY_COORDINATOR_SEND_QUERY_TO_SLAVE,
                 System.currentTimeMillis(), Integer.toString(getQueryId()));
@@ -294,27 +302,21 @@ public class QueryExecutionCoordinator extends QueryTaskBase {
         // the result has always to start with a new row, since the
         // client already writes the header without row separator
         result.append(Configuration.QUERY_RESULT_ROW_SEPARATOR_CHAR);
-        String delim = "";
-        for (long var : resultVariables) {
-          long varResult = mapping.getValue(var, resultVariables);
-          if (varResult == -1) {
-            throw new RuntimeException("The mapping " + mapping.toString(resultVariables)
-                    + " does not contain a mapping for variable " + var + ".");
-          }
-          Node resultNode = dictionary.decode(varResult);
-          if (resultNode == null) {
-            throw new RuntimeException("The value " + varResult + " of variable " + var
-                    + " could not be found in the dictionary.");
+        if (dictionaryPartitionVersion != 0) {
+          // the slaves have already serialized the values they know
+          mapping.appendDecodedValues(result, Configuration.QUERY_RESULT_COLUMN_SEPARATOR_CHAR,
+                  this::decode);
+        } else {
+          String delim = "";
+          for (long var : resultVariables) {
+            long varResult = mapping.getValue(var, resultVariables);
+            if (varResult == -1) {
+              throw new RuntimeException("The mapping " + mapping.toString(resultVariables)
+                      + " does not contain a mapping for variable " + var + ".");
+            }
+            result.append(delim).append(decode(varResult));
+            delim = Configuration.QUERY_RESULT_COLUMN_SEPARATOR_CHAR;
           }
-          if (resultNode.isURI()
-                  && resultNode.getURI().startsWith(Configuration.BLANK_NODE_URI_PREFIX)) {
-            // this is a replacement of a blank node
-            resultNode = NodeFactory.createBlankNode(
-                    resultNode.getURI().substring(Configuration.BLANK_NODE_URI_PREFIX.length()));
-          }
-          String resultResourceString = DeSerializer.serializeNode(resultNode);
-          result.append(delim).append(resultResourceString);
-          delim = Configuration.QUERY_RESULT_COLUMN_SEPARATOR_CHAR;
         }
         if (length > 0) {
           length--;
@@ -343,6 +345,29 @@ public class QueryExecutionCoordinator extends QueryTaskBase {
     }
   }
 
+  private String decode(long value) {
+    Node resultNode = dictionary.decode(value);
+    if (resultNode == null) {
+      throw new RuntimeException(
+              "The value " + value + " could not be found in the dictionary.");
+    }
+    return QueryExecutionCoordinator.serializeResult(resultNode);
+  }
+
+  /**
+   * @param resultNode
+   * @return the serialization of a resource as it is returned to the client
+   */
+  public static String serializeResult(Node resultNode) {
+    if (resultNode.isURI()
+            && resultNode.getURI().startsWith(Configuration.BLANK_NODE_URI_PREFIX)) {
+      // this is a replacement of a blank node
+      resultNode = NodeFactory.createBlankNode(
+              resultNode.getURI().substring(Configuration.BLANK_NODE_URI_PREFIX.length()));
+    }
+    return DeSerializer.serializeNode(resultNode);
+  }
+
   private void sendKeepAliveMessageToClient() {
     if ((System.currentTimeMillis()
             - lastContactWithClient) >= Configuration.CLIENT_KEEP_ALIVE_INTERVAL) {
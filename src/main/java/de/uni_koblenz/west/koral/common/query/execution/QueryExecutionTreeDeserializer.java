@@ -81,12 +81,20 @@ public class QueryExecutionTreeDeserializer {
   public QueryOperatorTask deserialize(DataInputStream input) throws IOException {
     boolean useBaseImplementation = input.readBoolean();
     long coordinatorId = input.readLong();
+    long dictionaryPartitionVersion = input.readLong();
     taskFactory = useBaseImplementation
             ? new QueryBaseOperatorTaskFactory(coordinatorId, numberOfSlaves, cacheSize,
                     cacheDirectory)
             : new DefaultQueryOperatorTaskFactory(coordinatorId, numberOfSlaves, cacheSize,
                     cacheDirectory);
-    return deserializeQueryOperator(input);
+    QueryOperatorTask root = deserializeQueryOperator(input);
+    if (dictionaryPartitionVersion != 0) {
+      // the query coordinator expects the results with serialized values
+      ((QueryOperatorBase) root).setResultDecoder(
+              tripleStore != null ? tripleStore.getResultDecoder(dictionaryPartitionVersion)
+                      : id -> null);
+    }
+    return root;
   }
 
   private QueryOperatorTask deserializeQueryOperator(DataInputStream input) throws IOException {
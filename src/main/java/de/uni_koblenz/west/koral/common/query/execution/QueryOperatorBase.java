@@ -31,6 +31,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.function.LongFunction;
 import java.util.logging.Logger;
 
 /**
@@ -48,6 +49,19 @@ public abstract class QueryOperatorBase extends QueryTaskBase implements QueryOp
 
   private final int emittedMappingsPerRound;
 
+  /**
+   * version of the dictionary partitions that are used to decode the results
+   * on the slaves or 0 if the results are decoded by the query coordinator.
+   * It is only set for the root operator.
+   */
+  private long dictionaryPartitionVersion;
+
+  /**
+   * returns the serialized value of an id or <code>null</code> if it is
+   * unknown on this slave
+   */
+  private LongFunction<byte[]> resultDecoder;
+
   /*
    * Performance measurements
    */
@@ -103,6 +117,16 @@ public abstract class QueryOperatorBase extends QueryTaskBase implements QueryOp
 
   public abstract long computeTotalEstimatedLoad(GraphStatistics statistics);
 
+  /**
+   * @param statistics
+   * @param variable
+   * @return estimated number of distinct values that are bound to the
+   *         variable in the results of this operator
+   */
+  public long computeEstimatedNumberOfDistinctValues(GraphStatistics statistics, long variable) {
+    return computeTotalEstimatedLoad(statistics);
+  }
+
   public void adjustEstimatedLoad(GraphStatistics statistics, int slave) {
     computeEstimatedLoad(statistics, slave, true);
   }
@@ -112,6 +136,29 @@ public abstract class QueryOperatorBase extends QueryTaskBase implements QueryOp
     return coordinatorId;
   }
 
+  /**
+   * @param dictionaryPartitionVersion
+   *          version of the dictionary partitions the slaves use to decode the
+   *          results or 0 if the results are decoded by the query coordinator
+   */
+  public void setDictionaryPartitionVersion(long dictionaryPartitionVersion) {
+    this.dictionaryPartitionVersion = dictionaryPartitionVersion;
+  }
+
+  public long getDictionaryPartitionVersion() {
+    return dictionaryPartitionVersion;
+  }
+
+  /**
+   * If set, the root operator sends the results with the serialized values,
+   * see {@link Mapping#decodeMapping(Mapping, long[], LongFunction)}.
+   * 
+   * @param resultDecoder
+   */
+  public void setResultDecoder(LongFunction<byte[]> resultDecoder) {
+    this.resultDecoder = resultDecoder;
+  }
+
   protected int getEmittedMappingsPerRound() {
     return emittedMappingsPerRound;
   }
@@ -221,6 +268,12 @@ public abstract class QueryOperatorBase extends QueryTaskBase implements QueryOp
    */
   protected void emitMapping(Mapping mapping) {
     if (getParentTask() == null) {
+      if (resultDecoder != null) {
+        Mapping decodedMapping = recycleCache.getMappingWithDecodedValues(mapping,
+                getResultVariables(), resultDecoder);
+        recycleCache.releaseMapping(mapping);
+        mapping = decodedMapping;
+      }
       messageSender.sendQueryMapping(mapping, getID(), getCoordinatorID(), recycleCache);
       numberOfEmittedMappings[0]++;
     } else if (getParentTask() instanceof ProjectionOperator) {
@@ -71,6 +71,12 @@ public class ProjectionOperator extends QueryOperatorBase {
     return subOp.computeTotalEstimatedLoad(statistics);
   }
 
+  @Override
+  public long computeEstimatedNumberOfDistinctValues(GraphStatistics statistics, long variable) {
+    QueryOperatorBase subOp = (QueryOperatorBase) getChildTask(0);
+    return subOp.computeEstimatedNumberOfDistinctValues(statistics, variable);
+  }
+
   @Override
   public long[] getResultVariables() {
     return resultVars;
@@ -117,6 +123,7 @@ public class ProjectionOperator extends QueryOperatorBase {
     if (getParentTask() == null) {
       output.writeBoolean(useBaseImplementation);
       output.writeLong(getCoordinatorID());
+      output.writeLong(getDictionaryPartitionVersion());
     }
     output.writeInt(QueryOperatorType.PROJECTION.ordinal());
     ((QueryOperatorTask) getChildTask(0)).serialize(output, useBaseImplementation, slaveId);
@@ -92,6 +92,7 @@ public class SliceOperator extends QueryOperatorBase {
     if (getParentTask() == null) {
       output.writeBoolean(useBaseImplementation);
       output.writeLong(getCoordinatorID());
+      output.writeLong(getDictionaryPartitionVersion());
     }
     // this class is only used during the parsing process
     QueryOperatorBase subOp = (QueryOperatorBase) getChildTask(0);
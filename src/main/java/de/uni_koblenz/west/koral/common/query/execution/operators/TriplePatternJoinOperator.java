@@ -241,7 +241,32 @@ public class TriplePatternJoinOperator extends QueryOperatorBase {
     if (rightLoad == 0) {
       return 0;
     }
-    return leftLoad * rightLoad;
+    if (joinVars.length == 0) {
+      return leftLoad * rightLoad;
+    }
+    // each join variable binding of the more diverse input joins with the
+    // same share of the other input
+    long numberOfDistinctValues = 1;
+    for (long joinVar : joinVars) {
+      numberOfDistinctValues = Math.max(numberOfDistinctValues,
+              Math.max(leftChild.computeEstimatedNumberOfDistinctValues(statistics, joinVar),
+                      rightChild.computeEstimatedNumberOfDistinctValues(statistics, joinVar)));
+    }
+    double joinSize = (((double) leftLoad) * rightLoad) / numberOfDistinctValues;
+    return Math.max(1, (long) Math.min(Long.MAX_VALUE, joinSize));
+  }
+
+  @Override
+  public long computeEstimatedNumberOfDistinctValues(GraphStatistics statistics, long variable) {
+    long numberOfDistinctValues = computeTotalEstimatedLoad(statistics);
+    for (int i = 0; i < 2; i++) {
+      QueryOperatorBase child = (QueryOperatorBase) getChildTask(i);
+      if (getIndexOfVar(variable, child.getResultVariables()) != -1) {
+        numberOfDistinctValues = Math.min(numberOfDistinctValues,
+                child.computeEstimatedNumberOfDistinctValues(statistics, variable));
+      }
+    }
+    return numberOfDistinctValues;
   }
 
   @Override
@@ -440,6 +465,7 @@ public class TriplePatternJoinOperator extends QueryOperatorBase {
     if (getParentTask() == null) {
       output.writeBoolean(useBaseImplementation);
       output.writeLong(getCoordinatorID());
+      output.writeLong(getDictionaryPartitionVersion());
     }
     output.writeInt(QueryOperatorType.TRIPLE_PATTERN_JOIN.ordinal());
     ((QueryOperatorTask) getChildTask(0)).serialize(output, useBaseImplementation, slaveId);
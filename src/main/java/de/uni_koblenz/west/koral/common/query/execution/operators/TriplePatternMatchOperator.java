@@ -96,11 +96,10 @@ public class TriplePatternMatchOperator extends QueryOperatorBase {
           long propertyFrequency = slave < 0
                   ? statistics.getTotalPropertyFrequency(pattern.getProperty())
                   : statistics.getPropertyFrequency(pattern.getProperty(), slave);
-          if (subjectFrequency < propertyFrequency) {
-            load = subjectFrequency;
-          } else {
-            load = propertyFrequency;
-          }
+          long numberOfDistinctSubjects =
+                  statistics.getNumberOfDistinctSubjects(pattern.getProperty(), slave);
+          load = estimateNumberOfMatches(subjectFrequency, propertyFrequency,
+                  numberOfDistinctSubjects);
         }
         break;
       case S_O:
@@ -123,11 +122,10 @@ public class TriplePatternMatchOperator extends QueryOperatorBase {
         if (propertyFrequency != 0) {
           long objectFrequency = slave < 0 ? statistics.getTotalObjectFrequency(pattern.getObject())
                   : statistics.getObjectFrequency(pattern.getObject(), slave);
-          if (propertyFrequency < objectFrequency) {
-            load = propertyFrequency;
-          } else {
-            load = objectFrequency;
-          }
+          long numberOfDistinctObjects =
+                  statistics.getNumberOfDistinctObjects(pattern.getProperty(), slave);
+          load = estimateNumberOfMatches(objectFrequency, propertyFrequency,
+                  numberOfDistinctObjects);
         }
         break;
       case SPO:
@@ -156,11 +154,47 @@ public class TriplePatternMatchOperator extends QueryOperatorBase {
     return load;
   }
 
+  /**
+   * @param resourceFrequency
+   *          number of occurrences of the bound subject or object
+   * @param propertyFrequency
+   * @param numberOfDistinctValues
+   *          estimated number of distinct subjects or objects of the property
+   * @return estimated number of triples with the property and the bound
+   *         subject or object
+   */
+  private long estimateNumberOfMatches(long resourceFrequency, long propertyFrequency,
+          long numberOfDistinctValues) {
+    long load = Math.min(resourceFrequency, propertyFrequency);
+    if ((load > 0) && (numberOfDistinctValues > 0)) {
+      // on average, each subject or object occurs this often with the property
+      load = Math.min(load, Math.max(1, propertyFrequency / numberOfDistinctValues));
+    }
+    return load;
+  }
+
   @Override
   public long computeTotalEstimatedLoad(GraphStatistics statistics) {
     return computeEstimatedLoad(statistics, -1);
   }
 
+  @Override
+  public long computeEstimatedNumberOfDistinctValues(GraphStatistics statistics, long variable) {
+    long load = computeTotalEstimatedLoad(statistics);
+    long numberOfDistinctValues = 0;
+    if (!pattern.isPropertyVariable()) {
+      if (pattern.isSubjectVariable() && (pattern.getSubject() == variable)) {
+        numberOfDistinctValues = statistics.getTotalNumberOfDistinctSubjects(pattern.getProperty());
+      } else if (pattern.isObjectVariable() && (pattern.getObject() == variable)) {
+        numberOfDistinctValues = statistics.getTotalNumberOfDistinctObjects(pattern.getProperty());
+      }
+    }
+    if ((numberOfDistinctValues <= 0) || (numberOfDistinctValues > load)) {
+      return load;
+    }
+    return numberOfDistinctValues;
+  }
+
   @Override
   public long[] getResultVariables() {
     return pattern.getVariables();
@@ -223,6 +257,7 @@ public class TriplePatternMatchOperator extends QueryOperatorBase {
     if (getParentTask() == null) {
       output.writeBoolean(useBaseImplementation);
       output.writeLong(getCoordinatorID());
+      output.writeLong(getDictionaryPartitionVersion());
     }
     output.writeInt(QueryOperatorType.TRIPLE_PATTERN_MATCH.ordinal());
     output.writeLong(getIdOnSlave(slaveId));
@@ -0,0 +1,207 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.common.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.rocksdb.Checkpoint;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Creates and restores consistent snapshots of persisted data structures. A
+ * checkpoint is first written into a temporary directory that replaces the
+ * previous checkpoint only after all its contents have been written. While a
+ * data structure is modified, a marker file signals that the persisted state
+ * may be inconsistent after a crash.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class Checkpoints {
+
+  private static final String MODIFICATION_MARKER = "modification.inProgress";
+
+  /**
+   * @param checkpointDir
+   * @return the empty directory into which the contents of the new checkpoint
+   *         have to be written
+   */
+  public static File beginCheckpoint(File checkpointDir) {
+    File tmpDir = Checkpoints.getTemporaryDir(checkpointDir);
+    Checkpoints.delete(tmpDir);
+    if (!tmpDir.mkdirs()) {
+      throw new RuntimeException("The directory " + tmpDir.getAbsolutePath()
+              + " for the new checkpoint could not be created.");
+    }
+    return tmpDir;
+  }
+
+  /**
+   * Replaces the previous checkpoint by the one written into the directory
+   * returned by {@link #beginCheckpoint(File)}.
+   * 
+   * @param checkpointDir
+   */
+  public static void commitCheckpoint(File checkpointDir) {
+    Checkpoints.delete(checkpointDir);
+    try {
+      Files.move(Checkpoints.getTemporaryDir(checkpointDir).toPath(), checkpointDir.toPath(),
+              StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @param checkpointDir
+   * @return the directory of the latest complete checkpoint or
+   *         <code>null</code> if no checkpoint exists
+   */
+  public static File getCheckpoint(File checkpointDir) {
+    File tmpDir = Checkpoints.getTemporaryDir(checkpointDir);
+    if (checkpointDir.exists()) {
+      // a remaining temporary directory belongs to an incomplete checkpoint
+      Checkpoints.delete(tmpDir);
+      return checkpointDir;
+    } else if (tmpDir.exists()) {
+      // the crash occurred after the previous checkpoint was deleted
+      Checkpoints.commitCheckpoint(checkpointDir);
+      return checkpointDir;
+    }
+    return null;
+  }
+
+  /**
+   * Deletes the checkpoint, e.g., because the checkpointed data has been
+   * deleted.
+   * 
+   * @param checkpointDir
+   */
+  public static void discardCheckpoint(File checkpointDir) {
+    Checkpoints.delete(Checkpoints.getTemporaryDir(checkpointDir));
+    Checkpoints.delete(checkpointDir);
+  }
+
+  private static void delete(File dir) {
+    try {
+      FileUtils.deleteDirectory(dir);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static File getTemporaryDir(File checkpointDir) {
+    return new File(checkpointDir.getAbsolutePath() + ".tmp");
+  }
+
+  /**
+   * Creates a checkpoint of an open RocksDB database. Its immutable table files
+   * are hard linked.
+   * 
+   * @param database
+   * @param targetDir
+   *          must not exist
+   */
+  public static void createRocksDBCheckpoint(RocksDB database, File targetDir) {
+    targetDir.getParentFile().mkdirs();
+    try (Checkpoint checkpoint = Checkpoint.create(database);) {
+      checkpoint.createCheckpoint(targetDir.getAbsolutePath());
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Copies a directory recursively. Immutable RocksDB table files are hard
+   * linked instead of copied.
+   * 
+   * @param sourceDir
+   * @param targetDir
+   */
+  public static void copyDirectory(File sourceDir, File targetDir) {
+    if (!targetDir.exists() && !targetDir.mkdirs()) {
+      throw new RuntimeException(
+              "The directory " + targetDir.getAbsolutePath() + " could not be created.");
+    }
+    File[] files = sourceDir.listFiles();
+    if (files == null) {
+      return;
+    }
+    try {
+      for (File file : files) {
+        File target = new File(targetDir, file.getName());
+        if (file.isDirectory()) {
+          Checkpoints.copyDirectory(file, target);
+        } else if (file.getName().endsWith(".sst")) {
+          try {
+            Files.createLink(target.toPath(), file.toPath());
+          } catch (UnsupportedOperationException | IOException e) {
+            // e.g., different file systems
+            FileUtils.copyFile(file, target);
+          }
+        } else {
+          FileUtils.copyFile(file, target);
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Replaces the content of <code>targetDir</code> by the content of the
+   * checkpoint.
+   * 
+   * @param checkpointDir
+   * @param targetDir
+   */
+  public static void restore(File checkpointDir, File targetDir) {
+    Checkpoints.delete(targetDir);
+    Checkpoints.copyDirectory(checkpointDir, targetDir);
+  }
+
+  public static void markModificationStart(File dir) {
+    File marker = new File(dir, Checkpoints.MODIFICATION_MARKER);
+    try {
+      dir.mkdirs();
+      marker.createNewFile();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public static void markModificationEnd(File dir) {
+    new File(dir, Checkpoints.MODIFICATION_MARKER).delete();
+  }
+
+  /**
+   * @param dir
+   * @return <code>true</code> if the modification of the data in
+   *         <code>dir</code> has not been finished
+   */
+  public static boolean isModificationInterrupted(File dir) {
+    return new File(dir, Checkpoints.MODIFICATION_MARKER).exists();
+  }
+
+}
@@ -16,6 +16,7 @@
  */
 package de.uni_koblenz.west.koral.common.utils;
 
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.web.TypedInputStream;
 import org.apache.jena.graph.Node;
@@ -26,10 +27,12 @@ import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFLanguages;
 import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.RDFParserBuilder;
 import org.apache.jena.riot.RiotException;
 import org.apache.jena.riot.lang.PipedQuadsStream;
 import org.apache.jena.riot.lang.PipedRDFIterator;
 import org.apache.jena.riot.lang.PipedRDFStream;
+import org.apache.jena.riot.lang.LabelToNode;
 import org.apache.jena.riot.lang.PipedTriplesStream;
 import org.apache.jena.riot.system.ErrorHandlerFactory;
 import org.apache.jena.riot.system.StreamRDF;
@@ -45,6 +48,7 @@ import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -61,6 +65,13 @@ import java.util.zip.GZIPInputStream;
  * </p>
  * 
  * <p>
+ * A line based graph file, i.e., an N-Triples or N-Quads file, can be split
+ * into byte ranges that are parsed independently. All ranges of one file must
+ * be parsed with the same blank node scope so that blank nodes with the same
+ * label receive the same id.
+ * </p>
+ * 
+ * <p>
  * {@link RDFFileIterator} parses files with two threads: One reads some triples
  * or quadruples in a buffer while the other consumes the triples or quadruples.
  * In the case that the input file is {@link #isCurrentFileSkippable()}, the
@@ -98,10 +109,25 @@ public class RDFFileIterator
 
   private SortedMap<Integer, Long> lineNumber2Offset;
 
+  /**
+   * first byte of the parsed range
+   */
+  private final long rangeStart;
+
+  /**
+   * first byte after the parsed range or -1 if the complete files are parsed
+   */
+  private final long rangeEnd;
+
+  private final UUID blankNodeScope;
+
   public RDFFileIterator(File file, boolean deleteFiles, Logger logger) {
     ARQ.init();
     this.logger = logger;
     deleteReadFiles = deleteFiles;
+    rangeStart = 0;
+    rangeEnd = -1;
+    blankNodeScope = null;
     GraphFileFilter filter = new GraphFileFilter();
     if (file.exists() && file.isFile() && filter.accept(file)) {
       rdfFiles = new File[] { file };
@@ -114,6 +140,46 @@ public class RDFFileIterator
     getNextIterator();
   }
 
+  /**
+   * Parses the bytes [rangeStart, rangeEnd) of a line based graph file. The
+   * range has to start at the beginning of a line and has to end after a line
+   * break or at the end of the file.
+   * 
+   * @param file
+   * @param rangeStart
+   * @param rangeEnd
+   * @param blankNodeScope
+   *          blank nodes with the same label receive the same id in all ranges
+   *          that are parsed with the same scope
+   * @param logger
+   */
+  public RDFFileIterator(File file, long rangeStart, long rangeEnd, UUID blankNodeScope,
+          Logger logger) {
+    ARQ.init();
+    this.logger = logger;
+    deleteReadFiles = false;
+    this.rangeStart = rangeStart;
+    this.rangeEnd = rangeEnd;
+    this.blankNodeScope = blankNodeScope;
+    rdfFiles = new File[] { file };
+    executor = Executors.newSingleThreadExecutor();
+    getNextIterator();
+  }
+
+  /**
+   * @param file
+   * @return <code>true</code> if the file is an uncompressed N-Triples or
+   *         N-Quads file which can be split into ranges of lines
+   */
+  public static boolean isSplittable(File file) {
+    if (file.getName().toLowerCase().endsWith(".gz")) {
+      return false;
+    }
+    Lang lang = RDFLanguages.filenameToLang(file.getName());
+    return (lang == Lang.NT) || (lang == Lang.NTRIPLES) || (lang == Lang.NQ)
+            || (lang == Lang.NQUADS);
+  }
+
   public RDFFileIterator(RDFFileIterator iterator, boolean deleteReadFiles) {
     this(iterator.rdfFiles.length == 1 ? iterator.rdfFiles[0]
             : iterator.rdfFiles.length == 0 ? null : iterator.rdfFiles[0].getParentFile(),
@@ -156,7 +222,7 @@ public class RDFFileIterator
       createLineNumberMapping(lineWithError);
     }
     String baseIRI = rdfFiles[currentFile].getAbsolutePath();
-    TypedInputStream in = RDFDataMgr.open(baseIRI);
+    TypedInputStream in = openCurrentFile(baseIRI);
     skipErroneousLine(in, baseIRI, lineWithError);
     createIterator(baseIRI, in);
   }
@@ -173,9 +239,9 @@ public class RDFFileIterator
     }
     lineNumber2Offset = new TreeMap<>();
     boolean isGzip = rdfFiles[currentFile].getName().toLowerCase().endsWith(".gz");
-    try (InputStream input = isGzip
-            ? new GZIPInputStream(new FileInputStream(rdfFiles[currentFile]))
-            : new FileInputStream(rdfFiles[currentFile]);
+    try (InputStream input = rangeEnd >= 0 ? openRange()
+            : isGzip ? new GZIPInputStream(new FileInputStream(rdfFiles[currentFile]))
+                    : new FileInputStream(rdfFiles[currentFile]);
             BufferedInputStream bufferedInput = new BufferedInputStream(input);) {
       long skippedBytes = 0;
       while (skippedBytes < offset) {
@@ -247,11 +313,34 @@ public class RDFFileIterator
     }
     skippedLineNumbers = 0;
     String baseIRI = rdfFiles[currentFile].getAbsolutePath();
-    TypedInputStream in = RDFDataMgr.open(baseIRI);
+    TypedInputStream in = openCurrentFile(baseIRI);
 
     createIterator(baseIRI, in);
   }
 
+  private TypedInputStream openCurrentFile(String baseIRI) {
+    if (rangeEnd < 0) {
+      return RDFDataMgr.open(baseIRI);
+    }
+    try {
+      return new TypedInputStream(openRange(),
+              RDFLanguages.filenameToLang(rdfFiles[currentFile].getName()).getContentType());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private InputStream openRange() throws IOException {
+    FileInputStream input = new FileInputStream(rdfFiles[currentFile]);
+    try {
+      input.getChannel().position(rangeStart);
+    } catch (IOException e) {
+      input.close();
+      throw e;
+    }
+    return new BoundedInputStream(input, rangeEnd - rangeStart);
+  }
+
   private void createIterator(String baseIRI, TypedInputStream in) {
     iterator = new PipedRDFIterator<>(PipedRDFIterator.DEFAULT_BUFFER_SIZE, false,
             PipedRDFIterator.DEFAULT_POLL_TIMEOUT * 100, PipedRDFIterator.DEFAULT_MAX_POLLS * 100);
@@ -265,7 +354,7 @@ public class RDFFileIterator
     if (readerRunner != null) {
       readerRunner.close();
     }
-    readerRunner = new GraphReaderRunnable(in, lang, baseIRI, outputStream);
+    readerRunner = new GraphReaderRunnable(in, lang, baseIRI, blankNodeScope, outputStream);
     currentFile++;
 
     parserFuture = executor.submit(readerRunner);
@@ -359,12 +448,24 @@ class GraphReaderRunnable implements Runnable {
 
   private volatile RiotException exception;
 
-  public GraphReaderRunnable(TypedInputStream in, Lang lang, String baseIRI,
+  /**
+   * @param in
+   * @param lang
+   * @param baseIRI
+   * @param blankNodeScope
+   *          if <code>null</code>, the blank node ids are unique for this parser
+   * @param outputStream
+   */
+  public GraphReaderRunnable(TypedInputStream in, Lang lang, String baseIRI, UUID blankNodeScope,
           StreamRDF outputStream) {
     this.in = in;
     this.outputStream = outputStream;
-    parser = RDFParser.create().lang(lang).base(baseIRI)
-            .errorHandler(ErrorHandlerFactory.errorHandlerWarn).source(in).build();
+    RDFParserBuilder builder = RDFParser.create().lang(lang).base(baseIRI)
+            .errorHandler(ErrorHandlerFactory.errorHandlerWarn).source(in);
+    if (blankNodeScope != null) {
+      builder.labelToNode(LabelToNode.createScopeByDocumentHash(blankNodeScope));
+    }
+    parser = builder.build();
     isFinished = false;
   }
 
@@ -0,0 +1,119 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master;
+
+import de.uni_koblenz.west.koral.common.config.impl.Configuration;
+import de.uni_koblenz.west.koral.common.utils.Checkpoints;
+import de.uni_koblenz.west.koral.master.dictionary.DictionaryEncoder;
+import de.uni_koblenz.west.koral.master.statisticsDB.GraphStatistics;
+
+import java.io.File;
+import java.util.logging.Logger;
+
+/**
+ * Creates a common checkpoint of the dictionary and the statistics after a
+ * graph has been loaded or updated. If the master crashes while a graph is
+ * loaded or updated, the checkpoint is restored during the next start.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class CheckpointManager {
+
+  private final Logger logger;
+
+  private final Configuration conf;
+
+  private final File dataDir;
+
+  private final File checkpointDir;
+
+  private final boolean isEnabled;
+
+  public CheckpointManager(Configuration conf, Logger logger) {
+    this.logger = logger;
+    this.conf = conf;
+    dataDir = new File(conf.getDataDirByInstance(true));
+    checkpointDir = new File(conf.getDataDirByInstance(true) + File.separator + "checkpoint");
+    isEnabled = conf.isCheckpointCreationEnabled();
+  }
+
+  /**
+   * Restores the checkpoint if the previous modification has been
+   * interrupted. It has to be called before the dictionary and the statistics
+   * are opened.
+   * 
+   * @return <code>true</code> if the checkpoint has been restored
+   */
+  public boolean restoreInterruptedModification() {
+    if (!Checkpoints.isModificationInterrupted(dataDir)) {
+      return false;
+    }
+    boolean isRestored = false;
+    File checkpoint = Checkpoints.getCheckpoint(checkpointDir);
+    if (checkpoint != null) {
+      DictionaryEncoder.restoreCheckpoint(conf, new File(checkpoint, "dictionary"));
+      GraphStatistics.restoreCheckpoint(conf, new File(checkpoint, "statistics"));
+      isRestored = true;
+      if (logger != null) {
+        logger.info("The loading or update of a graph was interrupted. The checkpoint "
+                + checkpoint.getAbsolutePath() + " has been restored.");
+      }
+    } else if (logger != null) {
+      logger.warning("The loading or update of a graph was interrupted and there is no "
+              + "checkpoint to restore. The dictionary and the statistics may be incomplete.");
+    }
+    Checkpoints.markModificationEnd(dataDir);
+    return isRestored;
+  }
+
+  /**
+   * @param discardCheckpoint
+   *          <code>true</code>, if the previously loaded graph is replaced
+   */
+  public void beginModification(boolean discardCheckpoint) {
+    if (!isEnabled) {
+      return;
+    }
+    if (discardCheckpoint) {
+      discardCheckpoint();
+    }
+    Checkpoints.markModificationStart(dataDir);
+  }
+
+  public void createCheckpoint(DictionaryEncoder dictionary, GraphStatistics statistics) {
+    if (!isEnabled) {
+      return;
+    }
+    long start = System.currentTimeMillis();
+    File checkpoint = Checkpoints.beginCheckpoint(checkpointDir);
+    dictionary.createCheckpoint(new File(checkpoint, "dictionary"));
+    statistics.createCheckpoint(new File(checkpoint, "statistics"));
+    Checkpoints.commitCheckpoint(checkpointDir);
+    Checkpoints.markModificationEnd(dataDir);
+    if (logger != null) {
+      logger.finer("created checkpoint in " + (System.currentTimeMillis() - start) + " msec");
+    }
+  }
+
+  public void discardCheckpoint() {
+    Checkpoints.discardCheckpoint(checkpointDir);
+  }
+
+}
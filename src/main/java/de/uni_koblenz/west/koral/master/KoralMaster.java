@@ -16,7 +16,9 @@
  */
 package de.uni_koblenz.west.koral.master;
 
+import java.io.File;
 import java.nio.BufferUnderflowException;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Option;
@@ -34,6 +36,7 @@ import de.uni_koblenz.west.koral.master.client_manager.ClientMessageProcessor;
 import de.uni_koblenz.west.koral.master.dictionary.DictionaryEncoder;
 import de.uni_koblenz.west.koral.master.networkManager.MasterNetworkManager;
 import de.uni_koblenz.west.koral.master.statisticsDB.GraphStatistics;
+import de.uni_koblenz.west.koral.master.tasks.GraphLoaderTask;
 
 /**
  * The Koral master implementation.
@@ -49,6 +52,8 @@ public class KoralMaster extends KoralSystem {
 
   private final GraphStatistics statistics;
 
+  private final CheckpointManager checkpointManager;
+
   private boolean graphHasBeenLoaded;
 
   public KoralMaster(Configuration conf) {
@@ -60,8 +65,19 @@ public class KoralMaster extends KoralSystem {
         true);
     try {
       ClientConnectionManager clientConnections = new ClientConnectionManager(conf, logger);
+      checkpointManager = new CheckpointManager(conf, logger);
+      if (checkpointManager.restoreInterruptedModification()) {
+        // the interrupted load must not be resumed
+        GraphLoaderTask.discardInterruptedLoads(new File(conf.getTmpDirByInstance(true)));
+      }
+      // the dictionary and the statistics are opened in parallel
+      CompletableFuture<GraphStatistics> statisticsFuture = CompletableFuture.supplyAsync(
+          () -> new GraphStatistics(conf, (short) conf.getNumberOfSlaves(), logger));
       dictionary = new DictionaryEncoder(conf, logger, measurementCollector);
-      statistics = new GraphStatistics(conf, (short) conf.getNumberOfSlaves(), logger);
+      statistics = statisticsFuture.join();
+      if (conf.getNumberOfWarmedUpProperties() > 0) {
+        startWarmup(conf.getNumberOfWarmedUpProperties());
+      }
       clientMessageProcessor = new ClientMessageProcessor(conf, clientConnections, this,
           contactSlaves, logger, measurementCollector);
       graphHasBeenLoaded = !dictionary.isEmpty();
@@ -78,6 +94,23 @@ public class KoralMaster extends KoralSystem {
     }
   }
 
+  /**
+   * Reads the dictionary entries and statistics of the most frequent
+   * properties in background.
+   * 
+   * @param numberOfProperties
+   */
+  private void startWarmup(int numberOfProperties) {
+    Thread warmupThread = new Thread(() -> {
+      for (long property : statistics.getMostFrequentProperties(numberOfProperties)) {
+        dictionary.decode(property);
+        statistics.getTotalPropertyFrequency(property);
+      }
+    }, "MasterWarmup");
+    warmupThread.setDaemon(true);
+    warmupThread.start();
+  }
+
   public DictionaryEncoder getDictionary() {
     return dictionary;
   }
@@ -86,6 +119,10 @@ public class KoralMaster extends KoralSystem {
     return statistics;
   }
 
+  public CheckpointManager getCheckpointManager() {
+    return checkpointManager;
+  }
+
   public void executeTask(WorkerTask rootTask) {
     getWorkerManager().addTask(rootTask);
   }
@@ -126,6 +163,8 @@ public class KoralMaster extends KoralSystem {
       switch (messageType) {
         case GRAPH_LOADING_COMPLETE:
         case GRAPH_LOADING_FAILED:
+        case UPDATE_BATCH_APPLIED:
+        case UPDATE_BATCH_FAILED:
           short senderID = NumberConversion.bytes2short(receivedMessage, 1);
           notifyMessageListener(messageType.getListenerType(), senderID, receivedMessage);
           break;
@@ -172,6 +211,7 @@ public class KoralMaster extends KoralSystem {
     clientMessageProcessor.clear();
     dictionary.clear();
     statistics.clear();
+    checkpointManager.discardCheckpoint();
     graphHasBeenLoaded = false;
     if (logger != null) {
       logger.info("master cleared");
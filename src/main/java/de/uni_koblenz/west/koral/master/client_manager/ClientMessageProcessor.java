@@ -17,6 +17,7 @@
 package de.uni_koblenz.west.koral.master.client_manager;
 
 import de.uni_koblenz.west.koral.common.config.impl.Configuration;
+import de.uni_koblenz.west.koral.common.io.BlockCodec;
 import de.uni_koblenz.west.koral.common.mapDB.MapDBCacheOptions;
 import de.uni_koblenz.west.koral.common.mapDB.MapDBStorageOptions;
 import de.uni_koblenz.west.koral.common.measurement.MeasurementCollector;
@@ -28,6 +29,7 @@ import de.uni_koblenz.west.koral.common.utils.NumberConversion;
 import de.uni_koblenz.west.koral.master.KoralMaster;
 import de.uni_koblenz.west.koral.master.tasks.ClientConnectionKeepAliveTask;
 import de.uni_koblenz.west.koral.master.tasks.GraphLoaderTask;
+import de.uni_koblenz.west.koral.master.tasks.GraphUpdateTask;
 
 import java.io.Closeable;
 import java.io.File;
@@ -71,6 +73,10 @@ public class ClientMessageProcessor implements Closeable, ClosedConnectionListen
 
   private final Map<String, QueryExecutionCoordinator> clientAddress2queryExecutionCoordinator;
 
+  private int nextUpdateId;
+
+  private final Map<String, GraphUpdateTask> clientAddress2GraphUpdateTask;
+
   private final int mappingReceiverQueueSize;
 
   private final int emittedMappingsPerRound;
@@ -81,6 +87,10 @@ public class ClientMessageProcessor implements Closeable, ClosedConnectionListen
 
   private final boolean writeAsynchronously;
 
+  private final int coverCreationMemoryBudget;
+
+  private final BlockCodec encodedFileCodec;
+
   private final MapDBCacheOptions cacheType;
 
   private final boolean contactSlaves;
@@ -106,6 +116,8 @@ public class ClientMessageProcessor implements Closeable, ClosedConnectionListen
     clientAddress2queryExecutionCoordinator = new HashMap<>();
     // queryIdGenerator = new ReusableIDGenerator();
     nextQueryId = 0;
+    clientAddress2GraphUpdateTask = new HashMap<>();
+    nextUpdateId = 0;
     this.clientConnections.registerClosedConnectionListener(this);
     mappingReceiverQueueSize = conf.getReceiverQueueSize();
     emittedMappingsPerRound = conf.getMaxEmittedMappingsPerRound();
@@ -113,6 +125,8 @@ public class ClientMessageProcessor implements Closeable, ClosedConnectionListen
     storageType = conf.getJoinCacheStorageType();
     useTransactions = conf.useTransactionsForJoinCache();
     writeAsynchronously = conf.isJoinCacheAsynchronouslyWritten();
+    coverCreationMemoryBudget = conf.getCoverCreationMemoryBudget();
+    encodedFileCodec = conf.getEncodedFileCodec();
   }
 
   /**
@@ -268,7 +282,8 @@ public class ClientMessageProcessor implements Closeable, ClosedConnectionListen
           }
           GraphLoaderTask loaderTask = new GraphLoaderTask(clientID.intValue(), clientConnections,
                   master.getNetworkManager(), ftpServer[0], internalFtpIpAddress, ftpServer[1],
-                  master.getDictionary(), master.getStatistics(), tmpDir, master, logger,
+                  master.getDictionary(), master.getStatistics(), master.getCheckpointManager(),
+                  tmpDir, coverCreationMemoryBudget, encodedFileCodec, master, logger,
                   measurementCollector, contactSlaves);
           clientAddress2GraphLoaderTask.put(address, loaderTask);
           loaderTask.loadGraph(arguments, numberOfChunks);
@@ -299,6 +314,29 @@ public class ClientMessageProcessor implements Closeable, ClosedConnectionListen
           clientAddress2queryExecutionCoordinator.put(address, coordinator);
           master.executeTask(coordinator);
           break;
+        case "update":
+          String rejection = null;
+          if (!graphHasBeenLoaded) {
+            rejection = "There is no graph loaded that could be updated.";
+          } else if (isGraphLoaderTaskRunning() || isGraphUpdateTaskRunning()) {
+            // the dictionary does not support concurrent encodings
+            rejection = "Update rejected: Koral is currently loading or updating the graph.";
+          }
+          if (rejection != null) {
+            if (logger != null) {
+              logger.finer(rejection);
+            }
+            clientConnections.send(clientID, MessageUtils
+                    .createStringMessage(MessageType.CLIENT_COMMAND_FAILED, rejection, logger));
+            break;
+          }
+          GraphUpdateTask updateTask = new GraphUpdateTask(nextUpdateId++, clientID.intValue(),
+                  clientConnections, master.getNetworkManager(), master.getDictionary(),
+                  master.getStatistics(), master.getCheckpointManager(), master, logger);
+          updateTask.processUpdateRequest(arguments);
+          clientAddress2GraphUpdateTask.put(address, updateTask);
+          updateTask.start();
+          break;
         case "drop":
           processDropTables(clientID);
           break;
@@ -324,12 +362,30 @@ public class ClientMessageProcessor implements Closeable, ClosedConnectionListen
                               + " arguments:\n" + e.getClass().getName() + ": " + e.getMessage(),
                       logger));
       // remove started graph loader tasks
-      if (command.equals("load") || command.equals("query")) {
+      if (command.equals("load") || command.equals("query") || command.equals("update")) {
         terminateTask(address);
       }
     }
   }
 
+  private boolean isGraphLoaderTaskRunning() {
+    for (GraphLoaderTask task : clientAddress2GraphLoaderTask.values()) {
+      if ((task != null) && task.isAlive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isGraphUpdateTaskRunning() {
+    for (GraphUpdateTask task : clientAddress2GraphUpdateTask.values()) {
+      if ((task != null) && task.isAlive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void processDropTables(int clientID) {
     if (logger != null) {
       logger.finer("Dropping database");
@@ -394,6 +450,9 @@ public class ClientMessageProcessor implements Closeable, ClosedConnectionListen
       case "query":
         terminateTask(parts[0]);
         break;
+      case "update":
+        terminateTask(parts[0]);
+        break;
       default:
         if (logger != null) {
           logger.finer("unknown aborted command: " + parts[1]);
@@ -421,6 +480,10 @@ public class ClientMessageProcessor implements Closeable, ClosedConnectionListen
       query.close();
       // queryIdGenerator.release(query.getQueryId());
     }
+    GraphUpdateTask update = clientAddress2GraphUpdateTask.remove(address);
+    if (update != null) {
+      update.close();
+    }
     clientAddress2GraphLoaderTask.remove(address);
   }
 
@@ -449,12 +512,14 @@ public class ClientMessageProcessor implements Closeable, ClosedConnectionListen
   public void close() {
     stopAllQueries();
     stopAllGraphLoaderTasks();
+    stopAllGraphUpdateTasks();
     clientConnections.close();
   }
 
   public void clear() {
     stopAllQueries();
     stopAllGraphLoaderTasks();
+    stopAllGraphUpdateTasks();
   }
 
   private void stopAllQueries() {
@@ -476,6 +541,15 @@ public class ClientMessageProcessor implements Closeable, ClosedConnectionListen
     }
   }
 
+  private void stopAllGraphUpdateTasks() {
+    for (GraphUpdateTask task : clientAddress2GraphUpdateTask.values()) {
+      if (task != null) {
+        task.close();
+      }
+    }
+    clientAddress2GraphUpdateTask.clear();
+  }
+
   @Override
   public void notifyOnClosedConnection(int clientID) {
     String address = null;
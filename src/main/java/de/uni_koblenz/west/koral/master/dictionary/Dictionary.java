@@ -19,6 +19,7 @@
 package de.uni_koblenz.west.koral.master.dictionary;
 
 import java.io.Closeable;
+import java.io.File;
 
 /**
  * Declares all methods required by {@link DictionaryEncoder}.
@@ -42,6 +43,27 @@ public interface Dictionary extends Closeable {
    */
   public long encode(String value, boolean createNewEncodingForUnknownNodes);
 
+  /**
+   * Encodes a batch of values and creates new ids for unknown values. It may be
+   * called by several threads concurrently as long as no other method is
+   * called at the same time.
+   * 
+   * @param values
+   * @param numberOfValues
+   *          number of values at the beginning of values that are encoded
+   * @param ids
+   *          receives the id of each value at the same index
+   * @throws RuntimeException
+   *           if maximum number of strings (i.e., 2^48) have been encoded
+   */
+  public default void encodeConcurrently(String[] values, int numberOfValues, long[] ids) {
+    synchronized (this) {
+      for (int i = 0; i < numberOfValues; i++) {
+        ids[i] = encode(values[i], true);
+      }
+    }
+  }
+
   /**
    * @param id
    * @return <code>null</code> if no String has been encoded to this id, yet.
@@ -50,6 +72,14 @@ public interface Dictionary extends Closeable {
 
   public void flush();
 
+  /**
+   * Writes a consistent copy of the dictionary into the directory. The copy has
+   * the same layout as the storage directory of the dictionary.
+   * 
+   * @param checkpointDir
+   */
+  public void createCheckpoint(File checkpointDir);
+
   public boolean isEmpty();
   
   public long size();
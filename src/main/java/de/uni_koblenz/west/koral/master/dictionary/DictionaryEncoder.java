@@ -16,26 +16,45 @@
  */
 package de.uni_koblenz.west.koral.master.dictionary;
 
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.NodeFactory;
 
 import de.uni_koblenz.west.koral.common.config.impl.Configuration;
+import de.uni_koblenz.west.koral.common.io.BlockCodec;
 import de.uni_koblenz.west.koral.common.io.EncodedFileInputStream;
 import de.uni_koblenz.west.koral.common.io.EncodedFileOutputStream;
 import de.uni_koblenz.west.koral.common.io.EncodingFileFormat;
 import de.uni_koblenz.west.koral.common.io.Statement;
 import de.uni_koblenz.west.koral.common.measurement.MeasurementCollector;
 import de.uni_koblenz.west.koral.common.measurement.MeasurementType;
+import de.uni_koblenz.west.koral.common.utils.Checkpoints;
 import de.uni_koblenz.west.koral.common.utils.NumberConversion;
 import de.uni_koblenz.west.koral.common.utils.RDFFileIterator;
 import de.uni_koblenz.west.koral.master.dictionary.impl.RocksDBDictionary;
 import de.uni_koblenz.west.koral.master.statisticsDB.GraphStatistics;
 import de.uni_koblenz.west.koral.master.utils.DeSerializer;
+import de.uni_koblenz.west.koral.slave.triple_store.impl.DictionaryPartition;
 
 /**
  * <p>
@@ -58,32 +77,99 @@ import de.uni_koblenz.west.koral.master.utils.DeSerializer;
  */
 public class DictionaryEncoder implements Closeable {
 
+  /**
+   * Number of triples that are encoded and counted at once while the final
+   * encoding is performed.
+   */
+  private static final int STATISTICS_BATCH_SIZE = 4096;
+
   private final Logger logger;
 
   private final MeasurementCollector measurementCollector;
 
   private final Dictionary dictionary;
 
+  private final boolean useBulkEncoding;
+
+  private final boolean isPartitioned;
+
+  /**
+   * codec of the written encoded graph files
+   */
+  private final BlockCodec encodedFileCodec;
+
+  /**
+   * contains the version of the dictionary partitions that have been loaded by
+   * the slaves
+   */
+  private final File partitionVersionFile;
+
   public DictionaryEncoder(Configuration conf, Logger logger, MeasurementCollector collector) {
     this.logger = logger;
     measurementCollector = collector;
+    useBulkEncoding = (conf != null) && conf.isBulkDictionaryEncodingEnabled();
+    isPartitioned = (conf != null) && conf.isDictionaryPartitioningEnabled();
+    encodedFileCodec = conf != null ? conf.getEncodedFileCodec()
+        : EncodedFileOutputStream.DEFAULT_CODEC;
     if (conf != null) {
-      dictionary =
-          new RocksDBDictionary(conf.getDictionaryDir(true), conf.getMaxDictionaryWriteBatchSize());
+      dictionary = new RocksDBDictionary(conf.getDictionaryDir(true),
+          conf.getMaxDictionaryWriteBatchSize(), RocksDBDictionary.DEFAULT_MAX_OPEN_FILES,
+          conf.getDictionaryCacheSize(), conf.isDictionaryNamespaceCompressionEnabled());
+      partitionVersionFile = new File(conf.getDictionaryDir(true), "partitionVersion");
     } else {
       dictionary = null;
+      partitionVersionFile = null;
     }
   }
 
   public File encodeOriginalGraphFiles(File[] plainGraphChunks, File workingDir,
       EncodingFileFormat outputFormat, int numberOfGraphChunks) {
-    clear();
+    return encodeOriginalGraphFiles(plainGraphChunks, workingDir, outputFormat,
+        numberOfGraphChunks, false);
+  }
+
+  /**
+   * @param plainGraphChunks
+   * @param workingDir
+   * @param outputFormat
+   * @param numberOfGraphChunks
+   * @param isIncremental
+   *          if <code>true</code>, the graph files are encoded with the existing
+   *          dictionary, i.e., already known resources keep their ids.
+   *          Otherwise, the dictionary is cleared, first.
+   * @return the semi encoded graph file or, in case of bulk encoding, the
+   *         directory of its segments
+   */
+  public File encodeOriginalGraphFiles(File[] plainGraphChunks, File workingDir,
+      EncodingFileFormat outputFormat, int numberOfGraphChunks, boolean isIncremental) {
+    if (!isIncremental) {
+      clear();
+    }
     if (measurementCollector != null) {
       measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_INITIAL_ENCODING_ENCODING_START,
           System.currentTimeMillis());
     }
     File result = getSemiEncodedGraphFile(workingDir);
-    try (EncodedFileOutputStream out = new EncodedFileOutputStream(result);) {
+    FileUtils.deleteQuietly(result);
+    if (isBulkEncodingUsed()) {
+      new SortBasedGraphEncoder(this, (RocksDBDictionary) dictionary, encodedFileCodec, logger)
+          .encodeGraphFiles(plainGraphChunks, workingDir, outputFormat, numberOfGraphChunks, result);
+    } else {
+      encodeGraphFilesSequentially(plainGraphChunks, outputFormat, numberOfGraphChunks, result);
+    }
+    dictionary.flush();
+    if (measurementCollector != null) {
+      measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_INITIAL_ENCODING_ENCODING_END,
+          System.currentTimeMillis());
+      measureCacheStatistics();
+    }
+    return result;
+  }
+
+  private void encodeGraphFilesSequentially(File[] plainGraphChunks,
+      EncodingFileFormat outputFormat, int numberOfGraphChunks, File result) {
+    try (EncodedFileOutputStream out = new EncodedFileOutputStream(result, false,
+        encodedFileCodec);) {
       for (int i = 0; i < plainGraphChunks.length; i++) {
         if (plainGraphChunks[i] == null) {
           continue;
@@ -132,15 +218,15 @@ public class DictionaryEncoder implements Closeable {
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
-    dictionary.flush();
-    if (measurementCollector != null) {
-      measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_INITIAL_ENCODING_ENCODING_END,
-          System.currentTimeMillis());
-    }
-    return result;
   }
 
-  private void transformBlankNodes(Node[] statement) {
+  /**
+   * Replaces blank nodes by URIs in the same way as it is done while loading a
+   * graph.
+   * 
+   * @param statement
+   */
+  public void transformBlankNodes(Node[] statement) {
     for (int i = 0; i < statement.length; i++) {
       Node node = statement[i];
       if (node.isBlank()) {
@@ -150,74 +236,113 @@ public class DictionaryEncoder implements Closeable {
     }
   }
 
+  /**
+   * Reports the hit rate and memory consumption of the dictionary cache since
+   * the last report.
+   */
+  private void measureCacheStatistics() {
+    if (!(dictionary instanceof RocksDBDictionary)) {
+      return;
+    }
+    RocksDBDictionary rocksDictionary = (RocksDBDictionary) dictionary;
+    long[] cacheStatistics = rocksDictionary.getCacheStatistics();
+    if (cacheStatistics == null) {
+      return;
+    }
+    String[] values = new String[cacheStatistics.length];
+    for (int i = 0; i < cacheStatistics.length; i++) {
+      values[i] = Long.toString(cacheStatistics[i]);
+    }
+    measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_DICTIONARY_CACHE_STATISTICS,
+        values);
+    rocksDictionary.resetCacheStatistics();
+  }
+
+  private boolean isBulkEncodingUsed() {
+    return useBulkEncoding && (dictionary instanceof RocksDBDictionary);
+  }
+
+  /**
+   * @param workingDir
+   * @return the semi encoded graph file or, in case of bulk encoding, the
+   *         directory which contains its segments
+   */
   public File getSemiEncodedGraphFile(File workingDir) {
-    File chunkFile =
-        new File(workingDir.getAbsolutePath() + File.separatorChar + "inputRdfFile.senc.gz");
+    File chunkFile = new File(workingDir.getAbsolutePath() + File.separatorChar
+        + (isBulkEncodingUsed() ? "inputRdfFile.senc" : "inputRdfFile.senc.gz"));
     return chunkFile;
   }
 
   public File[] encodeGraphChunksCompletely(File[] semiEncodedGraphChunks, File workingDir,
       EncodingFileFormat inputFormat) {
+    return encodeGraphChunksCompletely(semiEncodedGraphChunks, workingDir, inputFormat, null);
+  }
+
+  /**
+   * Encodes the remaining resources of all graph chunks. The chunks are
+   * processed in parallel.
+   * 
+   * @param semiEncodedGraphChunks
+   * @param workingDir
+   * @param inputFormat
+   * @param statistics
+   *          if not <code>null</code>, the fully encoded triples are counted
+   *          while they are written so that no separate pass over the chunks
+   *          is required to collect the statistics
+   * @return the fully encoded graph chunks
+   */
+  public File[] encodeGraphChunksCompletely(File[] semiEncodedGraphChunks, File workingDir,
+      EncodingFileFormat inputFormat, GraphStatistics statistics) {
     if (measurementCollector != null) {
       measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_FINAL_ENCODING_ENCODING_START,
           System.currentTimeMillis());
     }
     File[] result = getFullyEncodedGraphChunks(workingDir, semiEncodedGraphChunks.length);
-    for (int i = 0; i < semiEncodedGraphChunks.length; i++) {
-      if (semiEncodedGraphChunks[i] == null) {
-        result[i] = null;
-        continue;
-      }
-      if (inputFormat == EncodingFileFormat.EEE) {
-        // the input is already encoded completely
-        if (!semiEncodedGraphChunks[i].equals(result[i])) {
-          semiEncodedGraphChunks[i].renameTo(result[i]);
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+        Math.min(Runtime.getRuntime().availableProcessors(), semiEncodedGraphChunks.length)));
+    try {
+      List<Future<?>> tasks = new ArrayList<>();
+      for (int i = 0; i < semiEncodedGraphChunks.length; i++) {
+        if (semiEncodedGraphChunks[i] == null) {
+          result[i] = null;
+          continue;
         }
-        continue;
-      }
-      try (
-          EncodedFileInputStream in =
-              new EncodedFileInputStream(inputFormat, semiEncodedGraphChunks[i]);
-          EncodedFileOutputStream out = new EncodedFileOutputStream(result[i]);) {
-        for (Statement statement : in) {
-          byte[] subject;
-          if (statement.isSubjectEncoded()) {
-            subject = statement.getSubject();
-          } else {
-            subject = NumberConversion
-                .long2bytes(dictionary.encode(statement.getSubjectAsString(), true));
+        File semiEncodedGraphChunk = semiEncodedGraphChunks[i];
+        File fullyEncodedGraphChunk = result[i];
+        int chunk = i;
+        if (inputFormat == EncodingFileFormat.EEE) {
+          // the input is already encoded completely
+          if (!semiEncodedGraphChunk.equals(fullyEncodedGraphChunk)) {
+            semiEncodedGraphChunk.renameTo(fullyEncodedGraphChunk);
           }
-
-          byte[] property;
-          if (statement.isPropertyEncoded()) {
-            property = statement.getProperty();
-          } else {
-            property = NumberConversion
-                .long2bytes(dictionary.encode(statement.getPropertyAsString(), true));
+          if (statistics != null) {
+            tasks.add(executor
+                .submit(() -> countGraphChunk(fullyEncodedGraphChunk, statistics, chunk)));
           }
-
-          byte[] object;
-          if (statement.isObjectEncoded()) {
-            object = statement.getObject();
-          } else {
-            object =
-                NumberConversion.long2bytes(dictionary.encode(statement.getObjectAsString(), true));
-          }
-
-          byte[] containment = statement.getContainment();
-
-          Statement outStatement = Statement.getStatement(EncodingFileFormat.EEE, subject, property,
-              object, containment);
-          out.writeStatement(outStatement);
+          continue;
         }
-      } catch (IOException e) {
-        throw new RuntimeException(e);
+        tasks.add(executor.submit(() -> encodeGraphChunkCompletely(semiEncodedGraphChunk,
+            fullyEncodedGraphChunk, inputFormat, statistics, chunk)));
+      }
+      for (Future<?> task : tasks) {
+        task.get();
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    if (statistics != null) {
+      statistics.mergeCounts();
     }
     dictionary.flush();
     if (measurementCollector != null) {
       measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_FINAL_ENCODING_ENCODING_END,
           System.currentTimeMillis());
+      measureCacheStatistics();
     }
 
     if (inputFormat != EncodingFileFormat.EEE) {
@@ -232,6 +357,111 @@ public class DictionaryEncoder implements Closeable {
     return result;
   }
 
+  /**
+   * The statements are read in batches of {@link #STATISTICS_BATCH_SIZE}
+   * statements. The resources of a batch that are not encoded, yet, are
+   * encoded with one call of
+   * {@link Dictionary#encodeConcurrently(String[], int, long[])} so that the
+   * chunks do not contend for the dictionary per resource.
+   */
+  private void encodeGraphChunkCompletely(File semiEncodedGraphChunk, File fullyEncodedGraphChunk,
+      EncodingFileFormat inputFormat, GraphStatistics statistics, int chunk) {
+    Statement[] statements = new Statement[STATISTICS_BATCH_SIZE];
+    long[] triples = new long[3 * STATISTICS_BATCH_SIZE];
+    String[] unencodedValues = new String[3 * STATISTICS_BATCH_SIZE];
+    int[] positionsOfUnencodedValues = new int[3 * STATISTICS_BATCH_SIZE];
+    long[] ids = new long[3 * STATISTICS_BATCH_SIZE];
+    int numberOfTriples = 0;
+    int numberOfUnencodedValues = 0;
+    try (
+        EncodedFileInputStream in =
+            new EncodedFileInputStream(inputFormat, semiEncodedGraphChunk);
+        EncodedFileOutputStream out =
+            new EncodedFileOutputStream(fullyEncodedGraphChunk, false, encodedFileCodec);) {
+      for (Statement statement : in) {
+        statements[numberOfTriples] = statement;
+        if (statement.isSubjectEncoded()) {
+          triples[3 * numberOfTriples] = statement.getSubjectAsLong();
+        } else {
+          positionsOfUnencodedValues[numberOfUnencodedValues] = 3 * numberOfTriples;
+          unencodedValues[numberOfUnencodedValues++] = statement.getSubjectAsString();
+        }
+        if (statement.isPropertyEncoded()) {
+          triples[(3 * numberOfTriples) + 1] = statement.getPropertyAsLong();
+        } else {
+          positionsOfUnencodedValues[numberOfUnencodedValues] = (3 * numberOfTriples) + 1;
+          unencodedValues[numberOfUnencodedValues++] = statement.getPropertyAsString();
+        }
+        if (statement.isObjectEncoded()) {
+          triples[(3 * numberOfTriples) + 2] = statement.getObjectAsLong();
+        } else {
+          positionsOfUnencodedValues[numberOfUnencodedValues] = (3 * numberOfTriples) + 2;
+          unencodedValues[numberOfUnencodedValues++] = statement.getObjectAsString();
+        }
+        numberOfTriples++;
+        if (numberOfTriples == STATISTICS_BATCH_SIZE) {
+          writeBatch(statements, triples, numberOfTriples, unencodedValues,
+              positionsOfUnencodedValues, numberOfUnencodedValues, ids, out, statistics, chunk);
+          numberOfTriples = 0;
+          numberOfUnencodedValues = 0;
+        }
+      }
+      if (numberOfTriples > 0) {
+        writeBatch(statements, triples, numberOfTriples, unencodedValues,
+            positionsOfUnencodedValues, numberOfUnencodedValues, ids, out, statistics, chunk);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void writeBatch(Statement[] statements, long[] triples, int numberOfTriples,
+      String[] unencodedValues, int[] positionsOfUnencodedValues, int numberOfUnencodedValues,
+      long[] ids, EncodedFileOutputStream out, GraphStatistics statistics, int chunk)
+      throws IOException {
+    if (numberOfUnencodedValues > 0) {
+      dictionary.encodeConcurrently(unencodedValues, numberOfUnencodedValues, ids);
+      for (int i = 0; i < numberOfUnencodedValues; i++) {
+        triples[positionsOfUnencodedValues[i]] = ids[i];
+        unencodedValues[i] = null;
+      }
+    }
+    for (int i = 0; i < numberOfTriples; i++) {
+      out.writeStatement(Statement.getStatement(EncodingFileFormat.EEE,
+          NumberConversion.long2bytes(triples[3 * i]),
+          NumberConversion.long2bytes(triples[(3 * i) + 1]),
+          NumberConversion.long2bytes(triples[(3 * i) + 2]), statements[i].getContainment()));
+      statements[i] = null;
+    }
+    if (statistics != null) {
+      statistics.count(triples, numberOfTriples, chunk);
+    }
+  }
+
+  private void countGraphChunk(File fullyEncodedGraphChunk, GraphStatistics statistics,
+      int chunk) {
+    long[] triples = new long[3 * STATISTICS_BATCH_SIZE];
+    int numberOfTriples = 0;
+    try (EncodedFileInputStream in =
+        new EncodedFileInputStream(EncodingFileFormat.EEE, fullyEncodedGraphChunk);) {
+      for (Statement statement : in) {
+        triples[3 * numberOfTriples] = statement.getSubjectAsLong();
+        triples[(3 * numberOfTriples) + 1] = statement.getPropertyAsLong();
+        triples[(3 * numberOfTriples) + 2] = statement.getObjectAsLong();
+        numberOfTriples++;
+        if (numberOfTriples == STATISTICS_BATCH_SIZE) {
+          statistics.count(triples, numberOfTriples, chunk);
+          numberOfTriples = 0;
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    if (numberOfTriples > 0) {
+      statistics.count(triples, numberOfTriples, chunk);
+    }
+  }
+
   public File[] getFullyEncodedGraphChunks(File workingDir, int numberOfGraphChunks) {
     File[] chunkFiles = new File[numberOfGraphChunks];
     for (int i = 0; i < chunkFiles.length; i++) {
@@ -257,13 +487,165 @@ public class DictionaryEncoder implements Closeable {
 
   public long encode(Node node, boolean createNewEncodingForUnknownNodes,
       GraphStatistics statistics) {
-    long id = dictionary.encode(DeSerializer.serializeNode(node), createNewEncodingForUnknownNodes);
+    String value = DeSerializer.serializeNode(node);
+    if (!createNewEncodingForUnknownNodes && (dictionary instanceof RocksDBDictionary)) {
+      // the term index already contains the owner
+      long id = ((RocksDBDictionary) dictionary).lookupInTermIndex(value);
+      if (id >= 0) {
+        return id;
+      }
+    }
+    long id = dictionary.encode(value, createNewEncodingForUnknownNodes);
     if (id == 0) {
       return id;
     }
     return statistics.getIDWithOwner(id);
   }
 
+  /**
+   * Builds the index that is used to encode the constants of queries. It has
+   * to be called after a graph has been loaded completely.
+   * 
+   * @param statistics
+   */
+  public void buildTermIndex(GraphStatistics statistics) {
+    if (dictionary instanceof RocksDBDictionary) {
+      ((RocksDBDictionary) dictionary).buildTermIndex(statistics::getIDWithOwner);
+    }
+  }
+
+  /**
+   * Removes the index that is used to encode the constants of queries. It has
+   * to be called before the owners of resources are changed.
+   */
+  public void invalidateTermIndex() {
+    if (dictionary instanceof RocksDBDictionary) {
+      ((RocksDBDictionary) dictionary).invalidateTermIndex();
+    }
+  }
+
+  public boolean isPartitioningEnabled() {
+    return isPartitioned && (partitionVersionFile != null);
+  }
+
+  public File[] getDictionaryPartitionFiles(File workingDir, int numberOfGraphChunks) {
+    File[] partitionFiles = new File[numberOfGraphChunks];
+    for (int i = 0; i < partitionFiles.length; i++) {
+      partitionFiles[i] = new File(
+          workingDir.getAbsolutePath() + File.separatorChar + "dictionaryPartition" + i + ".gz");
+    }
+    return partitionFiles;
+  }
+
+  /**
+   * Writes the dictionary entries of all resources that occur in a graph chunk
+   * into the partition file of this chunk. The format is described in
+   * {@link DictionaryPartition}.
+   * 
+   * @param partitionFiles
+   *          the files of chunks that are not loaded are <code>null</code>
+   * @param statistics
+   * @param partitionListener
+   *          is informed about each completely written partition file, may be
+   *          <code>null</code>
+   * @return the version of the written partitions
+   */
+  public long writeDictionaryPartitions(File[] partitionFiles, GraphStatistics statistics,
+      Consumer<File> partitionListener) {
+    flush();
+    long version = System.currentTimeMillis();
+    DataOutputStream[] outputs = new DataOutputStream[partitionFiles.length];
+    try {
+      for (int i = 0; i < partitionFiles.length; i++) {
+        if (partitionFiles[i] != null) {
+          outputs[i] = new DataOutputStream(new BufferedOutputStream(
+              new GZIPOutputStream(new FileOutputStream(partitionFiles[i]))));
+          outputs[i].writeLong(version);
+        }
+      }
+      long size = dictionary.size();
+      for (long id = 1; id <= size; id++) {
+        BitSet chunks = statistics.getChunksWithResource(id);
+        if (chunks.isEmpty()) {
+          continue;
+        }
+        String value = dictionary.decode(id);
+        if (value == null) {
+          continue;
+        }
+        byte[] valueBytes = value.getBytes("UTF-8");
+        for (int chunk = chunks.nextSetBit(0); chunk >= 0; chunk = chunks.nextSetBit(chunk + 1)) {
+          if ((chunk < outputs.length) && (outputs[chunk] != null)) {
+            outputs[chunk].writeLong(id);
+            outputs[chunk].writeInt(valueBytes.length);
+            outputs[chunk].write(valueBytes);
+          }
+        }
+      }
+      for (int i = 0; i < outputs.length; i++) {
+        if (outputs[i] != null) {
+          outputs[i].writeLong(0);
+          outputs[i].close();
+          outputs[i] = null;
+          if (partitionListener != null) {
+            partitionListener.accept(partitionFiles[i]);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      for (DataOutputStream output : outputs) {
+        if (output != null) {
+          try {
+            output.close();
+          } catch (IOException e) {
+          }
+        }
+      }
+    }
+    return version;
+  }
+
+  /**
+   * @return the version of the dictionary partitions that are stored on the
+   *         slaves or 0 if the results cannot be decoded by the slaves
+   */
+  public long getPartitionVersion() {
+    if (!isPartitioningEnabled() || !partitionVersionFile.exists()) {
+      return 0;
+    }
+    try (DataInputStream in = new DataInputStream(new FileInputStream(partitionVersionFile));) {
+      return in.readLong();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Persists the version of the dictionary partitions after all slaves have
+   * stored them.
+   * 
+   * @param version
+   */
+  public void setPartitionVersion(long version) {
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(partitionVersionFile));) {
+      out.writeLong(version);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Prevents the slaves from decoding query results until new dictionary
+   * partitions have been stored.
+   */
+  public void invalidatePartitions() {
+    if (partitionVersionFile != null) {
+      partitionVersionFile.delete();
+    }
+  }
+
   public boolean isEmpty() {
     return dictionary.isEmpty();
   }
@@ -272,7 +654,35 @@ public class DictionaryEncoder implements Closeable {
 	  return dictionary.size();
   }
 
+  public void flush() {
+    dictionary.flush();
+  }
+
+  public void createCheckpoint(File checkpointDir) {
+    dictionary.createCheckpoint(checkpointDir);
+    if ((partitionVersionFile != null) && partitionVersionFile.exists()) {
+      try {
+        Files.copy(partitionVersionFile.toPath(),
+            new File(checkpointDir, partitionVersionFile.getName()).toPath());
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  /**
+   * Replaces the persisted dictionary by the one of the checkpoint. The
+   * dictionary must not be opened.
+   * 
+   * @param conf
+   * @param checkpointDir
+   */
+  public static void restoreCheckpoint(Configuration conf, File checkpointDir) {
+    Checkpoints.restore(checkpointDir, new File(conf.getDictionaryDir(true)));
+  }
+
   public void clear() {
+    invalidatePartitions();
     dictionary.clear();
   }
 
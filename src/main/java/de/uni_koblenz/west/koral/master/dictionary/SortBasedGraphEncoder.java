@@ -0,0 +1,700 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.dictionary;
+
+import org.apache.jena.graph.Node;
+
+import de.uni_koblenz.west.koral.common.io.BlockCodec;
+import de.uni_koblenz.west.koral.common.io.EncodedFileOutputStream;
+import de.uni_koblenz.west.koral.common.io.EncodedLongFileInputStream;
+import de.uni_koblenz.west.koral.common.io.EncodedLongFileOutputStream;
+import de.uni_koblenz.west.koral.common.io.EncodingFileFormat;
+import de.uni_koblenz.west.koral.common.io.LongOutputWriter;
+import de.uni_koblenz.west.koral.common.io.Statement;
+import de.uni_koblenz.west.koral.common.utils.NumberConversion;
+import de.uni_koblenz.west.koral.common.utils.RDFFileIterator;
+import de.uni_koblenz.west.koral.master.dictionary.impl.RocksDBDictionary;
+import de.uni_koblenz.west.koral.master.dictionary.impl.RocksDBDictionary.BulkLoader;
+import de.uni_koblenz.west.koral.master.utils.DeSerializer;
+import de.uni_koblenz.west.koral.master.utils.FixedSizeLongArrayComparator;
+import de.uni_koblenz.west.koral.master.utils.InitialChunkProducer;
+import de.uni_koblenz.west.koral.master.utils.LongIterator;
+import de.uni_koblenz.west.koral.master.utils.Merger;
+import de.uni_koblenz.west.koral.master.utils.NWayMergeSort;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Encodes the original graph files with sequential I/O instead of a dictionary
+ * lookup per resource:
+ * <ol>
+ * <li>The graph files are parsed in parallel. Large uncompressed N-Triples and
+ * N-Quads files are split into ranges of lines which are parsed in parallel,
+ * too. Each parser writes sorted runs of (stored resource, statement position)
+ * pairs and the resources that are not encoded into a residual file.</li>
+ * <li>The runs are merged. Each distinct resource is encoded once by a
+ * {@link BulkLoader} which assigns the ids in one sequential pass. The
+ * (statement position, id) pairs are written per parsed file or range.</li>
+ * <li>The pairs of each parsed file or range are sorted by statement position
+ * in parallel.</li>
+ * <li>The statements of each parsed file or range are rebuilt in parallel by
+ * merging the sorted pairs with the residual file. Each file or range is
+ * written into its own segment of the output directory (see
+ * {@link de.uni_koblenz.west.koral.common.io.EncodedFileInputStream}).</li>
+ * </ol>
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+class SortBasedGraphEncoder {
+
+  private static final int MAX_NUMBER_OF_OPEN_FILES = 100;
+
+  /**
+   * line based graph files larger than this number of bytes are split into
+   * ranges which are parsed in parallel
+   */
+  private static final long MAX_RANGE_SIZE = 0x400_0000L;
+
+  /**
+   * maximal memory used for buffering resources or pairs, shared by all
+   * threads
+   */
+  private static final long MAX_CASH_SIZE = 0x1000_0000L;
+
+  /**
+   * estimated memory overhead of a buffered resource in bytes
+   */
+  private static final int TERM_OVERHEAD = 48;
+
+  /**
+   * estimated memory of a buffered (position, id) pair in bytes
+   */
+  private static final int PAIR_SIZE = 40;
+
+  /**
+   * the position of a resource is encoded as (rangeIndex &lt;&lt;
+   * FILE_INDEX_SHIFT) | (3 * statementIndex + positionInStatement)
+   */
+  private static final int FILE_INDEX_SHIFT = 40;
+
+  private static final long POSITION_MASK = (1L << SortBasedGraphEncoder.FILE_INDEX_SHIFT) - 1;
+
+  private final DictionaryEncoder dictionaryEncoder;
+
+  private final RocksDBDictionary dictionary;
+
+  /**
+   * codec of the written graph segments
+   */
+  private final BlockCodec encodedFileCodec;
+
+  private final Logger logger;
+
+  private final int numberOfThreads;
+
+  public SortBasedGraphEncoder(DictionaryEncoder dictionaryEncoder, RocksDBDictionary dictionary,
+      BlockCodec encodedFileCodec, Logger logger) {
+    this.dictionaryEncoder = dictionaryEncoder;
+    this.dictionary = dictionary;
+    this.encodedFileCodec = encodedFileCodec;
+    this.logger = logger;
+    numberOfThreads = Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * @param graphFiles
+   * @param workingDir
+   * @param outputFormat
+   * @param numberOfGraphChunks
+   * @param outputDir
+   *          directory into which one segment per parsed file or range is
+   *          written
+   */
+  public void encodeGraphFiles(File[] graphFiles, File workingDir, EncodingFileFormat outputFormat,
+      int numberOfGraphChunks, File outputDir) {
+    boolean[] isEncoded = new boolean[] { outputFormat.isSubjectEncoded(),
+        outputFormat.isPropertyEncoded(), outputFormat.isObjectEncoded() };
+    File tmpDir = new File(workingDir, "bulkEncoding");
+    tmpDir.mkdirs();
+    outputDir.mkdirs();
+    ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+    // the sorts run in executor, hence, their read tasks must not wait for its
+    // threads
+    ExecutorService readAheadExecutor = Executors.newFixedThreadPool(numberOfThreads);
+    try {
+      InputRange[] ranges = splitGraphFiles(graphFiles);
+
+      // parse graph files in parallel
+      long maxBufferSize = SortBasedGraphEncoder.MAX_CASH_SIZE / numberOfThreads;
+      long[] numberOfStatements = new long[ranges.length];
+      File[] residualFiles = new File[ranges.length];
+      List<Callable<List<File>>> parsers = new ArrayList<>();
+      for (int i = 0; i < ranges.length; i++) {
+        int rangeIndex = i;
+        residualFiles[i] = new File(tmpDir, "residual" + i);
+        parsers.add(() -> createSortedRuns(ranges[rangeIndex], rangeIndex, isEncoded,
+            residualFiles[rangeIndex], numberOfStatements, maxBufferSize, tmpDir));
+      }
+      List<File> runs = new ArrayList<>();
+      for (List<File> runsOfFile : invokeAll(executor, parsers)) {
+        runs.addAll(runsOfFile);
+      }
+
+      // encode all distinct resources
+      File[] positionFiles = new File[ranges.length];
+      encodeResources(runs, positionFiles, tmpDir);
+
+      // sort the ids of each range by statement position
+      int numberOfEncodedPositions = 0;
+      for (boolean isPositionEncoded : isEncoded) {
+        numberOfEncodedPositions += isPositionEncoded ? 1 : 0;
+      }
+      List<Callable<File>> sorters = new ArrayList<>();
+      for (int i = 0; i < positionFiles.length; i++) {
+        File positionFile = positionFiles[i];
+        long numberOfPairs = numberOfStatements[i] * numberOfEncodedPositions;
+        sorters.add(() -> sortByPosition(positionFile, numberOfPairs, tmpDir, maxBufferSize,
+            readAheadExecutor));
+      }
+      List<File> sortedPositionFiles = invokeAll(executor, sorters);
+
+      // rebuild statements of each range in parallel
+      List<Callable<Void>> writers = new ArrayList<>();
+      for (int i = 0; i < ranges.length; i++) {
+        int rangeIndex = i;
+        writers.add(() -> {
+          File sortedPositions = sortedPositionFiles.get(rangeIndex);
+          try (EncodedFileOutputStream out = new EncodedFileOutputStream(
+              new File(outputDir, String.format("segment%08d.gz", rangeIndex)), false,
+              encodedFileCodec);) {
+            writeStatements(numberOfStatements[rangeIndex], isEncoded, sortedPositions,
+                residualFiles[rangeIndex], outputFormat, numberOfGraphChunks, out);
+          }
+          sortedPositions.delete();
+          residualFiles[rangeIndex].delete();
+          return null;
+        });
+      }
+      invokeAll(executor, writers);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      executor.shutdownNow();
+      readAheadExecutor.shutdownNow();
+      for (File file : tmpDir.listFiles()) {
+        file.delete();
+      }
+      tmpDir.delete();
+    }
+  }
+
+  /**
+   * Splits large line based graph files at line breaks into ranges of at most
+   * about {@link #MAX_RANGE_SIZE} bytes. All ranges of one file share the same
+   * blank node scope.
+   */
+  private InputRange[] splitGraphFiles(File[] graphFiles) throws IOException {
+    List<InputRange> ranges = new ArrayList<>();
+    for (File graphFile : graphFiles) {
+      if (graphFile == null) {
+        continue;
+      }
+      long fileSize = graphFile.length();
+      if (!graphFile.isFile() || !RDFFileIterator.isSplittable(graphFile)
+          || (fileSize <= SortBasedGraphEncoder.MAX_RANGE_SIZE)) {
+        ranges.add(new InputRange(graphFile, 0, -1, null));
+        continue;
+      }
+      UUID blankNodeScope = UUID.randomUUID();
+      long numberOfRanges = ((fileSize - 1) / SortBasedGraphEncoder.MAX_RANGE_SIZE) + 1;
+      try (RandomAccessFile input = new RandomAccessFile(graphFile, "r");) {
+        long start = 0;
+        for (long i = 1; (i <= numberOfRanges) && (start < fileSize); i++) {
+          long end = i == numberOfRanges ? fileSize
+              : getNextLineStart(input, Math.max(start, (fileSize * i) / numberOfRanges));
+          if (end > start) {
+            ranges.add(new InputRange(graphFile, start, end, blankNodeScope));
+          }
+          start = end;
+        }
+      }
+    }
+    return ranges.toArray(new InputRange[ranges.size()]);
+  }
+
+  /**
+   * @return the offset of the first line that starts at or after the offset or
+   *         the file length
+   */
+  private long getNextLineStart(RandomAccessFile input, long offset) throws IOException {
+    if (offset == 0) {
+      return 0;
+    }
+    byte[] buffer = new byte[8192];
+    long position = offset - 1;
+    while (position < input.length()) {
+      input.seek(position);
+      int length = input.read(buffer);
+      for (int i = 0; i < length; i++) {
+        if (buffer[i] == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += length;
+    }
+    return input.length();
+  }
+
+  private <V> List<V> invokeAll(ExecutorService executor, List<Callable<V>> tasks) {
+    List<V> results = new ArrayList<>();
+    try {
+      for (Future<V> future : executor.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+    return results;
+  }
+
+  /**
+   * @return sorted runs of (resource, positions*)
+   */
+  private List<File> createSortedRuns(InputRange range, int rangeIndex, boolean[] isEncoded,
+      File residualFile, long[] numberOfStatements, long maxBufferSize, File tmpDir)
+      throws IOException {
+    List<File> runs = new ArrayList<>();
+    List<TermPosition> buffer = new ArrayList<>();
+    long bufferSize = 0;
+    long statementIndex = 0;
+    long filePrefix = ((long) rangeIndex) << SortBasedGraphEncoder.FILE_INDEX_SHIFT;
+    try (RDFFileIterator iter = range.end < 0 ? new RDFFileIterator(range.file, false, logger)
+        : new RDFFileIterator(range.file, range.start, range.end, range.blankNodeScope, logger);
+        DataOutputStream residual = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(residualFile)));) {
+      for (Node[] quad : iter) {
+        dictionaryEncoder.transformBlankNodes(quad);
+        for (int i = 0; i < isEncoded.length; i++) {
+          byte[] term = DeSerializer.serializeNode(quad[i]).getBytes("UTF-8");
+          if (isEncoded[i]) {
+            term = dictionary.toStoredValue(term);
+            buffer.add(new TermPosition(term, filePrefix | ((statementIndex * 3) + i)));
+            bufferSize += term.length + SortBasedGraphEncoder.TERM_OVERHEAD;
+          } else {
+            residual.writeInt(term.length);
+            residual.write(term);
+          }
+        }
+        statementIndex++;
+        if (bufferSize >= maxBufferSize) {
+          runs.add(writeRun(buffer, tmpDir));
+          buffer.clear();
+          bufferSize = 0;
+        }
+      }
+    }
+    if (!buffer.isEmpty()) {
+      runs.add(writeRun(buffer, tmpDir));
+    }
+    numberOfStatements[rangeIndex] = statementIndex;
+    return runs;
+  }
+
+  private File writeRun(List<TermPosition> buffer, File tmpDir) throws IOException {
+    buffer.sort((p1, p2) -> RocksDBDictionary.compareBytes(p1.term, p2.term));
+    File run = File.createTempFile("termRun-", "", tmpDir);
+    try (RunWriter writer = new RunWriter(run);) {
+      int start = 0;
+      for (int end = 1; end <= buffer.size(); end++) {
+        if ((end == buffer.size()) || !Arrays.equals(buffer.get(start).term, buffer.get(end).term)) {
+          long[] positions = new long[end - start];
+          for (int i = start; i < end; i++) {
+            positions[i - start] = buffer.get(i).position;
+          }
+          writer.write(buffer.get(start).term, positions, positions.length);
+          start = end;
+        }
+      }
+    }
+    return run;
+  }
+
+  private void encodeResources(List<File> runs, File[] positionFiles, File tmpDir)
+      throws IOException {
+    // reduce the number of runs so that they can be merged at once
+    while (runs.size() > SortBasedGraphEncoder.MAX_NUMBER_OF_OPEN_FILES) {
+      List<File> mergedRuns = new ArrayList<>();
+      for (int start = 0; start < runs.size(); start += SortBasedGraphEncoder.MAX_NUMBER_OF_OPEN_FILES) {
+        List<File> group = runs.subList(start,
+            Math.min(start + SortBasedGraphEncoder.MAX_NUMBER_OF_OPEN_FILES, runs.size()));
+        File mergedRun = File.createTempFile("termRun-", "", tmpDir);
+        try (RunWriter writer = new RunWriter(mergedRun);) {
+          mergeRuns(group, (term, positions, length) -> writer.write(term, positions, length));
+        }
+        mergedRuns.add(mergedRun);
+      }
+      runs = mergedRuns;
+    }
+
+    EncodedLongFileOutputStream[] outputs = new EncodedLongFileOutputStream[positionFiles.length];
+    try (BulkLoader loader = dictionary.startBulkLoad(tmpDir);) {
+      for (int i = 0; i < positionFiles.length; i++) {
+        positionFiles[i] = new File(tmpDir, "positions" + i);
+        outputs[i] = new EncodedLongFileOutputStream(positionFiles[i]);
+      }
+      mergeRuns(runs, (term, positions, length) -> {
+        long id = loader.encode(term);
+        for (int i = 0; i < length; i++) {
+          int rangeIndex = (int) (positions[i] >>> SortBasedGraphEncoder.FILE_INDEX_SHIFT);
+          outputs[rangeIndex].writeLong(positions[i] & SortBasedGraphEncoder.POSITION_MASK);
+          outputs[rangeIndex].writeLong(id);
+        }
+      });
+    } finally {
+      for (EncodedLongFileOutputStream output : outputs) {
+        if (output != null) {
+          output.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Merges the runs and passes each distinct resource with all its positions to
+   * the consumer. The runs are deleted afterwards.
+   */
+  private void mergeRuns(List<File> runs, RunConsumer consumer) throws IOException {
+    PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runs.size()),
+        (r1, r2) -> RocksDBDictionary.compareBytes(r1.term, r2.term));
+    try {
+      for (File run : runs) {
+        RunReader reader = new RunReader(run);
+        if (reader.next()) {
+          queue.add(reader);
+        } else {
+          reader.close();
+        }
+      }
+      long[] positions = new long[16];
+      while (!queue.isEmpty()) {
+        byte[] term = queue.peek().term;
+        int length = 0;
+        while (!queue.isEmpty() && Arrays.equals(term, queue.peek().term)) {
+          RunReader reader = queue.poll();
+          if ((length + reader.positions.length) > positions.length) {
+            positions = Arrays.copyOf(positions,
+                Math.max(positions.length * 2, length + reader.positions.length));
+          }
+          System.arraycopy(reader.positions, 0, positions, length, reader.positions.length);
+          length += reader.positions.length;
+          if (reader.next()) {
+            queue.add(reader);
+          } else {
+            reader.close();
+          }
+        }
+        consumer.consume(term, positions, length);
+      }
+    } finally {
+      for (RunReader reader : queue) {
+        reader.close();
+      }
+      for (File run : runs) {
+        run.delete();
+      }
+    }
+  }
+
+  /**
+   * @param readAheadExecutor
+   *          reads the chunks ahead during the merge
+   * @return (position, id)* sorted by position
+   */
+  private File sortByPosition(File positionFile, long numberOfPairs, File tmpDir,
+      long maxCashSize, ExecutorService readAheadExecutor) throws IOException {
+    InitialChunkProducer producer = null;
+    Merger merger = null;
+    try {
+      producer = new InitialChunkProducer() {
+
+        private long[][] elements;
+
+        private int nextIndex;
+
+        private EncodedLongFileInputStream input;
+
+        private LongIterator iterator;
+
+        @Override
+        public void loadNextChunk() throws IOException {
+          if (elements == null) {
+            elements = new long[(int) Math.max(1,
+                Math.min(numberOfPairs, maxCashSize / SortBasedGraphEncoder.PAIR_SIZE))][2];
+            input = new EncodedLongFileInputStream(positionFile);
+            iterator = input.iterator();
+          }
+          for (nextIndex = 0; (nextIndex < elements.length) && iterator.hasNext(); nextIndex++) {
+            elements[nextIndex][0] = iterator.next();
+            elements[nextIndex][1] = iterator.next();
+          }
+        }
+
+        @Override
+        public void sort(Comparator<long[]> comparator) {
+          Arrays.parallelSort(elements, 0, nextIndex, comparator);
+        }
+
+        @Override
+        public boolean hasNextChunk() {
+          return nextIndex > 0;
+        }
+
+        @Override
+        public void writeChunk(LongOutputWriter output) throws IOException {
+          for (int element = 0; element < nextIndex; element++) {
+            output.writeLong(elements[element][0]);
+            output.writeLong(elements[element][1]);
+          }
+        }
+
+        @Override
+        public void close() {
+          if (iterator != null) {
+            iterator.close();
+          }
+          if (input != null) {
+            try {
+              input.close();
+            } catch (IOException e) {
+              throw new RuntimeException(e);
+            }
+          }
+        }
+      };
+      merger = new Merger() {
+
+        @Override
+        public void startNextMergeLevel() {
+        }
+
+        @Override
+        public long[] readNextElement(LongIterator iterator) throws IOException {
+          return new long[] { iterator.next(), iterator.next() };
+        }
+
+        @Override
+        public void mergeAndWrite(BitSet indicesOfSmallestElement, long[][] elements,
+            LongIterator[] iterators, LongOutputWriter out) throws IOException {
+          for (int i = indicesOfSmallestElement.nextSetBit(0); i >= 0; i = indicesOfSmallestElement
+              .nextSetBit(i + 1)) {
+            out.writeLong(elements[i][0]);
+            out.writeLong(elements[i][1]);
+          }
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+      File sortedPositions = File.createTempFile("sortedPositions-", "", tmpDir);
+      NWayMergeSort sort = new NWayMergeSort(readAheadExecutor, false);
+      sort.sort(producer, merger, new FixedSizeLongArrayComparator(true, 0), tmpDir,
+          SortBasedGraphEncoder.MAX_NUMBER_OF_OPEN_FILES, sortedPositions);
+      return sortedPositions;
+    } finally {
+      if (producer != null) {
+        producer.close();
+      }
+      if (merger != null) {
+        merger.close();
+      }
+      positionFile.delete();
+    }
+  }
+
+  private void writeStatements(long numberOfStatements, boolean[] isEncoded,
+      File sortedPositions, File residualFile, EncodingFileFormat outputFormat,
+      int numberOfGraphChunks, EncodedFileOutputStream out) throws IOException {
+    int bitsetSize = numberOfGraphChunks / Byte.SIZE;
+    if ((numberOfGraphChunks % Byte.SIZE) != 0) {
+      bitsetSize += 1;
+    }
+    try (EncodedLongFileInputStream positionInput = new EncodedLongFileInputStream(sortedPositions);
+        DataInputStream residual = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(residualFile)));) {
+      LongIterator positions = positionInput.iterator();
+      byte[][] terms = new byte[isEncoded.length][];
+      for (long statementIndex = 0; statementIndex < numberOfStatements; statementIndex++) {
+        for (int i = 0; i < isEncoded.length; i++) {
+          if (isEncoded[i]) {
+            long position = positions.next();
+            if (position != ((statementIndex * 3) + i)) {
+              throw new IllegalStateException("Missing id for position " + ((statementIndex * 3) + i)
+                  + " of the graph file. Found id for position " + position + ".");
+            }
+            terms[i] = NumberConversion.long2bytes(positions.next());
+          } else {
+            terms[i] = new byte[residual.readInt()];
+            residual.readFully(terms[i]);
+          }
+        }
+        out.writeStatement(Statement.getStatement(outputFormat, terms[0], terms[1], terms[2],
+            new byte[bitsetSize]));
+      }
+      positions.close();
+    }
+  }
+
+  /**
+   * A graph file or the bytes [start, end) of a line based graph file.
+   */
+  private static class InputRange {
+
+    private final File file;
+
+    private final long start;
+
+    /**
+     * -1 if the complete file is parsed
+     */
+    private final long end;
+
+    private final UUID blankNodeScope;
+
+    public InputRange(File file, long start, long end, UUID blankNodeScope) {
+      this.file = file;
+      this.start = start;
+      this.end = end;
+      this.blankNodeScope = blankNodeScope;
+    }
+
+  }
+
+  private static class TermPosition {
+
+    private final byte[] term;
+
+    private final long position;
+
+    public TermPosition(byte[] term, long position) {
+      this.term = term;
+      this.position = position;
+    }
+
+  }
+
+  @FunctionalInterface
+  private static interface RunConsumer {
+
+    public void consume(byte[] term, long[] positions, int length) throws IOException;
+
+  }
+
+  /**
+   * Writes records of the format (termLength, term, numberOfPositions,
+   * position*).
+   */
+  private static class RunWriter implements Closeable {
+
+    private final DataOutputStream out;
+
+    public RunWriter(File run) throws IOException {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)));
+    }
+
+    public void write(byte[] term, long[] positions, int length) throws IOException {
+      out.writeInt(term.length);
+      out.write(term);
+      out.writeInt(length);
+      for (int i = 0; i < length; i++) {
+        out.writeLong(positions[i]);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      // end of run
+      out.writeInt(-1);
+      out.close();
+    }
+
+  }
+
+  private static class RunReader implements Closeable {
+
+    private final DataInputStream in;
+
+    private byte[] term;
+
+    private long[] positions;
+
+    public RunReader(File run) throws IOException {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+    }
+
+    public boolean next() throws IOException {
+      int termLength = in.readInt();
+      if (termLength < 0) {
+        term = null;
+        positions = null;
+        return false;
+      }
+      term = new byte[termLength];
+      in.readFully(term);
+      positions = new long[in.readInt()];
+      for (int i = 0; i < positions.length; i++) {
+        positions[i] = in.readLong();
+      }
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+
+  }
+
+}
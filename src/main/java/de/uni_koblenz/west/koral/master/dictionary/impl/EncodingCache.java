@@ -0,0 +1,249 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.dictionary.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+/**
+ * A bounded cache of the ids of encoded resources. The admission and eviction follows the W-TinyLFU policy: New
+ * entries are inserted into a small LRU window. An entry evicted from the window is only admitted to the main SLRU
+ * segment if it has been accessed more frequently than the entry it would replace. The access frequencies are
+ * approximated by a count-min sketch which is halved periodically so that old accesses age out.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ * @param <K>
+ *            type of the cached keys
+ */
+class EncodingCache<K> {
+
+	/**
+	 * rough estimate of the heap size of an entry without the key content, i.e., map entry, key wrapper and boxed id
+	 */
+	private static final int ENTRY_OVERHEAD = 96;
+
+	private static final int SKETCH_DEPTH = 4;
+
+	private static final int MAX_FREQUENCY = 15;
+
+	private static final int[] SEEDS = { 0x97cb3127, 0xb0bb0a07, 0x4b3e4a43, 0x6ce9f8b1 };
+
+	private final int maxWindowSize;
+
+	private final int maxProtectedSize;
+
+	private final int maxMainSize;
+
+	private final LinkedHashMap<K, Long> window;
+
+	private final LinkedHashMap<K, Long> probation;
+
+	private final LinkedHashMap<K, Long> protectedSegment;
+
+	private final byte[] sketch;
+
+	private final int sketchMask;
+
+	private final int sampleSize;
+
+	private int numberOfAdditions;
+
+	private long numberOfHits;
+
+	private long numberOfMisses;
+
+	private long numberOfEvictions;
+
+	private long sizeOfKeys;
+
+	private final KeySizeEstimator<K> keySizeEstimator;
+
+	public EncodingCache(int capacity, KeySizeEstimator<K> keySizeEstimator) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The capacity of the cache must be positive.");
+		}
+		this.keySizeEstimator = keySizeEstimator;
+		maxWindowSize = Math.max(1, capacity / 100);
+		maxMainSize = Math.max(1, capacity - maxWindowSize);
+		maxProtectedSize = Math.max(1, (maxMainSize * 4) / 5);
+		window = new LinkedHashMap<>(16, 0.75f, true);
+		probation = new LinkedHashMap<>(16, 0.75f, true);
+		protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+		int width = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+		sketch = new byte[width * EncodingCache.SKETCH_DEPTH];
+		sketchMask = width - 1;
+		sampleSize = 10 * capacity;
+	}
+
+	/**
+	 * @param key
+	 * @return the cached id or <code>null</code>
+	 */
+	public synchronized Long get(K key) {
+		increaseFrequency(key);
+		Long id = window.get(key);
+		if (id == null) {
+			id = protectedSegment.get(key);
+			if (id == null) {
+				id = probation.remove(key);
+				if (id != null) {
+					promote(key, id);
+				}
+			}
+		}
+		if (id == null) {
+			numberOfMisses++;
+		} else {
+			numberOfHits++;
+		}
+		return id;
+	}
+
+	private void promote(K key, Long id) {
+		protectedSegment.put(key, id);
+		if (protectedSegment.size() > maxProtectedSize) {
+			Entry<K, Long> demoted = removeEldest(protectedSegment);
+			probation.put(demoted.getKey(), demoted.getValue());
+		}
+	}
+
+	/**
+	 * Adds a key that was not found by {@link #get(Object)}.
+	 * 
+	 * @param key
+	 * @param id
+	 */
+	public synchronized void put(K key, long id) {
+		if (window.containsKey(key) || probation.containsKey(key) || protectedSegment.containsKey(key)) {
+			return;
+		}
+		window.put(key, id);
+		sizeOfKeys += keySizeEstimator.getSize(key);
+		if (window.size() <= maxWindowSize) {
+			return;
+		}
+		Entry<K, Long> candidate = removeEldest(window);
+		if ((probation.size() + protectedSegment.size()) < maxMainSize) {
+			probation.put(candidate.getKey(), candidate.getValue());
+			return;
+		}
+		LinkedHashMap<K, Long> victimSegment = probation.isEmpty() ? protectedSegment : probation;
+		K victim = victimSegment.keySet().iterator().next();
+		K evicted;
+		if (getFrequency(candidate.getKey()) > getFrequency(victim)) {
+			victimSegment.remove(victim);
+			probation.put(candidate.getKey(), candidate.getValue());
+			evicted = victim;
+		} else {
+			evicted = candidate.getKey();
+		}
+		sizeOfKeys -= keySizeEstimator.getSize(evicted);
+		numberOfEvictions++;
+	}
+
+	private Entry<K, Long> removeEldest(LinkedHashMap<K, Long> segment) {
+		Iterator<Entry<K, Long>> iterator = segment.entrySet().iterator();
+		Entry<K, Long> eldest = iterator.next();
+		iterator.remove();
+		return eldest;
+	}
+
+	private int getIndex(K key, int row) {
+		int hash = key.hashCode() * EncodingCache.SEEDS[row];
+		hash ^= hash >>> 16;
+		return (row * (sketchMask + 1)) + (hash & sketchMask);
+	}
+
+	private void increaseFrequency(K key) {
+		boolean isIncreased = false;
+		for (int row = 0; row < EncodingCache.SKETCH_DEPTH; row++) {
+			int index = getIndex(key, row);
+			if (sketch[index] < EncodingCache.MAX_FREQUENCY) {
+				sketch[index]++;
+				isIncreased = true;
+			}
+		}
+		if (isIncreased && (++numberOfAdditions >= sampleSize)) {
+			// let old accesses age out
+			for (int i = 0; i < sketch.length; i++) {
+				sketch[i] >>>= 1;
+			}
+			numberOfAdditions /= 2;
+		}
+	}
+
+	private int getFrequency(K key) {
+		int frequency = EncodingCache.MAX_FREQUENCY;
+		for (int row = 0; row < EncodingCache.SKETCH_DEPTH; row++) {
+			frequency = Math.min(frequency, sketch[getIndex(key, row)]);
+		}
+		return frequency;
+	}
+
+	public synchronized void clear() {
+		window.clear();
+		probation.clear();
+		protectedSegment.clear();
+		for (int i = 0; i < sketch.length; i++) {
+			sketch[i] = 0;
+		}
+		numberOfAdditions = 0;
+		sizeOfKeys = 0;
+	}
+
+	public synchronized long getNumberOfHits() {
+		return numberOfHits;
+	}
+
+	public synchronized long getNumberOfMisses() {
+		return numberOfMisses;
+	}
+
+	public synchronized long getNumberOfEvictions() {
+		return numberOfEvictions;
+	}
+
+	public synchronized int size() {
+		return window.size() + probation.size() + protectedSegment.size();
+	}
+
+	/**
+	 * @return estimated number of bytes occupied by the cache
+	 */
+	public synchronized long getEstimatedMemorySize() {
+		return sizeOfKeys + (((long) size()) * EncodingCache.ENTRY_OVERHEAD) + sketch.length;
+	}
+
+	public synchronized void resetStatistics() {
+		numberOfHits = 0;
+		numberOfMisses = 0;
+		numberOfEvictions = 0;
+	}
+
+	/**
+	 * Estimates the number of bytes occupied by the content of a key.
+	 */
+	@FunctionalInterface
+	static interface KeySizeEstimator<K> {
+		public int getSize(K key);
+	}
+
+}
@@ -27,6 +27,7 @@ import de.uni_koblenz.west.koral.common.mapDB.MapDBCacheOptions;
 import de.uni_koblenz.west.koral.common.mapDB.MapDBDataStructureOptions;
 import de.uni_koblenz.west.koral.common.mapDB.MapDBMapWrapper;
 import de.uni_koblenz.west.koral.common.mapDB.MapDBStorageOptions;
+import de.uni_koblenz.west.koral.common.utils.Checkpoints;
 import de.uni_koblenz.west.koral.master.dictionary.Dictionary;
 
 import java.io.File;
@@ -50,11 +51,16 @@ public class MapDBDictionary implements Dictionary {
 
   private final long maxID = 0x0000ffffffffffffl;
 
+  private final File dictionaryDir;
+
+  private final MapDBStorageOptions storageType;
+
   @SuppressWarnings("unchecked")
   public MapDBDictionary(MapDBStorageOptions storageType, MapDBDataStructureOptions dataStructure,
           String storageDir, boolean useTransactions, boolean writeAsynchronously,
           MapDBCacheOptions cacheType) {
-    File dictionaryDir = new File(storageDir);
+    dictionaryDir = new File(storageDir);
+    this.storageType = storageType;
     if (!dictionaryDir.exists()) {
       dictionaryDir.mkdirs();
     }
@@ -160,6 +166,14 @@ public class MapDBDictionary implements Dictionary {
   public void flush() {
   }
 
+  @Override
+  public void createCheckpoint(File checkpointDir) {
+    if (storageType == MapDBStorageOptions.MEMORY) {
+      throw new UnsupportedOperationException("An in-memory dictionary cannot be checkpointed.");
+    }
+    Checkpoints.copyDirectory(dictionaryDir, checkpointDir);
+  }
+
   @Override
   public void clear() {
     if (encoder != null) {
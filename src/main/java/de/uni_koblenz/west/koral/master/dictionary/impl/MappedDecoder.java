@@ -0,0 +1,447 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.dictionary.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Decodes densely assigned ids without database lookups: The uncompressed values are appended to a heap file in
+ * blocks of {@link #BLOCK_SIZE} ids. Within a block, the values are front coded, i.e., each value is stored as the
+ * length of the prefix it shares with its predecessor followed by the remaining suffix. Thus, decoding an id walks at
+ * most {@link #BLOCK_SIZE} entries. A second file contains the number of ids, the length of the heap and the start
+ * offset of each block. Both files are memory mapped in segments. Since the files are derived from the decoder
+ * database, they are truncated or extended on demand.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+class MappedDecoder implements AutoCloseable {
+
+	private static final int SEGMENT_SIZE = 1 << 30;
+
+	private static final int BLOCK_SIZE = 16;
+
+	/**
+	 * number of ids and heap length
+	 */
+	private static final int HEADER_SIZE = 2 * Long.BYTES;
+
+	private final File heapFile;
+
+	private final File offsetFile;
+
+	private DataOutputStream heapOutput;
+
+	private DataOutputStream offsetOutput;
+
+	private long heapSize;
+
+	private volatile MappedByteBuffer[] heapSegments;
+
+	private volatile MappedByteBuffer[] offsetSegments;
+
+	/**
+	 * Decoding only requires the read lock. The write lock is required to unmap the segments.
+	 */
+	private final ReadWriteLock lock;
+
+	/**
+	 * number of ids that can be decoded
+	 */
+	private volatile long size;
+
+	/**
+	 * number of appended ids including ids which are not mapped, yet
+	 */
+	private long appendedSize;
+
+	/**
+	 * last appended value, required for front coding
+	 */
+	private byte[] previousValue;
+
+	public MappedDecoder(File storageDir, long maxSize) {
+		heapFile = new File(storageDir, "decoder.heap");
+		offsetFile = new File(storageDir, "decoder.offsets");
+		heapSegments = new MappedByteBuffer[0];
+		offsetSegments = new MappedByteBuffer[0];
+		lock = new ReentrantReadWriteLock();
+		try {
+			truncateToConsistentSize(maxSize);
+			remap();
+			if ((appendedSize % MappedDecoder.BLOCK_SIZE) != 0) {
+				previousValue = get(appendedSize);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Removes entries that have been appended partially or that do not exist in the decoder database anymore, e.g.,
+	 * after a checkpoint has been restored.
+	 * 
+	 * @param maxSize
+	 * @throws IOException
+	 */
+	private void truncateToConsistentSize(long maxSize) throws IOException {
+		long numberOfIds = 0;
+		long heapLength = 0;
+		if (offsetFile.exists() && (offsetFile.length() >= MappedDecoder.HEADER_SIZE)) {
+			try (RandomAccessFile offsets = new RandomAccessFile(offsetFile, "r");
+					RandomAccessFile heap = new RandomAccessFile(heapFile, "rw");) {
+				numberOfIds = offsets.readLong();
+				heapLength = offsets.readLong();
+				if ((numberOfIds <= 0) || (heap.length() < heapLength)
+						|| (offsets.length() < getOffsetFileLength(numberOfIds))) {
+					// the header is written after the appended entries, hence, the files are corrupted
+					numberOfIds = 0;
+					heapLength = 0;
+				} else if (numberOfIds > maxSize) {
+					numberOfIds = maxSize;
+					heapLength = getHeapLength(offsets, heap, numberOfIds);
+				}
+			}
+		}
+		try (RandomAccessFile offsets = new RandomAccessFile(offsetFile, "rw");) {
+			offsets.setLength(getOffsetFileLength(numberOfIds));
+			offsets.writeLong(numberOfIds);
+			offsets.writeLong(heapLength);
+		}
+		try (RandomAccessFile heap = new RandomAccessFile(heapFile, "rw");) {
+			heap.setLength(heapLength);
+		}
+		appendedSize = numberOfIds;
+		heapSize = heapLength;
+		previousValue = null;
+	}
+
+	/**
+	 * @return the heap length required to store the first numberOfIds ids
+	 */
+	private long getHeapLength(RandomAccessFile offsets, RandomAccessFile heap, long numberOfIds) throws IOException {
+		offsets.seek(MappedDecoder.HEADER_SIZE + ((numberOfIds / MappedDecoder.BLOCK_SIZE) * Long.BYTES));
+		long position = offsets.readLong();
+		heap.seek(position);
+		for (long i = 0; i < (numberOfIds % MappedDecoder.BLOCK_SIZE); i++) {
+			readVInt(heap);
+			int suffixLength = readVInt(heap);
+			heap.seek(heap.getFilePointer() + suffixLength);
+		}
+		return heap.getFilePointer();
+	}
+
+	private int readVInt(RandomAccessFile heap) throws IOException {
+		int value = 0;
+		int shift = 0;
+		byte current;
+		do {
+			current = heap.readByte();
+			value |= (current & 0x7f) << shift;
+			shift += 7;
+		} while (current < 0);
+		return value;
+	}
+
+	private long getOffsetFileLength(long numberOfIds) {
+		long numberOfBlocks = (numberOfIds + MappedDecoder.BLOCK_SIZE - 1) / MappedDecoder.BLOCK_SIZE;
+		return MappedDecoder.HEADER_SIZE + (numberOfBlocks * Long.BYTES);
+	}
+
+	/**
+	 * @return number of ids that have been appended
+	 */
+	public long getAppendedSize() {
+		return appendedSize;
+	}
+
+	/**
+	 * Appends the value of the next id. It can be decoded after the next call of {@link #remap()}.
+	 * 
+	 * @param valueBytes
+	 */
+	public void append(byte[] valueBytes) {
+		try {
+			if (heapOutput == null) {
+				heapOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(heapFile, true)));
+				offsetOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(offsetFile, true)));
+			}
+			int prefixLength = 0;
+			if ((appendedSize % MappedDecoder.BLOCK_SIZE) == 0) {
+				offsetOutput.writeLong(heapSize);
+			} else {
+				int maxPrefixLength = Math.min(previousValue.length, valueBytes.length);
+				while ((prefixLength < maxPrefixLength) && (previousValue[prefixLength] == valueBytes[prefixLength])) {
+					prefixLength++;
+				}
+			}
+			heapSize += writeVInt(prefixLength);
+			heapSize += writeVInt(valueBytes.length - prefixLength);
+			heapOutput.write(valueBytes, prefixLength, valueBytes.length - prefixLength);
+			heapSize += valueBytes.length - prefixLength;
+			previousValue = valueBytes;
+			appendedSize++;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private int writeVInt(int value) throws IOException {
+		int numberOfBytes = 1;
+		while ((value & ~0x7f) != 0) {
+			heapOutput.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+			numberOfBytes++;
+		}
+		heapOutput.writeByte(value);
+		return numberOfBytes;
+	}
+
+	/**
+	 * Maps all appended values.
+	 */
+	public void remap() {
+		try {
+			closeOutputs();
+			// the header is written after the entries so that partially appended entries are ignored after a crash
+			try (RandomAccessFile offsets = new RandomAccessFile(offsetFile, "rw");) {
+				offsets.writeLong(appendedSize);
+				offsets.writeLong(heapSize);
+			}
+			MappedByteBuffer[] newHeapSegments = map(heapFile, heapSegments);
+			MappedByteBuffer[] newOffsetSegments = map(offsetFile, offsetSegments);
+			heapSegments = newHeapSegments;
+			offsetSegments = newOffsetSegments;
+			size = appendedSize;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Complete segments are reused. Only the last incomplete segment and new segments are mapped.
+	 */
+	private MappedByteBuffer[] map(File file, MappedByteBuffer[] segments) throws IOException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+				FileChannel channel = randomAccessFile.getChannel();) {
+			long length = channel.size();
+			int numberOfSegments = (int) ((length + MappedDecoder.SEGMENT_SIZE - 1) / MappedDecoder.SEGMENT_SIZE);
+			MappedByteBuffer[] newSegments = Arrays.copyOf(segments, numberOfSegments);
+			for (int i = 0; i < numberOfSegments; i++) {
+				long start = ((long) i) * MappedDecoder.SEGMENT_SIZE;
+				long segmentLength = Math.min(MappedDecoder.SEGMENT_SIZE, length - start);
+				if ((newSegments[i] == null) || (newSegments[i].capacity() != segmentLength)) {
+					newSegments[i] = channel.map(MapMode.READ_ONLY, start, segmentLength);
+				}
+			}
+			return newSegments;
+		}
+	}
+
+	/**
+	 * @return number of ids that can be decoded
+	 */
+	public long size() {
+		return size;
+	}
+
+	private long getBlockOffset(MappedByteBuffer[] offsets, long id) {
+		long position = MappedDecoder.HEADER_SIZE + (((id - 1) / MappedDecoder.BLOCK_SIZE) * Long.BYTES);
+		return offsets[(int) (position / MappedDecoder.SEGMENT_SIZE)]
+				.getLong((int) (position % MappedDecoder.SEGMENT_SIZE));
+	}
+
+	private byte getHeapByte(MappedByteBuffer[] heap, long position) {
+		return heap[(int) (position / MappedDecoder.SEGMENT_SIZE)].get((int) (position % MappedDecoder.SEGMENT_SIZE));
+	}
+
+	/**
+	 * @param id
+	 * @return the value of id or <code>null</code> if the id has not been mapped, yet
+	 */
+	public byte[] get(long id) {
+		lock.readLock().lock();
+		try {
+			if ((id <= 0) || (id > size)) {
+				return null;
+			}
+			MappedByteBuffer[] offsets = offsetSegments;
+			MappedByteBuffer[] heap = heapSegments;
+			long position = getBlockOffset(offsets, id);
+			byte[] value = new byte[0];
+			for (long currentID = (((id - 1) / MappedDecoder.BLOCK_SIZE) * MappedDecoder.BLOCK_SIZE)
+					+ 1; currentID <= id; currentID++) {
+				int prefixLength = 0;
+				int shift = 0;
+				byte current;
+				do {
+					current = getHeapByte(heap, position++);
+					prefixLength |= (current & 0x7f) << shift;
+					shift += 7;
+				} while (current < 0);
+				int suffixLength = 0;
+				shift = 0;
+				do {
+					current = getHeapByte(heap, position++);
+					suffixLength |= (current & 0x7f) << shift;
+					shift += 7;
+				} while (current < 0);
+				if (value.length != (prefixLength + suffixLength)) {
+					value = Arrays.copyOf(value, prefixLength + suffixLength);
+				}
+				for (int i = 0; i < suffixLength; i++) {
+					value[prefixLength + i] = getHeapByte(heap, position++);
+				}
+			}
+			return value;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Decodes a long value without materializing its bytes.
+	 * 
+	 * @param id
+	 *            must be smaller than or equal to {@link #size()}
+	 * @return
+	 */
+	public long getLong(long id) {
+		lock.readLock().lock();
+		try {
+			MappedByteBuffer[] offsets = offsetSegments;
+			MappedByteBuffer[] heap = heapSegments;
+			long position = getBlockOffset(offsets, id);
+			long value = 0;
+			for (long currentID = (((id - 1) / MappedDecoder.BLOCK_SIZE) * MappedDecoder.BLOCK_SIZE)
+					+ 1; currentID <= id; currentID++) {
+				// a long value has less than 128 bytes, hence, each length is stored in one byte
+				int prefixLength = getHeapByte(heap, position++);
+				int suffixLength = getHeapByte(heap, position++);
+				value = prefixLength == 0 ? 0 : value & (-1L << (Byte.SIZE * (Long.BYTES - prefixLength)));
+				for (int i = 0; i < suffixLength; i++) {
+					value |= (getHeapByte(heap, position++) & 0xffL) << (Byte.SIZE * (Long.BYTES - 1 - prefixLength - i));
+				}
+			}
+			return value;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void closeOutputs() throws IOException {
+		if (heapOutput != null) {
+			heapOutput.close();
+			heapOutput = null;
+		}
+		if (offsetOutput != null) {
+			offsetOutput.close();
+			offsetOutput = null;
+		}
+	}
+
+	/**
+	 * Unmaps all segments so that the files can be truncated. Readers must not access the segments afterwards.
+	 */
+	private void unmap() {
+		for (MappedByteBuffer[] segments : new MappedByteBuffer[][] { heapSegments, offsetSegments }) {
+			if (segments != null) {
+				for (MappedByteBuffer segment : segments) {
+					MappedDecoder.unmap(segment);
+				}
+			}
+		}
+		size = 0;
+		heapSegments = new MappedByteBuffer[0];
+		offsetSegments = new MappedByteBuffer[0];
+	}
+
+	/**
+	 * Releases the mapping immediately instead of waiting for the garbage collector.
+	 * 
+	 * @param buffer
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner;
+			try {
+				invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			} catch (NoSuchMethodException e) {
+				// Java 8
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+				return;
+			}
+			Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+			unsafeField.setAccessible(true);
+			invokeCleaner.invoke(unsafeField.get(null), buffer);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// the mapping is released by the garbage collector
+		}
+	}
+
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			closeOutputs();
+			unmap();
+			truncateToConsistentSize(0);
+			remap();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void close() {
+		lock.writeLock().lock();
+		try {
+			closeOutputs();
+			unmap();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+		heapSegments = null;
+		offsetSegments = null;
+	}
+
+}
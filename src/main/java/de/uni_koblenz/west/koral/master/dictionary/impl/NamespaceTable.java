@@ -0,0 +1,233 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.dictionary.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Replaces the namespace of IRIs, i.e., the prefix up to the last <code>/</code> or <code>#</code>, by a small
+ * integer. A compressed value starts with the v-byte encoded namespace id + 1 followed by the remaining suffix. Values
+ * without a known namespace start with 0 followed by the complete value. The namespaces are appended to a file in the
+ * order in which they have been assigned.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+class NamespaceTable implements AutoCloseable {
+
+	public static final int MAX_NUMBER_OF_NAMESPACES = 1 << 16;
+
+	private final File namespaceFile;
+
+	private final Map<ByteBuffer, Integer> namespace2id;
+
+	private volatile byte[][] namespaces;
+
+	private int numberOfNamespaces;
+
+	private DataOutputStream output;
+
+	public NamespaceTable(File namespaceFile) {
+		this.namespaceFile = namespaceFile;
+		namespace2id = new ConcurrentHashMap<>();
+		namespaces = new byte[16][];
+		try {
+			load();
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(namespaceFile, true)));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void load() throws IOException {
+		if (!namespaceFile.exists()) {
+			return;
+		}
+		long validLength = 0;
+		try (DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(namespaceFile)));) {
+			while (true) {
+				byte[] namespace = new byte[input.readInt()];
+				input.readFully(namespace);
+				add(namespace);
+				validLength += Integer.BYTES + namespace.length;
+			}
+		} catch (EOFException e) {
+			// the last namespace might have been written partially
+		}
+		try (RandomAccessFile file = new RandomAccessFile(namespaceFile, "rw");) {
+			file.setLength(validLength);
+		}
+	}
+
+	private int add(byte[] namespace) {
+		int id = numberOfNamespaces;
+		byte[][] currentNamespaces = namespaces;
+		if (id == currentNamespaces.length) {
+			currentNamespaces = Arrays.copyOf(currentNamespaces, currentNamespaces.length * 2);
+		}
+		currentNamespaces[id] = namespace;
+		// publish the new namespace
+		namespaces = currentNamespaces;
+		numberOfNamespaces++;
+		namespace2id.put(ByteBuffer.wrap(namespace), id);
+		return id;
+	}
+
+	/**
+	 * @param namespace
+	 * @param createNewNamespace
+	 * @return the id of the namespace or -1 if it is unknown and should not or cannot be created
+	 */
+	private int getID(byte[] namespace, boolean createNewNamespace) {
+		Integer id = namespace2id.get(ByteBuffer.wrap(namespace));
+		if (id != null) {
+			return id;
+		}
+		if (!createNewNamespace) {
+			return -1;
+		}
+		synchronized (this) {
+			id = namespace2id.get(ByteBuffer.wrap(namespace));
+			if (id != null) {
+				return id;
+			}
+			if (numberOfNamespaces >= NamespaceTable.MAX_NUMBER_OF_NAMESPACES) {
+				return -1;
+			}
+			try {
+				output.writeInt(namespace.length);
+				output.write(namespace);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return add(namespace);
+		}
+	}
+
+	/**
+	 * @param value
+	 * @param createNewNamespace
+	 *            if <code>false</code>, unknown namespaces are not added. Since namespaces are never removed, the
+	 *            compressed value of an existing entry is still found.
+	 * @return the compressed value
+	 */
+	public byte[] compress(byte[] value, boolean createNewNamespace) {
+		int last = value.length - 1;
+		if ((value.length > 2) && (value[0] == '<') && (value[last] == '>')) {
+			int separator = last - 1;
+			while ((separator > 0) && (value[separator] != '/') && (value[separator] != '#')) {
+				separator--;
+			}
+			if (separator > 0) {
+				int id = getID(Arrays.copyOf(value, separator + 1), createNewNamespace);
+				if (id >= 0) {
+					int idLength = getVIntLength(id + 1);
+					byte[] result = new byte[(idLength + value.length) - separator - 1];
+					writeVInt(id + 1, result);
+					System.arraycopy(value, separator + 1, result, idLength, value.length - separator - 1);
+					return result;
+				}
+			}
+		}
+		byte[] result = new byte[value.length + 1];
+		System.arraycopy(value, 0, result, 1, value.length);
+		return result;
+	}
+
+	public byte[] decompress(byte[] compressedValue) {
+		int id = 0;
+		int shift = 0;
+		int position = 0;
+		byte current;
+		do {
+			current = compressedValue[position++];
+			id |= (current & 0x7f) << shift;
+			shift += 7;
+		} while (current < 0);
+		byte[] namespace = id == 0 ? new byte[0] : namespaces[id - 1];
+		byte[] result = Arrays.copyOf(namespace, (namespace.length + compressedValue.length) - position);
+		System.arraycopy(compressedValue, position, result, namespace.length, compressedValue.length - position);
+		return result;
+	}
+
+	private int getVIntLength(int value) {
+		int length = 1;
+		while ((value & ~0x7f) != 0) {
+			value >>>= 7;
+			length++;
+		}
+		return length;
+	}
+
+	private void writeVInt(int value, byte[] result) {
+		int position = 0;
+		while ((value & ~0x7f) != 0) {
+			result[position++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		result[position] = (byte) value;
+	}
+
+	/**
+	 * Writes all new namespaces. It has to be called before values with these namespaces are persisted.
+	 */
+	public synchronized void flush() {
+		try {
+			output.flush();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public synchronized void clear() {
+		close();
+		namespace2id.clear();
+		namespaces = new byte[16][];
+		numberOfNamespaces = 0;
+		try {
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(namespaceFile, false)));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		try {
+			output.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
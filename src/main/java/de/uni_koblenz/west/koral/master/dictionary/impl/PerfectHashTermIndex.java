@@ -0,0 +1,315 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.dictionary.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.function.LongFunction;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * A minimal perfect hash function over all values of the dictionary, built with the hash-and-displace
+ * approach: The values are distributed into buckets of about {@link #AVERAGE_BUCKET_SIZE} values. Starting with the
+ * largest bucket, a displacement is searched for each bucket so that all its values are hashed to free slots. Buckets
+ * with a single value store the free slot directly. Each slot stores the final id of its value, i.e., including the
+ * owner, and a fingerprint of the value hash. Since the hash function maps unknown values to arbitrary slots, a hit
+ * has to be verified by decoding the id.
+ * 
+ * The index file consists of a header (number of values, number of buckets), the ids, the fingerprints and the
+ * displacements and is memory mapped. Closing the index does not unmap it, so that concurrent lookups do not fail.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+class PerfectHashTermIndex implements AutoCloseable {
+
+	private static final int AVERAGE_BUCKET_SIZE = 3;
+
+	private static final int MAX_DISPLACEMENT = 1 << 24;
+
+	private static final int SEGMENT_SIZE = 1 << 30;
+
+	private static final int HEADER_SIZE = 2 * Long.BYTES;
+
+	private final long numberOfValues;
+
+	private final long numberOfBuckets;
+
+	private final long fingerprintOffset;
+
+	private final long displacementOffset;
+
+	/**
+	 * <code>null</code> after the index has been closed
+	 */
+	private volatile MappedByteBuffer[] segments;
+
+	private PerfectHashTermIndex(File indexFile) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(indexFile, "r"); FileChannel channel = file.getChannel();) {
+			numberOfValues = file.readLong();
+			numberOfBuckets = file.readLong();
+			fingerprintOffset = PerfectHashTermIndex.HEADER_SIZE + (numberOfValues * Long.BYTES);
+			displacementOffset = fingerprintOffset + (numberOfValues * Integer.BYTES);
+			long length = channel.size();
+			MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + PerfectHashTermIndex.SEGMENT_SIZE - 1)
+					/ PerfectHashTermIndex.SEGMENT_SIZE)];
+			for (int i = 0; i < segments.length; i++) {
+				long start = ((long) i) * PerfectHashTermIndex.SEGMENT_SIZE;
+				segments[i] = channel.map(MapMode.READ_ONLY, start,
+						Math.min(PerfectHashTermIndex.SEGMENT_SIZE, length - start));
+			}
+			this.segments = segments;
+		}
+	}
+
+	/**
+	 * @param indexFile
+	 * @param maxNumberOfValues
+	 *            number of values in the dictionary
+	 * @return the index or <code>null</code> if it does not exist or has been built for more values
+	 */
+	public static PerfectHashTermIndex load(File indexFile, long maxNumberOfValues) {
+		if (!indexFile.exists()) {
+			return null;
+		}
+		try {
+			PerfectHashTermIndex index = new PerfectHashTermIndex(indexFile);
+			if (index.numberOfValues > maxNumberOfValues) {
+				index.close();
+				return null;
+			}
+			return index;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Builds the index for the ids 1 to numberOfValues. During the creation, about 32 bytes per value are required on
+	 * the heap.
+	 * 
+	 * @param indexFile
+	 * @param numberOfValues
+	 * @param valueOfID
+	 *            returns the value of an id
+	 * @param finalIDs
+	 *            returns the id including its owner
+	 * @return the index or <code>null</code> if no perfect hash function could be found
+	 */
+	public static PerfectHashTermIndex build(File indexFile, long numberOfValues, LongFunction<byte[]> valueOfID,
+			LongUnaryOperator finalIDs) {
+		if ((numberOfValues == 0) || (numberOfValues >= Integer.MAX_VALUE)) {
+			return null;
+		}
+		int n = (int) numberOfValues;
+		int numberOfBuckets = Math.max(1, n / PerfectHashTermIndex.AVERAGE_BUCKET_SIZE);
+		long[] hashes = new long[n];
+		int[] bucketStart = new int[numberOfBuckets + 1];
+		for (int i = 0; i < n; i++) {
+			hashes[i] = PerfectHashTermIndex.hash(valueOfID.apply(i + 1));
+			bucketStart[PerfectHashTermIndex.getBucket(hashes[i], numberOfBuckets) + 1]++;
+		}
+		for (int b = 0; b < numberOfBuckets; b++) {
+			bucketStart[b + 1] += bucketStart[b];
+		}
+		// values sorted by bucket
+		int[] values = new int[n];
+		int[] nextPosition = new int[numberOfBuckets];
+		System.arraycopy(bucketStart, 0, nextPosition, 0, numberOfBuckets);
+		int maxBucketSize = 0;
+		for (int i = 0; i < n; i++) {
+			int bucket = PerfectHashTermIndex.getBucket(hashes[i], numberOfBuckets);
+			values[nextPosition[bucket]++] = i;
+			maxBucketSize = Math.max(maxBucketSize, nextPosition[bucket] - bucketStart[bucket]);
+		}
+		nextPosition = null;
+		// buckets sorted by descending size
+		int[] sizeStart = new int[maxBucketSize + 2];
+		for (int b = 0; b < numberOfBuckets; b++) {
+			sizeStart[(maxBucketSize - (bucketStart[b + 1] - bucketStart[b])) + 1]++;
+		}
+		for (int s = 0; s <= maxBucketSize; s++) {
+			sizeStart[s + 1] += sizeStart[s];
+		}
+		int[] buckets = new int[numberOfBuckets];
+		for (int b = 0; b < numberOfBuckets; b++) {
+			buckets[sizeStart[maxBucketSize - (bucketStart[b + 1] - bucketStart[b])]++] = b;
+		}
+		sizeStart = null;
+
+		long[] slotIDs = new long[n];
+		int[] slotFingerprints = new int[n];
+		boolean[] isOccupied = new boolean[n];
+		int[] displacements = new int[numberOfBuckets];
+		int[] slots = new int[maxBucketSize];
+		int nextFreeSlot = 0;
+		for (int bucket : buckets) {
+			int start = bucketStart[bucket];
+			int size = bucketStart[bucket + 1] - start;
+			if (size == 0) {
+				break;
+			} else if (size == 1) {
+				while (isOccupied[nextFreeSlot]) {
+					nextFreeSlot++;
+				}
+				slots[0] = nextFreeSlot;
+				displacements[bucket] = -(nextFreeSlot + 1);
+			} else {
+				int displacement = 0;
+				while (!PerfectHashTermIndex.findSlots(hashes, values, start, size, displacement, n, isOccupied,
+						slots)) {
+					displacement++;
+					if (displacement >= PerfectHashTermIndex.MAX_DISPLACEMENT) {
+						// most probably two values have the same hash
+						return null;
+					}
+				}
+				displacements[bucket] = displacement;
+			}
+			for (int i = 0; i < size; i++) {
+				int value = values[start + i];
+				isOccupied[slots[i]] = true;
+				slotIDs[slots[i]] = finalIDs.applyAsLong(value + 1);
+				slotFingerprints[slots[i]] = PerfectHashTermIndex.getFingerprint(hashes[value]);
+			}
+		}
+
+		File tmpFile = new File(indexFile.getAbsolutePath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16));) {
+			out.writeLong(n);
+			out.writeLong(numberOfBuckets);
+			for (long id : slotIDs) {
+				out.writeLong(id);
+			}
+			for (int fingerprint : slotFingerprints) {
+				out.writeInt(fingerprint);
+			}
+			for (int displacement : displacements) {
+				out.writeInt(displacement);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		try {
+			Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			return new PerfectHashTermIndex(indexFile);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static boolean findSlots(long[] hashes, int[] values, int start, int size, int displacement,
+			int numberOfSlots, boolean[] isOccupied, int[] slots) {
+		for (int i = 0; i < size; i++) {
+			int slot = PerfectHashTermIndex.getSlot(hashes[values[start + i]], displacement, numberOfSlots);
+			if (isOccupied[slot]) {
+				return false;
+			}
+			for (int j = 0; j < i; j++) {
+				if (slots[j] == slot) {
+					return false;
+				}
+			}
+			slots[i] = slot;
+		}
+		return true;
+	}
+
+	private static long hash(byte[] value) {
+		// FNV-1a
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : value) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return PerfectHashTermIndex.mix(hash);
+	}
+
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private static int getBucket(long hash, long numberOfBuckets) {
+		return (int) Long.remainderUnsigned(hash, numberOfBuckets);
+	}
+
+	private static int getSlot(long hash, int displacement, long numberOfSlots) {
+		return (int) Long.remainderUnsigned(
+				PerfectHashTermIndex.mix(hash + ((displacement + 1) * 0x9e3779b97f4a7c15L)), numberOfSlots);
+	}
+
+	private static int getFingerprint(long hash) {
+		return (int) (hash >>> 32);
+	}
+
+	public long getNumberOfValues() {
+		return numberOfValues;
+	}
+
+	/**
+	 * @param value
+	 * @return the final id of the value, 0 if the value is not contained or -1 if the index has been closed. Since the
+	 *         value is not compared, the id has to be verified.
+	 */
+	public long getCandidate(byte[] value) {
+		MappedByteBuffer[] segments = this.segments;
+		if (segments == null) {
+			return -1;
+		}
+		long hash = PerfectHashTermIndex.hash(value);
+		long bucket = PerfectHashTermIndex.getBucket(hash, numberOfBuckets);
+		int displacement = getInt(segments, displacementOffset + (bucket * Integer.BYTES));
+		long slot = displacement < 0 ? -(displacement + 1)
+				: PerfectHashTermIndex.getSlot(hash, displacement, numberOfValues);
+		if (getInt(segments, fingerprintOffset + (slot * Integer.BYTES)) != PerfectHashTermIndex
+				.getFingerprint(hash)) {
+			return 0;
+		}
+		long position = PerfectHashTermIndex.HEADER_SIZE + (slot * Long.BYTES);
+		return segments[(int) (position / PerfectHashTermIndex.SEGMENT_SIZE)]
+				.getLong((int) (position % PerfectHashTermIndex.SEGMENT_SIZE));
+	}
+
+	private int getInt(MappedByteBuffer[] segments, long position) {
+		return segments[(int) (position / PerfectHashTermIndex.SEGMENT_SIZE)]
+				.getInt((int) (position % PerfectHashTermIndex.SEGMENT_SIZE));
+	}
+
+	@Override
+	public void close() {
+		segments = null;
+	}
+
+}
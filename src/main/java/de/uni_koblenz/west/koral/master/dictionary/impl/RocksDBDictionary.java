@@ -19,18 +19,28 @@
 package de.uni_koblenz.west.koral.master.dictionary.impl;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.function.LongUnaryOperator;
 
+import org.rocksdb.EnvOptions;
 import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.Slice;
+import org.rocksdb.SstFileWriter;
 import org.rocksdb.WriteBatch;
 import org.rocksdb.WriteOptions;
 
+import de.uni_koblenz.west.koral.common.utils.Checkpoints;
 import de.uni_koblenz.west.koral.common.utils.NumberConversion;
 import de.uni_koblenz.west.koral.master.dictionary.Dictionary;
 import de.uni_koblenz.west.koral.master.dictionary.LongDictionary;
@@ -43,6 +53,10 @@ public class RocksDBDictionary implements Dictionary, LongDictionary {
 
 	public static final int DEFAULT_MAX_BATCH_SIZE = 100000;
 
+	public static final int DEFAULT_CACHE_SIZE = 1000000;
+
+	public static final int DEFAULT_MAX_OPEN_FILES = 400;
+
 	private final String storageDir;
 
 	private final int maxOpenFiles;
@@ -55,15 +69,50 @@ public class RocksDBDictionary implements Dictionary, LongDictionary {
 
 	private WriteBatch decoderBatch;
 
+	/**
+	 * decodes all flushed ids without database lookups; it stores the uncompressed values
+	 */
+	private MappedDecoder mappedDecoder;
+
+	private final boolean compressNamespaces;
+
+	/**
+	 * replaces namespaces of IRIs by short ids in the stored keys and values; <code>null</code> if the dictionary
+	 * stores uncompressed values
+	 */
+	private NamespaceTable namespaces;
+
+	/**
+	 * maps the values to their final ids, i.e., including the owner, after a graph has been loaded; <code>null</code>
+	 * if it has not been built or if it is outdated
+	 */
+	private volatile PerfectHashTermIndex termIndex;
+
 	private Map<ArrayWrapper, byte[]> entriesInBatch;
 
 	private final int maxBatchEntries;
 
+	/**
+	 * caches the ids of frequently encoded resources in order to avoid database lookups; <code>null</code> if disabled
+	 */
+	private final EncodingCache<ArrayWrapper> cache;
+
 	/**
 	 * id 0 indicates that a string in a query has not been encoded yet
 	 */
 	private long nextID = 1;
 
+	/**
+	 * number of calls of {@link #internalFlush()}; it tells concurrent batch encodings whether values have been moved
+	 * from {@link #entriesInBatch} to the encoder database
+	 */
+	private long numberOfFlushes;
+
+	/**
+	 * number of entries written since the last compaction
+	 */
+	private long numberOfUncompactedEntries;
+
 	private final long maxID = 0x0000ffffffffffffL;
 
 	public RocksDBDictionary(String storageDir) {
@@ -71,12 +120,32 @@ public class RocksDBDictionary implements Dictionary, LongDictionary {
 	}
 
 	public RocksDBDictionary(String storageDir, int maxBatchEntries) {
-		this(storageDir, maxBatchEntries, 400);
+		this(storageDir, maxBatchEntries, RocksDBDictionary.DEFAULT_MAX_OPEN_FILES);
 	}
 
 	public RocksDBDictionary(String storageDir, int maxBatchEntries, int maxOpenFiles) {
+		this(storageDir, maxBatchEntries, maxOpenFiles, RocksDBDictionary.DEFAULT_CACHE_SIZE);
+	}
+
+	public RocksDBDictionary(String storageDir, int maxBatchEntries, int maxOpenFiles, int cacheSize) {
+		this(storageDir, maxBatchEntries, maxOpenFiles, cacheSize, false);
+	}
+
+	/**
+	 * @param storageDir
+	 * @param maxBatchEntries
+	 * @param maxOpenFiles
+	 * @param cacheSize
+	 * @param compressNamespaces
+	 *            if <code>true</code>, the namespaces of IRIs are stored only once. Existing dictionaries keep their
+	 *            format until they are cleared.
+	 */
+	public RocksDBDictionary(String storageDir, int maxBatchEntries, int maxOpenFiles, int cacheSize,
+			boolean compressNamespaces) {
+		this.compressNamespaces = compressNamespaces;
 		this.maxOpenFiles = maxOpenFiles;
 		this.maxBatchEntries = maxBatchEntries;
+		cache = cacheSize > 0 ? new EncodingCache<>(cacheSize, key -> key.array.length) : null;
 		this.storageDir = storageDir;
 		File dictionaryDir = new File(storageDir);
 		if (!dictionaryDir.exists()) {
@@ -90,6 +159,51 @@ public class RocksDBDictionary implements Dictionary, LongDictionary {
 			close();
 			throw new RuntimeException(e);
 		}
+		nextID = getLargestEncodedID() + 1;
+		File namespaceFile = getNamespaceFile();
+		if (isEmpty() ? compressNamespaces : namespaceFile.exists()) {
+			namespaces = new NamespaceTable(namespaceFile);
+		}
+		mappedDecoder = new MappedDecoder(dictionaryDir, nextID - 1);
+		synchronizeMappedDecoder();
+		termIndex = PerfectHashTermIndex.load(getTermIndexFile(), size());
+	}
+
+	/**
+	 * Appends all ids to the {@link MappedDecoder} that have been written to the decoder database since the last
+	 * synchronization.
+	 */
+	private void synchronizeMappedDecoder() {
+		long expectedID = mappedDecoder.getAppendedSize() + 1;
+		if (expectedID >= nextID) {
+			return;
+		}
+		try (RocksIterator iterator = decoder.newIterator();) {
+			for (iterator.seek(NumberConversion.long2bytes(expectedID)); iterator.isValid(); iterator.next()) {
+				if (NumberConversion.bytes2long(iterator.key()) != expectedID) {
+					throw new IllegalStateException("The id " + expectedID + " is missing in the decoder.");
+				}
+				mappedDecoder.append(fromStoredValue(iterator.value()));
+				expectedID++;
+			}
+		}
+		mappedDecoder.remap();
+	}
+
+	/**
+	 * Since the ids are stored as big endian longs, the last key of the decoder is the largest assigned id. This is
+	 * required to continue the encoding of a dictionary that has been persisted before.
+	 * 
+	 * @return the largest assigned id or 0 if the dictionary is empty
+	 */
+	private long getLargestEncodedID() {
+		try (RocksIterator iterator = decoder.newIterator();) {
+			iterator.seekToLast();
+			if (!iterator.isValid()) {
+				return 0;
+			}
+			return NumberConversion.bytes2long(iterator.key());
+		}
 	}
 
 	private Options getOptions(int maxOpenFiles) {
@@ -118,15 +232,102 @@ public class RocksDBDictionary implements Dictionary, LongDictionary {
 		return internalEncode(valueBytes, createNewEncodingForUnknownNodes);
 	}
 
+	private File getTermIndexFile() {
+		return new File(storageDir + File.separator + "termIndex");
+	}
+
+	/**
+	 * Builds a minimal perfect hash function over all encoded values that maps each value to its final id.
+	 * 
+	 * @param finalIDs
+	 *            returns the final id, i.e., including the owner, of an id
+	 */
+	public void buildTermIndex(LongUnaryOperator finalIDs) {
+		flush();
+		invalidateTermIndex();
+		termIndex = PerfectHashTermIndex.build(getTermIndexFile(), size(), this::getUncompressedValue, finalIDs);
+	}
+
+	/**
+	 * Removes the term index, e.g., since the owners of resources are changed.
+	 */
+	public void invalidateTermIndex() {
+		PerfectHashTermIndex index = termIndex;
+		termIndex = null;
+		if (index != null) {
+			index.close();
+		}
+		getTermIndexFile().delete();
+	}
+
+	/**
+	 * @param value
+	 * @return the final id of the value, 0 if the value has not been encoded or -1 if the term index cannot answer
+	 *         the lookup, i.e., it does not exist or the value might have been encoded after the index was built
+	 */
+	public long lookupInTermIndex(String value) {
+		PerfectHashTermIndex index = termIndex;
+		if (index == null) {
+			return -1;
+		}
+		byte[] valueBytes;
+		try {
+			valueBytes = value.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+		long candidate = index.getCandidate(valueBytes);
+		if (candidate == -1) {
+			// the index has been invalidated concurrently
+			return -1;
+		} else if (candidate != 0) {
+			// verify the candidate
+			long id = candidate & 0x00_00_ff_ff_ff_ff_ff_ffL;
+			if (Arrays.equals(valueBytes, getUncompressedValue(id))) {
+				return candidate;
+			}
+		}
+		return index.getNumberOfValues() == size() ? 0 : -1;
+	}
+
+	private File getNamespaceFile() {
+		return new File(storageDir + File.separator + "namespaces");
+	}
+
+	/**
+	 * @param valueBytes
+	 * @return the representation of the value in the encoder keys and decoder values
+	 */
+	public byte[] toStoredValue(byte[] valueBytes) {
+		return toStoredValue(valueBytes, true);
+	}
+
+	private byte[] toStoredValue(byte[] valueBytes, boolean createNewNamespace) {
+		return namespaces == null ? valueBytes : namespaces.compress(valueBytes, createNewNamespace);
+	}
+
+	private byte[] fromStoredValue(byte[] storedValue) {
+		return namespaces == null ? storedValue : namespaces.decompress(storedValue);
+	}
+
 	private long internalEncode(byte[] valueBytes, boolean createNewEncodingForUnknownNodes) {
+		ArrayWrapper cacheKey = new ArrayWrapper(valueBytes);
+		if (cache != null) {
+			Long cachedID = cache.get(cacheKey);
+			if (cachedID != null) {
+				return cachedID.longValue();
+			}
+		}
+		byte[] storedValue = toStoredValue(valueBytes, createNewEncodingForUnknownNodes);
+		ArrayWrapper key = storedValue == valueBytes ? cacheKey : new ArrayWrapper(storedValue);
 		byte[] id = null;
 		try {
-			// check cache, first
+			// check current batch, first
 			if (entriesInBatch != null) {
-				id = entriesInBatch.get(new ArrayWrapper(valueBytes));
+				id = entriesInBatch.get(key);
 			}
 			if (id == null) {
-				id = encoder.get(valueBytes);
+				id = encoder.get(storedValue);
 			}
 		} catch (RocksDBException e) {
 			close();
@@ -139,18 +340,110 @@ public class RocksDBDictionary implements Dictionary, LongDictionary {
 				return 0;
 			} else {
 				id = NumberConversion.long2bytes(nextID);
-				put(valueBytes, id);
+				put(key, id);
 				nextID++;
 			}
 		}
-		return NumberConversion.bytes2long(id);
+		long encodedID = NumberConversion.bytes2long(id);
+		if (cache != null) {
+			cache.put(cacheKey, encodedID);
+		}
+		return encodedID;
 	}
 
-	private void put(byte[] valueBytes, byte[] id) {
+	/**
+	 * The values are looked up in three steps. First, the cache and the current batch are checked while the
+	 * dictionary is locked. Second, the remaining values are sorted and looked up with one multi-get without holding
+	 * the lock so that several threads query the database in parallel. Finally, the values that are still unknown are
+	 * checked again and new ids are created while the dictionary is locked.
+	 */
+	@Override
+	public void encodeConcurrently(String[] values, int numberOfValues, long[] ids) {
+		ArrayWrapper[] cacheKeys = new ArrayWrapper[numberOfValues];
+		ArrayWrapper[] keys = new ArrayWrapper[numberOfValues];
+		List<Integer> missingValues = new ArrayList<>();
+		long flushesBeforeLookup;
+		synchronized (this) {
+			for (int i = 0; i < numberOfValues; i++) {
+				byte[] valueBytes;
+				try {
+					valueBytes = values[i].getBytes("UTF-8");
+				} catch (UnsupportedEncodingException e) {
+					throw new RuntimeException(e);
+				}
+				cacheKeys[i] = new ArrayWrapper(valueBytes);
+				if (cache != null) {
+					Long cachedID = cache.get(cacheKeys[i]);
+					if (cachedID != null) {
+						ids[i] = cachedID.longValue();
+						continue;
+					}
+				}
+				byte[] storedValue = toStoredValue(valueBytes, true);
+				keys[i] = storedValue == valueBytes ? cacheKeys[i] : new ArrayWrapper(storedValue);
+				byte[] id = entriesInBatch == null ? null : entriesInBatch.get(keys[i]);
+				if (id != null) {
+					ids[i] = NumberConversion.bytes2long(id);
+				} else {
+					missingValues.add(i);
+				}
+			}
+			flushesBeforeLookup = numberOfFlushes;
+		}
+		if (missingValues.isEmpty()) {
+			return;
+		}
+		missingValues.sort((i1, i2) -> RocksDBDictionary.compareBytes(keys[i1].array, keys[i2].array));
+		List<byte[]> lookedUpKeys = new ArrayList<>(missingValues.size());
+		for (Integer index : missingValues) {
+			lookedUpKeys.add(keys[index].array);
+		}
+		Map<byte[], byte[]> foundIDs;
+		try {
+			foundIDs = encoder.multiGet(lookedUpKeys);
+		} catch (RocksDBException e) {
+			throw new RuntimeException(e);
+		}
+		synchronized (this) {
+			for (Integer index : missingValues) {
+				int i = index.intValue();
+				byte[] id = foundIDs.get(keys[i].array);
+				try {
+					if ((id == null) && (entriesInBatch != null)) {
+						// the value might have been added concurrently or earlier in this batch
+						id = entriesInBatch.get(keys[i]);
+					}
+					if ((id == null) && (numberOfFlushes != flushesBeforeLookup)) {
+						// the value might have been moved to the database after the multi-get
+						id = encoder.get(keys[i].array);
+					}
+				} catch (RocksDBException e) {
+					close();
+					throw new RuntimeException(e);
+				}
+				if (id == null) {
+					if (nextID > maxID) {
+						throw new RuntimeException("The maximum number of Strings have been encoded.");
+					}
+					id = NumberConversion.long2bytes(nextID);
+					put(keys[i], id);
+					nextID++;
+				}
+				ids[i] = NumberConversion.bytes2long(id);
+				if (cache != null) {
+					cache.put(cacheKeys[i], ids[i]);
+				}
+			}
+		}
+	}
+
+	private void put(ArrayWrapper key, byte[] id) {
+		byte[] valueBytes = key.array;
 		if (entriesInBatch == null) {
 			entriesInBatch = new HashMap<>();
 		}
-		entriesInBatch.put(new ArrayWrapper(valueBytes), id);
+		entriesInBatch.put(key, id);
+		numberOfUncompactedEntries++;
 		if (encoderBatch == null) {
 			encoderBatch = new WriteBatch();
 		}
@@ -164,15 +457,87 @@ public class RocksDBDictionary implements Dictionary, LongDictionary {
 		}
 	}
 
+	/**
+	 * @return number of encodings answered by the cache, number of encodings that required a database lookup, number
+	 *         of evicted cache entries, number of cached entries and the estimated memory size of the cache in bytes
+	 *         or <code>null</code> if caching is disabled
+	 */
+	public long[] getCacheStatistics() {
+		if (cache == null) {
+			return null;
+		}
+		return new long[] { cache.getNumberOfHits(), cache.getNumberOfMisses(), cache.getNumberOfEvictions(),
+				cache.size(), cache.getEstimatedMemorySize() };
+	}
+
+	public void resetCacheStatistics() {
+		if (cache != null) {
+			cache.resetStatistics();
+		}
+	}
+
+	/**
+	 * Starts the encoding of resources that are given in ascending byte order of their stored values (see
+	 * {@link #toStoredValue(byte[])}). The existing entries are read sequentially and the new entries are written into
+	 * sorted table files which are added to the databases at once. During the bulk load, no other method of this
+	 * dictionary may be called.
+	 * 
+	 * @param workingDir
+	 *            directory where the table files are created
+	 * @return the loader that has to be closed in order to add the new entries to the dictionary
+	 */
+	public BulkLoader startBulkLoad(File workingDir) {
+		internalFlush();
+		return new BulkLoader(workingDir);
+	}
+
+	/**
+	 * Compares byte arrays in the same way as the default comparator of RocksDB, i.e., lexicographically with unsigned
+	 * bytes.
+	 * 
+	 * @param array1
+	 * @param array2
+	 * @return
+	 */
+	public static int compareBytes(byte[] array1, byte[] array2) {
+		int length = Math.min(array1.length, array2.length);
+		for (int i = 0; i < length; i++) {
+			int comparison = (array1[i] & 0xff) - (array2[i] & 0xff);
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return array1.length - array2.length;
+	}
+
+	/**
+	 * @param id
+	 * @return the uncompressed value of the id or <code>null</code> if it has not been encoded
+	 */
+	private byte[] getUncompressedValue(long id) {
+		byte[] valueBytes = mappedDecoder.get(id);
+		if (valueBytes != null) {
+			return valueBytes;
+		}
+		try {
+			// the id has not been flushed, yet
+			valueBytes = decoder.get(NumberConversion.long2bytes(id));
+		} catch (RocksDBException e) {
+			close();
+			throw new RuntimeException(e);
+		}
+		return valueBytes == null ? null : fromStoredValue(valueBytes);
+	}
+
 	@Override
 	public String decode(long id) {
+		byte[] valueBytes = getUncompressedValue(id);
+		if (valueBytes == null) {
+			return null;
+		}
 		try {
-			byte[] valueBytes = decoder.get(NumberConversion.long2bytes(id));
-			if (valueBytes == null) {
-				return null;
-			}
 			return new String(valueBytes, "UTF-8");
-		} catch (RocksDBException | UnsupportedEncodingException e) {
+		} catch (UnsupportedEncodingException e) {
 			close();
 			throw new RuntimeException(e);
 		}
@@ -180,16 +545,14 @@ public class RocksDBDictionary implements Dictionary, LongDictionary {
 
 	@Override
 	public long decodeLong(long id) {
-		try {
-			byte[] valueBytes = decoder.get(NumberConversion.long2bytes(id));
-			if (valueBytes == null) {
-				throw new NoSuchElementException("The id " + id + " has not been encoded, yet.");
-			}
-			return NumberConversion.bytes2long(valueBytes);
-		} catch (RocksDBException e) {
-			close();
-			throw new RuntimeException(e);
+		if ((id > 0) && (id <= mappedDecoder.size())) {
+			return mappedDecoder.getLong(id);
+		}
+		byte[] valueBytes = getUncompressedValue(id);
+		if (valueBytes == null) {
+			throw new NoSuchElementException("The id " + id + " has not been encoded, yet.");
 		}
+		return NumberConversion.bytes2long(valueBytes);
 	}
 
 	@Override
@@ -205,16 +568,41 @@ public class RocksDBDictionary implements Dictionary, LongDictionary {
 	@Override
 	public void flush() {
 		internalFlush();
+		synchronizeMappedDecoder();
+		if (numberOfUncompactedEntries < maxBatchEntries) {
+			// compacting the complete database does not pay off for a few new entries, e.g., after an update
+			return;
+		}
 		try {
 			encoder.compactRange();
 			decoder.compactRange();
+			numberOfUncompactedEntries = 0;
 		} catch (RocksDBException e) {
 			close();
 			throw new RuntimeException(e);
 		}
 	}
 
+	@Override
+	public void createCheckpoint(File checkpointDir) {
+		internalFlush();
+		Checkpoints.createRocksDBCheckpoint(encoder, new File(checkpointDir, "encoder"));
+		Checkpoints.createRocksDBCheckpoint(decoder, new File(checkpointDir, "decoder"));
+		if (namespaces != null) {
+			try {
+				Files.copy(getNamespaceFile().toPath(), new File(checkpointDir, "namespaces").toPath());
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
 	private void internalFlush() {
+		numberOfFlushes++;
+		if (namespaces != null) {
+			// the namespaces must be persisted before the values that use them
+			namespaces.flush();
+		}
 		try {
 			WriteOptions writeOpts = new WriteOptions();
 			if (encoderBatch != null) {
@@ -235,6 +623,10 @@ public class RocksDBDictionary implements Dictionary, LongDictionary {
 
 	@Override
 	public void clear() {
+		if (cache != null) {
+			cache.clear();
+		}
+		invalidateTermIndex();
 		close();
 		Options options = getOptions(maxOpenFiles);
 		try {
@@ -249,6 +641,19 @@ public class RocksDBDictionary implements Dictionary, LongDictionary {
 			throw new RuntimeException(e);
 		}
 		nextID = 1;
+		if (compressNamespaces) {
+			if (namespaces != null) {
+				namespaces.clear();
+			} else {
+				// the previous uncompressed values have been removed
+				namespaces = new NamespaceTable(getNamespaceFile());
+			}
+		} else if (namespaces != null) {
+			// the previous compressed values have been removed
+			namespaces = null;
+			getNamespaceFile().delete();
+		}
+		mappedDecoder.clear();
 	}
 
 	private void deleteFile(File file) {
@@ -279,21 +684,182 @@ public class RocksDBDictionary implements Dictionary, LongDictionary {
 		if (decoder != null) {
 			decoder.close();
 		}
+		if (mappedDecoder != null) {
+			mappedDecoder.close();
+		}
+		if (namespaces != null) {
+			namespaces.close();
+		}
+		if (termIndex != null) {
+			termIndex.close();
+		}
+	}
+
+	/**
+	 * Encodes resources in ascending byte order.
+	 */
+	public class BulkLoader implements AutoCloseable {
+
+		private final EnvOptions envOptions;
+
+		private final Options options;
+
+		/**
+		 * iterates over the previously encoded resources in order to find existing encodings; <code>null</code> if
+		 * the dictionary was empty
+		 */
+		private final RocksIterator existingEntries;
+
+		private final File encoderFile;
+
+		private SstFileWriter encoderWriter;
+
+		private final File decoderFile;
+
+		private SstFileWriter decoderWriter;
+
+		private long numberOfNewEntries;
+
+		private byte[] previousValue;
+
+		BulkLoader(File workingDir) {
+			envOptions = new EnvOptions();
+			options = getOptions(maxOpenFiles);
+			encoderFile = new File(workingDir, "bulkEncoder.sst");
+			decoderFile = new File(workingDir, "bulkDecoder.sst");
+			encoderFile.delete();
+			decoderFile.delete();
+			if (isEmpty()) {
+				existingEntries = null;
+			} else {
+				existingEntries = encoder.newIterator();
+				existingEntries.seekToFirst();
+			}
+			try {
+				if (existingEntries == null) {
+					// the new entries cannot overlap with existing ones
+					encoderWriter = new SstFileWriter(envOptions, options);
+					encoderWriter.open(encoderFile.getAbsolutePath());
+				}
+				// new ids are always larger than the existing ones
+				decoderWriter = new SstFileWriter(envOptions, options);
+				decoderWriter.open(decoderFile.getAbsolutePath());
+			} catch (RocksDBException e) {
+				close();
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * @param storedValue
+		 *            the value as returned by {@link RocksDBDictionary#toStoredValue(byte[])}; it must be larger than
+		 *            the previously encoded value
+		 * @return the id of the value
+		 */
+		public long encode(byte[] storedValue) {
+			if ((previousValue != null) && (RocksDBDictionary.compareBytes(previousValue, storedValue) >= 0)) {
+				throw new IllegalArgumentException("The resources have to be encoded in ascending order.");
+			}
+			previousValue = storedValue;
+			if (existingEntries != null) {
+				while (existingEntries.isValid()
+						&& (RocksDBDictionary.compareBytes(existingEntries.key(), storedValue) < 0)) {
+					existingEntries.next();
+				}
+				if (existingEntries.isValid() && Arrays.equals(existingEntries.key(), storedValue)) {
+					return NumberConversion.bytes2long(existingEntries.value());
+				}
+			}
+			if (nextID > maxID) {
+				throw new RuntimeException("The maximum number of Strings have been encoded.");
+			}
+			long id = nextID++;
+			numberOfNewEntries++;
+			byte[] idBytes = NumberConversion.long2bytes(id);
+			try {
+				if (encoderWriter != null) {
+					add(encoderWriter, storedValue, idBytes);
+				} else {
+					if (encoderBatch == null) {
+						encoderBatch = new WriteBatch();
+					}
+					encoderBatch.put(storedValue, idBytes);
+					if ((numberOfNewEntries % maxBatchEntries) == 0) {
+						encoder.write(new WriteOptions(), encoderBatch);
+						encoderBatch = null;
+					}
+				}
+				add(decoderWriter, idBytes, storedValue);
+			} catch (RocksDBException e) {
+				close();
+				throw new RuntimeException(e);
+			}
+			return id;
+		}
+
+		private void add(SstFileWriter writer, byte[] key, byte[] value) throws RocksDBException {
+			try (Slice keySlice = new Slice(key); Slice valueSlice = new Slice(value);) {
+				writer.add(keySlice, valueSlice);
+			}
+		}
+
+		@Override
+		public void close() {
+			if (namespaces != null) {
+				namespaces.flush();
+			}
+			try {
+				if (existingEntries != null) {
+					existingEntries.close();
+				}
+				finish(encoderWriter, encoder, encoderFile);
+				finish(decoderWriter, decoder, decoderFile);
+				internalFlush();
+			} catch (RocksDBException e) {
+				throw new RuntimeException(e);
+			} finally {
+				if (encoderWriter != null) {
+					encoderWriter.close();
+					encoderWriter = null;
+				}
+				if (decoderWriter != null) {
+					decoderWriter.close();
+					decoderWriter = null;
+				}
+				encoderFile.delete();
+				decoderFile.delete();
+				options.close();
+				envOptions.close();
+			}
+		}
+
+		private void finish(SstFileWriter writer, RocksDB database, File file) throws RocksDBException {
+			if ((writer == null) || (numberOfNewEntries == 0)) {
+				return;
+			}
+			writer.finish();
+			// the file is moved into the database
+			database.addFileWithFilePath(file.getAbsolutePath(), true);
+		}
+
 	}
 
 	private static class ArrayWrapper {
 		private final byte[] array;
 
+		/**
+		 * the wrapped array must not be modified, since its hash code is computed only once
+		 */
+		private final int hashCode;
+
 		public ArrayWrapper(byte[] array) {
 			this.array = array;
+			hashCode = 31 + Arrays.hashCode(array);
 		}
 
 		@Override
 		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = (prime * result) + Arrays.hashCode(array);
-			return result;
+			return hashCode;
 		}
 
 		@Override
@@ -308,7 +874,7 @@ public class RocksDBDictionary implements Dictionary, LongDictionary {
 				return false;
 			}
 			ArrayWrapper other = (ArrayWrapper) obj;
-			if (!Arrays.equals(array, other.array)) {
+			if ((hashCode != other.hashCode) || !Arrays.equals(array, other.array)) {
 				return false;
 			}
 			return true;
@@ -26,6 +26,37 @@ package de.uni_koblenz.west.koral.master.graph_cover_creator;
  */
 public enum CoverStrategyType {
 
-  HASH, HIERARCHICAL, MIN_EDGE_CUT, VERTICAL, EDGE_COLORING, MOLECULE_HASH, MEC_OVER;
+  HASH, HIERARCHICAL, MIN_EDGE_CUT, VERTICAL, EDGE_COLORING, MOLECULE_HASH, MEC_OVER, FAST_HASH,
+  MULTILEVEL, STREAMING, PARALLEL_EDGE_COLORING;
+
+  /**
+   * @return <code>true</code> if a graph can be added to an already loaded
+   *         graph with this strategy
+   */
+  public boolean supportsIncrementalLoading() {
+    switch (this) {
+      case HASH:
+      case FAST_HASH:
+      case MOLECULE_HASH:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * @return the names of all strategies that support incremental loading
+   */
+  public static String getIncrementalStrategyNames() {
+    StringBuilder sb = new StringBuilder();
+    String delim = "";
+    for (CoverStrategyType type : CoverStrategyType.values()) {
+      if (type.supportsIncrementalLoading()) {
+        sb.append(delim).append(type.name());
+        delim = ", ";
+      }
+    }
+    return sb.toString();
+  }
 
 }
@@ -18,13 +18,19 @@
  */
 package de.uni_koblenz.west.koral.master.graph_cover_creator;
 
+import de.uni_koblenz.west.koral.common.io.BlockCodec;
 import de.uni_koblenz.west.koral.common.measurement.MeasurementCollector;
+import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.GraphCoverCreatorBase;
+import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.FastHashCoverCreator;
 import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.GreedyEdgeColoringCoverCreator;
 import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.HashCoverCreator;
 import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.HierarchicalCoverCreator;
 import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.MinimalEdgeCutCover;
 import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.MinimalEdgeCutOverCover;
 import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.MoleculeHashCoverCreator;
+import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.MultilevelEdgeCutCover;
+import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.ParallelGreedyEdgeColoringCoverCreator;
+import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.StreamingCoverCreator;
 import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.VerticalCoverCreator;
 
 import java.util.logging.Logger;
@@ -38,6 +44,25 @@ import java.util.logging.Logger;
  */
 public class GraphCoverCreatorFactory {
 
+  /**
+   * @param strategy
+   * @param encodedFileCodec
+   *          codec of the written graph chunks
+   * @param logger
+   * @param measurementCollector
+   * @return the cover creator of strategy which writes its chunks with
+   *         encodedFileCodec
+   */
+  public static GraphCoverCreator getGraphCoverCreator(CoverStrategyType strategy,
+          BlockCodec encodedFileCodec, Logger logger, MeasurementCollector measurementCollector) {
+    GraphCoverCreator coverCreator = GraphCoverCreatorFactory.getGraphCoverCreator(strategy,
+            logger, measurementCollector);
+    if (coverCreator instanceof GraphCoverCreatorBase) {
+      ((GraphCoverCreatorBase) coverCreator).setEncodedFileCodec(encodedFileCodec);
+    }
+    return coverCreator;
+  }
+
   public static GraphCoverCreator getGraphCoverCreator(CoverStrategyType strategy, Logger logger,
           MeasurementCollector measurementCollector) {
     switch (strategy) {
@@ -55,6 +80,14 @@ public class GraphCoverCreatorFactory {
         return new MoleculeHashCoverCreator(logger, measurementCollector);
       case MEC_OVER:
         return new MinimalEdgeCutOverCover(logger, measurementCollector);
+      case FAST_HASH:
+        return new FastHashCoverCreator(logger, measurementCollector);
+      case MULTILEVEL:
+        return new MultilevelEdgeCutCover(logger, measurementCollector);
+      case STREAMING:
+        return new StreamingCoverCreator(logger, measurementCollector);
+      case PARALLEL_EDGE_COLORING:
+        return new ParallelGreedyEdgeColoringCoverCreator(logger, measurementCollector);
       default:
         return null;
 
@@ -18,41 +18,89 @@
  */
 package de.uni_koblenz.west.koral.master.graph_cover_creator;
 
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
-
+import de.uni_koblenz.west.koral.common.io.BlockCodec;
 import de.uni_koblenz.west.koral.common.io.EncodedFileInputStream;
 import de.uni_koblenz.west.koral.common.io.EncodedFileOutputStream;
+import de.uni_koblenz.west.koral.common.io.EncodedLongFileInputStream;
 import de.uni_koblenz.west.koral.common.io.EncodingFileFormat;
+import de.uni_koblenz.west.koral.common.io.LongOutputWriter;
 import de.uni_koblenz.west.koral.common.io.Statement;
-import de.uni_koblenz.west.koral.common.mapDB.MapDBCacheOptions;
-import de.uni_koblenz.west.koral.common.mapDB.MapDBStorageOptions;
 import de.uni_koblenz.west.koral.common.measurement.MeasurementCollector;
 import de.uni_koblenz.west.koral.common.measurement.MeasurementType;
+import de.uni_koblenz.west.koral.common.utils.Deleter;
 import de.uni_koblenz.west.koral.common.utils.NumberConversion;
-import de.uni_koblenz.west.koral.master.utils.MoleculeListIterator;
-import de.uni_koblenz.west.koral.master.utils.MoleculeLists;
+import de.uni_koblenz.west.koral.master.utils.CompressedLongBitmap;
+import de.uni_koblenz.west.koral.master.utils.FixedSizeLongArrayComparator;
+import de.uni_koblenz.west.koral.master.utils.InitialChunkProducer;
+import de.uni_koblenz.west.koral.master.utils.LongIterator;
+import de.uni_koblenz.west.koral.master.utils.Merger;
+import de.uni_koblenz.west.koral.master.utils.NWayMergeSort;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileSystems;
-import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
+/**
+ * Extends each graph chunk by all triples that can be reached within n hops
+ * from its subjects.<br>
+ * The subjects of each chunk are stored as {@link CompressedLongBitmap} over
+ * the ids without owner. All triples are sorted by subject into one file.
+ * Each hop is a sweep over this file in which every chunk adds the objects
+ * of the subjects that it has reached in the previous hop. The triples are
+ * read in batches that are processed by all chunks in parallel.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
 public class NHopReplicator {
 
+  /**
+   * the upper 16 bits of fully encoded ids contain the owner
+   */
+  private static final long ID_WITHOUT_OWNER_MASK = 0x0000ffffffffffffL;
+
+  private static final int BATCH_SIZE = 0x10000;
+
+  private static final long MAX_CASH_SIZE = 0x4000000;
+
+  private static final int MAX_NUMBER_OF_OPEN_FILES = 100;
+
   private final Logger logger;
 
   private final MeasurementCollector measurementCollector;
 
+  private final int numberOfThreads;
+
+  /**
+   * codec of the written graph chunks
+   */
+  private BlockCodec encodedFileCodec;
+
   public NHopReplicator(Logger logger, MeasurementCollector measurementCollector) {
+    this(logger, measurementCollector, Runtime.getRuntime().availableProcessors());
+  }
+
+  public NHopReplicator(Logger logger, MeasurementCollector measurementCollector,
+          int numberOfThreads) {
     this.logger = logger;
     this.measurementCollector = measurementCollector;
+    this.numberOfThreads = Math.max(1, numberOfThreads);
+    encodedFileCodec = EncodedFileOutputStream.DEFAULT_CODEC;
+  }
+
+  public void setEncodedFileCodec(BlockCodec encodedFileCodec) {
+    this.encodedFileCodec = encodedFileCodec;
   }
 
   public File[] createNHopReplication(File[] graphCover, File workingDir, int numberOfHops) {
@@ -63,54 +111,44 @@ public class NHopReplicator {
     File[] nHopReplicatedFiles = null;
 
     if (numberOfHops > 0) {
-      File mapFolder = new File(workingDir.getAbsolutePath() + File.separator + "nHopReplication");
-      if (!mapFolder.exists()) {
-        mapFolder.mkdirs();
+      File replicationFolder = new File(
+              workingDir.getAbsolutePath() + File.separator + "nHopReplication");
+      if (!replicationFolder.exists()) {
+        replicationFolder.mkdirs();
       }
-      DBMaker<?> dbmaker = MapDBStorageOptions.MEMORY_MAPPED_FILE
-              .getDBMaker(mapFolder.getAbsolutePath() + File.separator + "nHopReplication")
-              .transactionDisable().closeOnJvmShutdown().asyncWriteEnable();
-      dbmaker = MapDBCacheOptions.HASH_TABLE.setCaching(dbmaker).compressionEnable();
-      DB database = dbmaker.make();
-
+      ExecutorService executor = numberOfThreads > 1 ? Executors.newFixedThreadPool(numberOfThreads)
+              : null;
       try {
-        MoleculeLists moleculeLists = new MoleculeLists(mapFolder);
-        Set<Long>[] cover = createInitialCover(database, moleculeLists, graphCover, mapFolder);
+        CompressedLongBitmap[] cover = new CompressedLongBitmap[graphCover.length];
+        File triples = createInitialCover(executor, graphCover, cover, replicationFolder);
 
         // perform n-hop replication
+        CompressedLongBitmap[] frontier = cover;
         for (int n = 1; n <= numberOfHops; n++) {
           if (logger != null) {
             logger.info("Performing " + n + "-hop replication");
           }
-          performHopStep(database, cover, moleculeLists, n);
-        }
-
-        // update containment information
-        if (measurementCollector != null) {
-          measurementCollector.measureValue(
-                  MeasurementType.LOAD_GRAPH_NHOP_REPLICATION_CONTAINMENT_UPDATE_START,
-                  System.currentTimeMillis());
-        }
-        for (int i = 0; i < cover.length; i++) {
-          // TODO remove
-          System.out.println("\tadjust containment " + i);
-          adjustContainment(i, cover[i], moleculeLists);
-        }
-        if (measurementCollector != null) {
-          measurementCollector.measureValue(
-                  MeasurementType.LOAD_GRAPH_NHOP_REPLICATION_CONTAINMENT_UPDATE_END,
-                  System.currentTimeMillis());
+          frontier = performHopStep(executor, triples, cover, frontier, n);
+          if (frontier == null) {
+            if (logger != null) {
+              logger.info("No further triples are reachable after " + n + " hops.");
+            }
+            break;
+          }
         }
 
-        nHopReplicatedFiles = convertToFiles(cover, moleculeLists, workingDir);
+        nHopReplicatedFiles = convertToFiles(executor, triples, cover, workingDir);
         for (File file : graphCover) {
-          file.delete();
+          if (file != null) {
+            file.delete();
+          }
         }
-        moleculeLists.close();
       } finally {
         // clean up
-        database.close();
-        deleteFolder(mapFolder);
+        if (executor != null) {
+          executor.shutdownNow();
+        }
+        Deleter.deleteFolder(replicationFolder);
       }
     } else {
       nHopReplicatedFiles = graphCover;
@@ -122,116 +160,337 @@ public class NHopReplicator {
     return nHopReplicatedFiles;
   }
 
-  private Set<Long>[] createInitialCover(DB database, MoleculeLists moleculeLists,
-          File[] graphCover, File mapFolder) {
+  /**
+   * @param executor
+   *          reads the sorted chunks ahead
+   * @param graphCover
+   * @param cover
+   *          is filled with the subjects of each chunk
+   * @param workingDir
+   * @return file of distinct (subject, property, object) sorted by subject
+   */
+  private File createInitialCover(ExecutorService executor, File[] graphCover,
+          CompressedLongBitmap[] cover, File workingDir) {
     if (measurementCollector != null) {
       measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_NHOP_REPLICATION_INIT_START,
               System.currentTimeMillis());
     }
-    @SuppressWarnings("unchecked")
-    Set<Long>[] subjectSets = new Set[graphCover.length];
     for (int i = 0; i < graphCover.length; i++) {
-      if (logger != null) {
-        logger.info("preprocessiong chunk " + i);
+      if (graphCover[i] != null) {
+        cover[i] = new CompressedLongBitmap();
       }
-      subjectSets[i] = createMapOutOfFile(database, mapFolder, moleculeLists, graphCover[i], i);
     }
-    if (measurementCollector != null) {
-      measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_NHOP_REPLICATION_INIT_END,
-              System.currentTimeMillis());
-    }
-    return subjectSets;
-  }
+    InitialChunkProducer producer = null;
+    Merger merger = null;
+    try {
+      producer = new InitialChunkProducer() {
 
-  private Set<Long> createMapOutOfFile(DB database, File mapFolder, MoleculeLists moleculeLists,
-          File file, int chunkNumber) {
-    if (file == null) {
-      return null;
-    }
-    Set<Long> subjectSet = database.createHashSet("subjectsOfChunk" + chunkNumber).makeOrGet();
-    try (EncodedFileInputStream input = new EncodedFileInputStream(EncodingFileFormat.EEE, file);) {
-      for (Statement statement : input) {
-        moleculeLists.add(statement);
-        subjectSet.add(statement.getSubjectAsLong());
+        private long[][] elements;
+
+        private int nextIndex;
+
+        private int currentChunk = -1;
+
+        private EncodedFileInputStream input;
+
+        private Iterator<Statement> iterator;
+
+        @Override
+        public void loadNextChunk() throws IOException {
+          if (elements == null) {
+            // each element is an array of 3 longs with about 24 bytes overhead
+            elements = new long[(int) (NHopReplicator.MAX_CASH_SIZE
+                    / ((Long.BYTES * 3) + 24))][3];
+          }
+          nextIndex = 0;
+          while (nextIndex < elements.length) {
+            if ((iterator == null) || !iterator.hasNext()) {
+              if (!openNextChunk()) {
+                break;
+              }
+              continue;
+            }
+            Statement statement = iterator.next();
+            long subject = statement.getSubjectAsLong();
+            cover[currentChunk].add(subject & NHopReplicator.ID_WITHOUT_OWNER_MASK);
+            elements[nextIndex][0] = subject;
+            elements[nextIndex][1] = statement.getPropertyAsLong();
+            elements[nextIndex][2] = statement.getObjectAsLong();
+            nextIndex++;
+          }
+        }
+
+        private boolean openNextChunk() throws IOException {
+          if (input != null) {
+            input.close();
+            input = null;
+            iterator = null;
+          }
+          for (currentChunk++; currentChunk < graphCover.length; currentChunk++) {
+            if (graphCover[currentChunk] != null) {
+              if (logger != null) {
+                logger.finer("preprocessing chunk " + currentChunk);
+              }
+              input = new EncodedFileInputStream(EncodingFileFormat.EEE,
+                      graphCover[currentChunk]);
+              iterator = input.iterator();
+              return true;
+            }
+          }
+          return false;
+        }
+
+        @Override
+        public void sort(Comparator<long[]> comparator) {
+          Arrays.parallelSort(elements, 0, nextIndex, comparator);
+        }
+
+        @Override
+        public boolean hasNextChunk() {
+          return nextIndex > 0;
+        }
+
+        @Override
+        public void writeChunk(LongOutputWriter output) throws IOException {
+          for (int i = 0; i < nextIndex; i++) {
+            if ((i > 0) && Arrays.equals(elements[i - 1], elements[i])) {
+              // the triple is contained in several chunks
+              continue;
+            }
+            output.writeLong(elements[i][0]);
+            output.writeLong(elements[i][1]);
+            output.writeLong(elements[i][2]);
+          }
+        }
+
+        @Override
+        public void close() {
+          elements = null;
+          if (input != null) {
+            try {
+              input.close();
+            } catch (IOException e) {
+              throw new RuntimeException(e);
+            }
+          }
+        }
+      };
+
+      merger = new Merger() {
+
+        @Override
+        public void startNextMergeLevel() {
+        }
+
+        @Override
+        public long[] readNextElement(LongIterator iterator) throws IOException {
+          return new long[] { iterator.next(), iterator.next(), iterator.next() };
+        }
+
+        @Override
+        public void mergeAndWrite(BitSet indicesOfSmallestElement, long[][] elements,
+                LongIterator[] iterators, LongOutputWriter out) throws IOException {
+          // duplicates are written only once
+          long[] element = elements[indicesOfSmallestElement.nextSetBit(0)];
+          out.writeLong(element[0]);
+          out.writeLong(element[1]);
+          out.writeLong(element[2]);
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+
+      File triples = File.createTempFile("triplesSortedBySubject", "", workingDir);
+      new NWayMergeSort(executor, false).sort(producer, merger,
+              new FixedSizeLongArrayComparator(true, 0, 1, 2), workingDir,
+              NHopReplicator.MAX_NUMBER_OF_OPEN_FILES, triples);
+      if (measurementCollector != null) {
+        measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_NHOP_REPLICATION_INIT_END,
+                System.currentTimeMillis());
       }
+      return triples;
     } catch (IOException e) {
       throw new RuntimeException(e);
+    } finally {
+      if (producer != null) {
+        producer.close();
+      }
+      if (merger != null) {
+        merger.close();
+      }
     }
-    return subjectSet;
   }
 
-  private void performHopStep(DB database, Set<Long>[] cover, MoleculeLists moleculeLists,
-          int hopNumber) {
+  /**
+   * @return the subjects that were reached the first time in this hop or
+   *         <code>null</code> if no chunk has changed
+   */
+  private CompressedLongBitmap[] performHopStep(ExecutorService executor, File triples,
+          CompressedLongBitmap[] cover, CompressedLongBitmap[] frontier, int hopNumber) {
     if (measurementCollector != null) {
       measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_NHOP_REPLICATION_STEP_START,
               System.currentTimeMillis(), Integer.toString(hopNumber));
     }
-    Set<Long> tmpSet = database.getHashSet("tempSubjectSet");
-    // TODO remove
-    System.out.println("perform hop step " + hopNumber);
-    for (int currentCoverIndex = 0; currentCoverIndex < cover.length; currentCoverIndex++) {
-      if (logger != null) {
-        logger.info("performing hop " + hopNumber + " for chunk " + currentCoverIndex);
+    CompressedLongBitmap[] nextFrontier = new CompressedLongBitmap[cover.length];
+    for (int i = 0; i < cover.length; i++) {
+      if ((cover[i] != null) && !frontier[i].isEmpty()) {
+        nextFrontier[i] = new CompressedLongBitmap();
       }
-      // TODO remove
-      System.out.println("\tchunk " + currentCoverIndex);
-      if (currentCoverIndex != 0) {
-        tmpSet.clear();
+    }
+    TripleBatch batch = new TripleBatch();
+    try (EncodedLongFileInputStream input = new EncodedLongFileInputStream(triples);) {
+      LongIterator iterator = input.iterator();
+      while (batch.load(iterator)) {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < cover.length; i++) {
+          if (nextFrontier[i] == null) {
+            continue;
+          }
+          CompressedLongBitmap chunk = cover[i];
+          CompressedLongBitmap chunkFrontier = frontier[i];
+          CompressedLongBitmap chunkNextFrontier = nextFrontier[i];
+          tasks.add(() -> {
+            long previousSubject = 0;
+            boolean isInFrontier = false;
+            for (int j = 0; j < batch.size; j++) {
+              long subject = batch.triples[3 * j];
+              if ((j == 0) || (subject != previousSubject)) {
+                previousSubject = subject;
+                isInFrontier = chunkFrontier
+                        .contains(subject & NHopReplicator.ID_WITHOUT_OWNER_MASK);
+              }
+              if (isInFrontier) {
+                // add object to current chunk
+                long object = batch.triples[(3 * j) + 2] & NHopReplicator.ID_WITHOUT_OWNER_MASK;
+                if (!chunk.contains(object)) {
+                  chunkNextFrontier.add(object);
+                }
+              }
+            }
+            return null;
+          });
+        }
+        execute(executor, tasks);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    boolean hasChanged = false;
+    for (int i = 0; i < cover.length; i++) {
+      if (nextFrontier[i] != null) {
+        cover[i].or(nextFrontier[i]);
+        hasChanged |= !nextFrontier[i].isEmpty();
+      } else if (cover[i] != null) {
+        nextFrontier[i] = new CompressedLongBitmap();
       }
-      replicateTriples(database, cover[currentCoverIndex], moleculeLists, tmpSet);
     }
     if (measurementCollector != null) {
       measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_NHOP_REPLICATION_STEP_END,
               System.currentTimeMillis(), Integer.toString(hopNumber));
     }
+    return hasChanged ? nextFrontier : null;
   }
 
-  private void replicateTriples(DB database, Set<Long> chunk, MoleculeLists moleculeLists,
-          Set<Long> tmpSet) {
-    if (chunk == null) {
-      return;
-    }
-    for (Long subject : chunk) {
-      MoleculeListIterator iterator = moleculeLists.iterator(subject, true);
-      while (iterator.hasNext()) {
-        byte[][] statement = iterator.next();
-        // add object to current chunk
-        tmpSet.add(NumberConversion.bytes2long(statement[2]));
-      }
-      iterator.close();
-    }
-    for (Long subject : tmpSet) {
-      chunk.add(subject);
-    }
-  }
-
-  private void adjustContainment(int currentChunkIndex, Set<Long> chunk,
-          MoleculeLists moleculeLists) {
-    if (chunk == null) {
-      return;
-    }
-    if (logger != null) {
-      logger.finer("adjusting containment of chunk " + currentChunkIndex);
-    }
-    for (Long subject : chunk) {
-      MoleculeListIterator iterator = moleculeLists.iterator(subject, false);
-      while (iterator.hasNext()) {
-        byte[][] statement = iterator.next();
-        iterator.updateContainment(statement, currentChunkIndex);
-      }
-      iterator.close();
-    }
-  }
-
-  private File[] convertToFiles(Set<Long>[] cover, MoleculeLists moleculeLists, File workingDir) {
+  private File[] convertToFiles(ExecutorService executor, File triples,
+          CompressedLongBitmap[] cover, File workingDir) {
     if (measurementCollector != null) {
       measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_NHOP_REPLICATION_FILEWRITE_START,
               System.currentTimeMillis());
     }
     File[] chunks = new File[cover.length];
     long[] numberOfTriples = new long[cover.length];
-    for (int i = 0; i < cover.length; i++) {
-      chunks[i] = convertToFile(cover[i], i, moleculeLists, workingDir, numberOfTriples);
+    EncodedFileOutputStream[] outputs = new EncodedFileOutputStream[cover.length];
+    BitSet[] isInChunk = new BitSet[cover.length];
+    byte[][] containments = new byte[NHopReplicator.BATCH_SIZE][];
+    TripleBatch batch = new TripleBatch();
+    try (EncodedLongFileInputStream input = new EncodedLongFileInputStream(triples);) {
+      for (int i = 0; i < cover.length; i++) {
+        if (cover[i] != null) {
+          chunks[i] = getFile(i, workingDir);
+          outputs[i] = new EncodedFileOutputStream(chunks[i], false, encodedFileCodec);
+          isInChunk[i] = new BitSet(NHopReplicator.BATCH_SIZE);
+        }
+      }
+      LongIterator iterator = input.iterator();
+      while (batch.load(iterator)) {
+        // determine the chunks of each triple
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < cover.length; i++) {
+          if (cover[i] == null) {
+            continue;
+          }
+          CompressedLongBitmap chunk = cover[i];
+          BitSet chunkTriples = isInChunk[i];
+          tasks.add(() -> {
+            chunkTriples.clear();
+            long previousSubject = 0;
+            boolean isContained = false;
+            for (int j = 0; j < batch.size; j++) {
+              long subject = batch.triples[3 * j];
+              if ((j == 0) || (subject != previousSubject)) {
+                previousSubject = subject;
+                isContained = chunk.contains(subject & NHopReplicator.ID_WITHOUT_OWNER_MASK);
+              }
+              if (isContained) {
+                chunkTriples.set(j);
+              }
+            }
+            return null;
+          });
+        }
+        execute(executor, tasks);
+
+        // all triples of a subject share the same containment
+        for (int j = 0; j < batch.size; j++) {
+          if ((j > 0) && (batch.triples[3 * j] == batch.triples[3 * (j - 1)])) {
+            containments[j] = containments[j - 1];
+            continue;
+          }
+          byte[] containment = getContainment(cover.length);
+          for (int i = 0; i < cover.length; i++) {
+            if ((isInChunk[i] != null) && isInChunk[i].get(j)) {
+              containment[i / Byte.SIZE] |= 0x80 >>> (i % Byte.SIZE);
+            }
+          }
+          containments[j] = containment;
+        }
+
+        // write triples
+        tasks.clear();
+        for (int i = 0; i < cover.length; i++) {
+          if (cover[i] == null) {
+            continue;
+          }
+          int chunkIndex = i;
+          tasks.add(() -> {
+            BitSet chunkTriples = isInChunk[chunkIndex];
+            for (int j = chunkTriples.nextSetBit(0); j >= 0; j = chunkTriples.nextSetBit(j + 1)) {
+              Statement statement = Statement.getStatement(EncodingFileFormat.EEE,
+                      NumberConversion.long2bytes(batch.triples[3 * j]),
+                      NumberConversion.long2bytes(batch.triples[(3 * j) + 1]),
+                      NumberConversion.long2bytes(batch.triples[(3 * j) + 2]), containments[j]);
+              outputs[chunkIndex].writeStatement(statement);
+              numberOfTriples[chunkIndex]++;
+            }
+            return null;
+          });
+        }
+        execute(executor, tasks);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      for (EncodedFileOutputStream output : outputs) {
+        if (output != null) {
+          try {
+            output.close();
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        }
+      }
     }
     if (measurementCollector != null) {
       measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_NHOP_REPLICATION_FILEWRITE_END,
@@ -246,31 +505,33 @@ public class NHopReplicator {
     return chunks;
   }
 
-  private File convertToFile(Set<Long> subjects, int chunkIndex, MoleculeLists moleculeLists,
-          File workingDir, long[] numberOfTriples) {
-    if (subjects == null) {
-      return null;
-    }
-    if (logger != null) {
-      logger.finer("Converting chunk " + chunkIndex + " into a file.");
+  private byte[] getContainment(int numberOfGraphChunks) {
+    int bitsetSize = numberOfGraphChunks / Byte.SIZE;
+    if ((numberOfGraphChunks % Byte.SIZE) != 0) {
+      bitsetSize += 1;
     }
-    File chunkFile = getFile(chunkIndex, workingDir);
-    try (EncodedFileOutputStream output = new EncodedFileOutputStream(chunkFile);) {
-      for (Long subject : subjects) {
-        MoleculeListIterator iterator = moleculeLists.iterator(subject, true);
-        while (iterator.hasNext()) {
-          byte[][] triple = iterator.next();
-          numberOfTriples[chunkIndex]++;
-          Statement statement = Statement.getStatement(EncodingFileFormat.EEE, triple[0], triple[1],
-                  triple[2], triple[3]);
-          output.writeStatement(statement);
+    return new byte[bitsetSize];
+  }
+
+  private void execute(ExecutorService executor, List<Callable<Void>> tasks) {
+    try {
+      if (executor == null) {
+        for (Callable<Void> task : tasks) {
+          task.call();
+        }
+      } else {
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+          future.get();
         }
-        iterator.close();
       }
-    } catch (IOException e) {
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } catch (Exception e) {
       throw new RuntimeException(e);
     }
-    return chunkFile;
   }
 
   private File getFile(int chunkIndex, File workingDir) {
@@ -286,40 +547,29 @@ public class NHopReplicator {
     return chunkFiles;
   }
 
-  private void deleteFolder(File mapFolder) {
-    if (!mapFolder.exists()) {
-      return;
-    }
-    Path path = FileSystems.getDefault().getPath(mapFolder.getAbsolutePath());
-    try {
-      Files.walkFileTree(path, new FileVisitor<Path>() {
-        @Override
-        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
-                throws IOException {
-          return FileVisitResult.CONTINUE;
-        }
+  /**
+   * Consecutive triples of the subject sorted triple file.
+   */
+  private static class TripleBatch {
 
-        @Override
-        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-          // here you have the files to process
-          file.toFile().delete();
-          return FileVisitResult.CONTINUE;
-        }
+    private final long[] triples = new long[3 * NHopReplicator.BATCH_SIZE];
 
-        @Override
-        public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-          return FileVisitResult.TERMINATE;
-        }
+    private int size;
 
-        @Override
-        public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-          return FileVisitResult.CONTINUE;
-        }
-      });
-    } catch (IOException e) {
-      throw new RuntimeException(e);
+    /**
+     * @return <code>false</code> if the end of the file is reached
+     */
+    public boolean load(LongIterator iterator) throws IOException {
+      size = 0;
+      while ((size < NHopReplicator.BATCH_SIZE) && iterator.hasNext()) {
+        triples[3 * size] = iterator.next();
+        triples[(3 * size) + 1] = iterator.next();
+        triples[(3 * size) + 2] = iterator.next();
+        size++;
+      }
+      return size > 0;
     }
-    mapFolder.delete();
+
   }
 
 }
@@ -0,0 +1,160 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.graph_cover_creator.impl;
+
+import de.uni_koblenz.west.koral.common.io.EncodedFileInputStream;
+import de.uni_koblenz.west.koral.common.io.EncodedFileOutputStream;
+import de.uni_koblenz.west.koral.common.io.EncodedFileSplit;
+import de.uni_koblenz.west.koral.common.io.EncodingFileFormat;
+import de.uni_koblenz.west.koral.common.io.Statement;
+import de.uni_koblenz.west.koral.common.measurement.MeasurementCollector;
+import de.uni_koblenz.west.koral.master.dictionary.DictionaryEncoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Creates a hash cover based on the encoded subject of the triples. In
+ * contrast to {@link HashCoverCreator}, the subject strings do not have to be
+ * decoded and hashed with MD5. The input is split at block boundaries and the
+ * splits are partitioned in parallel. Each thread collects the triples of a
+ * chunk in its own batch and writes the complete batch at once. The chunk of a
+ * triple only depends on its subject id.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class FastHashCoverCreator extends GraphCoverCreatorBase {
+
+  private static final int BATCH_SIZE = 4096;
+
+  private final int numberOfThreads;
+
+  public FastHashCoverCreator(Logger logger, MeasurementCollector measurementCollector) {
+    this(logger, measurementCollector, Runtime.getRuntime().availableProcessors());
+  }
+
+  public FastHashCoverCreator(Logger logger, MeasurementCollector measurementCollector,
+          int numberOfThreads) {
+    super(logger, measurementCollector);
+    this.numberOfThreads = Math.max(1, numberOfThreads);
+  }
+
+  @Override
+  public EncodingFileFormat getRequiredInputEncoding() {
+    return EncodingFileFormat.EEE;
+  }
+
+  @Override
+  protected void createCover(DictionaryEncoder dictionary, File rdfFile, int numberOfGraphChunks,
+          EncodedFileOutputStream[] outputs, boolean[] writtenFiles, File workingDir) {
+    if ((measurementCollector != null) && (numberOfTriplesPerChunk == null)) {
+      numberOfTriplesPerChunk = new long[numberOfGraphChunks];
+    }
+    List<EncodedFileSplit> splits;
+    try {
+      splits = EncodedFileInputStream.getSplits(rdfFile, 4 * numberOfThreads);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    ExecutorService executor =
+            Executors.newFixedThreadPool(Math.min(numberOfThreads, splits.size()));
+    try {
+      List<Future<?>> tasks = new ArrayList<>();
+      for (EncodedFileSplit split : splits) {
+        tasks.add(executor.submit(() -> {
+          try (EncodedFileInputStream input =
+                  new EncodedFileInputStream(getRequiredInputEncoding(), split);) {
+            assignStatements(input, numberOfGraphChunks, outputs, writtenFiles);
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        }));
+      }
+      for (Future<?> task : tasks) {
+        task.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Override
+  protected void createCover(DictionaryEncoder dictionary, EncodedFileInputStream input,
+          int numberOfGraphChunks, EncodedFileOutputStream[] outputs, boolean[] writtenFiles,
+          File workingDir) {
+    if ((measurementCollector != null) && (numberOfTriplesPerChunk == null)) {
+      numberOfTriplesPerChunk = new long[numberOfGraphChunks];
+    }
+    assignStatements(input, numberOfGraphChunks, outputs, writtenFiles);
+  }
+
+  private void assignStatements(Iterable<Statement> statements, int numberOfGraphChunks,
+          EncodedFileOutputStream[] outputs, boolean[] writtenFiles) {
+    StatementBatch[] batches = new StatementBatch[outputs.length];
+    for (Statement statement : statements) {
+      long subject = statement.getSubjectAsLong();
+      int targetChunk = FastHashCoverCreator.getChunk(subject, outputs.length);
+      StatementBatch batch = batches[targetChunk];
+      if (batch == null) {
+        batch = new StatementBatch(FastHashCoverCreator.BATCH_SIZE);
+        batches[targetChunk] = batch;
+      }
+      batch.add(subject, statement.getPropertyAsLong(), statement.getObjectAsLong(),
+              statement.getContainment());
+      if (batch.isFull()) {
+        writeStatementBatch(targetChunk, batch, numberOfGraphChunks, outputs, writtenFiles);
+      }
+    }
+    for (int i = 0; i < batches.length; i++) {
+      if ((batches[i] != null) && (batches[i].size() > 0)) {
+        writeStatementBatch(i, batches[i], numberOfGraphChunks, outputs, writtenFiles);
+      }
+    }
+  }
+
+  /**
+   * @param subject
+   * @param numberOfGraphChunks
+   * @return the chunk of all triples with this subject
+   */
+  public static int getChunk(long subject, int numberOfGraphChunks) {
+    // finalization mix of MurmurHash3 so that consecutive ids are spread
+    long hash = subject;
+    hash ^= hash >>> 33;
+    hash *= 0xff51_afd7_ed55_8ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ce_b9fe_1a85_ec53L;
+    hash ^= hash >>> 33;
+    return (int) Long.remainderUnsigned(hash, numberOfGraphChunks);
+  }
+
+}
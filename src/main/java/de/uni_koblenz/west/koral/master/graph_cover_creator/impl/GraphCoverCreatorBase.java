@@ -20,17 +20,23 @@ package de.uni_koblenz.west.koral.master.graph_cover_creator.impl;
 
 import org.apache.jena.graph.Node;
 
+import de.uni_koblenz.west.koral.common.io.BlockCodec;
 import de.uni_koblenz.west.koral.common.io.EncodedFileInputStream;
 import de.uni_koblenz.west.koral.common.io.EncodedFileOutputStream;
+import de.uni_koblenz.west.koral.common.io.EncodingFileFormat;
 import de.uni_koblenz.west.koral.common.io.Statement;
 import de.uni_koblenz.west.koral.common.measurement.MeasurementCollector;
 import de.uni_koblenz.west.koral.common.measurement.MeasurementType;
+import de.uni_koblenz.west.koral.common.utils.NumberConversion;
 import de.uni_koblenz.west.koral.master.dictionary.DictionaryEncoder;
 import de.uni_koblenz.west.koral.master.graph_cover_creator.GraphCoverCreator;
+import de.uni_koblenz.west.koral.master.utils.NWayMergeSort;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 /**
@@ -47,9 +53,24 @@ public abstract class GraphCoverCreatorBase implements GraphCoverCreator {
 
   protected long[] numberOfTriplesPerChunk;
 
+  /**
+   * codec of the encoded files written during the cover creation
+   */
+  protected BlockCodec encodedFileCodec;
+
+  /**
+   * reads the chunks of the merge sorts ahead while a cover is created
+   */
+  private ExecutorService readAheadExecutor;
+
   public GraphCoverCreatorBase(Logger logger, MeasurementCollector measurementCollector) {
     this.logger = logger;
     this.measurementCollector = measurementCollector;
+    encodedFileCodec = EncodedFileOutputStream.DEFAULT_CODEC;
+  }
+
+  public void setEncodedFileCodec(BlockCodec encodedFileCodec) {
+    this.encodedFileCodec = encodedFileCodec;
   }
 
   @Override
@@ -58,14 +79,12 @@ public abstract class GraphCoverCreatorBase implements GraphCoverCreator {
     File[] chunkFiles = getGraphChunkFiles(workingDir, numberOfGraphChunks);
     EncodedFileOutputStream[] outputs = getOutputStreams(chunkFiles);
     boolean[] writtenFiles = new boolean[chunkFiles.length];
+    readAheadExecutor = Executors.newSingleThreadExecutor();
     try {
-      try (EncodedFileInputStream input = new EncodedFileInputStream(getRequiredInputEncoding(),
-              rdfFile);) {
-        createCover(dictionary, input, numberOfGraphChunks, outputs, writtenFiles, workingDir);
-      } catch (IOException e) {
-        throw new RuntimeException(e);
-      }
+      createCover(dictionary, rdfFile, numberOfGraphChunks, outputs, writtenFiles, workingDir);
     } finally {
+      readAheadExecutor.shutdown();
+      readAheadExecutor = null;
       for (EncodedFileOutputStream stream : outputs) {
         try {
           if (stream != null) {
@@ -97,6 +116,29 @@ public abstract class GraphCoverCreatorBase implements GraphCoverCreator {
     return chunkFiles;
   }
 
+  /**
+   * Opens the input graph and calls
+   * {@link #createCover(DictionaryEncoder, EncodedFileInputStream, int, EncodedFileOutputStream[], boolean[], File)}
+   * . Implementations that read the input in parallel may override it.
+   * 
+   * @param dictionary
+   * @param rdfFile
+   *          the encoded input graph
+   * @param numberOfGraphChunks
+   * @param outputs
+   * @param writtenFiles
+   * @param workingDir
+   */
+  protected void createCover(DictionaryEncoder dictionary, File rdfFile, int numberOfGraphChunks,
+          EncodedFileOutputStream[] outputs, boolean[] writtenFiles, File workingDir) {
+    try (EncodedFileInputStream input = new EncodedFileInputStream(getRequiredInputEncoding(),
+            rdfFile);) {
+      createCover(dictionary, input, numberOfGraphChunks, outputs, writtenFiles, workingDir);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   /**
    * The input graph is <code>rdfFiles</code> the triples or quadruples have to
    * be assigned to at least one graph chunk. After assigning it, it has to be
@@ -139,6 +181,33 @@ public abstract class GraphCoverCreatorBase implements GraphCoverCreator {
     writtenFiles[targetChunk] = true;
   }
 
+  /**
+   * Writes all triples of the batch while holding the lock of the output
+   * stream. Thus, several threads may write into the same chunk. If
+   * measurements are collected, {@link #numberOfTriplesPerChunk} has to be
+   * initialized before.
+   * 
+   * @param targetChunk
+   * @param batch
+   *          is cleared afterwards
+   * @param numberOfGraphChunks
+   * @param outputs
+   * @param writtenFiles
+   */
+  protected void writeStatementBatch(int targetChunk, StatementBatch batch,
+          int numberOfGraphChunks, EncodedFileOutputStream[] outputs, boolean[] writtenFiles) {
+    synchronized (outputs[targetChunk]) {
+      for (int i = 0; i < batch.size(); i++) {
+        Statement statement = Statement.getStatement(EncodingFileFormat.EEE,
+                NumberConversion.long2bytes(batch.getSubject(i)),
+                NumberConversion.long2bytes(batch.getProperty(i)),
+                NumberConversion.long2bytes(batch.getObject(i)), batch.getContainment(i));
+        writeStatementToChunk(targetChunk, numberOfGraphChunks, statement, outputs, writtenFiles);
+      }
+    }
+    batch.clear();
+  }
+
   private byte[] setContainment(int targetChunk, byte[] containment) {
     int bitsetIndex = targetChunk / Byte.SIZE;
     byte bitsetMask = getBitMaskFor(targetChunk + 1);
@@ -173,7 +242,7 @@ public abstract class GraphCoverCreatorBase implements GraphCoverCreator {
     EncodedFileOutputStream[] outputs = new EncodedFileOutputStream[chunkFiles.length];
     for (int i = 0; i < outputs.length; i++) {
       try {
-        outputs[i] = new EncodedFileOutputStream(chunkFiles[i]);
+        outputs[i] = new EncodedFileOutputStream(chunkFiles[i], false, encodedFileCodec);
       } catch (IOException e) {
         for (int j = i; i >= 0; j--) {
           if (outputs[j] != null) {
@@ -189,6 +258,14 @@ public abstract class GraphCoverCreatorBase implements GraphCoverCreator {
     return outputs;
   }
 
+  /**
+   * @return a merge sort whose chunks are read ahead by a thread shared by all
+   *         sorts of the current cover creation
+   */
+  protected NWayMergeSort createMergeSort() {
+    return new NWayMergeSort(readAheadExecutor, false);
+  }
+
   @Override
   public File[] getGraphChunkFiles(File workingDir, int numberOfGraphChunks) {
     File[] chunkFiles = new File[numberOfGraphChunks];
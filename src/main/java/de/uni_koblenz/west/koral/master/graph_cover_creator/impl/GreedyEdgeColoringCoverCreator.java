@@ -53,15 +53,15 @@ import java.util.logging.Logger;
  */
 public class GreedyEdgeColoringCoverCreator extends GraphCoverCreatorBase {
 
-  private static final int NUMBER_OF_CACHED_VERTICES = 0x10_00_00;
+  protected static final int NUMBER_OF_CACHED_VERTICES = 0x10_00_00;
 
   private static final int NUMBER_OF_CACHED_EDGES = 0x04_00_00_00;
 
-  private static final int MAX_NUMBER_OF_OPEN_FILES = 100;
+  protected static final int MAX_NUMBER_OF_OPEN_FILES = 100;
 
-  private static final double COLOR_SIZE_FACTOR = 0.05;
+  protected static final double COLOR_SIZE_FACTOR = 0.05;
 
-  private long numberOfEdges = 0;
+  protected long numberOfEdges = 0;
 
   public GreedyEdgeColoringCoverCreator(Logger logger, MeasurementCollector measurementCollector) {
     super(logger, measurementCollector);
@@ -89,6 +89,71 @@ public class GreedyEdgeColoringCoverCreator extends GraphCoverCreatorBase {
               System.currentTimeMillis());
     }
 
+    File sortedVertexList = createVertexListSortedByDegree(input, internalWorkingDir);
+
+    if (measurementCollector != null) {
+      measurementCollector.measureValue(
+              MeasurementType.LOAD_GRAPH_COVER_CREATION_COLORING_VERTEX_DEGREE_TRANSFORMATION_END,
+              System.currentTimeMillis());
+    }
+
+    File edgeAssignment = createEdgeAssignment(sortedVertexList, internalWorkingDir,
+            numberOfGraphChunks);
+
+    if (measurementCollector != null) {
+      measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_COVER_CREATION_FILE_WRITE_START,
+              System.currentTimeMillis());
+    }
+
+    // iterate partitionIds and input in parallel to translate edgeId back into
+    // triple
+    // TODO remove
+    long writeChunksStart = System.currentTimeMillis();
+    try (EncodedFileInputStream newInput = new EncodedFileInputStream(input);
+            EncodedLongFileInputStream chunkInput = new EncodedLongFileInputStream(
+                    edgeAssignment);) {
+      Iterator<Statement> tripleIterator = newInput.iterator();
+      LongIterator chunkIterator = chunkInput.iterator();
+      while (tripleIterator.hasNext() && chunkIterator.hasNext()) {
+        Statement stmt = tripleIterator.next();
+        long chunkIndex = chunkIterator.next();
+        writeStatementToChunk((int) chunkIndex, numberOfGraphChunks, stmt, outputs, writtenFiles);
+      }
+      if (tripleIterator.hasNext()) {
+        throw new RuntimeException("There exist triples that were not assigned to a chunk.");
+      }
+      if (chunkIterator.hasNext()) {
+        throw new RuntimeException("There exist more chunk assignments than triples.");
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    // TODO remove
+    System.out.println("writing chunks: " + (System.currentTimeMillis() - writeChunksStart));
+    edgeAssignment.delete();
+
+    deleteFolder(internalWorkingDir);
+
+    if (measurementCollector != null) {
+      measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_COVER_CREATION_FILE_WRITE_END,
+              System.currentTimeMillis());
+    }
+    // TODO remove
+    long requiredTime = System.currentTimeMillis() - start;
+    System.out.println("required time: " + requiredTime);
+  }
+
+  /**
+   * Assigns consecutive edge ids starting with 1 to the triples of the input
+   * and sets {@link #numberOfEdges}.
+   * 
+   * @param input
+   * @param internalWorkingDir
+   * @return (outDegree, inDegree, outEdge*, inEdge*)* sorted by the degree in
+   *         descending order
+   */
+  protected File createVertexListSortedByDegree(EncodedFileInputStream input,
+          File internalWorkingDir) {
     // transform into vertex,outDegree,inDegree,outEdgeList,inEdgeList format
     // TODO remove
     long transformStart = System.currentTimeMillis();
@@ -115,16 +180,25 @@ public class GreedyEdgeColoringCoverCreator extends GraphCoverCreatorBase {
     }
     // TODO remove
     System.out.println("sort by degree time: " + (System.currentTimeMillis() - sortStart));
+    return sortedVertexList;
+  }
 
+  /**
+   * Colors the edges and assigns the colors to the graph chunks.
+   * 
+   * @param sortedVertexList
+   *          is deleted by this method
+   * @param internalWorkingDir
+   * @param numberOfGraphChunks
+   * @return the chunk ids of all edges ordered by their edge id
+   */
+  protected File createEdgeAssignment(File sortedVertexList, File internalWorkingDir,
+          int numberOfGraphChunks) {
     if (measurementCollector != null) {
-      measurementCollector.measureValue(
-              MeasurementType.LOAD_GRAPH_COVER_CREATION_COLORING_VERTEX_DEGREE_TRANSFORMATION_END,
-              System.currentTimeMillis());
       measurementCollector.measureValue(
               MeasurementType.LOAD_GRAPH_COVER_CREATION_COLORING_COLORING_CREATION_START,
               System.currentTimeMillis());
     }
-
     File edges2chunks = null;
     try (ColoringManager colorManager = new ColoringManager(internalWorkingDir,
             GreedyEdgeColoringCoverCreator.MAX_NUMBER_OF_OPEN_FILES / 2);) {
@@ -188,46 +262,8 @@ public class GreedyEdgeColoringCoverCreator extends GraphCoverCreatorBase {
       measurementCollector.measureValue(
               MeasurementType.LOAD_GRAPH_COVER_CREATION_COLORING_EDGE_ASSIGNMENT_TRANSFORMATION_END,
               System.currentTimeMillis());
-      measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_COVER_CREATION_FILE_WRITE_START,
-              System.currentTimeMillis());
     }
-
-    // iterate partitionIds and input in parallel to translate edgeId back into
-    // triple
-    // TODO remove
-    long writeChunksStart = System.currentTimeMillis();
-    try (EncodedFileInputStream newInput = new EncodedFileInputStream(input);
-            EncodedLongFileInputStream chunkInput = new EncodedLongFileInputStream(
-                    edgeAssignment);) {
-      Iterator<Statement> tripleIterator = newInput.iterator();
-      LongIterator chunkIterator = chunkInput.iterator();
-      while (tripleIterator.hasNext() && chunkIterator.hasNext()) {
-        Statement stmt = tripleIterator.next();
-        long chunkIndex = chunkIterator.next();
-        writeStatementToChunk((int) chunkIndex, numberOfGraphChunks, stmt, outputs, writtenFiles);
-      }
-      if (tripleIterator.hasNext()) {
-        throw new RuntimeException("There exist triples that were not assigned to a chunk.");
-      }
-      if (chunkIterator.hasNext()) {
-        throw new RuntimeException("There exist more chunk assignments than triples.");
-      }
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
-    // TODO remove
-    System.out.println("writing chunks: " + (System.currentTimeMillis() - writeChunksStart));
-    edgeAssignment.delete();
-
-    deleteFolder(internalWorkingDir);
-
-    if (measurementCollector != null) {
-      measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_COVER_CREATION_FILE_WRITE_END,
-              System.currentTimeMillis());
-    }
-    // TODO remove
-    long requiredTime = System.currentTimeMillis() - start;
-    System.out.println("required time: " + requiredTime);
+    return edgeAssignment;
   }
 
   private File createAssignmentOfEdgesToChunks(ColoringManager colorManager, File workingDir,
@@ -373,7 +409,7 @@ public class GreedyEdgeColoringCoverCreator extends GraphCoverCreatorBase {
             maxNumberOfOpenFiles, outputOnlySecondValue);
   }
 
-  private File sortBinaryValues(Iterator<long[]> iterator, Comparator<long[]> comparator,
+  protected File sortBinaryValues(Iterator<long[]> iterator, Comparator<long[]> comparator,
           File workingDir, int numberOfCachedVertices, int maxNumberOfOpenFiles,
           boolean outputOnlySecondValue) {
     try {
@@ -404,7 +440,7 @@ public class GreedyEdgeColoringCoverCreator extends GraphCoverCreatorBase {
 
                 @Override
                 public void sort(Comparator<long[]> comparator) {
-                  Arrays.sort(values, 0, nextIndex, comparator);
+                  Arrays.parallelSort(values, 0, nextIndex, comparator);
                 }
 
                 @Override
@@ -452,7 +488,7 @@ public class GreedyEdgeColoringCoverCreator extends GraphCoverCreatorBase {
           public void close() {
           }
         };
-        NWayMergeSort sort = new NWayMergeSort();
+        NWayMergeSort sort = createMergeSort();
         sort.sort(producer, merger, comparator, workingDir, maxNumberOfOpenFiles - 2, output);
       }
       return sortedValuesFile;
@@ -584,7 +620,7 @@ public class GreedyEdgeColoringCoverCreator extends GraphCoverCreatorBase {
 
       @Override
       public void sort(Comparator<long[]> comparator) {
-        Arrays.sort(cachedEdges, 0, nextIndex, comparator);
+        Arrays.parallelSort(cachedEdges, 0, nextIndex, comparator);
       }
 
       @Override
@@ -661,7 +697,7 @@ public class GreedyEdgeColoringCoverCreator extends GraphCoverCreatorBase {
 
       File edgeColorsFile = File.createTempFile("edgeColors-", "", workingDir);
       try (EncodedLongFileOutputStream output = new EncodedLongFileOutputStream(edgeColorsFile);) {
-        NWayMergeSort mergeSort = new NWayMergeSort();
+        NWayMergeSort mergeSort = createMergeSort();
         mergeSort.sort(producer, merger, comparator, workingDir, maxNumberOfOpenFiles - 2, output);
       }
       return edgeColorsFile;
@@ -957,7 +993,7 @@ public class GreedyEdgeColoringCoverCreator extends GraphCoverCreatorBase {
 
         @Override
         public void sort(Comparator<long[]> comparator) {
-          Arrays.sort(vertexHeaders, 0, nextIndex, comparator);
+          Arrays.parallelSort(vertexHeaders, 0, nextIndex, comparator);
         }
 
         @Override
@@ -1074,7 +1110,7 @@ public class GreedyEdgeColoringCoverCreator extends GraphCoverCreatorBase {
 
       Comparator<long[]> comparator = VertexDegreeComparator.getComparator(true);
 
-      NWayMergeSort mergesort = new NWayMergeSort();
+      NWayMergeSort mergesort = createMergeSort();
       mergesort.sort(producer, merger, comparator, workingDir, maxNumberOfOpenFiles - 3, output);
       edgeListFile.delete();
     } catch (IOException e) {
@@ -1397,7 +1433,7 @@ public class GreedyEdgeColoringCoverCreator extends GraphCoverCreatorBase {
       File vertexEdgeListFile = File.createTempFile("vertexEdgeListFile", "", workingDir);
       try (EncodedLongFileOutputStream output = new EncodedLongFileOutputStream(
               vertexEdgeListFile);) {
-        NWayMergeSort mergeSort = new NWayMergeSort();
+        NWayMergeSort mergeSort = createMergeSort();
         mergeSort.sort(producer, merger, comparator, workingDir, maxNumberOfOpenFiles - 2, output);
       }
       return vertexEdgeListFile;
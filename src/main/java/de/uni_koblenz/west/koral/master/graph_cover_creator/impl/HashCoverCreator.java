@@ -80,7 +80,7 @@ public class HashCoverCreator extends GraphCoverCreatorBase {
     writeStatementToChunk(targetChunk, numberOfGraphChunks, statement, outputs, writtenFiles);
   }
 
-  protected int computeHash(String string) {
+  public int computeHash(String string) {
     byte[] hash = null;
     try {
       hash = digest.digest(string.getBytes("UTF-8"));
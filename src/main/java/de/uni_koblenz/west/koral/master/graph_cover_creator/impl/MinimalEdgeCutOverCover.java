@@ -105,34 +105,38 @@ public class MinimalEdgeCutOverCover extends GraphCoverCreatorBase {
             RocksDBDictionary.DEFAULT_MAX_BATCH_SIZE, 50);
 
     File encodedRDFGraph = null;
-    File metisOutputGraph = null;
     File ignoredTriples = new File(
             workingDir.getAbsolutePath() + File.separator + "ignoredTriples.gz");
     encodedRDFGraph = new File(
             workingDir.getAbsolutePath() + File.separator + "encodedRDFGraph.gz");
-    File metisInputGraph = new File(workingDir.getAbsolutePath() + File.separator + "metisInput");
-
-    createMetisInputFile(dictionary, input, localDictionary, encodedRDFGraph, metisInputGraph,
-            ignoredTriples, workingDir);
-    metisOutputGraph = runMetis(metisInputGraph,
-            getNumberOfPartitions(187, numberOfEdges, numberOfVertices, numberOfGraphChunks));
-
-    if (measurementCollector != null) {
-      measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_COVER_CREATION_FILE_WRITE_START,
-              System.currentTimeMillis());
+    File adjacencyMatrixFolder = new File(
+            workingDir.getAbsolutePath() + File.separator + "metisInputCreation");
+    if (!adjacencyMatrixFolder.exists()) {
+      adjacencyMatrixFolder.mkdirs();
     }
     File vertex2chunkIndexFolder = new File(
             workingDir.getAbsolutePath() + File.separator + "vertex2chunkIndex");
     if (!vertex2chunkIndexFolder.exists()) {
       vertex2chunkIndexFolder.mkdirs();
     }
+
     RocksDB vertex2chunkIndex = null;
     try {
-      vertex2chunkIndex = convertMetisOutputToVertex2PartitionMap(metisOutputGraph,
-              vertex2chunkIndexFolder);
+      try (AdjacencyMatrix adjacencyMatrix = createAdjacencyMatrix(dictionary, input,
+              localDictionary, encodedRDFGraph, ignoredTriples, adjacencyMatrixFolder);) {
+        vertex2chunkIndex = partitionGraph(adjacencyMatrix,
+                getNumberOfPartitions(187, numberOfEdges, numberOfVertices, numberOfGraphChunks),
+                workingDir, vertex2chunkIndexFolder);
+      }
+      deleteFolder(adjacencyMatrixFolder);
+
+      if (measurementCollector != null) {
+        measurementCollector.measureValue(
+                MeasurementType.LOAD_GRAPH_COVER_CREATION_FILE_WRITE_START,
+                System.currentTimeMillis());
+      }
       createGraphCover(encodedRDFGraph, localDictionary, vertex2chunkIndex, ignoredTriples, outputs,
               writtenFiles, numberOfGraphChunks, workingDir);
-
     } catch (RocksDBException e) {
       throw new RuntimeException(e);
     } finally {
@@ -147,13 +151,9 @@ public class MinimalEdgeCutOverCover extends GraphCoverCreatorBase {
     }
 
     // tidy up
-    metisInputGraph.delete();
     if (encodedRDFGraph != null) {
       encodedRDFGraph.delete();
     }
-    if (metisOutputGraph != null) {
-      metisOutputGraph.delete();
-    }
     if (ignoredTriples.exists()) {
       ignoredTriples.delete();
     }
@@ -161,36 +161,36 @@ public class MinimalEdgeCutOverCover extends GraphCoverCreatorBase {
     deleteFolder(dictionaryFolder);
   }
 
-  private void createMetisInputFile(DictionaryEncoder dictionary, EncodedFileInputStream input,
-          LongDictionary localDictionary, File encodedRDFGraph, File metisInputGraph,
-          File ignoredTriples, File workingDir) {
+  /**
+   * Encodes the subjects and objects with consecutive ids starting at 1 and
+   * adds an undirected edge for each triple that is not a self loop or a
+   * rdf:type triple.
+   * 
+   * @return the adjacency matrix of the graph
+   */
+  private AdjacencyMatrix createAdjacencyMatrix(DictionaryEncoder dictionary,
+          EncodedFileInputStream input, LongDictionary localDictionary, File encodedRDFGraph,
+          File ignoredTriples, File adjacencyMatrixFolder) {
     if (measurementCollector != null) {
       measurementCollector.measureValue(
               MeasurementType.LOAD_GRAPH_COVER_CREATION_METIS_INPUT_FILE_CREATION_START,
               System.currentTimeMillis());
     }
-    File metisInputTempFolder = new File(
-            workingDir.getAbsolutePath() + File.separator + "metisInputCreation");
-    if (!metisInputTempFolder.exists()) {
-      metisInputTempFolder.mkdirs();
-    }
 
     long encodedRdfTypeLabel = dictionary.encodeWithoutOwnership(
             DeSerializer.deserializeNode("<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>"),
             false);
 
-    long numberOfVertices = 0;
-    long numberOfEdges = 0;
     long numberOfUsedTriples = 0;
     long numberOfIgnoredTriples = 0;
 
-    AdjacencyMatrix adjacencyMatrix = new SingleFileAdjacencyMatrix(metisInputTempFolder);
+    AdjacencyMatrix adjacencyMatrix = new SingleFileAdjacencyMatrix(adjacencyMatrixFolder);
     // create adjacency lists
     try {
       try (EncodedFileOutputStream encodedGraphOutput = new EncodedFileOutputStream(
-              encodedRDFGraph);
+              encodedRDFGraph, false, encodedFileCodec);
               EncodedFileOutputStream ignoredTriplesOutput = new EncodedFileOutputStream(
-                      ignoredTriples);) {
+                      ignoredTriples, false, encodedFileCodec);) {
         for (Statement statement : input) {
           if (Arrays.equals(statement.getSubject(), statement.getObject())
                   || (statement.getPropertyAsLong() == encodedRdfTypeLabel)) {
@@ -203,13 +203,7 @@ public class MinimalEdgeCutOverCover extends GraphCoverCreatorBase {
           }
           numberOfUsedTriples++;
           long encodedSubject = localDictionary.encode(statement.getSubjectAsLong(), true);
-          if (encodedSubject > numberOfVertices) {
-            numberOfVertices = encodedSubject;
-          }
           long encodedObject = localDictionary.encode(statement.getObjectAsLong(), true);
-          if (encodedObject > numberOfVertices) {
-            numberOfVertices = encodedObject;
-          }
           // write encoded triple to graph file
           Statement encodedStatement = Statement.getStatement(getRequiredInputEncoding(),
                   NumberConversion.long2bytes(encodedSubject), statement.getProperty(),
@@ -234,38 +228,66 @@ public class MinimalEdgeCutOverCover extends GraphCoverCreatorBase {
                 Long.toString(numberOfUsedTriples), Long.toString(numberOfVertices),
                 Long.toString(numberOfEdges));
       }
-
-      // write adjacency lists to file
-      try (BufferedWriter metisInputGraphWriter = new BufferedWriter(
-              new OutputStreamWriter(new FileOutputStream(metisInputGraph), "UTF-8"));) {
-        metisInputGraphWriter.write(numberOfVertices + " " + numberOfEdges);
-        for (long vertex = 1; vertex <= numberOfVertices; vertex++) {
-          metisInputGraphWriter.write("\n");
-          String delim = "";
-          LongIterator iterator = adjacencyMatrix.getAdjacencyList(vertex);
-          while (iterator.hasNext()) {
-            long neighbour = iterator.next();
-            metisInputGraphWriter.write(delim + neighbour);
-            delim = " ";
-          }
-          iterator.close();
-        }
-      } catch (IOException e) {
-        throw new RuntimeException(e);
-      }
-
+    } catch (RuntimeException e) {
+      adjacencyMatrix.close();
+      throw e;
     } finally {
       localDictionary.flush();
-      adjacencyMatrix.close();
       if (measurementCollector != null) {
         measurementCollector.measureValue(
                 MeasurementType.LOAD_GRAPH_COVER_CREATION_METIS_INPUT_FILE_CREATION_END,
                 System.currentTimeMillis());
       }
     }
-    deleteFolder(metisInputTempFolder);
-    this.numberOfVertices = numberOfVertices;
-    this.numberOfEdges = numberOfEdges;
+    return adjacencyMatrix;
+  }
+
+  /**
+   * Partitions the vertices 1 to {@link AdjacencyMatrix#getNumberOfVertices()}
+   * with METIS.
+   * 
+   * @param adjacencyMatrix
+   * @param numberOfPartitions
+   * @param workingDir
+   * @param vertex2chunkIndexFolder
+   * @return the mapping of each vertex to its partition
+   * @throws RocksDBException
+   */
+  protected RocksDB partitionGraph(AdjacencyMatrix adjacencyMatrix, int numberOfPartitions,
+          File workingDir, File vertex2chunkIndexFolder) throws RocksDBException {
+    File metisInputGraph = new File(workingDir.getAbsolutePath() + File.separator + "metisInput");
+    writeMetisInputFile(adjacencyMatrix, metisInputGraph);
+    File metisOutputGraph = runMetis(metisInputGraph, numberOfPartitions);
+    metisInputGraph.delete();
+    int[] partitions = readMetisOutput(metisOutputGraph);
+    metisOutputGraph.delete();
+    if (measurementCollector != null) {
+      // computing the edge cut requires another pass over the adjacency matrix
+      measurePartitioningQuality(partitions, numberOfPartitions,
+              getEdgeCut(adjacencyMatrix, partitions));
+    }
+    return createVertex2PartitionMap(partitions, vertex2chunkIndexFolder);
+  }
+
+  private void writeMetisInputFile(AdjacencyMatrix adjacencyMatrix, File metisInputGraph) {
+    // write adjacency lists to file
+    try (BufferedWriter metisInputGraphWriter = new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(metisInputGraph), "UTF-8"));) {
+      metisInputGraphWriter.write(numberOfVertices + " " + numberOfEdges);
+      for (long vertex = 1; vertex <= numberOfVertices; vertex++) {
+        metisInputGraphWriter.write("\n");
+        String delim = "";
+        LongIterator iterator = adjacencyMatrix.getAdjacencyList(vertex);
+        while (iterator.hasNext()) {
+          long neighbour = iterator.next();
+          metisInputGraphWriter.write(delim + neighbour);
+          delim = " ";
+        }
+        iterator.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   protected int getNumberOfPartitions(int lambda, long numberOfEdges, long numberOfVertices,
@@ -416,7 +438,7 @@ public class MinimalEdgeCutOverCover extends GraphCoverCreatorBase {
 
         @Override
         public void sort(Comparator<long[]> comparator) {
-          Arrays.sort(elements, 0, nextIndex, comparator);
+          Arrays.parallelSort(elements, 0, nextIndex, comparator);
         }
 
         @Override
@@ -475,7 +497,7 @@ public class MinimalEdgeCutOverCover extends GraphCoverCreatorBase {
       };
       Comparator<long[]> comparator = new FixedSizeLongArrayComparator(true, 0);
       File partition2chunkSorted = File.createTempFile("partition2chunkSorted", "", workingDir);
-      NWayMergeSort sort = new NWayMergeSort();
+      NWayMergeSort sort = createMergeSort();
       sort.sort(producer, merger, comparator, workingDir, maxNumberOfOpenFiles,
               partition2chunkSorted);
       return partition2chunkSorted;
@@ -569,7 +591,7 @@ public class MinimalEdgeCutOverCover extends GraphCoverCreatorBase {
 
         @Override
         public void sort(Comparator<long[]> comparator) {
-          Arrays.sort(elements, 0, nextIndex, comparator);
+          Arrays.parallelSort(elements, 0, nextIndex, comparator);
         }
 
         @Override
@@ -628,7 +650,7 @@ public class MinimalEdgeCutOverCover extends GraphCoverCreatorBase {
       };
       Comparator<long[]> comparator = new FixedSizeLongArrayComparator(false, 1, 0);
       File sortedPartitions = File.createTempFile("sortedPartitions", "", workingDir);
-      NWayMergeSort sort = new NWayMergeSort();
+      NWayMergeSort sort = createMergeSort();
       sort.sort(producer, merger, comparator, workingDir, maxNumberOfOpenFiles, sortedPartitions);
       return sortedPartitions;
     } catch (IOException e) {
@@ -758,7 +780,7 @@ public class MinimalEdgeCutOverCover extends GraphCoverCreatorBase {
 
         @Override
         public void sort(Comparator<long[]> comparator) {
-          Arrays.sort(elements, 0, nextIndex, comparator);
+          Arrays.parallelSort(elements, 0, nextIndex, comparator);
         }
 
         @Override
@@ -838,7 +860,7 @@ public class MinimalEdgeCutOverCover extends GraphCoverCreatorBase {
       };
       Comparator<long[]> comparator = new FixedSizeLongArrayComparator(true, 0);
       File triplesPerPartition = File.createTempFile("triplesPerPartition", "", workingDir);
-      NWayMergeSort sort = new NWayMergeSort();
+      NWayMergeSort sort = createMergeSort();
       sort.sort(producer, merger, comparator, workingDir, maxNumberOfOpenFiles,
               triplesPerPartition);
       return triplesPerPartition;
@@ -854,31 +876,93 @@ public class MinimalEdgeCutOverCover extends GraphCoverCreatorBase {
     }
   }
 
-  private RocksDB convertMetisOutputToVertex2PartitionMap(File metisOutputGraph,
-          File vertex2chunkIndexFolder) throws RocksDBException {
+  private int[] readMetisOutput(File metisOutputGraph) {
+    int[] partitions = new int[(int) numberOfVertices];
+    try (Scanner scanner = new Scanner(metisOutputGraph);) {
+      scanner.useDelimiter("\\r?\\n");
+      int vertex = 0;
+      while (scanner.hasNextInt()) {
+        partitions[vertex] = scanner.nextInt();
+        vertex++;
+      }
+    } catch (FileNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+    return partitions;
+  }
+
+  /**
+   * @param partitions
+   *          partitions[vertex-1] is the partition of vertex
+   * @param vertex2chunkIndexFolder
+   * @return the mapping of each vertex to its partition
+   * @throws RocksDBException
+   */
+  protected RocksDB createVertex2PartitionMap(int[] partitions, File vertex2chunkIndexFolder)
+          throws RocksDBException {
     RocksDB vertex2chunkIndex = null;
     Options options = new Options();
     options.setCreateIfMissing(true);
     options.setMaxOpenFiles(800);
     options.setWriteBufferSize(64 * 1024 * 1024);
-    // load mapping vertex -> chunkIndex from metis output
     vertex2chunkIndex = RocksDB.open(options,
             vertex2chunkIndexFolder.getAbsolutePath() + File.separator + "vertex2chunkIndex");
-    try (Scanner scanner = new Scanner(metisOutputGraph);) {
-      scanner.useDelimiter("\\r?\\n");
-      long vertex = 1;
-      while (scanner.hasNextInt()) {
-        int chunkIndex = scanner.nextInt();
-        vertex2chunkIndex.put(NumberConversion.long2bytes(vertex),
-                NumberConversion.int2bytes(chunkIndex));
-        vertex++;
-      }
-    } catch (FileNotFoundException | RocksDBException e) {
-      throw new RuntimeException(e);
+    for (int vertex = 0; vertex < partitions.length; vertex++) {
+      vertex2chunkIndex.put(NumberConversion.long2bytes(vertex + 1),
+              NumberConversion.int2bytes(partitions[vertex]));
     }
     return vertex2chunkIndex;
   }
 
+  private long getEdgeCut(AdjacencyMatrix adjacencyMatrix, int[] partitions) {
+    long edgeCut = 0;
+    for (int vertex = 0; vertex < partitions.length; vertex++) {
+      LongIterator iterator = adjacencyMatrix.getAdjacencyList(vertex + 1);
+      while (iterator.hasNext()) {
+        long neighbour = iterator.next();
+        if ((neighbour > (vertex + 1)) && (partitions[vertex] != partitions[(int) neighbour - 1])) {
+          edgeCut++;
+        }
+      }
+      iterator.close();
+    }
+    return edgeCut;
+  }
+
+  /**
+   * Measures the edge cut and the smallest and largest partition size so that
+   * the different partitioners can be compared.
+   * 
+   * @param partitions
+   *          partitions[vertex-1] is the partition of vertex
+   * @param numberOfPartitions
+   * @param edgeCut
+   */
+  protected void measurePartitioningQuality(int[] partitions, int numberOfPartitions,
+          long edgeCut) {
+    long[] partitionSizes = new long[numberOfPartitions];
+    for (int partition : partitions) {
+      partitionSizes[partition]++;
+    }
+    long minPartitionSize = Long.MAX_VALUE;
+    long maxPartitionSize = 0;
+    for (long partitionSize : partitionSizes) {
+      minPartitionSize = Math.min(minPartitionSize, partitionSize);
+      maxPartitionSize = Math.max(maxPartitionSize, partitionSize);
+    }
+    if (measurementCollector != null) {
+      measurementCollector.measureValue(
+              MeasurementType.LOAD_GRAPH_COVER_CREATION_METIS_PARTITIONING_QUALITY,
+              Integer.toString(numberOfPartitions), Long.toString(edgeCut),
+              Long.toString(minPartitionSize), Long.toString(maxPartitionSize));
+    }
+    if (logger != null) {
+      logger.info("Partitioned " + partitions.length + " vertices into " + numberOfPartitions
+              + " partitions with an edge cut of " + edgeCut + " (partition sizes between "
+              + minPartitionSize + " and " + maxPartitionSize + ").");
+    }
+  }
+
   private void deleteFolder(File folder) {
     if (!folder.exists()) {
       return;
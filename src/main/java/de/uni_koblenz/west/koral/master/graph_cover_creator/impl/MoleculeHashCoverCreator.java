@@ -10,7 +10,6 @@ import de.uni_koblenz.west.koral.common.io.Statement;
 import de.uni_koblenz.west.koral.common.measurement.MeasurementCollector;
 import de.uni_koblenz.west.koral.common.measurement.MeasurementType;
 import de.uni_koblenz.west.koral.common.utils.Deleter;
-import de.uni_koblenz.west.koral.common.utils.NumberConversion;
 import de.uni_koblenz.west.koral.master.dictionary.DictionaryEncoder;
 import de.uni_koblenz.west.koral.master.utils.FixedSizeLongArrayComparator;
 import de.uni_koblenz.west.koral.master.utils.InitialChunkProducer;
@@ -21,14 +20,25 @@ import de.uni_koblenz.west.koral.master.utils.NWayMergeSort;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
- * Creates a molecule hash cover.
+ * Creates a molecule hash cover.<br>
+ * The adjacency lists are split into one range of start vertex ids per
+ * thread. In each iteration, the ranges are joined with their part of the
+ * frontier concurrently. The sizes of all caches and the number of
+ * simultaneously opened files are derived from the memory budget.
  * 
  * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
  *
@@ -37,26 +47,71 @@ public class MoleculeHashCoverCreator extends GraphCoverCreatorBase {
 
   public static final int DEFAULT_MAX_MOLECULE_DIAMETER = 2;
 
-  private static final int MAX_NUMBER_OF_OPEN_FILES = 100;
+  public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
 
-  private static final long MAX_CASH_SIZE = 0x80_00_00L;
+  /**
+   * estimated memory of an opened compressed file including its buffers
+   */
+  private static final int MEMORY_PER_OPEN_FILE = 64 * 1024;
+
+  private static final int MAX_NUMBER_OF_OPEN_FILES = 1000;
+
+  private static final int BATCH_SIZE = 1024;
 
   private int maxMoleculeDiameter;
 
+  private long memoryBudget;
+
+  private final int numberOfThreads;
+
   public MoleculeHashCoverCreator(Logger logger, MeasurementCollector measurementCollector) {
     this(logger, measurementCollector, MoleculeHashCoverCreator.DEFAULT_MAX_MOLECULE_DIAMETER);
   }
 
   public MoleculeHashCoverCreator(Logger logger, MeasurementCollector measurementCollector,
           int maxMoleculeDiameter) {
+    this(logger, measurementCollector, maxMoleculeDiameter,
+            MoleculeHashCoverCreator.DEFAULT_MEMORY_BUDGET,
+            Runtime.getRuntime().availableProcessors());
+  }
+
+  public MoleculeHashCoverCreator(Logger logger, MeasurementCollector measurementCollector,
+          int maxMoleculeDiameter, long memoryBudget, int numberOfThreads) {
     super(logger, measurementCollector);
     this.maxMoleculeDiameter = maxMoleculeDiameter;
+    this.memoryBudget = memoryBudget;
+    this.numberOfThreads = Math.max(1, numberOfThreads);
   }
 
   public void setMaxMoleculeDiameter(int maxMoleculeDiameter) {
     this.maxMoleculeDiameter = maxMoleculeDiameter;
   }
 
+  /**
+   * @param memoryBudget
+   *          in bytes
+   */
+  public void setMemoryBudget(long memoryBudget) {
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * @return number of files that may be opened at once. A quarter of the
+   *         memory budget is reserved for their buffers.
+   */
+  private int getMaxNumberOfOpenFiles() {
+    return (int) Math.max(3, Math.min(MoleculeHashCoverCreator.MAX_NUMBER_OF_OPEN_FILES,
+            memoryBudget / 4 / MoleculeHashCoverCreator.MEMORY_PER_OPEN_FILE));
+  }
+
+  /**
+   * @return the memory that remains for caching
+   */
+  private long getCacheSize() {
+    return Math.max(1024 * 1024, memoryBudget
+            - ((long) getMaxNumberOfOpenFiles() * MoleculeHashCoverCreator.MEMORY_PER_OPEN_FILE));
+  }
+
   @Override
   public EncodingFileFormat getRequiredInputEncoding() {
     return EncodingFileFormat.EEE;
@@ -70,35 +125,38 @@ public class MoleculeHashCoverCreator extends GraphCoverCreatorBase {
       measurementCollector.measureValue(
               MeasurementType.LOAD_GRAPH_COVER_CREATION_MOLECULE_MAXIMAL_MOLECULE_DIAMETER,
               maxMoleculeDiameter);
+      if (numberOfTriplesPerChunk == null) {
+        numberOfTriplesPerChunk = new long[numberOfGraphChunks];
+      }
     }
 
-    // TODO remove
-    long startTotal = System.currentTimeMillis();
     File internalWorkingDir = new File(
             workingDir + File.separator + this.getClass().getSimpleName());
     if (!internalWorkingDir.exists()) {
       internalWorkingDir.mkdirs();
     }
 
-    if (measurementCollector != null) {
-      measurementCollector.measureValue(
-              MeasurementType.LOAD_GRAPH_COVER_CREATION_MOLECULE_VERTEX_DEGREE_TRANSFORMATION_START,
-              System.currentTimeMillis());
-    }
-    File adjacencyOutListsSortedByVertexId = createAdjacencyListsSortedByStartVertexId(input,
-            internalWorkingDir, MoleculeHashCoverCreator.MAX_NUMBER_OF_OPEN_FILES,
-            MoleculeHashCoverCreator.MAX_CASH_SIZE);
-    if (measurementCollector != null) {
-      measurementCollector.measureValue(
-              MeasurementType.LOAD_GRAPH_COVER_CREATION_MOLECULE_VERTEX_DEGREE_TRANSFORMATION_END,
-              System.currentTimeMillis());
-    }
-    // TODO remove
-    System.out.println("create input format: " + (System.currentTimeMillis() - startTotal));
-
+    // shared by the range tasks and the read ahead of the initial sort
+    ExecutorService executor = numberOfThreads > 1 ? Executors.newFixedThreadPool(numberOfThreads)
+            : null;
+    IterableSortedLongArrayList[] currentFrontier = null;
     try {
-      // TODO remove
-      long startInitialization = System.currentTimeMillis();
+      if (measurementCollector != null) {
+        measurementCollector.measureValue(
+                MeasurementType.LOAD_GRAPH_COVER_CREATION_MOLECULE_VERTEX_DEGREE_TRANSFORMATION_START,
+                System.currentTimeMillis());
+      }
+      long[] vertexBounds = new long[] { Long.MAX_VALUE, Long.MIN_VALUE };
+      File adjacencyOutListsSortedByVertexId = createAdjacencyListsSortedByStartVertexId(input,
+              internalWorkingDir, getMaxNumberOfOpenFiles(), getCacheSize(), vertexBounds,
+              executor);
+      if (measurementCollector != null) {
+        measurementCollector.measureValue(
+                MeasurementType.LOAD_GRAPH_COVER_CREATION_MOLECULE_VERTEX_DEGREE_TRANSFORMATION_END,
+                System.currentTimeMillis());
+      }
+
+      VertexRanges ranges = new VertexRanges(vertexBounds[0], vertexBounds[1], numberOfThreads);
       // initialize with vertices that have an indegree 0
       if (measurementCollector != null) {
         measurementCollector.measureValue(
@@ -109,59 +167,26 @@ public class MoleculeHashCoverCreator extends GraphCoverCreatorBase {
        * (startVertexID, outDegree, (outEdge, endVertexId)*)* sorted by
        * startVertexID
        */
-      File nextAdjacencyListSortedByVertexId = File.createTempFile("adjacencyList", "",
-              internalWorkingDir);
-      long remainingVerticesNumber = 0;
-      IterableSortedLongArrayList currentFrontier = new IterableSortedLongArrayList(3,
-              new FixedSizeLongArrayComparator(true, 0), MoleculeHashCoverCreator.MAX_CASH_SIZE / 2,
-              internalWorkingDir, MoleculeHashCoverCreator.MAX_NUMBER_OF_OPEN_FILES - 3);
-      try (EncodedLongFileOutputStream nextAdjacencyListOut = new EncodedLongFileOutputStream(
-              nextAdjacencyListSortedByVertexId);
-              EncodedLongFileInputStream adjacencyInput = new EncodedLongFileInputStream(
-                      adjacencyOutListsSortedByVertexId);) {
-        LongIterator iterator = adjacencyInput.iterator();
-        while (iterator.hasNext()) {
-          long startVertexId = iterator.next();
-          long inDegree = iterator.next();
-          long outDegree = iterator.next();
-          if (outDegree == 0) {
-            // ignore vertices with an empty out degree
-            continue;
-          }
-          if (inDegree == 0) {
-            int chunkIndex = getChunkIndex(startVertexId, numberOfGraphChunks);
-            for (int i = 0; i < outDegree; i++) {
-              long edgeId = iterator.next();
-              long endVertexId = iterator.next();
-              Statement stmt = Statement.getStatement(EncodingFileFormat.EEE,
-                      NumberConversion.long2bytes(startVertexId),
-                      NumberConversion.long2bytes(edgeId), NumberConversion.long2bytes(endVertexId),
-                      getContainment(numberOfGraphChunks));
-              writeStatementToChunk(chunkIndex, numberOfGraphChunks, stmt, outputs, writtenFiles);
-              currentFrontier.append(endVertexId, chunkIndex, 1);
-            }
-          } else {
-            // this vertex will be visited in the future
-            nextAdjacencyListOut.writeLong(startVertexId);
-            nextAdjacencyListOut.writeLong(outDegree);
-            for (int i = 0; i < outDegree; i++) {
-              nextAdjacencyListOut.writeLong(iterator.next());
-              nextAdjacencyListOut.writeLong(iterator.next());
-            }
-            remainingVerticesNumber++;
-          }
-        }
+      File[] adjacencyLists = new File[ranges.getNumberOfRanges()];
+      for (int i = 0; i < adjacencyLists.length; i++) {
+        adjacencyLists[i] = File.createTempFile("adjacencyList", "", internalWorkingDir);
       }
+      currentFrontier = createFrontier(ranges, internalWorkingDir);
+      long remainingVerticesNumber = initialize(adjacencyOutListsSortedByVertexId, ranges,
+              adjacencyLists, currentFrontier, numberOfGraphChunks, outputs, writtenFiles);
+      adjacencyOutListsSortedByVertexId.delete();
       if (measurementCollector != null) {
+        long frontierSize = getSize(currentFrontier);
         measurementCollector.measureValue(
                 MeasurementType.LOAD_GRAPH_COVER_CREATION_MOLECULE_ITERATION_END,
                 System.currentTimeMillis(), Long.toString(0),
-                Long.toString(remainingVerticesNumber), Long.toString(currentFrontier.getSize()),
-                Long.toString(currentFrontier.getSize()));
+                Long.toString(remainingVerticesNumber), Long.toString(frontierSize),
+                Long.toString(frontierSize));
+      }
+      if (logger != null) {
+        logger.finer("initialization: " + remainingVerticesNumber + " vertices remaining");
       }
-      // TODO remove
-      System.out.println("initialization: " + (System.currentTimeMillis() - startInitialization)
-              + "msec (" + remainingVerticesNumber + " vertices remaining)");
+
       long currentIteration = 1;
       while (remainingVerticesNumber > 0) {
         if (measurementCollector != null) {
@@ -169,151 +194,287 @@ public class MoleculeHashCoverCreator extends GraphCoverCreatorBase {
                   MeasurementType.LOAD_GRAPH_COVER_CREATION_MOLECULE_ITERATION_START,
                   System.currentTimeMillis(), Long.toString(currentIteration));
         }
+        IterableSortedLongArrayList[] nextFrontier = createFrontier(ranges, internalWorkingDir);
+        List<Callable<long[]>> tasks = new ArrayList<>();
+        for (int i = 0; i < adjacencyLists.length; i++) {
+          int range = i;
+          IterableSortedLongArrayList[] frontier = currentFrontier;
+          tasks.add(() -> processRange(range, adjacencyLists, frontier[range], nextFrontier, ranges,
+                  internalWorkingDir, numberOfGraphChunks, outputs, writtenFiles));
+        }
+        remainingVerticesNumber = 0;
         long numberOfNewSeedVertices = 0;
-        // TODO remove
-        long startIteration = System.currentTimeMillis();
-        adjacencyOutListsSortedByVertexId.delete();
-        adjacencyOutListsSortedByVertexId = nextAdjacencyListSortedByVertexId;
-        nextAdjacencyListSortedByVertexId = File.createTempFile("adjacencyList", "",
-                internalWorkingDir);
-        @SuppressWarnings("resource")
-        IterableSortedLongArrayList nextFrontier = new IterableSortedLongArrayList(3,
-                new FixedSizeLongArrayComparator(true, 0),
-                MoleculeHashCoverCreator.MAX_CASH_SIZE / 2, internalWorkingDir,
-                MoleculeHashCoverCreator.MAX_NUMBER_OF_OPEN_FILES - 3);
-        try (EncodedLongFileOutputStream nextAdjacencyListOut = new EncodedLongFileOutputStream(
-                nextAdjacencyListSortedByVertexId);
-                EncodedLongFileInputStream adjacencyInput = new EncodedLongFileInputStream(
-                        adjacencyOutListsSortedByVertexId);) {
-          LongIterator adjacencyIterator = adjacencyInput.iterator();
-          if (currentFrontier.getFreeCacheSpace() > currentFrontier.getSize()) {
-            numberOfNewSeedVertices = currentFrontier.getFreeCacheSpace()
-                    - currentFrontier.getSize();
-            // TODO remove
-            System.out.println("\tselecting " + numberOfNewSeedVertices + " new seed vertices");
-            numberOfNewSeedVertices = 0;
-          }
-          while (adjacencyIterator.hasNext()
-                  && (currentFrontier.getFreeCacheSpace() > currentFrontier.getSize())) {
-            // refill frontier
-            long startVertexId = adjacencyIterator.next();
-            int chunkIndex = getChunkIndex(startVertexId, numberOfGraphChunks);
-            long outDegree = adjacencyIterator.next();
-            for (int i = 0; i < outDegree; i++) {
-              long edgeId = adjacencyIterator.next();
-              long endVertexId = adjacencyIterator.next();
-              Statement stmt = Statement.getStatement(EncodingFileFormat.EEE,
-                      NumberConversion.long2bytes(startVertexId),
-                      NumberConversion.long2bytes(edgeId), NumberConversion.long2bytes(endVertexId),
-                      getContainment(numberOfGraphChunks));
-              writeStatementToChunk(chunkIndex, numberOfGraphChunks, stmt, outputs, writtenFiles);
-              currentFrontier.append(endVertexId, chunkIndex, 1);
-              numberOfNewSeedVertices++;
-            }
-          }
-          remainingVerticesNumber = 0;
-          LongIterator frontierIterator = currentFrontier.iterator();
-          long vertexId = 0;
-          while (adjacencyIterator.hasNext() && frontierIterator.hasNext()) {
-            long frontierVertex = frontierIterator.next();
-            long frontierChunk = frontierIterator.next();
-            long currentMoleculeDiameter = frontierIterator.next();
-
-            vertexId = adjacencyIterator.next();
-            // search for a match
-            while (adjacencyIterator.hasNext() && frontierIterator.hasNext()
-                    && (vertexId != frontierVertex)) {
-              if (frontierVertex < vertexId) {
-                frontierVertex = frontierIterator.next();
-                frontierChunk = frontierIterator.next();
-                currentMoleculeDiameter = frontierIterator.next();
-              } else if (vertexId < frontierVertex) {
-                // skip unmatched vertices
-                long outDegree = adjacencyIterator.next();
-                nextAdjacencyListOut.writeLong(vertexId);
-                nextAdjacencyListOut.writeLong(outDegree);
-                for (int i = 0; i < outDegree; i++) {
-                  nextAdjacencyListOut.writeLong(adjacencyIterator.next());
-                  nextAdjacencyListOut.writeLong(adjacencyIterator.next());
-                }
-                remainingVerticesNumber++;
-                if (!adjacencyIterator.hasNext()) {
-                  vertexId = 0;
-                  break;
-                }
-                vertexId = adjacencyIterator.next();
-              }
-            }
-            if (frontierVertex == vertexId) {
-              // treat the outgoing edges
-              long outDegree = adjacencyIterator.next();
-              for (int i = 0; i < outDegree; i++) {
-                long edgeId = adjacencyIterator.next();
-                long endVertexId = adjacencyIterator.next();
-                Statement stmt = Statement.getStatement(EncodingFileFormat.EEE,
-                        NumberConversion.long2bytes(vertexId), NumberConversion.long2bytes(edgeId),
-                        NumberConversion.long2bytes(endVertexId),
-                        getContainment(numberOfGraphChunks));
-                writeStatementToChunk((int) frontierChunk, numberOfGraphChunks, stmt, outputs,
-                        writtenFiles);
-                if (endVertexId != vertexId) {
-                  // in case of self-loops do not visit vertex again
-                  nextFrontier.append(endVertexId,
-                          currentMoleculeDiameter == maxMoleculeDiameter
-                                  ? getChunkIndex(endVertexId, numberOfGraphChunks)
-                                  : frontierChunk,
-                          currentMoleculeDiameter == maxMoleculeDiameter ? 1
-                                  : (currentMoleculeDiameter + 1));
-                }
-              }
-              vertexId = 0;
-            }
-          }
-          // copy left over vertices
-          while (adjacencyIterator.hasNext()) {
-            if (vertexId == 0) {
-              vertexId = adjacencyIterator.next();
-            }
-            long outDegree = adjacencyIterator.next();
-            nextAdjacencyListOut.writeLong(vertexId);
-            nextAdjacencyListOut.writeLong(outDegree);
-            for (int i = 0; i < outDegree; i++) {
-              nextAdjacencyListOut.writeLong(adjacencyIterator.next());
-              nextAdjacencyListOut.writeLong(adjacencyIterator.next());
-            }
-            remainingVerticesNumber++;
-            vertexId = 0;
-          }
-          adjacencyIterator.close();
-          frontierIterator.close();
+        for (long[] result : execute(executor, tasks)) {
+          remainingVerticesNumber += result[0];
+          numberOfNewSeedVertices += result[1];
         }
-        currentFrontier.close();
+        close(currentFrontier);
         currentFrontier = nextFrontier;
         if (measurementCollector != null) {
           measurementCollector.measureValue(
                   MeasurementType.LOAD_GRAPH_COVER_CREATION_MOLECULE_ITERATION_END,
                   System.currentTimeMillis(), Long.toString(currentIteration),
                   Long.toString(remainingVerticesNumber), Long.toString(numberOfNewSeedVertices),
-                  Long.toString(nextFrontier.getSize()));
+                  Long.toString(getSize(nextFrontier)));
+        }
+        if (logger != null) {
+          logger.finer("iteration " + currentIteration + ": " + remainingVerticesNumber
+                  + " vertices remaining");
         }
-        // TODO remove
-        System.out.println("iteration " + currentIteration + ": "
-                + (System.currentTimeMillis() - startIteration) + "msec (" + remainingVerticesNumber
-                + " vertices remaining)");
         currentIteration++;
       }
-      adjacencyOutListsSortedByVertexId.delete();
-      nextAdjacencyListSortedByVertexId.delete();
-      currentFrontier.close();
+      for (File adjacencyList : adjacencyLists) {
+        adjacencyList.delete();
+      }
     } catch (IOException e) {
       throw new RuntimeException(e);
+    } finally {
+      if (currentFrontier != null) {
+        close(currentFrontier);
+      }
+      if (executor != null) {
+        executor.shutdownNow();
+      }
     }
 
-    // TODO activate
     Deleter.deleteFolder(internalWorkingDir);
+  }
+
+  /**
+   * Each range has its own frontier list. Two generations of frontiers
+   * exist at the same time and each cached element occupies about twice the
+   * memory of its values. If a vertex is reached from several chunks, the
+   * order in which the ranges append to the frontier depends on the thread
+   * scheduling. Therefore, the frontier is sorted by vertex, chunk and
+   * molecule diameter so that the smallest chunk index wins.
+   */
+  private IterableSortedLongArrayList[] createFrontier(VertexRanges ranges, File workingDir) {
+    IterableSortedLongArrayList[] frontier = new IterableSortedLongArrayList[ranges
+            .getNumberOfRanges()];
+    for (int i = 0; i < frontier.length; i++) {
+      frontier[i] = new IterableSortedLongArrayList(3,
+              new FixedSizeLongArrayComparator(true, 0, 1, 2),
+              getCacheSize() / 4 / frontier.length, workingDir,
+              Math.max(3, (getMaxNumberOfOpenFiles() / frontier.length) - 3));
+    }
+    return frontier;
+  }
 
-    // TODO remove
-    System.out.println("total execution time: " + (System.currentTimeMillis() - startTotal));
+  private long getSize(IterableSortedLongArrayList[] frontier) {
+    long size = 0;
+    for (IterableSortedLongArrayList list : frontier) {
+      size += list.getSize();
+    }
+    return size;
+  }
+
+  private void close(IterableSortedLongArrayList[] frontier) {
+    for (IterableSortedLongArrayList list : frontier) {
+      list.close();
+    }
+  }
+
+  private List<long[]> execute(ExecutorService executor, List<Callable<long[]>> tasks) {
+    List<long[]> results = new ArrayList<>();
+    try {
+      if (executor == null) {
+        for (Callable<long[]> task : tasks) {
+          results.add(task.call());
+        }
+      } else {
+        for (Future<long[]> future : executor.invokeAll(tasks)) {
+          results.add(future.get());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+    return results;
+  }
+
+  /**
+   * Assigns the molecules that start at vertices with an indegree of 0. The
+   * adjacency lists of all other vertices are split into the ranges.
+   * 
+   * @return number of remaining vertices
+   */
+  private long initialize(File adjacencyOutListsSortedByVertexId, VertexRanges ranges,
+          File[] adjacencyLists, IterableSortedLongArrayList[] frontier, int numberOfGraphChunks,
+          EncodedFileOutputStream[] outputs, boolean[] writtenFiles) throws IOException {
+    long remainingVerticesNumber = 0;
+    StatementBatch[] batches = new StatementBatch[numberOfGraphChunks];
+    EncodedLongFileOutputStream[] adjacencyListOuts =
+            new EncodedLongFileOutputStream[adjacencyLists.length];
+    try (EncodedLongFileInputStream adjacencyInput = new EncodedLongFileInputStream(
+            adjacencyOutListsSortedByVertexId);) {
+      for (int i = 0; i < adjacencyLists.length; i++) {
+        adjacencyListOuts[i] = new EncodedLongFileOutputStream(adjacencyLists[i]);
+      }
+      LongIterator iterator = adjacencyInput.iterator();
+      while (iterator.hasNext()) {
+        long startVertexId = iterator.next();
+        long inDegree = iterator.next();
+        long outDegree = iterator.next();
+        if (outDegree == 0) {
+          // ignore vertices with an empty out degree
+          continue;
+        }
+        if (inDegree == 0) {
+          int chunkIndex = getChunkIndex(startVertexId, numberOfGraphChunks);
+          for (int i = 0; i < outDegree; i++) {
+            long edgeId = iterator.next();
+            long endVertexId = iterator.next();
+            addToBatch(batches, chunkIndex, startVertexId, edgeId, endVertexId,
+                    numberOfGraphChunks, outputs, writtenFiles);
+            frontier[ranges.getRange(endVertexId)].append(endVertexId, chunkIndex, 1);
+          }
+        } else {
+          // this vertex will be visited in the future
+          EncodedLongFileOutputStream nextAdjacencyListOut = adjacencyListOuts[ranges
+                  .getRange(startVertexId)];
+          nextAdjacencyListOut.writeLong(startVertexId);
+          nextAdjacencyListOut.writeLong(outDegree);
+          for (int i = 0; i < outDegree; i++) {
+            nextAdjacencyListOut.writeLong(iterator.next());
+            nextAdjacencyListOut.writeLong(iterator.next());
+          }
+          remainingVerticesNumber++;
+        }
+      }
+    } finally {
+      for (EncodedLongFileOutputStream adjacencyListOut : adjacencyListOuts) {
+        if (adjacencyListOut != null) {
+          adjacencyListOut.close();
+        }
+      }
+    }
+    flushBatches(batches, numberOfGraphChunks, outputs, writtenFiles);
+    return remainingVerticesNumber;
+  }
+
+  /**
+   * Joins the adjacency lists of one range with its frontier. The matched
+   * vertices are assigned to the chunk of the frontier and their neighbours
+   * become the next frontier. If the frontier only fills half of its cache,
+   * the first unmatched vertices of the range are used as new seeds, first.
+   * 
+   * @return {number of remaining vertices, number of new seed vertices}
+   */
+  private long[] processRange(int range, File[] adjacencyLists,
+          IterableSortedLongArrayList currentFrontier, IterableSortedLongArrayList[] nextFrontier,
+          VertexRanges ranges, File workingDir, int numberOfGraphChunks,
+          EncodedFileOutputStream[] outputs, boolean[] writtenFiles) throws IOException {
+    long remainingVerticesNumber = 0;
+    long numberOfNewSeedVertices = 0;
+    StatementBatch[] batches = new StatementBatch[numberOfGraphChunks];
+    FrontierBuffer nextFrontierBuffer = new FrontierBuffer(nextFrontier, ranges);
+    File adjacencyList = adjacencyLists[range];
+    File nextAdjacencyList = File.createTempFile("adjacencyList", "", workingDir);
+    try (EncodedLongFileOutputStream nextAdjacencyListOut = new EncodedLongFileOutputStream(
+            nextAdjacencyList);
+            EncodedLongFileInputStream adjacencyInput = new EncodedLongFileInputStream(
+                    adjacencyList);) {
+      LongIterator adjacencyIterator = adjacencyInput.iterator();
+      long numberOfSeedEdges = currentFrontier.getFreeCacheSpace() - currentFrontier.getSize();
+      while (adjacencyIterator.hasNext() && (numberOfSeedEdges > 0)) {
+        long startVertexId = adjacencyIterator.next();
+        int chunkIndex = getChunkIndex(startVertexId, numberOfGraphChunks);
+        long outDegree = adjacencyIterator.next();
+        for (int i = 0; i < outDegree; i++) {
+          long edgeId = adjacencyIterator.next();
+          long endVertexId = adjacencyIterator.next();
+          addToBatch(batches, chunkIndex, startVertexId, edgeId, endVertexId, numberOfGraphChunks,
+                  outputs, writtenFiles);
+          nextFrontierBuffer.append(endVertexId, chunkIndex, 1);
+          numberOfSeedEdges--;
+        }
+        numberOfNewSeedVertices++;
+      }
+
+      LongIterator frontierIterator = currentFrontier.iterator();
+      boolean hasFrontierVertex = frontierIterator.hasNext();
+      long frontierVertex = hasFrontierVertex ? frontierIterator.next() : 0;
+      long frontierChunk = hasFrontierVertex ? frontierIterator.next() : 0;
+      long currentMoleculeDiameter = hasFrontierVertex ? frontierIterator.next() : 0;
+      while (adjacencyIterator.hasNext()) {
+        long vertexId = adjacencyIterator.next();
+        long outDegree = adjacencyIterator.next();
+        // skip frontier vertices that have already been visited
+        while (hasFrontierVertex && (frontierVertex < vertexId)) {
+          hasFrontierVertex = frontierIterator.hasNext();
+          if (hasFrontierVertex) {
+            frontierVertex = frontierIterator.next();
+            frontierChunk = frontierIterator.next();
+            currentMoleculeDiameter = frontierIterator.next();
+          }
+        }
+        if (hasFrontierVertex && (frontierVertex == vertexId)) {
+          // the first entry of the vertex has the smallest chunk index, the
+          // further entries are skipped with the next vertex
+          // treat the outgoing edges
+          for (int i = 0; i < outDegree; i++) {
+            long edgeId = adjacencyIterator.next();
+            long endVertexId = adjacencyIterator.next();
+            addToBatch(batches, (int) frontierChunk, vertexId, edgeId, endVertexId,
+                    numberOfGraphChunks, outputs, writtenFiles);
+            if (endVertexId != vertexId) {
+              // in case of self-loops do not visit vertex again
+              if (currentMoleculeDiameter == maxMoleculeDiameter) {
+                nextFrontierBuffer.append(endVertexId,
+                        getChunkIndex(endVertexId, numberOfGraphChunks), 1);
+              } else {
+                nextFrontierBuffer.append(endVertexId, frontierChunk,
+                        currentMoleculeDiameter + 1);
+              }
+            }
+          }
+        } else {
+          // copy unmatched vertices
+          nextAdjacencyListOut.writeLong(vertexId);
+          nextAdjacencyListOut.writeLong(outDegree);
+          for (int i = 0; i < outDegree; i++) {
+            nextAdjacencyListOut.writeLong(adjacencyIterator.next());
+            nextAdjacencyListOut.writeLong(adjacencyIterator.next());
+          }
+          remainingVerticesNumber++;
+        }
+      }
+      adjacencyIterator.close();
+      frontierIterator.close();
+    }
+    nextFrontierBuffer.flush();
+    flushBatches(batches, numberOfGraphChunks, outputs, writtenFiles);
+    adjacencyList.delete();
+    adjacencyLists[range] = nextAdjacencyList;
+    return new long[] { remainingVerticesNumber, numberOfNewSeedVertices };
+  }
+
+  private void addToBatch(StatementBatch[] batches, int chunkIndex, long subject, long property,
+          long object, int numberOfGraphChunks, EncodedFileOutputStream[] outputs,
+          boolean[] writtenFiles) {
+    StatementBatch batch = batches[chunkIndex];
+    if (batch == null) {
+      batch = new StatementBatch(MoleculeHashCoverCreator.BATCH_SIZE);
+      batches[chunkIndex] = batch;
+    }
+    batch.add(subject, property, object, getContainment(numberOfGraphChunks));
+    if (batch.isFull()) {
+      writeStatementBatch(chunkIndex, batch, numberOfGraphChunks, outputs, writtenFiles);
+    }
+  }
+
+  private void flushBatches(StatementBatch[] batches, int numberOfGraphChunks,
+          EncodedFileOutputStream[] outputs, boolean[] writtenFiles) {
+    for (int i = 0; i < batches.length; i++) {
+      if ((batches[i] != null) && (batches[i].size() > 0)) {
+        writeStatementBatch(i, batches[i], numberOfGraphChunks, outputs, writtenFiles);
+      }
+    }
   }
 
   private byte[] getContainment(int numberOfGraphChunks) {
@@ -338,7 +499,8 @@ public class MoleculeHashCoverCreator extends GraphCoverCreatorBase {
    *         sorted by startVertexID
    */
   private File createAdjacencyListsSortedByStartVertexId(EncodedFileInputStream input,
-          File workingDir, int maxNumberOfOpenFiles, long maxCashSize) {
+          File workingDir, int maxNumberOfOpenFiles, long maxCashSize, long[] vertexBounds,
+          ExecutorService executor) {
     InitialChunkProducer producer = null;
     Merger merger = null;
     try {
@@ -356,12 +518,17 @@ public class MoleculeHashCoverCreator extends GraphCoverCreatorBase {
         @Override
         public void loadNextChunk() throws IOException {
           if (elements == null) {
-            long numberOfElements = maxCashSize / Long.BYTES / 5;
+            // each element is an array of 5 longs with about 24 bytes overhead
+            long numberOfElements = maxCashSize / ((Long.BYTES * 5) + 24);
             elements = new long[(int) numberOfElements][5];
           }
           nextIndex = 0;
           while (iterator.hasNext() && (nextIndex < (elements.length - 1))) {
             Statement stmt = iterator.next();
+            vertexBounds[0] = Math.min(vertexBounds[0],
+                    Math.min(stmt.getSubjectAsLong(), stmt.getObjectAsLong()));
+            vertexBounds[1] = Math.max(vertexBounds[1],
+                    Math.max(stmt.getSubjectAsLong(), stmt.getObjectAsLong()));
             elements[nextIndex][0] = stmt.getSubjectAsLong();
             elements[nextIndex][1] = 0;
             elements[nextIndex][2] = 1;
@@ -380,7 +547,7 @@ public class MoleculeHashCoverCreator extends GraphCoverCreatorBase {
 
         @Override
         public void sort(Comparator<long[]> comparator) {
-          Arrays.sort(elements, 0, nextIndex, comparator);
+          Arrays.parallelSort(elements, 0, nextIndex, comparator);
         }
 
         @Override
@@ -392,7 +559,7 @@ public class MoleculeHashCoverCreator extends GraphCoverCreatorBase {
         public void writeChunk(LongOutputWriter output) throws IOException {
           int startIndex = 0;
           for (int exclusiveEndIndex = 1; exclusiveEndIndex <= nextIndex; exclusiveEndIndex++) {
-            if ((exclusiveEndIndex == elements.length)
+            if ((exclusiveEndIndex == nextIndex)
                     || (elements[startIndex][0] != elements[exclusiveEndIndex][0])) {
               output.writeLong(elements[startIndex][0]);
               long indegree = 0;
@@ -420,7 +587,6 @@ public class MoleculeHashCoverCreator extends GraphCoverCreatorBase {
         }
       };
 
-      // TODO remove
       long[] numberOfVertices = new long[] { 0 };
       merger = new Merger() {
 
@@ -464,10 +630,14 @@ public class MoleculeHashCoverCreator extends GraphCoverCreatorBase {
       Comparator<long[]> comparator = new FixedSizeLongArrayComparator(true, 0);
       File adjacencyListSortedByVertex = File.createTempFile("adjacencyListSortedByVertex", "",
               workingDir);
-      NWayMergeSort sort = new NWayMergeSort();
+      // the chunks fill the whole cache, so they cannot be copied in order to
+      // write them in the background
+      NWayMergeSort sort = new NWayMergeSort(executor, false);
       sort.sort(producer, merger, comparator, workingDir, maxNumberOfOpenFiles,
               adjacencyListSortedByVertex);
-      System.out.println("\t" + numberOfVertices[0] + " vertices");
+      if (logger != null) {
+        logger.finer(numberOfVertices[0] + " vertices");
+      }
       return adjacencyListSortedByVertex;
     } catch (IOException e) {
       throw new RuntimeException(e);
@@ -486,4 +656,86 @@ public class MoleculeHashCoverCreator extends GraphCoverCreatorBase {
     super.close();
   }
 
+  /**
+   * Splits the vertex ids into ranges of equal width.
+   */
+  private static class VertexRanges {
+
+    private final long minVertex;
+
+    private final long rangeWidth;
+
+    private final int numberOfRanges;
+
+    public VertexRanges(long minVertex, long maxVertex, int numberOfRanges) {
+      if (minVertex > maxVertex) {
+        // empty graph
+        minVertex = 0;
+        maxVertex = 0;
+      }
+      this.minVertex = minVertex;
+      rangeWidth = ((maxVertex - minVertex) / numberOfRanges) + 1;
+      this.numberOfRanges = numberOfRanges;
+    }
+
+    public int getNumberOfRanges() {
+      return numberOfRanges;
+    }
+
+    public int getRange(long vertex) {
+      return (int) Math.min(numberOfRanges - 1, (vertex - minVertex) / rangeWidth);
+    }
+
+  }
+
+  /**
+   * Collects the frontier elements of one thread for each range and appends
+   * them to the frontier of the range at once.
+   */
+  private static class FrontierBuffer {
+
+    private final IterableSortedLongArrayList[] frontier;
+
+    private final VertexRanges ranges;
+
+    private final long[][] buffers;
+
+    private final int[] sizes;
+
+    public FrontierBuffer(IterableSortedLongArrayList[] frontier, VertexRanges ranges) {
+      this.frontier = frontier;
+      this.ranges = ranges;
+      buffers = new long[frontier.length][3 * MoleculeHashCoverCreator.BATCH_SIZE];
+      sizes = new int[frontier.length];
+    }
+
+    public void append(long vertex, long chunk, long moleculeDiameter) {
+      int range = ranges.getRange(vertex);
+      long[] buffer = buffers[range];
+      buffer[sizes[range]++] = vertex;
+      buffer[sizes[range]++] = chunk;
+      buffer[sizes[range]++] = moleculeDiameter;
+      if (sizes[range] == buffer.length) {
+        flush(range);
+      }
+    }
+
+    private void flush(int range) {
+      long[] buffer = buffers[range];
+      synchronized (frontier[range]) {
+        for (int i = 0; i < sizes[range]; i += 3) {
+          frontier[range].append(buffer[i], buffer[i + 1], buffer[i + 2]);
+        }
+      }
+      sizes[range] = 0;
+    }
+
+    public void flush() {
+      for (int range = 0; range < buffers.length; range++) {
+        flush(range);
+      }
+    }
+
+  }
+
 }
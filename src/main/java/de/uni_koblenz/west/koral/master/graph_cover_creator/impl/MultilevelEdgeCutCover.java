@@ -0,0 +1,76 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.graph_cover_creator.impl;
+
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+
+import de.uni_koblenz.west.koral.common.measurement.MeasurementCollector;
+import de.uni_koblenz.west.koral.common.measurement.MeasurementType;
+import de.uni_koblenz.west.koral.master.utils.AdjacencyMatrix;
+import de.uni_koblenz.west.koral.master.utils.MultilevelPartitioner;
+
+import java.io.File;
+import java.util.logging.Logger;
+
+/**
+ * Creates a minimal edge-cut cover like {@link MinimalEdgeCutCover}. Instead of
+ * running METIS as an external process, the graph is partitioned within the
+ * JVM by {@link MultilevelPartitioner}.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class MultilevelEdgeCutCover extends MinimalEdgeCutCover {
+
+  private final int numberOfThreads;
+
+  public MultilevelEdgeCutCover(Logger logger, MeasurementCollector measurementCollector) {
+    this(logger, measurementCollector, Runtime.getRuntime().availableProcessors());
+  }
+
+  public MultilevelEdgeCutCover(Logger logger, MeasurementCollector measurementCollector,
+          int numberOfThreads) {
+    super(logger, measurementCollector);
+    this.numberOfThreads = Math.max(1, numberOfThreads);
+  }
+
+  @Override
+  protected RocksDB partitionGraph(AdjacencyMatrix adjacencyMatrix, int numberOfPartitions,
+          File workingDir, File vertex2chunkIndexFolder) throws RocksDBException {
+    if (measurementCollector != null) {
+      measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_COVER_CREATION_RUN_METIS_START,
+              System.currentTimeMillis());
+    }
+    MultilevelPartitioner partitioner =
+            new MultilevelPartitioner(numberOfPartitions, numberOfThreads, 0);
+    int[] partitions;
+    try {
+      partitions = partitioner.partition(adjacencyMatrix);
+    } finally {
+      if (measurementCollector != null) {
+        measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_COVER_CREATION_RUN_METIS_END,
+                System.currentTimeMillis());
+      }
+    }
+    measurePartitioningQuality(partitions, numberOfPartitions, partitioner.getEdgeCut());
+    return createVertex2PartitionMap(partitions, vertex2chunkIndexFolder);
+  }
+
+}
@@ -0,0 +1,570 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.graph_cover_creator.impl;
+
+import de.uni_koblenz.west.koral.common.io.EncodedLongFileInputStream;
+import de.uni_koblenz.west.koral.common.io.EncodedLongFileOutputStream;
+import de.uni_koblenz.west.koral.common.measurement.MeasurementCollector;
+import de.uni_koblenz.west.koral.common.measurement.MeasurementType;
+import de.uni_koblenz.west.koral.master.utils.FixedSizeLongArrayComparator;
+import de.uni_koblenz.west.koral.master.utils.LongIterator;
+import de.uni_koblenz.west.koral.master.utils.OffHeapIntArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Creates a greedy edge coloring cover like
+ * {@link GreedyEdgeColoringCoverCreator}, but keeps the color of each edge
+ * and the size of each color in {@link OffHeapIntArray}s. Joined colors are
+ * merged in a union-find structure instead of recoloring their edges in
+ * files.<br>
+ * The vertex neighbourhoods are read in batches. The current colors of all
+ * edges of a batch are looked up in parallel before the vertices of the
+ * batch are colored one after the other.<br>
+ * If the colors do not fit into the memory budget, the file based coloring
+ * of {@link GreedyEdgeColoringCoverCreator} is used.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class ParallelGreedyEdgeColoringCoverCreator extends GreedyEdgeColoringCoverCreator {
+
+  public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+  /**
+   * the color of each edge and, in the worst case, the parent and the size of
+   * one color per edge
+   */
+  private static final int BYTES_PER_EDGE = 3 * Integer.BYTES;
+
+  /**
+   * each batch entry consists of an edge id and its color
+   */
+  private static final int BYTES_PER_BATCH_EDGE = Long.BYTES + Integer.BYTES;
+
+  private static final int MIN_BATCH_SIZE = 0x400;
+
+  /**
+   * larger batches would make the looked up colors outdated
+   */
+  private static final int MAX_BATCH_SIZE = 0x1_00_00;
+
+  /**
+   * maximal number of colors of ingoing edges that are considered for joining
+   */
+  private static final int MAX_NUMBER_OF_JOIN_CANDIDATES = 64;
+
+  private long memoryBudget;
+
+  private final int numberOfThreads;
+
+  /**
+   * edgeColors[edgeId] = colorId or 0 if the edge is not colored yet
+   */
+  private OffHeapIntArray edgeColors;
+
+  /**
+   * union-find parent of each color
+   */
+  private OffHeapIntArray colorParents;
+
+  /**
+   * number of edges of each root color. After the coloring, it stores the
+   * chunk of each root color.
+   */
+  private OffHeapIntArray colorSizes;
+
+  private int nextColorId;
+
+  private final int[] joinCandidates;
+
+  /**
+   * (size, color) of the colors of the ingoing edges of the current vertex
+   */
+  private long[] sortedInColors = new long[0];
+
+  public ParallelGreedyEdgeColoringCoverCreator(Logger logger,
+          MeasurementCollector measurementCollector) {
+    this(logger, measurementCollector, ParallelGreedyEdgeColoringCoverCreator.DEFAULT_MEMORY_BUDGET,
+            Runtime.getRuntime().availableProcessors());
+  }
+
+  public ParallelGreedyEdgeColoringCoverCreator(Logger logger,
+          MeasurementCollector measurementCollector, long memoryBudget, int numberOfThreads) {
+    super(logger, measurementCollector);
+    this.memoryBudget = memoryBudget;
+    this.numberOfThreads = Math.max(1, numberOfThreads);
+    joinCandidates = new int[ParallelGreedyEdgeColoringCoverCreator.MAX_NUMBER_OF_JOIN_CANDIDATES];
+  }
+
+  /**
+   * @param memoryBudget
+   *          in bytes
+   */
+  public void setMemoryBudget(long memoryBudget) {
+    this.memoryBudget = memoryBudget;
+  }
+
+  @Override
+  protected File createEdgeAssignment(File sortedVertexList, File internalWorkingDir,
+          int numberOfGraphChunks) {
+    long requiredMemory = (numberOfEdges + 1) * ParallelGreedyEdgeColoringCoverCreator.BYTES_PER_EDGE;
+    if ((requiredMemory > memoryBudget) || (numberOfEdges >= (Integer.MAX_VALUE / 2))) {
+      if (logger != null) {
+        logger.info("The colors of " + numberOfEdges + " edges require "
+                + (requiredMemory / 1024 / 1024)
+                + " MB which exceeds the memory budget. Using the file based edge coloring.");
+      }
+      return super.createEdgeAssignment(sortedVertexList, internalWorkingDir,
+              numberOfGraphChunks);
+    }
+
+    if (measurementCollector != null) {
+      measurementCollector.measureValue(
+              MeasurementType.LOAD_GRAPH_COVER_CREATION_COLORING_COLORING_CREATION_START,
+              System.currentTimeMillis());
+    }
+    edgeColors = new OffHeapIntArray(numberOfEdges + 1);
+    colorParents = new OffHeapIntArray((numberOfEdges / 16) + 16);
+    colorSizes = new OffHeapIntArray(colorParents.getCapacity());
+    nextColorId = 1;
+    ExecutorService executor = numberOfThreads > 1 ? Executors.newFixedThreadPool(numberOfThreads)
+            : null;
+    try {
+      createEdgeColoring(sortedVertexList, numberOfGraphChunks, executor,
+              memoryBudget - requiredMemory);
+      sortedVertexList.delete();
+
+      if (measurementCollector != null) {
+        measurementCollector.measureValue(
+                MeasurementType.LOAD_GRAPH_COVER_CREATION_COLORING_COLORING_CREATION_END,
+                System.currentTimeMillis());
+        measurementCollector.measureValue(
+                MeasurementType.LOAD_GRAPH_COVER_CREATION_COLORING_NUMBER_OF_COLORS,
+                getNumberOfColors());
+        measurementCollector.measureValue(
+                MeasurementType.LOAD_GRAPH_COVER_CREATION_COLORING_EDGE_ASSIGNMENT_TRANSFORMATION_START,
+                System.currentTimeMillis());
+      }
+
+      File edgeAssignment = createAssignmentOfEdgesToChunks(internalWorkingDir,
+              numberOfGraphChunks);
+
+      if (measurementCollector != null) {
+        measurementCollector.measureValue(
+                MeasurementType.LOAD_GRAPH_COVER_CREATION_COLORING_EDGE_ASSIGNMENT_TRANSFORMATION_END,
+                System.currentTimeMillis());
+      }
+      return edgeAssignment;
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+      edgeColors = null;
+      colorParents = null;
+      colorSizes = null;
+    }
+  }
+
+  private void createEdgeColoring(File sortedVertexList, int numberOfGraphChunks,
+          ExecutorService executor, long batchMemory) {
+    int maxColorSize = (int) Math.max(1,
+            (numberOfEdges / numberOfGraphChunks) * GreedyEdgeColoringCoverCreator.COLOR_SIZE_FACTOR);
+    int batchSize = (int) Math.max(ParallelGreedyEdgeColoringCoverCreator.MIN_BATCH_SIZE,
+            Math.min(ParallelGreedyEdgeColoringCoverCreator.MAX_BATCH_SIZE,
+                    batchMemory / ParallelGreedyEdgeColoringCoverCreator.BYTES_PER_BATCH_EDGE));
+    /*
+     * vertices[2*i]=outDegree, vertices[2*i+1]=inDegree
+     */
+    long[] vertices = new long[2 * batchSize];
+    long[] edges = new long[batchSize];
+    int[] colors = new int[batchSize];
+    int numberOfVertices = 0;
+    int numberOfBatchEdges = 0;
+    try (EncodedLongFileInputStream input = new EncodedLongFileInputStream(sortedVertexList);
+            LongIterator iterator = input.iterator();) {
+      while (iterator.hasNext()) {
+        long outDegree = iterator.next();
+        long inDegree = iterator.next();
+        int degree = (int) (outDegree + inDegree);
+        if ((numberOfBatchEdges + degree) > edges.length) {
+          colorBatch(vertices, numberOfVertices, edges, colors, numberOfBatchEdges, maxColorSize,
+                  executor);
+          numberOfVertices = 0;
+          numberOfBatchEdges = 0;
+          if (degree > edges.length) {
+            // the neighbourhood of a single vertex has to fit into memory
+            edges = new long[degree];
+            colors = new int[degree];
+          }
+        }
+        vertices[2 * numberOfVertices] = outDegree;
+        vertices[(2 * numberOfVertices) + 1] = inDegree;
+        numberOfVertices++;
+        for (int i = 0; i < degree; i++) {
+          edges[numberOfBatchEdges++] = iterator.next();
+        }
+      }
+      colorBatch(vertices, numberOfVertices, edges, colors, numberOfBatchEdges, maxColorSize,
+              executor);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void colorBatch(long[] vertices, int numberOfVertices, long[] edges, int[] colors,
+          int numberOfEdges, int maxColorSize, ExecutorService executor) {
+    if (numberOfVertices == 0) {
+      return;
+    }
+    // look up the current colors in parallel
+    int numberOfTasks = executor == null ? 1 : numberOfThreads;
+    int edgesPerTask = (numberOfEdges / numberOfTasks) + 1;
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int start = 0; start < numberOfEdges; start += edgesPerTask) {
+      int from = start;
+      int to = Math.min(numberOfEdges, start + edgesPerTask);
+      tasks.add(() -> {
+        for (int i = from; i < to; i++) {
+          int color = edgeColors.get(edges[i]);
+          colors[i] = color == 0 ? 0 : findWithoutCompression(color);
+        }
+        return null;
+      });
+    }
+    execute(executor, tasks);
+
+    // color the neighbourhoods
+    int offset = 0;
+    for (int v = 0; v < numberOfVertices; v++) {
+      int outDegree = (int) vertices[2 * v];
+      int inDegree = (int) vertices[(2 * v) + 1];
+      colorVertex(edges, colors, offset, outDegree, inDegree, maxColorSize);
+      offset += outDegree + inDegree;
+    }
+  }
+
+  private void colorVertex(long[] edges, int[] colors, int offset, int outDegree, int inDegree,
+          int maxColorSize) {
+    int end = offset + outDegree + inDegree;
+    int inOffset = offset + outDegree;
+    if (sortedInColors.length < inDegree) {
+      sortedInColors = new long[inDegree];
+    }
+
+    // the outgoing edges get the largest color in which they fit
+    int outColor = 0;
+    int outColorSize = -1;
+    for (int i = offset; i < end; i++) {
+      if (colors[i] == 0) {
+        // the edge might have been colored by a previous vertex of this batch
+        colors[i] = edgeColors.get(edges[i]);
+      }
+      if (colors[i] != 0) {
+        colors[i] = find(colors[i]);
+        int size = colorSizes.get(colors[i]);
+        if (((size + outDegree) <= maxColorSize) && (size > outColorSize)) {
+          outColor = colors[i];
+          outColorSize = size;
+        }
+      }
+    }
+    if (outDegree > 0) {
+      if (outColor == 0) {
+        outColor = createColor();
+      }
+      for (int i = offset; i < inOffset; i++) {
+        int currentColor = colors[i];
+        if (currentColor != 0) {
+          currentColor = find(currentColor);
+        }
+        if (currentColor != outColor) {
+          if (currentColor != 0) {
+            colorSizes.set(currentColor, colorSizes.get(currentColor) - 1);
+          }
+          edgeColors.set(edges[i], outColor);
+          colorSizes.set(outColor, colorSizes.get(outColor) + 1);
+        }
+        colors[i] = outColor;
+      }
+    }
+
+    // join the colors of the colored ingoing edges, largest colors first
+    int numberOfInColors = 0;
+    for (int i = inOffset; i < end; i++) {
+      if (colors[i] != 0) {
+        int color = find(colors[i]);
+        int size = colorSizes.get(color);
+        if (size < maxColorSize) {
+          sortedInColors[numberOfInColors++] = (((long) size) << Integer.SIZE) | color;
+        }
+      }
+    }
+    Arrays.sort(sortedInColors, 0, numberOfInColors);
+    int numberOfCandidates = 0;
+    long previousColor = 0;
+    for (int i = numberOfInColors - 1; i >= 0; i--) {
+      if (sortedInColors[i] == previousColor) {
+        continue;
+      }
+      previousColor = sortedInColors[i];
+      int color = (int) sortedInColors[i];
+      int size = (int) (sortedInColors[i] >>> Integer.SIZE);
+      boolean isJoined = false;
+      for (int j = 0; j < numberOfCandidates; j++) {
+        if ((colorSizes.get(joinCandidates[j]) + size) <= maxColorSize) {
+          joinCandidates[j] = union(joinCandidates[j], color);
+          if (colorSizes.get(joinCandidates[j]) >= maxColorSize) {
+            // the joined color is full
+            joinCandidates[j] = joinCandidates[--numberOfCandidates];
+          }
+          isJoined = true;
+          break;
+        }
+      }
+      if (!isJoined && (numberOfCandidates < joinCandidates.length)) {
+        joinCandidates[numberOfCandidates++] = color;
+      }
+    }
+    if (outColor != 0) {
+      outColor = find(outColor);
+      if ((colorSizes.get(outColor) < maxColorSize)
+              && (indexOf(outColor, numberOfCandidates) < 0)
+              && (numberOfCandidates < joinCandidates.length)) {
+        joinCandidates[numberOfCandidates++] = outColor;
+      }
+    }
+
+    // uncolored ingoing edges get the largest available color
+    int currentCandidate = -1;
+    for (int i = inOffset; i < end; i++) {
+      if ((colors[i] != 0) || (edgeColors.get(edges[i]) != 0)) {
+        // this is a colored edge or a self-loop
+        continue;
+      }
+      if (currentCandidate < 0) {
+        for (int j = 0; j < numberOfCandidates; j++) {
+          if ((currentCandidate < 0) || (colorSizes.get(joinCandidates[j]) > colorSizes
+                  .get(joinCandidates[currentCandidate]))) {
+            currentCandidate = j;
+          }
+        }
+        if (currentCandidate < 0) {
+          joinCandidates[0] = createColor();
+          numberOfCandidates = 1;
+          currentCandidate = 0;
+        }
+      }
+      int color = joinCandidates[currentCandidate];
+      edgeColors.set(edges[i], color);
+      colorSizes.set(color, colorSizes.get(color) + 1);
+      if (colorSizes.get(color) >= maxColorSize) {
+        // the color is full and cannot be used any more
+        joinCandidates[currentCandidate] = joinCandidates[--numberOfCandidates];
+        currentCandidate = -1;
+      }
+    }
+  }
+
+  private int indexOf(int color, int numberOfCandidates) {
+    for (int i = 0; i < numberOfCandidates; i++) {
+      if (joinCandidates[i] == color) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int createColor() {
+    if (nextColorId == colorParents.getCapacity()) {
+      long newCapacity = Math.min(Integer.MAX_VALUE, 2 * colorParents.getCapacity());
+      colorParents.ensureCapacity(newCapacity);
+      colorSizes.ensureCapacity(newCapacity);
+    }
+    int color = nextColorId++;
+    colorParents.set(color, color);
+    colorSizes.set(color, 0);
+    return color;
+  }
+
+  /**
+   * May be called concurrently if no color is modified.
+   */
+  private int findWithoutCompression(int color) {
+    int parent = colorParents.get(color);
+    while (parent != color) {
+      color = parent;
+      parent = colorParents.get(color);
+    }
+    return color;
+  }
+
+  private int find(int color) {
+    int parent = colorParents.get(color);
+    while (parent != color) {
+      // path halving
+      int grandParent = colorParents.get(parent);
+      colorParents.set(color, grandParent);
+      color = grandParent;
+      parent = colorParents.get(color);
+    }
+    return color;
+  }
+
+  /**
+   * @return the root of the joined color
+   */
+  private int union(int color1, int color2) {
+    color1 = find(color1);
+    color2 = find(color2);
+    if (color1 == color2) {
+      return color1;
+    }
+    int size1 = colorSizes.get(color1);
+    int size2 = colorSizes.get(color2);
+    if (size1 < size2) {
+      int tmp = color1;
+      color1 = color2;
+      color2 = tmp;
+    }
+    colorParents.set(color2, color1);
+    colorSizes.set(color1, size1 + size2);
+    return color1;
+  }
+
+  private long getNumberOfColors() {
+    long numberOfColors = 0;
+    for (int color = 1; color < nextColorId; color++) {
+      if ((colorParents.get(color) == color) && (colorSizes.get(color) > 0)) {
+        numberOfColors++;
+      }
+    }
+    return numberOfColors;
+  }
+
+  private File createAssignmentOfEdgesToChunks(File workingDir, int numberOfGraphChunks) {
+    try {
+      // sort colors by size in descending order
+      Iterator<long[]> iteratorOverColors = new Iterator<long[]>() {
+
+        private int nextColor = getNextRootColor(1);
+
+        private int getNextRootColor(int color) {
+          while ((color < nextColorId) && ((colorParents.get(color) != color)
+                  || (colorSizes.get(color) == 0))) {
+            color++;
+          }
+          return color;
+        }
+
+        @Override
+        public boolean hasNext() {
+          return nextColor < nextColorId;
+        }
+
+        @Override
+        public long[] next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          long[] color = new long[] { nextColor, colorSizes.get(nextColor) };
+          nextColor = getNextRootColor(nextColor + 1);
+          return color;
+        }
+      };
+      File colorsSortedBySizeDesc = sortBinaryValues(iteratorOverColors,
+              new FixedSizeLongArrayComparator(false, 1, 0), workingDir,
+              GreedyEdgeColoringCoverCreator.NUMBER_OF_CACHED_VERTICES,
+              GreedyEdgeColoringCoverCreator.MAX_NUMBER_OF_OPEN_FILES, false);
+
+      // perform greedy algorithm to assign colors to chunk
+      long[] chunkSizes = new long[numberOfGraphChunks];
+      try (EncodedLongFileInputStream input = new EncodedLongFileInputStream(
+              colorsSortedBySizeDesc); LongIterator iterator = input.iterator();) {
+        while (iterator.hasNext()) {
+          int colorId = (int) iterator.next();
+          long colorSize = iterator.next();
+          // find chunk with minimal size
+          int indexOfMinChunk = 0;
+          for (int i = 1; i < chunkSizes.length; i++) {
+            if (chunkSizes[i] < chunkSizes[indexOfMinChunk]) {
+              indexOfMinChunk = i;
+            }
+          }
+          chunkSizes[indexOfMinChunk] += colorSize;
+          colorSizes.set(colorId, indexOfMinChunk);
+        }
+      }
+      colorsSortedBySizeDesc.delete();
+      if (logger != null) {
+        logger.finer("sizes of chunks: " + Arrays.toString(chunkSizes));
+      }
+
+      // the edge ids are consecutive, thus no sorting is required
+      File edgeAssignment = File.createTempFile("edgeAssignment-", "", workingDir);
+      try (EncodedLongFileOutputStream output = new EncodedLongFileOutputStream(
+              edgeAssignment);) {
+        for (long edge = 1; edge <= numberOfEdges; edge++) {
+          int color = edgeColors.get(edge);
+          if (color == 0) {
+            throw new RuntimeException("The edge e" + edge + " has not been colored.");
+          }
+          output.writeLong(colorSizes.get(find(color)));
+        }
+      }
+      return edgeAssignment;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void execute(ExecutorService executor, List<Callable<Void>> tasks) {
+    try {
+      if (executor == null) {
+        for (Callable<Void> task : tasks) {
+          task.call();
+        }
+      } else {
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+          future.get();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.graph_cover_creator.impl;
+
+import java.util.Arrays;
+
+/**
+ * Triples of one chunk collected by a single thread before they are written
+ * at once with
+ * {@link GraphCoverCreatorBase#writeStatementBatch(int, StatementBatch, int, de.uni_koblenz.west.koral.common.io.EncodedFileOutputStream[], boolean[])}
+ * .
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+class StatementBatch {
+
+  private final long[] triples;
+
+  private final byte[][] containments;
+
+  private int size;
+
+  public StatementBatch(int capacity) {
+    triples = new long[3 * capacity];
+    containments = new byte[capacity][];
+  }
+
+  public void add(long subject, long property, long object, byte[] containment) {
+    triples[3 * size] = subject;
+    triples[(3 * size) + 1] = property;
+    triples[(3 * size) + 2] = object;
+    containments[size] = containment.clone();
+    size++;
+  }
+
+  public boolean isFull() {
+    return size == containments.length;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getSubject(int i) {
+    return triples[3 * i];
+  }
+
+  public long getProperty(int i) {
+    return triples[(3 * i) + 1];
+  }
+
+  public long getObject(int i) {
+    return triples[(3 * i) + 2];
+  }
+
+  public byte[] getContainment(int i) {
+    return containments[i];
+  }
+
+  public void clear() {
+    Arrays.fill(containments, 0, size, null);
+    size = 0;
+  }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.graph_cover_creator.impl;
+
+import de.uni_koblenz.west.koral.common.io.EncodedFileInputStream;
+import de.uni_koblenz.west.koral.common.io.EncodedFileOutputStream;
+import de.uni_koblenz.west.koral.common.io.EncodingFileFormat;
+import de.uni_koblenz.west.koral.common.io.Statement;
+import de.uni_koblenz.west.koral.common.measurement.MeasurementCollector;
+import de.uni_koblenz.west.koral.common.utils.NumberConversion;
+import de.uni_koblenz.west.koral.master.dictionary.DictionaryEncoder;
+import de.uni_koblenz.west.koral.master.utils.DeSerializer;
+import de.uni_koblenz.west.koral.master.utils.OffHeapSimpleLongMap;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Creates a cover in a single pass over the encoded graph. The consecutive
+ * triples with the same subject form a molecule. Each molecule is assigned
+ * with the Linear Deterministic Greedy heuristic to the chunk that contains
+ * most of its neighbours, weighted by the remaining capacity of the chunk. A
+ * chunk may not grow more than {@link #MAX_IMBALANCE} beyond the average chunk
+ * size of the triples assigned so far.<br>
+ * Neighbours are the objects of the molecule and, if the subject has been an
+ * object before, the chunk of the molecule that referenced it first. rdf:type
+ * triples are ignored, since the classes would attract all their instances.
+ * If a subject occurs again later in the input, its triples are added to the
+ * chunk of its first molecule.<br>
+ * The chunk of each vertex is stored in an {@link OffHeapSimpleLongMap}.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class StreamingCoverCreator extends GraphCoverCreatorBase {
+
+  private static final double MAX_IMBALANCE = 0.05;
+
+  /**
+   * larger molecules are assigned after the first triples and the remaining
+   * triples are added to the same chunk
+   */
+  private static final int MAX_MOLECULE_SIZE = 1 << 16;
+
+  /**
+   * marks the vertices that have been assigned as subject. Otherwise, the
+   * value is the chunk of the first molecule in which the vertex occurred as
+   * object.
+   */
+  private static final long SUBJECT_FLAG = 1L << 32;
+
+  private static final long UNKNOWN_VERTEX = -1;
+
+  private long[] triplesPerChunk;
+
+  private long[] molecule;
+
+  private byte[][] containments;
+
+  private int moleculeSize;
+
+  private long[] scores;
+
+  public StreamingCoverCreator(Logger logger, MeasurementCollector measurementCollector) {
+    super(logger, measurementCollector);
+  }
+
+  @Override
+  public EncodingFileFormat getRequiredInputEncoding() {
+    return EncodingFileFormat.EEE;
+  }
+
+  @Override
+  protected void createCover(DictionaryEncoder dictionary, EncodedFileInputStream input,
+          int numberOfGraphChunks, EncodedFileOutputStream[] outputs, boolean[] writtenFiles,
+          File workingDir) {
+    long rdfType = dictionary.encodeWithoutOwnership(
+            DeSerializer.deserializeNode("<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>"),
+            false);
+    triplesPerChunk = new long[numberOfGraphChunks];
+    molecule = new long[3 * 1024];
+    containments = new byte[1024][];
+    moleculeSize = 0;
+    scores = new long[numberOfGraphChunks];
+    OffHeapSimpleLongMap vertex2chunk = new OffHeapSimpleLongMap();
+    try {
+      for (Statement statement : input) {
+        // statement is reused when the molecule is written
+        long subject = statement.getSubjectAsLong();
+        long property = statement.getPropertyAsLong();
+        long object = statement.getObjectAsLong();
+        byte[] containment = statement.getContainment().clone();
+        if ((moleculeSize > 0)
+                && ((molecule[0] != subject) || (moleculeSize == MAX_MOLECULE_SIZE))) {
+          assignMolecule(vertex2chunk, rdfType, numberOfGraphChunks, outputs, writtenFiles);
+        }
+        addToMolecule(subject, property, object, containment);
+      }
+      if (moleculeSize > 0) {
+        assignMolecule(vertex2chunk, rdfType, numberOfGraphChunks, outputs, writtenFiles);
+      }
+      if (logger != null) {
+        logger.finer("assigned " + vertex2chunk.size() + " vertices to the chunks "
+                + Arrays.toString(triplesPerChunk));
+      }
+    } finally {
+      vertex2chunk.close();
+      molecule = null;
+      containments = null;
+    }
+  }
+
+  private void addToMolecule(long subject, long property, long object, byte[] containment) {
+    if (moleculeSize == containments.length) {
+      molecule = Arrays.copyOf(molecule, 2 * molecule.length);
+      containments = Arrays.copyOf(containments, 2 * containments.length);
+    }
+    molecule[3 * moleculeSize] = subject;
+    molecule[(3 * moleculeSize) + 1] = property;
+    molecule[(3 * moleculeSize) + 2] = object;
+    containments[moleculeSize] = containment;
+    moleculeSize++;
+  }
+
+  private void assignMolecule(OffHeapSimpleLongMap vertex2chunk, long rdfType,
+          int numberOfGraphChunks, EncodedFileOutputStream[] outputs, boolean[] writtenFiles) {
+    long subject = molecule[0];
+    long subjectInfo = vertex2chunk.get(subject, UNKNOWN_VERTEX);
+    int targetChunk;
+    if ((subjectInfo != UNKNOWN_VERTEX) && ((subjectInfo & SUBJECT_FLAG) != 0)) {
+      targetChunk = (int) (subjectInfo & ~SUBJECT_FLAG);
+    } else {
+      Arrays.fill(scores, 0);
+      if (subjectInfo != UNKNOWN_VERTEX) {
+        scores[(int) subjectInfo]++;
+      }
+      for (int i = 0; i < moleculeSize; i++) {
+        if (molecule[(3 * i) + 1] == rdfType) {
+          continue;
+        }
+        long objectInfo = vertex2chunk.get(molecule[(3 * i) + 2], UNKNOWN_VERTEX);
+        if (objectInfo != UNKNOWN_VERTEX) {
+          scores[(int) (objectInfo & ~SUBJECT_FLAG)]++;
+        }
+      }
+      targetChunk = selectChunk();
+      vertex2chunk.put(subject, targetChunk | SUBJECT_FLAG);
+    }
+
+    for (int i = 0; i < moleculeSize; i++) {
+      long object = molecule[(3 * i) + 2];
+      if ((molecule[(3 * i) + 1] != rdfType)
+              && (vertex2chunk.get(object, UNKNOWN_VERTEX) == UNKNOWN_VERTEX)) {
+        vertex2chunk.put(object, targetChunk);
+      }
+      Statement statement = Statement.getStatement(EncodingFileFormat.EEE,
+              NumberConversion.long2bytes(subject),
+              NumberConversion.long2bytes(molecule[(3 * i) + 1]),
+              NumberConversion.long2bytes(object), containments[i]);
+      writeStatementToChunk(targetChunk, numberOfGraphChunks, statement, outputs, writtenFiles);
+      containments[i] = null;
+    }
+    triplesPerChunk[targetChunk] += moleculeSize;
+    moleculeSize = 0;
+  }
+
+  /**
+   * @return the chunk with the highest score weighted by its remaining
+   *         capacity. If no chunk has enough capacity left, the smallest chunk
+   *         is returned.
+   */
+  private int selectChunk() {
+    long numberOfTriples = moleculeSize;
+    for (long triples : triplesPerChunk) {
+      numberOfTriples += triples;
+    }
+    double capacity = ((1 + MAX_IMBALANCE) * numberOfTriples) / triplesPerChunk.length;
+    int smallestChunk = 0;
+    int bestChunk = -1;
+    double bestScore = -1;
+    for (int chunk = 0; chunk < triplesPerChunk.length; chunk++) {
+      if (triplesPerChunk[chunk] < triplesPerChunk[smallestChunk]) {
+        smallestChunk = chunk;
+      }
+      if ((triplesPerChunk[chunk] + moleculeSize) > capacity) {
+        continue;
+      }
+      double score = scores[chunk] * (1 - (triplesPerChunk[chunk] / capacity));
+      if ((score > bestScore) || ((score == bestScore)
+              && (triplesPerChunk[chunk] < triplesPerChunk[bestChunk]))) {
+        bestChunk = chunk;
+        bestScore = score;
+      }
+    }
+    return bestChunk == -1 ? smallestChunk : bestChunk;
+  }
+
+}
@@ -16,20 +16,53 @@
  */
 package de.uni_koblenz.west.koral.master.statisticsDB;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 import de.uni_koblenz.west.koral.common.config.impl.Configuration;
+import de.uni_koblenz.west.koral.common.io.BlockCodec;
+import de.uni_koblenz.west.koral.common.io.ChunkStatistics;
 import de.uni_koblenz.west.koral.common.io.EncodedFileInputStream;
 import de.uni_koblenz.west.koral.common.io.EncodedFileOutputStream;
+import de.uni_koblenz.west.koral.common.io.EncodedLongFileInputStream;
 import de.uni_koblenz.west.koral.common.io.EncodingFileFormat;
+import de.uni_koblenz.west.koral.common.io.LongOutputWriter;
 import de.uni_koblenz.west.koral.common.io.Statement;
+import de.uni_koblenz.west.koral.common.utils.Checkpoints;
 import de.uni_koblenz.west.koral.common.utils.NumberConversion;
 import de.uni_koblenz.west.koral.master.dictionary.DictionaryEncoder;
 import de.uni_koblenz.west.koral.master.statisticsDB.impl.multi_file.MultiFileGraphStatisticsDatabase;
+import de.uni_koblenz.west.koral.master.utils.FixedSizeLongArrayComparator;
+import de.uni_koblenz.west.koral.master.utils.InitialChunkProducer;
+import de.uni_koblenz.west.koral.master.utils.LongIterator;
+import de.uni_koblenz.west.koral.master.utils.Merger;
+import de.uni_koblenz.west.koral.master.utils.NWayMergeSort;
+import de.uni_koblenz.west.koral.master.utils.RocksDBSimpleLongMap;
+import de.uni_koblenz.west.koral.master.utils.SimpleLongMap;
 
 /**
  * Stores statistical information about the occurrence of resources in the different graph chunks. It receives its data
@@ -40,6 +73,13 @@ import de.uni_koblenz.west.koral.master.statisticsDB.impl.multi_file.MultiFileGr
  */
 public class GraphStatistics implements Closeable {
 
+	private static final int MAX_NUMBER_OF_OPEN_FILES = 100;
+
+	/**
+	 * maximal memory used for sorting the triples of an incrementally loaded chunk
+	 */
+	private static final long MAX_CACHE_SIZE = 0x400_0000L;
+
 	@SuppressWarnings("unused")
 	private final Logger logger;
 
@@ -47,41 +87,581 @@ public class GraphStatistics implements Closeable {
 
 	private final int numberOfChunks;
 
+	/**
+	 * is <code>null</code> if the statistics are not persisted in a directory.
+	 */
+	private final String statisticsDir;
+
+	/**
+	 * is <code>null</code> if the statistics are not persisted in a directory. In this case, incremental loading is not
+	 * supported.
+	 */
+	private final PinnedOwners pinnedOwners;
+
+	/**
+	 * counts the occurrences removed by deletions. They are subtracted from the
+	 * occurrences stored in {@link #database}. Is <code>null</code> if the
+	 * statistics are not persisted in a directory.
+	 */
+	private final MultiFileGraphStatisticsDatabase deletions;
+
+	private boolean containsDeletions;
+
+	/**
+	 * total number of occurrences of each property
+	 */
+	private final Map<Long, LongAdder> propertyFrequencies;
+
+	/**
+	 * is <code>null</code> if the statistics are not persisted in a directory.
+	 */
+	private final File propertyFrequenciesFile;
+
+	/**
+	 * distinct subjects and objects per property and chunk and the histograms of the objects of each property
+	 */
+	private final PredicateStatistics predicateStatistics;
+
+	/**
+	 * is <code>null</code> if the statistics are not persisted in a directory.
+	 */
+	private final File predicateStatisticsFile;
+
+	/**
+	 * directory in which the {@link OccurrenceCounter}s write their runs
+	 */
+	private final File counterDir;
+
+	/**
+	 * the counters that have been created by {@link #count(long[], int, int)} since the last call of
+	 * {@link #mergeCounts()}
+	 */
+	private final List<OccurrenceCounter> counters;
+
+	private volatile ThreadLocal<OccurrenceCounter> counterOfThread;
+
+	/**
+	 * arrays into which the statistics of a resource are read without allocating new objects
+	 */
+	private final ThreadLocal<long[]> statisticsOfThread;
+
+	private final ThreadLocal<long[]> deletionsOfThread;
+
+	/**
+	 * codec of the written graph chunks
+	 */
+	private final BlockCodec encodedFileCodec;
+
 	public GraphStatistics(Configuration conf, short numberOfChunks, Logger logger) {
 		this.logger = logger;
 		this.numberOfChunks = numberOfChunks;
-		// TODO enable
-		// database = new SQLiteGraphStatisticsDatabase(conf.getStatisticsDir(),
-		// numberOfChunks);
-		database = new MultiFileGraphStatisticsDatabase(conf.getStatisticsDir(true), numberOfChunks);
+		statisticsDir = conf.getStatisticsDir(true);
+		database = conf.getStatisticsDatabaseType().create(conf.getStatisticsDir(true), numberOfChunks);
+		pinnedOwners = new PinnedOwners(new File(conf.getStatisticsDir(true) + "PinnedOwners"));
+		deletions = new MultiFileGraphStatisticsDatabase(conf.getStatisticsDir(true) + "Deletions", numberOfChunks);
+		for (long deletedTriples : deletions.getChunkSizes()) {
+			containsDeletions |= deletedTriples != 0;
+		}
+		propertyFrequencies = new ConcurrentHashMap<>();
+		propertyFrequenciesFile = new File(conf.getStatisticsDir(true) + "PropertyFrequencies");
+		loadPropertyFrequencies();
+		predicateStatistics = new PredicateStatistics(numberOfChunks);
+		predicateStatisticsFile = new File(conf.getStatisticsDir(true) + "PredicateStatistics");
+		if (predicateStatisticsFile.exists()) {
+			predicateStatistics.load(predicateStatisticsFile);
+		}
+		counterDir = new File(conf.getTmpDirByInstance(true));
+		counters = new ArrayList<>();
+		counterOfThread = new ThreadLocal<>();
+		statisticsOfThread = ThreadLocal.withInitial(() -> new long[3 * numberOfChunks]);
+		deletionsOfThread = ThreadLocal.withInitial(() -> new long[3 * numberOfChunks]);
+		encodedFileCodec = conf.getEncodedFileCodec();
 	}
 
 	public GraphStatistics(GraphStatisticsDatabase database, short numberOfChunks, Logger logger) {
 		this.logger = logger;
 		this.numberOfChunks = numberOfChunks;
 		this.database = database;
+		statisticsDir = null;
+		pinnedOwners = null;
+		deletions = null;
+		propertyFrequencies = new ConcurrentHashMap<>();
+		propertyFrequenciesFile = null;
+		predicateStatistics = new PredicateStatistics(numberOfChunks);
+		predicateStatisticsFile = null;
+		counterDir = new File(System.getProperty("java.io.tmpdir"));
+		counters = new ArrayList<>();
+		counterOfThread = new ThreadLocal<>();
+		statisticsOfThread = ThreadLocal.withInitial(() -> new long[3 * numberOfChunks]);
+		deletionsOfThread = ThreadLocal.withInitial(() -> new long[3 * numberOfChunks]);
+		encodedFileCodec = EncodedFileOutputStream.DEFAULT_CODEC;
+	}
+
+	private void loadPropertyFrequencies() {
+		if (!propertyFrequenciesFile.exists()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(propertyFrequenciesFile)));) {
+			int numberOfProperties = in.readInt();
+			for (int i = 0; i < numberOfProperties; i++) {
+				LongAdder frequency = new LongAdder();
+				long property = in.readLong();
+				frequency.add(in.readLong());
+				propertyFrequencies.put(property, frequency);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void savePropertyFrequencies(File file) {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)));) {
+			Map<Long, Long> frequencies = new HashMap<>();
+			for (Map.Entry<Long, LongAdder> entry : propertyFrequencies.entrySet()) {
+				frequencies.put(entry.getKey(), entry.getValue().sum());
+			}
+			out.writeInt(frequencies.size());
+			for (Map.Entry<Long, Long> entry : frequencies.entrySet()) {
+				out.writeLong(entry.getKey());
+				out.writeLong(entry.getValue());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @param numberOfProperties
+	 * @return the ids including their owner of the most frequent properties
+	 *         sorted by descending frequency
+	 */
+	public long[] getMostFrequentProperties(int numberOfProperties) {
+		return propertyFrequencies.entrySet().stream()
+				.sorted((e1, e2) -> Long.compare(e2.getValue().sum(), e1.getValue().sum()))
+				.limit(numberOfProperties).mapToLong(e -> getIDWithOwner(e.getKey())).toArray();
+	}
+
+	/**
+	 * Writes a consistent copy of the statistics into the directory.
+	 * 
+	 * @param checkpointDir
+	 */
+	public void createCheckpoint(File checkpointDir) {
+		if (pinnedOwners == null) {
+			throw new UnsupportedOperationException("Checkpoints require persisted statistics.");
+		}
+		database.flush();
+		deletions.flush();
+		Checkpoints.copyDirectory(new File(statisticsDir), new File(checkpointDir, "statistics"));
+		Checkpoints.copyDirectory(new File(statisticsDir + "Deletions"), new File(checkpointDir, "deletions"));
+		pinnedOwners.createCheckpoint(new File(checkpointDir, "pinnedOwners"));
+		savePropertyFrequencies(new File(checkpointDir, "propertyFrequencies"));
+		predicateStatistics.save(new File(checkpointDir, "predicateStatistics"));
+	}
+
+	/**
+	 * Replaces the persisted statistics by the ones of the checkpoint. The
+	 * statistics must not be opened.
+	 * 
+	 * @param conf
+	 * @param checkpointDir
+	 */
+	public static void restoreCheckpoint(Configuration conf, File checkpointDir) {
+		String statisticsDir = conf.getStatisticsDir(true);
+		Checkpoints.restore(new File(checkpointDir, "statistics"), new File(statisticsDir));
+		Checkpoints.restore(new File(checkpointDir, "deletions"), new File(statisticsDir + "Deletions"));
+		Checkpoints.restore(new File(checkpointDir, "pinnedOwners"), new File(statisticsDir + "PinnedOwners"));
+		File propertyFrequencies = new File(statisticsDir + "PropertyFrequencies");
+		propertyFrequencies.delete();
+		File predicateStatistics = new File(statisticsDir + "PredicateStatistics");
+		predicateStatistics.delete();
+		try {
+			Files.copy(new File(checkpointDir, "propertyFrequencies").toPath(), propertyFrequencies.toPath());
+			File checkpointedPredicateStatistics = new File(checkpointDir, "predicateStatistics");
+			if (checkpointedPredicateStatistics.exists()) {
+				Files.copy(checkpointedPredicateStatistics.toPath(), predicateStatistics.toPath());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	public void collectStatistics(File[] encodedChunks) {
 		clear();
-		for (int i = 0; i < encodedChunks.length; i++) {
-			collectStatistics(i, encodedChunks[i]);
+		countChunks(encodedChunks);
+	}
+
+	/**
+	 * Adds the statistical information of incrementally loaded graph chunks to the already collected statistics. The
+	 * triples keep the chunks assigned by the graph cover. Before they are counted, duplicate triples are removed from
+	 * each chunk. Afterwards, the owners of already known resources are pinned, if the updated statistics would select
+	 * a different owner.
+	 *
+	 * @param encodedChunks
+	 *            are deleted after the duplicates are removed
+	 * @param workingDir
+	 * @return the graph chunks without duplicates
+	 */
+	public File[] collectStatisticsIncrementally(File[] encodedChunks, File workingDir) {
+		if (pinnedOwners == null) {
+			throw new UnsupportedOperationException("Incremental loading requires persisted statistics.");
+		}
+		SimpleLongMap previousOwners = new RocksDBSimpleLongMap(
+				new File(workingDir.getAbsolutePath() + File.separatorChar + "previousOwners"), 20);
+		try {
+			File[] result = getIncrementalFiles(workingDir);
+			for (int i = 0; i < encodedChunks.length; i++) {
+				if (encodedChunks[i] == null) {
+					result[i] = null;
+				} else {
+					removeDuplicates(encodedChunks[i], result[i], workingDir, previousOwners);
+					encodedChunks[i].delete();
+				}
+			}
+			countChunks(result);
+			for (long[] previousOwner : previousOwners) {
+				long id = previousOwner[0];
+				short owner = (short) previousOwner[1];
+				if (getOwner(getStatisticsForResource(id)) != owner) {
+					pinnedOwners.put(id, owner);
+				}
+			}
+			return result;
+		} finally {
+			previousOwners.close();
 		}
 	}
 
-	private void collectStatistics(int chunkIndex, File chunk) {
-		if (chunk == null) {
-			return;
+	/**
+	 * Sorts the triples of the chunk and writes each triple once. The containments of duplicates are united. While the
+	 * triples are read, the previous owners of their resources are recorded.
+	 * 
+	 * @param chunk
+	 * @param output
+	 * @param workingDir
+	 * @param previousOwners
+	 */
+	private void removeDuplicates(File chunk, File output, File workingDir, SimpleLongMap previousOwners) {
+		// the containment bitset is stored in the longs following subject, property and object
+		int containmentLength = (numberOfChunks / Byte.SIZE) + ((numberOfChunks % Byte.SIZE) == 0 ? 0 : 1);
+		int elementSize = 3 + ((containmentLength + Long.BYTES - 1) / Long.BYTES);
+		InitialChunkProducer producer = null;
+		Merger merger = null;
+		File sortedTriples = null;
+		try {
+			producer = new InitialChunkProducer() {
+
+				private long[][] elements;
+
+				private int nextIndex;
+
+				private EncodedFileInputStream input;
+
+				private Iterator<Statement> iterator;
+
+				@Override
+				public void loadNextChunk() throws IOException {
+					if (input == null) {
+						input = new EncodedFileInputStream(EncodingFileFormat.EEE, chunk);
+						iterator = input.iterator();
+					}
+					if (elements == null) {
+						// each element has about 24 bytes overhead
+						elements = new long[(int) (GraphStatistics.MAX_CACHE_SIZE
+								/ ((Long.BYTES * elementSize) + 24))][];
+					}
+					nextIndex = 0;
+					while ((nextIndex < elements.length) && iterator.hasNext()) {
+						Statement statement = iterator.next();
+						if (elements[nextIndex] == null) {
+							// small deltas do not allocate the whole cache
+							elements[nextIndex] = new long[elementSize];
+						}
+						long[] element = elements[nextIndex];
+						element[0] = statement.getSubjectAsLong();
+						element[1] = statement.getPropertyAsLong();
+						element[2] = statement.getObjectAsLong();
+						for (int i = 0; i < 3; i++) {
+							recordPreviousOwner(element[i], getStatisticsForResource(element[i]), previousOwners);
+						}
+						Arrays.fill(element, 3, elementSize, 0);
+						byte[] containment = statement.getContainment();
+						for (int i = 0; i < Math.min(containment.length, containmentLength); i++) {
+							element[3 + (i / Long.BYTES)] |= (containment[i] & 0xffL) << (Byte.SIZE * (i % Long.BYTES));
+						}
+						nextIndex++;
+					}
+				}
+
+				@Override
+				public void sort(Comparator<long[]> comparator) {
+					Arrays.sort(elements, 0, nextIndex, comparator);
+				}
+
+				@Override
+				public boolean hasNextChunk() {
+					return nextIndex > 0;
+				}
+
+				@Override
+				public void writeChunk(LongOutputWriter output) throws IOException {
+					for (int i = 0; i < nextIndex; i++) {
+						long[] element = elements[i];
+						while (((i + 1) < nextIndex) && isSameTriple(element, elements[i + 1])) {
+							i++;
+							for (int j = 3; j < elementSize; j++) {
+								element[j] |= elements[i][j];
+							}
+						}
+						for (long value : element) {
+							output.writeLong(value);
+						}
+					}
+				}
+
+				@Override
+				public void close() {
+					elements = null;
+					if (input != null) {
+						try {
+							input.close();
+						} catch (IOException e) {
+							throw new RuntimeException(e);
+						}
+					}
+				}
+			};
+
+			merger = new Merger() {
+
+				@Override
+				public void startNextMergeLevel() {
+				}
+
+				@Override
+				public long[] readNextElement(LongIterator iterator) throws IOException {
+					long[] element = new long[elementSize];
+					for (int i = 0; i < elementSize; i++) {
+						element[i] = iterator.next();
+					}
+					return element;
+				}
+
+				@Override
+				public void mergeAndWrite(BitSet indicesOfSmallestElement, long[][] elements, LongIterator[] iterators,
+						LongOutputWriter out) throws IOException {
+					// duplicates are written only once
+					long[] element = elements[indicesOfSmallestElement.nextSetBit(0)];
+					for (int i = indicesOfSmallestElement.nextSetBit(0); i >= 0; i = indicesOfSmallestElement
+							.nextSetBit(i + 1)) {
+						for (int j = 3; j < elementSize; j++) {
+							element[j] |= elements[i][j];
+						}
+					}
+					for (long value : element) {
+						out.writeLong(value);
+					}
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+
+			sortedTriples = File.createTempFile("sortedTriples", "", workingDir);
+			new NWayMergeSort().sort(producer, merger, new FixedSizeLongArrayComparator(true, 0, 1, 2), workingDir,
+					GraphStatistics.MAX_NUMBER_OF_OPEN_FILES, sortedTriples);
+
+			try (EncodedLongFileInputStream input = new EncodedLongFileInputStream(sortedTriples);
+					EncodedFileOutputStream out = new EncodedFileOutputStream(output, false, encodedFileCodec);) {
+				LongIterator iterator = input.iterator();
+				byte[] containment = new byte[containmentLength];
+				while (iterator.hasNext()) {
+					long subject = iterator.next();
+					long property = iterator.next();
+					long object = iterator.next();
+					long containmentPart = 0;
+					for (int i = 0; i < ((elementSize - 3) * Long.BYTES); i++) {
+						if ((i % Long.BYTES) == 0) {
+							containmentPart = iterator.next();
+						}
+						if (i < containmentLength) {
+							containment[i] = (byte) (containmentPart >>> (Byte.SIZE * (i % Long.BYTES)));
+						}
+					}
+					out.writeStatement(Statement.getStatement(EncodingFileFormat.EEE,
+							NumberConversion.long2bytes(subject), NumberConversion.long2bytes(property),
+							NumberConversion.long2bytes(object), containment));
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			if (producer != null) {
+				producer.close();
+			}
+			if (merger != null) {
+				merger.close();
+			}
+			if (sortedTriples != null) {
+				sortedTriples.delete();
+			}
 		}
+	}
+
+	private boolean isSameTriple(long[] element1, long[] element2) {
+		return (element1[0] == element2[0]) && (element1[1] == element2[1]) && (element1[2] == element2[2]);
+	}
+
+	/**
+	 * @param id
+	 * @param statistics
+	 * @param previousOwners
+	 * @return the owner of the resource before the incremental load or <code>-1</code> if the resource is unknown
+	 */
+	private short recordPreviousOwner(long id, long[] statistics, SimpleLongMap previousOwners) {
+		short pinnedOwner = getPinnedOwner(id);
+		if (pinnedOwner >= 0) {
+			return pinnedOwner;
+		}
+		if (!occurs(statistics)) {
+			return -1;
+		}
+		short owner = getOwner(statistics);
+		previousOwners.put(id, owner);
+		return owner;
+	}
+
+	private boolean occurs(long[] statistics) {
+		if (statistics == null) {
+			return false;
+		}
+		for (int i = 0; i < (3 * numberOfChunks); i++) {
+			if (statistics[i] != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public File[] getIncrementalFiles(File workingDir) {
+		File[] chunkFiles = new File[numberOfChunks];
+		for (int i = 0; i < chunkFiles.length; i++) {
+			chunkFiles[i] = new File(workingDir.getAbsolutePath() + File.separatorChar + "chunk" + i + ".inc.gz");
+		}
+		return chunkFiles;
+	}
+
+	/**
+	 * Counts the triples of all chunks in parallel and merges the counts into the statistics database.
+	 * 
+	 * @param encodedChunks
+	 */
+	private void countChunks(File[] encodedChunks) {
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), encodedChunks.length)));
+		try {
+			List<Future<?>> tasks = new ArrayList<>();
+			for (int i = 0; i < encodedChunks.length; i++) {
+				if (encodedChunks[i] == null) {
+					continue;
+				}
+				int chunkIndex = i;
+				File chunk = encodedChunks[i];
+				tasks.add(executor.submit(() -> collectStatistics(chunkIndex, chunk)));
+			}
+			for (Future<?> task : tasks) {
+				task.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		mergeCounts();
+	}
+
+	private void collectStatistics(int chunkIndex, File chunk) {
+		OccurrenceCounter counter = getCounterOfCurrentThread();
 		try (EncodedFileInputStream in = new EncodedFileInputStream(EncodingFileFormat.EEE, chunk);) {
 			for (Statement statement : in) {
-				count(statement.getSubjectAsLong(), statement.getPropertyAsLong(), statement.getObjectAsLong(),
-						chunkIndex);
+				counter.count(statement.getSubjectAsLong(), statement.getPropertyAsLong(),
+						statement.getObjectAsLong(), chunkIndex);
 			}
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
+	}
+
+	private OccurrenceCounter getCounterOfCurrentThread() {
+		OccurrenceCounter counter = counterOfThread.get();
+		if (counter == null) {
+			counter = new OccurrenceCounter(counterDir, numberOfChunks);
+			synchronized (counters) {
+				counters.add(counter);
+				counterOfThread.set(counter);
+			}
+		}
+		return counter;
+	}
 
+	/**
+	 * Merges the triples counted by {@link #count(long[], int, int)} into the statistics database. It must not be
+	 * called while other threads are still counting.
+	 */
+	public void mergeCounts() {
+		List<OccurrenceCounter> mergedCounters;
+		synchronized (counters) {
+			mergedCounters = new ArrayList<>(counters);
+			counters.clear();
+			counterOfThread = new ThreadLocal<>();
+		}
+		try {
+			long[] triplesPerChunk = new long[numberOfChunks];
+			for (OccurrenceCounter counter : mergedCounters) {
+				long[] counted = counter.getTriplesPerChunk();
+				for (int i = 0; i < numberOfChunks; i++) {
+					triplesPerChunk[i] += counted[i];
+				}
+			}
+			for (int i = 0; i < numberOfChunks; i++) {
+				if (triplesPerChunk[i] != 0) {
+					database.addNumberOfTriplesPerChunk(i, triplesPerChunk[i]);
+				}
+			}
+			OccurrenceCounter.merge(mergedCounters, (occurrences, id) -> {
+				database.addOccurrences(id, occurrences);
+				long propertyOccurrences = 0;
+				for (int i = numberOfChunks; i < (2 * numberOfChunks); i++) {
+					propertyOccurrences += occurrences[i];
+				}
+				if (propertyOccurrences != 0) {
+					propertyFrequencies.computeIfAbsent(id, p -> new LongAdder()).add(propertyOccurrences);
+				}
+			});
+			for (OccurrenceCounter counter : mergedCounters) {
+				predicateStatistics.merge(counter.getPredicateStatistics());
+			}
+		} finally {
+			for (OccurrenceCounter counter : mergedCounters) {
+				counter.close();
+			}
+		}
+	}
+
+	private void discardCounts() {
+		synchronized (counters) {
+			for (OccurrenceCounter counter : counters) {
+				counter.close();
+			}
+			counters.clear();
+			counterOfThread = new ThreadLocal<>();
+		}
 	}
 
 	public void count(long subject, long property, long object, int chunk) {
@@ -89,31 +669,215 @@ public class GraphStatistics implements Closeable {
 		database.incrementPropertyCount(property, chunk);
 		database.incrementObjectCount(object, chunk);
 		database.incrementNumberOfTriplesPerChunk(chunk);
+		propertyFrequencies.computeIfAbsent(property, p -> new LongAdder()).increment();
+		predicateStatistics.addConcurrently(subject, property, object, chunk);
+	}
+
+	/**
+	 * Counts several triples of one chunk at once. It may be called by several threads concurrently. Each thread counts
+	 * into its own {@link OccurrenceCounter}. The counts become visible after {@link #mergeCounts()} is called.
+	 * 
+	 * @param triples
+	 *            subject, property and object of each triple
+	 * @param numberOfTriples
+	 * @param chunk
+	 */
+	public void count(long[] triples, int numberOfTriples, int chunk) {
+		OccurrenceCounter counter = getCounterOfCurrentThread();
+		for (int i = 0; i < numberOfTriples; i++) {
+			counter.count(triples[3 * i], triples[(3 * i) + 1], triples[(3 * i) + 2], chunk);
+		}
+	}
+
+	/**
+	 * Removes the occurrences of a deleted triple from the statistics.
+	 * 
+	 * @param subject
+	 * @param property
+	 * @param object
+	 * @param chunk
+	 */
+	public void uncount(long subject, long property, long object, int chunk) {
+		if (deletions == null) {
+			throw new UnsupportedOperationException("Deletions require persisted statistics.");
+		}
+		deletions.incrementSubjectCount(subject, chunk);
+		deletions.incrementPropertyCount(property, chunk);
+		deletions.incrementObjectCount(object, chunk);
+		deletions.incrementNumberOfTriplesPerChunk(chunk);
+		containsDeletions = true;
+		propertyFrequencies.computeIfAbsent(property, p -> new LongAdder()).decrement();
+	}
+
+	/**
+	 * Replaces the counts of a chunk by the exact counts that the slave storing this chunk has reported. Surplus
+	 * occurrences are recorded like deletions. Since the slave already stores the ids including their owners, the
+	 * reported owner is pinned, if the updated statistics would select a different owner.<br>
+	 * The slave stores at most the triples counted for its chunk. Thus, if it reports as many triples as were
+	 * counted, all counts are already exact and no resource has to be read. Otherwise, the counts of the reported
+	 * resources are compared in ascending order of their ids. Since each counted triple is stored at least once,
+	 * each counted resource is reported.
+	 * 
+	 * @param chunk
+	 * @param reportedStatistics
+	 *            the resources are encoded with their owner
+	 */
+	public void setChunkStatistics(int chunk, ChunkStatistics reportedStatistics) {
+		if (pinnedOwners == null) {
+			throw new UnsupportedOperationException("Reported statistics require persisted statistics.");
+		}
+		long chunkSize = getChunkSizes()[chunk];
+		if (reportedStatistics.getNumberOfTriples() == chunkSize) {
+			return;
+		}
+		long[] addedOccurrences = new long[3 * numberOfChunks];
+		long[] removedOccurrences = new long[3 * numberOfChunks];
+		reportedStatistics.forEach((idWithOwner, reportedCounts) -> {
+			long id = idWithOwner & 0x00_00_ff_ff_ff_ff_ff_ffL;
+			long[] statistics = readStatisticsForResource(id);
+			boolean isAdded = false;
+			boolean isRemoved = false;
+			for (int position = 0; position < 3; position++) {
+				int column = (position * numberOfChunks) + chunk;
+				long difference = reportedCounts[position] - (statistics == null ? 0 : statistics[column]);
+				if (difference > 0) {
+					addedOccurrences[column] = difference;
+					isAdded = true;
+				} else if (difference < 0) {
+					removedOccurrences[column] = -difference;
+					isRemoved = true;
+				}
+				if ((position == ChunkStatistics.PROPERTY) && (difference != 0)) {
+					propertyFrequencies.computeIfAbsent(id, p -> new LongAdder()).add(difference);
+				}
+			}
+			if (isAdded) {
+				database.addOccurrences(id, addedOccurrences);
+				Arrays.fill(addedOccurrences, 0);
+			}
+			if (isRemoved) {
+				deletions.addOccurrences(id, removedOccurrences);
+				Arrays.fill(removedOccurrences, 0);
+				containsDeletions = true;
+			}
+			short owner = (short) (idWithOwner >>> 48);
+			if ((isAdded || isRemoved) && (getOwner(id) != owner)) {
+				pinnedOwners.put(id, owner);
+			}
+		});
+		long difference = reportedStatistics.getNumberOfTriples() - chunkSize;
+		if (difference > 0) {
+			database.addNumberOfTriplesPerChunk(chunk, difference);
+		} else if (difference < 0) {
+			deletions.addNumberOfTriplesPerChunk(chunk, -difference);
+			containsDeletions = true;
+		}
+	}
+
+	/**
+	 * @param id
+	 * @return the statistics of the resource in an array that is reused by the current thread or <code>null</code>
+	 *         if the resource does not occur
+	 */
+	private long[] readStatisticsForResource(long id) {
+		long[] statistics = statisticsOfThread.get();
+		if (!database.getStatisticsForResource(id, statistics)) {
+			return null;
+		}
+		if (containsDeletions) {
+			long[] deletedOccurrences = deletionsOfThread.get();
+			if (deletions.getStatisticsForResource(id, deletedOccurrences)) {
+				for (int i = 0; i < statistics.length; i++) {
+					statistics[i] -= deletedOccurrences[i];
+				}
+			}
+		}
+		return statistics;
+	}
+
+	private long[] getStatisticsForResource(long id) {
+		long[] statistics = database.getStatisticsForResource(id);
+		if (containsDeletions && (statistics != null)) {
+			long[] deletedOccurrences = deletions.getStatisticsForResource(id);
+			if (deletedOccurrences != null) {
+				for (int i = 0; i < statistics.length; i++) {
+					statistics[i] -= deletedOccurrences[i];
+				}
+			}
+		}
+		return statistics;
 	}
 
 	public long[] getChunkSizes() {
-		return database.getChunkSizes();
+		long[] chunkSizes = database.getChunkSizes();
+		if (containsDeletions) {
+			chunkSizes = chunkSizes.clone();
+			long[] deletedTriples = deletions.getChunkSizes();
+			for (int i = 0; i < chunkSizes.length; i++) {
+				chunkSizes[i] -= deletedTriples[i];
+			}
+		}
+		return chunkSizes;
 	}
 
 	public File[] adjustOwnership(File[] encodedChunks, File workingDir) {
+		return adjustOwnership(encodedChunks, workingDir, null);
+	}
+
+	public File[] adjustOwnership(File[] encodedChunks, File workingDir, Consumer<File> adjustedChunkListener) {
+		return adjustOwnership(encodedChunks, workingDir, adjustedChunkListener, 0, 1);
+	}
+
+	/**
+	 * Rewrites the ids of all chunks so that they contain their owner. The chunks are processed in parallel.
+	 * 
+	 * @param encodedChunks
+	 * @param workingDir
+	 * @param adjustedChunkListener
+	 *            if not <code>null</code>, it is called with each adjusted chunk file as soon as it is written completely
+	 * @param maxId
+	 *            if greater than 0, the owners of the ids 1 to maxId are computed in parallel before the chunks are
+	 *            rewritten. Otherwise, the statistics are looked up for each occurrence of an id.
+	 * @param numberOfThreads
+	 * @return the adjusted chunk files
+	 */
+	public File[] adjustOwnership(File[] encodedChunks, File workingDir, Consumer<File> adjustedChunkListener,
+			long maxId, int numberOfThreads) {
 		File[] result = getAdjustedFiles(workingDir);
-		for (int i = 0; i < encodedChunks.length; i++) {
-			if (encodedChunks[i] == null) {
-				result[i] = null;
-				continue;
-			}
-			try (EncodedFileInputStream in = new EncodedFileInputStream(EncodingFileFormat.EEE, encodedChunks[i]);
-					EncodedFileOutputStream out = new EncodedFileOutputStream(result[i]);) {
-				for (Statement statement : in) {
-					Statement newStatement = Statement.getStatement(EncodingFileFormat.EEE,
-							NumberConversion.long2bytes(getIDWithOwner(statement.getSubjectAsLong())),
-							NumberConversion.long2bytes(getIDWithOwner(statement.getPropertyAsLong())),
-							NumberConversion.long2bytes(getIDWithOwner(statement.getObjectAsLong())),
-							statement.getContainment());
-					out.writeStatement(newStatement);
+		OwnerTable ownerTable = null;
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numberOfThreads));
+		try {
+			if (maxId > 0) {
+				ownerTable = OwnerTable.build(new File(workingDir, "owners"), maxId, id -> getOwner(id), executor);
+			}
+			OwnerTable owners = ownerTable;
+			List<Future<?>> tasks = new ArrayList<>();
+			for (int i = 0; i < encodedChunks.length; i++) {
+				if (encodedChunks[i] == null) {
+					result[i] = null;
+					continue;
 				}
-			} catch (IOException e) {
-				throw new RuntimeException(e);
+				File encodedChunk = encodedChunks[i];
+				File adjustedChunk = result[i];
+				tasks.add(executor.submit(() -> {
+					adjustOwnership(encodedChunk, adjustedChunk, owners);
+					if (adjustedChunkListener != null) {
+						adjustedChunkListener.accept(adjustedChunk);
+					}
+				}));
+			}
+			for (Future<?> task : tasks) {
+				task.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+			if (ownerTable != null) {
+				ownerTable.close();
 			}
 		}
 
@@ -125,6 +889,31 @@ public class GraphStatistics implements Closeable {
 		return result;
 	}
 
+	private void adjustOwnership(File encodedChunk, File adjustedChunk, OwnerTable ownerTable) {
+		try (EncodedFileInputStream in = new EncodedFileInputStream(EncodingFileFormat.EEE, encodedChunk);
+				EncodedFileOutputStream out = new EncodedFileOutputStream(adjustedChunk, false, encodedFileCodec);) {
+			for (Statement statement : in) {
+				Statement newStatement = Statement.getStatement(EncodingFileFormat.EEE,
+						NumberConversion.long2bytes(getIDWithOwner(statement.getSubjectAsLong(), ownerTable)),
+						NumberConversion.long2bytes(getIDWithOwner(statement.getPropertyAsLong(), ownerTable)),
+						NumberConversion.long2bytes(getIDWithOwner(statement.getObjectAsLong(), ownerTable)),
+						statement.getContainment());
+				out.writeStatement(newStatement);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private long getIDWithOwner(long id, OwnerTable ownerTable) {
+		if ((ownerTable != null) && (id > 0) && (id <= ownerTable.getMaxId())) {
+			return (((long) ownerTable.getOwner(id)) << 48) | id;
+		}
+		synchronized (this) {
+			return getIDWithOwner(id);
+		}
+	}
+
 	public File[] getAdjustedFiles(File workingDir) {
 		File[] chunkFiles = new File[numberOfChunks];
 		for (int i = 0; i < chunkFiles.length; i++) {
@@ -140,16 +929,100 @@ public class GraphStatistics implements Closeable {
 		return newID;
 	}
 
+	/**
+	 * Returns the id with the owner encoded in its first two bytes. If the
+	 * resource does not occur in the graph yet, <code>newResourceOwner</code>
+	 * becomes its owner. In order to keep the ids stored on the slaves valid, the
+	 * returned owner is pinned.
+	 * 
+	 * @param id
+	 * @param newResourceOwner
+	 * @return
+	 */
+	public long getIDWithPinnedOwner(long id, short newResourceOwner) {
+		if (pinnedOwners == null) {
+			throw new UnsupportedOperationException("Pinning owners requires persisted statistics.");
+		}
+		short owner = getPinnedOwner(id);
+		if (owner < 0) {
+			long[] statistics = getStatisticsForResource(id);
+			owner = occurs(statistics) ? getOwner(statistics) : newResourceOwner;
+			pinnedOwners.put(id, owner);
+		}
+		return (((long) owner) << 48) | id;
+	}
+
+	/**
+	 * @param subject
+	 * @return the chunk that contains most triples with this subject or -1 if
+	 *         the resource does not occur as subject
+	 */
+	public int getMainSubjectChunk(long subject) {
+		long[] statistics = getStatisticsForResource(subject & 0x00_00_ff_ff_ff_ff_ff_ffL);
+		int mainChunk = -1;
+		for (int i = 0; (statistics != null) && (i < numberOfChunks); i++) {
+			if ((statistics[i] > 0) && ((mainChunk == -1) || (statistics[i] > statistics[mainChunk]))) {
+				mainChunk = i;
+			}
+		}
+		return mainChunk;
+	}
+
+	/**
+	 * @param subject
+	 * @return the chunks that contain triples with this subject
+	 */
+	public BitSet getChunksWithSubject(long subject) {
+		long[] statistics = getStatisticsForResource(subject & 0x00_00_ff_ff_ff_ff_ff_ffL);
+		BitSet chunks = new BitSet(numberOfChunks);
+		for (int i = 0; (statistics != null) && (i < numberOfChunks); i++) {
+			if (statistics[i] > 0) {
+				chunks.set(i);
+			}
+		}
+		return chunks;
+	}
+
+	/**
+	 * @param id
+	 * @return the chunks that contain triples with this resource
+	 */
+	public BitSet getChunksWithResource(long id) {
+		long[] statistics = getStatisticsForResource(id & 0x00_00_ff_ff_ff_ff_ff_ffL);
+		BitSet chunks = new BitSet(numberOfChunks);
+		for (int i = 0; (statistics != null) && (i < numberOfChunks); i++) {
+			if ((statistics[i] > 0) || (statistics[numberOfChunks + i] > 0)
+					|| (statistics[(2 * numberOfChunks) + i] > 0)) {
+				chunks.set(i);
+			}
+		}
+		return chunks;
+	}
+
 	private short getOwner(long id) {
 		short owner = (short) (id >>> 48);
 		if (owner != 0) {
 			return owner;
 		}
-		long[] statistics = database.getStatisticsForResource(id);
+		short pinnedOwner = getPinnedOwner(id);
+		if (pinnedOwner >= 0) {
+			return pinnedOwner;
+		}
+		long[] statistics = readStatisticsForResource(id);
 		if (statistics == null) {
 			return owner;
 		}
+		return getOwner(statistics);
+	}
 
+	private short getPinnedOwner(long id) {
+		if ((pinnedOwners == null) || pinnedOwners.isEmpty()) {
+			return -1;
+		}
+		return pinnedOwners.get(id);
+	}
+
+	private short getOwner(long[] statistics) {
 		BitSet ownerCandidates = new BitSet(numberOfChunks);
 		ownerCandidates.set(0, numberOfChunks, true);
 
@@ -194,7 +1067,7 @@ public class GraphStatistics implements Closeable {
 
 	public long getSubjectFrequency(long subject, int slave) {
 		subject = subject & 0x00_00_ff_ff_ff_ff_ff_ffL;
-		long[] statisticsForResource = database.getStatisticsForResource(subject);
+		long[] statisticsForResource = readStatisticsForResource(subject);
 		if (statisticsForResource == null) {
 			// this resource does not occur
 			return 0;
@@ -204,7 +1077,7 @@ public class GraphStatistics implements Closeable {
 
 	public long getPropertyFrequency(long property, int slave) {
 		property = property & 0x00_00_ff_ff_ff_ff_ff_ffL;
-		long[] statisticsForResource = database.getStatisticsForResource(property);
+		long[] statisticsForResource = readStatisticsForResource(property);
 		if (statisticsForResource == null) {
 			// this resource does not occur
 			return 0;
@@ -214,7 +1087,7 @@ public class GraphStatistics implements Closeable {
 
 	public long getObjectFrequency(long object, int slave) {
 		object = object & 0x00_00_ff_ff_ff_ff_ff_ffL;
-		long[] statisticsForResource = database.getStatisticsForResource(object);
+		long[] statisticsForResource = readStatisticsForResource(object);
 		if (statisticsForResource == null) {
 			// this resource does not occur
 			return 0;
@@ -225,7 +1098,7 @@ public class GraphStatistics implements Closeable {
 	public long getTotalSubjectFrequency(long subject) {
 		subject = subject & 0x00_00_ff_ff_ff_ff_ff_ffL;
 		long totalFrequency = 0;
-		long[] statisticsForResource = database.getStatisticsForResource(subject);
+		long[] statisticsForResource = readStatisticsForResource(subject);
 		if (statisticsForResource == null) {
 			// this resource does not occur
 			return 0;
@@ -239,7 +1112,7 @@ public class GraphStatistics implements Closeable {
 	public long getTotalPropertyFrequency(long property) {
 		property = property & 0x00_00_ff_ff_ff_ff_ff_ffL;
 		long totalFrequency = 0;
-		long[] statisticsForResource = database.getStatisticsForResource(property);
+		long[] statisticsForResource = readStatisticsForResource(property);
 		if (statisticsForResource == null) {
 			// this resource does not occur
 			return 0;
@@ -253,7 +1126,7 @@ public class GraphStatistics implements Closeable {
 	public long getTotalObjectFrequency(long object) {
 		object = object & 0x00_00_ff_ff_ff_ff_ff_ffL;
 		long totalFrequency = 0;
-		long[] statisticsForResource = database.getStatisticsForResource(object);
+		long[] statisticsForResource = readStatisticsForResource(object);
 		if (statisticsForResource == null) {
 			// this resource does not occur
 			return 0;
@@ -264,17 +1137,114 @@ public class GraphStatistics implements Closeable {
 		return totalFrequency;
 	}
 
+	/**
+	 * Deletions are not subtracted from the estimation.
+	 * 
+	 * @param property
+	 * @param slave
+	 * @return estimated number of distinct subjects of the triples with this property on the slave
+	 */
+	public long getNumberOfDistinctSubjects(long property, int slave) {
+		return predicateStatistics.getNumberOfDistinctSubjects(property & 0x00_00_ff_ff_ff_ff_ff_ffL, slave);
+	}
+
+	/**
+	 * Deletions are not subtracted from the estimation.
+	 * 
+	 * @param property
+	 * @return estimated number of distinct subjects of the triples with this property
+	 */
+	public long getTotalNumberOfDistinctSubjects(long property) {
+		return getNumberOfDistinctSubjects(property, -1);
+	}
+
+	/**
+	 * Deletions are not subtracted from the estimation.
+	 * 
+	 * @param property
+	 * @param slave
+	 * @return estimated number of distinct objects of the triples with this property on the slave
+	 */
+	public long getNumberOfDistinctObjects(long property, int slave) {
+		return predicateStatistics.getNumberOfDistinctObjects(property & 0x00_00_ff_ff_ff_ff_ff_ffL, slave);
+	}
+
+	/**
+	 * Deletions are not subtracted from the estimation.
+	 * 
+	 * @param property
+	 * @return estimated number of distinct objects of the triples with this property
+	 */
+	public long getTotalNumberOfDistinctObjects(long property) {
+		return getNumberOfDistinctObjects(property, -1);
+	}
+
+	/**
+	 * @param property
+	 * @return equi-depth histogram over the object ids (without owner) of the triples with this property or
+	 *         <code>null</code> if the property does not occur
+	 */
+	public ObjectHistogram getObjectHistogram(long property) {
+		long numberOfTriples = getTotalPropertyFrequency(property);
+		return predicateStatistics.getObjectHistogram(property & 0x00_00_ff_ff_ff_ff_ff_ffL, numberOfTriples);
+	}
+
 	public int getNumberOfChunks() {
 		return numberOfChunks;
 	}
 
 	public void clear() {
+		discardCounts();
 		database.clear();
+		if (pinnedOwners != null) {
+			pinnedOwners.clear();
+		}
+		if (deletions != null) {
+			deletions.clear();
+			containsDeletions = false;
+		}
+		propertyFrequencies.clear();
+		if (propertyFrequenciesFile != null) {
+			propertyFrequenciesFile.delete();
+		}
+		predicateStatistics.clear();
+		if (predicateStatisticsFile != null) {
+			predicateStatisticsFile.delete();
+		}
+	}
+
+	/**
+	 * Persists the counts, e.g., after a graph has been updated.
+	 */
+	public void flush() {
+		database.flush();
+		if (deletions != null) {
+			deletions.flush();
+		}
+		if (propertyFrequenciesFile != null) {
+			savePropertyFrequencies(propertyFrequenciesFile);
+		}
+		if (predicateStatisticsFile != null) {
+			predicateStatistics.save(predicateStatisticsFile);
+		}
 	}
 
 	@Override
 	public void close() {
+		discardCounts();
 		database.close();
+		if (pinnedOwners != null) {
+			pinnedOwners.close();
+		}
+		if (deletions != null) {
+			deletions.close();
+		}
+		if (propertyFrequenciesFile != null) {
+			savePropertyFrequencies(propertyFrequenciesFile);
+		}
+		if (predicateStatisticsFile != null) {
+			predicateStatistics.save(predicateStatisticsFile);
+		}
 	}
 
 	@Override
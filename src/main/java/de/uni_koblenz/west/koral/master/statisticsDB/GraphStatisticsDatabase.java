@@ -19,6 +19,7 @@
 package de.uni_koblenz.west.koral.master.statisticsDB;
 
 import java.io.Closeable;
+import java.util.Arrays;
 
 /**
  * Methods required by {@link GraphStatistics} to persist the statistical
@@ -37,6 +38,39 @@ public interface GraphStatisticsDatabase extends Closeable {
 
   public void incrementNumberOfTriplesPerChunk(int chunk);
 
+  /**
+   * Adds occurrences of a resource that have been counted in advance.
+   * Implementations should override it, if they can update all occurrences of
+   * a resource at once.
+   * 
+   * @param id
+   * @param occurrences
+   *          first numberOfChunks indices represent how often resource id
+   *          occurs as subject; second numberOfChunks indices represent how
+   *          often resource id occurs as property; third numberOfChunks
+   *          indices represent how often resource id occurs as object
+   */
+  public default void addOccurrences(long id, long[] occurrences) {
+    int numberOfChunks = occurrences.length / 3;
+    for (int chunk = 0; chunk < numberOfChunks; chunk++) {
+      for (long i = 0; i < occurrences[chunk]; i++) {
+        incrementSubjectCount(id, chunk);
+      }
+      for (long i = 0; i < occurrences[numberOfChunks + chunk]; i++) {
+        incrementPropertyCount(id, chunk);
+      }
+      for (long i = 0; i < occurrences[(2 * numberOfChunks) + chunk]; i++) {
+        incrementObjectCount(id, chunk);
+      }
+    }
+  }
+
+  public default void addNumberOfTriplesPerChunk(int chunk, long numberOfTriples) {
+    for (long i = 0; i < numberOfTriples; i++) {
+      incrementNumberOfTriplesPerChunk(chunk);
+    }
+  }
+
   public long[] getChunkSizes();
 
   /**
@@ -49,6 +83,34 @@ public interface GraphStatisticsDatabase extends Closeable {
    */
   public long[] getStatisticsForResource(long id);
 
+  /**
+   * Copies the statistics of a resource into the given array. Implementations
+   * should override it, if they can read the statistics without allocating
+   * new objects.
+   * 
+   * @param id
+   * @param statistics
+   *          array of length 3*numberOfChunks that is overwritten in the same
+   *          order as the result of {@link #getStatisticsForResource(long)}
+   * @return <code>false</code> if the resource does not occur. In this case,
+   *         the statistics are set to 0.
+   */
+  public default boolean getStatisticsForResource(long id, long[] statistics) {
+    long[] result = getStatisticsForResource(id);
+    if (result == null) {
+      Arrays.fill(statistics, 0);
+      return false;
+    }
+    System.arraycopy(result, 0, statistics, 0, Math.min(result.length, statistics.length));
+    return true;
+  }
+
+  /**
+   * Persists all modifications.
+   */
+  public default void flush() {
+  }
+
   public void clear();
 
   @Override
@@ -0,0 +1,100 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.statisticsDB;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * HyperLogLog sketch that estimates the number of distinct resource ids that have been added. Sketches can be merged
+ * so that they can be built independently by several threads.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+class HyperLogLog {
+
+	private static final int PRECISION = 10;
+
+	private static final int NUMBER_OF_REGISTERS = 1 << PRECISION;
+
+	private static final double ALPHA = 0.7213 / (1 + (1.079 / NUMBER_OF_REGISTERS));
+
+	private final byte[] registers;
+
+	HyperLogLog() {
+		registers = new byte[NUMBER_OF_REGISTERS];
+	}
+
+	public void add(long id) {
+		long hash = hash(id);
+		int register = (int) (hash >>> (Long.SIZE - PRECISION));
+		byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+		if (registers[register] < rank) {
+			registers[register] = rank;
+		}
+	}
+
+	/**
+	 * finalizer of SplitMix64
+	 */
+	private static long hash(long id) {
+		long hash = id + 0x9E3779B97F4A7C15L;
+		hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+		return hash ^ (hash >>> 31);
+	}
+
+	public void merge(HyperLogLog other) {
+		for (int i = 0; i < NUMBER_OF_REGISTERS; i++) {
+			if (registers[i] < other.registers[i]) {
+				registers[i] = other.registers[i];
+			}
+		}
+	}
+
+	public long estimate() {
+		double sum = 0;
+		int numberOfEmptyRegisters = 0;
+		for (byte register : registers) {
+			sum += 1.0 / (1L << register);
+			if (register == 0) {
+				numberOfEmptyRegisters++;
+			}
+		}
+		double estimate = (ALPHA * NUMBER_OF_REGISTERS * NUMBER_OF_REGISTERS) / sum;
+		if ((estimate <= (2.5 * NUMBER_OF_REGISTERS)) && (numberOfEmptyRegisters > 0)) {
+			// linear counting is more precise for small cardinalities
+			estimate = NUMBER_OF_REGISTERS * Math.log((double) NUMBER_OF_REGISTERS / numberOfEmptyRegisters);
+		}
+		return Math.round(estimate);
+	}
+
+	public void write(DataOutput out) throws IOException {
+		out.write(registers);
+	}
+
+	public static HyperLogLog read(DataInput in) throws IOException {
+		HyperLogLog sketch = new HyperLogLog();
+		in.readFully(sketch.registers);
+		return sketch;
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.statisticsDB;
+
+/**
+ * Equi-depth histogram over the object ids of the triples with a specific property. Each bucket covers a range of
+ * object ids that contains roughly the same number of triples. Within a bucket, the triples are assumed to be
+ * distributed uniformly. The bucket boundaries are derived from a uniform sample of the triples.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class ObjectHistogram {
+
+	private final long lowerBound;
+
+	/**
+	 * inclusive upper bound of each bucket in ascending order
+	 */
+	private final long[] upperBounds;
+
+	private final long[] frequencies;
+
+	ObjectHistogram(long lowerBound, long[] upperBounds, long[] frequencies) {
+		this.lowerBound = lowerBound;
+		this.upperBounds = upperBounds;
+		this.frequencies = frequencies;
+	}
+
+	public int getNumberOfBuckets() {
+		return upperBounds.length;
+	}
+
+	public long getLowerBound(int bucket) {
+		if (bucket == 0) {
+			return lowerBound;
+		}
+		// a frequent object id may span several buckets
+		return Math.min(upperBounds[bucket - 1] + 1, upperBounds[bucket]);
+	}
+
+	public long getUpperBound(int bucket) {
+		return upperBounds[bucket];
+	}
+
+	public long getFrequency(int bucket) {
+		return frequencies[bucket];
+	}
+
+	/**
+	 * @param minObject
+	 * @param maxObject
+	 * @return estimated number of triples whose object id is in the range [minObject, maxObject]
+	 */
+	public long estimateFrequency(long minObject, long maxObject) {
+		minObject &= 0x0000ffffffffffffL;
+		maxObject &= 0x0000ffffffffffffL;
+		double frequency = 0;
+		for (int i = 0; i < upperBounds.length; i++) {
+			long bucketMin = getLowerBound(i);
+			long bucketMax = upperBounds[i];
+			long overlapMin = Math.max(bucketMin, minObject);
+			long overlapMax = Math.min(bucketMax, maxObject);
+			if (overlapMin <= overlapMax) {
+				frequency += (frequencies[i] * ((overlapMax - overlapMin) + 1.0)) / ((bucketMax - bucketMin) + 1.0);
+			}
+		}
+		return Math.round(frequency);
+	}
+
+	/**
+	 * @param object
+	 * @return estimated number of triples with this object
+	 */
+	public long estimateFrequency(long object) {
+		return estimateFrequency(object, object);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < upperBounds.length; i++) {
+			sb.append("[").append(getLowerBound(i)).append(", ").append(upperBounds[i]).append("]: ")
+					.append(frequencies[i]).append("\n");
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,365 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.statisticsDB;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Counts the occurrences of resources in an in-memory table of primitive arrays. It is used by a single thread. If the
+ * table is full, its content is written to disk as a run sorted by resource id. The runs of several counters are
+ * merged with {@link #merge(List, ObjLongConsumer)} so that each resource has to be updated only once in the
+ * statistics database.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+class OccurrenceCounter implements Closeable {
+
+	/**
+	 * Number of bytes that may be used by the in-memory table.
+	 */
+	private static final int TABLE_SIZE = 32 * 1024 * 1024;
+
+	private static final long EMPTY = -1;
+
+	private final File runDir;
+
+	private final int numberOfChunks;
+
+	private final int numberOfColumns;
+
+	private final long[] triplesPerChunk;
+
+	private final int maxNumberOfResources;
+
+	/**
+	 * open addressing hash table that maps the resource id to its row in {@link #occurrences}
+	 */
+	private final long[] ids;
+
+	private final int[] rows;
+
+	private final int mask;
+
+	/**
+	 * the rows of subject, property and object occurrences per chunk
+	 */
+	private final long[] occurrences;
+
+	private int numberOfResources;
+
+	private final List<File> runs;
+
+	private final PredicateStatistics predicateStatistics;
+
+	OccurrenceCounter(File runDir, int numberOfChunks) {
+		this.runDir = runDir;
+		this.numberOfChunks = numberOfChunks;
+		numberOfColumns = 3 * numberOfChunks;
+		triplesPerChunk = new long[numberOfChunks];
+		maxNumberOfResources = Math.max(1024, TABLE_SIZE / ((numberOfColumns + 3) * Long.BYTES));
+		int capacity = Integer.highestOneBit(maxNumberOfResources) << 2;
+		ids = new long[capacity];
+		Arrays.fill(ids, EMPTY);
+		rows = new int[capacity];
+		mask = capacity - 1;
+		occurrences = new long[maxNumberOfResources * numberOfColumns];
+		runs = new ArrayList<>();
+		predicateStatistics = new PredicateStatistics(numberOfChunks);
+	}
+
+	public void count(long subject, long property, long object, int chunk) {
+		occurrences[getRow(subject) + chunk]++;
+		occurrences[getRow(property) + numberOfChunks + chunk]++;
+		occurrences[getRow(object) + (2 * numberOfChunks) + chunk]++;
+		triplesPerChunk[chunk]++;
+		predicateStatistics.add(subject, property, object, chunk);
+	}
+
+	/**
+	 * @param id
+	 * @return the offset of the row of resource id in {@link #occurrences}
+	 */
+	private int getRow(long id) {
+		int slot = getSlot(id);
+		if (ids[slot] == EMPTY) {
+			if (numberOfResources == maxNumberOfResources) {
+				writeRun();
+				slot = getSlot(id);
+			}
+			ids[slot] = id;
+			rows[slot] = numberOfResources * numberOfColumns;
+			numberOfResources++;
+		}
+		return rows[slot];
+	}
+
+	private int getSlot(long id) {
+		int slot = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		while ((ids[slot] != EMPTY) && (ids[slot] != id)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	long[] getTriplesPerChunk() {
+		return triplesPerChunk;
+	}
+
+	PredicateStatistics getPredicateStatistics() {
+		return predicateStatistics;
+	}
+
+	private long[] getSortedIds() {
+		long[] sortedIds = new long[numberOfResources];
+		int next = 0;
+		for (long id : ids) {
+			if (id != EMPTY) {
+				sortedIds[next++] = id;
+			}
+		}
+		Arrays.sort(sortedIds);
+		return sortedIds;
+	}
+
+	private void writeRun() {
+		try {
+			runDir.mkdirs();
+			File run = File.createTempFile("occurrences", ".run", runDir);
+			runs.add(run);
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(run), 1 << 16));) {
+				for (long id : getSortedIds()) {
+					int row = rows[getSlot(id)];
+					int numberOfValues = 0;
+					for (int i = 0; i < numberOfColumns; i++) {
+						if (occurrences[row + i] != 0) {
+							numberOfValues++;
+						}
+					}
+					out.writeLong(id);
+					out.writeInt(numberOfValues);
+					for (int i = 0; i < numberOfColumns; i++) {
+						if (occurrences[row + i] != 0) {
+							out.writeInt(i);
+							out.writeLong(occurrences[row + i]);
+						}
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		Arrays.fill(ids, EMPTY);
+		Arrays.fill(occurrences, 0, numberOfResources * numberOfColumns, 0);
+		numberOfResources = 0;
+	}
+
+	/**
+	 * Merges the occurrences of all counters. The merged occurrences of each resource are passed to the consumer in
+	 * ascending order of the resource ids. The array passed to the consumer is reused.
+	 * 
+	 * @param counters
+	 * @param consumer
+	 */
+	static void merge(List<OccurrenceCounter> counters, ObjLongConsumer<long[]> consumer) {
+		if (counters.isEmpty()) {
+			return;
+		}
+		long[] mergedOccurrences = new long[counters.get(0).numberOfColumns];
+		PriorityQueue<Run> queue = new PriorityQueue<>((r1, r2) -> Long.compare(r1.getId(), r2.getId()));
+		try {
+			for (OccurrenceCounter counter : counters) {
+				for (File run : counter.runs) {
+					addToQueue(queue, new FileRun(run, counter.numberOfColumns));
+				}
+				addToQueue(queue, counter.new MemoryRun());
+			}
+			while (!queue.isEmpty()) {
+				Run run = queue.poll();
+				long id = run.getId();
+				Arrays.fill(mergedOccurrences, 0);
+				run.addOccurrences(mergedOccurrences);
+				addToQueue(queue, run);
+				while (!queue.isEmpty() && (queue.peek().getId() == id)) {
+					run = queue.poll();
+					run.addOccurrences(mergedOccurrences);
+					addToQueue(queue, run);
+				}
+				consumer.accept(mergedOccurrences, id);
+			}
+		} finally {
+			for (Run run : queue) {
+				run.close();
+			}
+		}
+	}
+
+	private static void addToQueue(PriorityQueue<Run> queue, Run run) {
+		if (run.next()) {
+			queue.add(run);
+		} else {
+			run.close();
+		}
+	}
+
+	@Override
+	public void close() {
+		for (File run : runs) {
+			run.delete();
+		}
+		runs.clear();
+	}
+
+	/**
+	 * Iterates over the occurrences of resources sorted by their ids.
+	 */
+	private static interface Run extends Closeable {
+
+		/**
+		 * @return <code>true</code> if the run is positioned at the next resource
+		 */
+		public boolean next();
+
+		public long getId();
+
+		public void addOccurrences(long[] occurrences);
+
+		@Override
+		public void close();
+
+	}
+
+	private class MemoryRun implements Run {
+
+		private final long[] sortedIds;
+
+		private int next;
+
+		private long id;
+
+		public MemoryRun() {
+			sortedIds = getSortedIds();
+		}
+
+		@Override
+		public boolean next() {
+			if (next >= sortedIds.length) {
+				return false;
+			}
+			id = sortedIds[next++];
+			return true;
+		}
+
+		@Override
+		public long getId() {
+			return id;
+		}
+
+		@Override
+		public void addOccurrences(long[] mergedOccurrences) {
+			int row = rows[getSlot(id)];
+			for (int i = 0; i < numberOfColumns; i++) {
+				mergedOccurrences[i] += occurrences[row + i];
+			}
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+	private static class FileRun implements Run {
+
+		private final DataInputStream in;
+
+		private long id;
+
+		private final int[] columns;
+
+		private final long[] values;
+
+		private int numberOfValues;
+
+		public FileRun(File run, int numberOfColumns) {
+			try {
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 1 << 16));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			columns = new int[numberOfColumns];
+			values = new long[numberOfColumns];
+		}
+
+		@Override
+		public boolean next() {
+			try {
+				id = in.readLong();
+				numberOfValues = in.readInt();
+				for (int i = 0; i < numberOfValues; i++) {
+					columns[i] = in.readInt();
+					values[i] = in.readLong();
+				}
+				return true;
+			} catch (EOFException e) {
+				return false;
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public long getId() {
+			return id;
+		}
+
+		@Override
+		public void addOccurrences(long[] mergedOccurrences) {
+			for (int i = 0; i < numberOfValues; i++) {
+				mergedOccurrences[columns[i]] += values[i];
+			}
+		}
+
+		@Override
+		public void close() {
+			try {
+				in.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.statisticsDB;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Stores the owner of each id from 1 to a maximal id in a memory mapped file. It is computed once from the statistics
+ * so that the ids of several graph chunks can be extended by their owners in parallel without accessing the
+ * statistics database.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+class OwnerTable implements AutoCloseable {
+
+	private static final int SEGMENT_SIZE = 1 << 30;
+
+	/**
+	 * number of consecutive ids whose owners are computed by one task
+	 */
+	private static final long RANGE_SIZE = 1 << 20;
+
+	private final File tableFile;
+
+	private final long maxId;
+
+	private MappedByteBuffer[] segments;
+
+	private OwnerTable(File tableFile, long maxId) throws IOException {
+		this.tableFile = tableFile;
+		this.maxId = maxId;
+		long length = (maxId + 1) * Short.BYTES;
+		try (RandomAccessFile file = new RandomAccessFile(tableFile, "rw"); FileChannel channel = file.getChannel();) {
+			file.setLength(length);
+			segments = new MappedByteBuffer[(int) ((length + OwnerTable.SEGMENT_SIZE - 1) / OwnerTable.SEGMENT_SIZE)];
+			for (int i = 0; i < segments.length; i++) {
+				long start = ((long) i) * OwnerTable.SEGMENT_SIZE;
+				segments[i] = channel.map(MapMode.READ_WRITE, start, Math.min(OwnerTable.SEGMENT_SIZE, length - start));
+			}
+		}
+	}
+
+	/**
+	 * Computes the owners of the ids 1 to maxId. The id range is split into ranges of {@link #RANGE_SIZE} ids whose
+	 * owners are computed in parallel by the executor. Each task writes directly into its disjoint part of the mapped
+	 * file.
+	 * 
+	 * @param tableFile
+	 * @param maxId
+	 * @param owners
+	 *            returns the owner of an id; it is called concurrently
+	 * @param executor
+	 * @return the table
+	 */
+	public static OwnerTable build(File tableFile, long maxId, LongToIntFunction owners, ExecutorService executor) {
+		OwnerTable table;
+		try {
+			table = new OwnerTable(tableFile, maxId);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		try {
+			List<Future<?>> tasks = new ArrayList<>();
+			// id 0 is not used
+			for (long firstId = 1; firstId <= maxId; firstId += OwnerTable.RANGE_SIZE) {
+				long rangeStart = firstId;
+				long rangeEnd = Math.min(maxId, (firstId + OwnerTable.RANGE_SIZE) - 1);
+				tasks.add(executor.submit(() -> {
+					for (long id = rangeStart; id <= rangeEnd; id++) {
+						table.setOwner(id, (short) owners.applyAsInt(id));
+					}
+				}));
+			}
+			for (Future<?> task : tasks) {
+				task.get();
+			}
+		} catch (InterruptedException e) {
+			table.close();
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			table.close();
+			throw new RuntimeException(e.getCause());
+		}
+		return table;
+	}
+
+	private void setOwner(long id, short owner) {
+		long position = id * Short.BYTES;
+		segments[(int) (position / OwnerTable.SEGMENT_SIZE)].putShort((int) (position % OwnerTable.SEGMENT_SIZE), owner);
+	}
+
+	public long getMaxId() {
+		return maxId;
+	}
+
+	/**
+	 * @param id
+	 *            must be between 1 and {@link #getMaxId()}
+	 * @return the owner of the id
+	 */
+	public short getOwner(long id) {
+		long position = id * Short.BYTES;
+		return segments[(int) (position / OwnerTable.SEGMENT_SIZE)].getShort((int) (position % OwnerTable.SEGMENT_SIZE));
+	}
+
+	@Override
+	public void close() {
+		segments = null;
+		tableFile.delete();
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.statisticsDB;
+
+import org.apache.commons.io.FileUtils;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+
+import de.uni_koblenz.west.koral.common.utils.Checkpoints;
+import de.uni_koblenz.west.koral.common.utils.NumberConversion;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Persists the owners of resources that must not change anymore although the
+ * statistical information would result in a different owner. This is required
+ * for incrementally loaded graphs, since the slaves already store the ids of
+ * the resources including their original owner.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+class PinnedOwners implements Closeable {
+
+  private final File storageDir;
+
+  private RocksDB pins;
+
+  private boolean isEmpty;
+
+  public PinnedOwners(File storageDir) {
+    this.storageDir = storageDir;
+    open();
+  }
+
+  private void open() {
+    if (!storageDir.exists()) {
+      storageDir.mkdirs();
+    }
+    Options options = new Options();
+    options.setCreateIfMissing(true);
+    options.setMaxOpenFiles(20);
+    try {
+      pins = RocksDB.open(options, storageDir.getAbsolutePath());
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    }
+    try (RocksIterator iterator = pins.newIterator();) {
+      iterator.seekToFirst();
+      isEmpty = !iterator.isValid();
+    }
+  }
+
+  /**
+   * @return <code>true</code> if no owner is pinned. In this case, lookups can
+   *         be skipped.
+   */
+  public boolean isEmpty() {
+    return isEmpty;
+  }
+
+  /**
+   * @param id
+   * @return the pinned owner or <code>-1</code> if the owner of the resource
+   *         is not pinned
+   */
+  public short get(long id) {
+    try {
+      byte[] owner = pins.get(NumberConversion.long2bytes(id));
+      if (owner == null) {
+        return -1;
+      }
+      return NumberConversion.bytes2short(owner);
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public void put(long id, short owner) {
+    try {
+      pins.put(NumberConversion.long2bytes(id), NumberConversion.short2bytes(owner));
+      isEmpty = false;
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public void createCheckpoint(File checkpointDir) {
+    Checkpoints.createRocksDBCheckpoint(pins, checkpointDir);
+  }
+
+  public void clear() {
+    close();
+    try {
+      FileUtils.deleteDirectory(storageDir);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    open();
+  }
+
+  @Override
+  public void close() {
+    if (pins != null) {
+      pins.close();
+      pins = null;
+    }
+  }
+
+}
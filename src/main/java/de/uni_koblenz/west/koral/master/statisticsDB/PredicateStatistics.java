@@ -0,0 +1,457 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.statisticsDB;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Collects for each property {@link HyperLogLog} sketches of its distinct subjects and objects per chunk and a uniform
+ * sample of its object ids from which an {@link ObjectHistogram} is derived. The sample keeps the triples with the
+ * smallest random priorities so that samples collected by different threads can be merged.
+ * 
+ * Except for {@link #add(long, long, long, int)}, which is used by thread-confined instances, this class is
+ * thread-safe. Estimations and histograms share a read lock, whereas concurrent adding, merging and loading exclusively
+ * lock the statistics. The estimations over all chunks are cached until the sketches change.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+class PredicateStatistics {
+
+	private static final int SAMPLE_SIZE = 512;
+
+	private static final int MAX_NUMBER_OF_BUCKETS = 32;
+
+	private final int numberOfChunks;
+
+	private final SplittableRandom random;
+
+	/**
+	 * open addressing hash table from property id + 1 to its sketch
+	 */
+	private long[] properties;
+
+	private PredicateSketch[] sketches;
+
+	private int numberOfProperties;
+
+	private final ReadWriteLock lock;
+
+	PredicateStatistics(int numberOfChunks) {
+		lock = new ReentrantReadWriteLock();
+		this.numberOfChunks = numberOfChunks;
+		random = new SplittableRandom();
+		clear();
+	}
+
+	/**
+	 * Adds a triple without locking. It must only be called on instances that are confined to one thread, e.g., the
+	 * statistics of an {@link OccurrenceCounter}. Their cached estimations are invalidated when they are merged.
+	 * 
+	 * @param subject
+	 * @param property
+	 * @param object
+	 * @param chunk
+	 */
+	public void add(long subject, long property, long object, int chunk) {
+		addToSketch(subject, property, object, chunk);
+	}
+
+	/**
+	 * Adds a triple to an instance that is shared by several threads.
+	 * 
+	 * @param subject
+	 * @param property
+	 * @param object
+	 * @param chunk
+	 */
+	public void addConcurrently(long subject, long property, long object, int chunk) {
+		lock.writeLock().lock();
+		try {
+			addToSketch(subject, property, object, chunk).invalidateEstimations();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private PredicateSketch addToSketch(long subject, long property, long object, int chunk) {
+		PredicateSketch sketch = getSketch(property, true);
+		sketch.getSubjects(chunk).add(subject);
+		sketch.getObjects(chunk).add(object);
+		sketch.offer(random.nextLong() >>> 1, object);
+		return sketch;
+	}
+
+	private int getSlot(long property) {
+		int mask = properties.length - 1;
+		int slot = (int) ((property * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+		while ((properties[slot] != 0) && (properties[slot] != (property + 1))) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private PredicateSketch getSketch(long property, boolean create) {
+		int slot = getSlot(property);
+		if (sketches[slot] == null) {
+			if (!create) {
+				return null;
+			}
+			if ((2 * (numberOfProperties + 1)) > properties.length) {
+				long[] oldProperties = properties;
+				PredicateSketch[] oldSketches = sketches;
+				properties = new long[2 * oldProperties.length];
+				sketches = new PredicateSketch[properties.length];
+				for (int i = 0; i < oldProperties.length; i++) {
+					if (oldSketches[i] != null) {
+						int newSlot = getSlot(oldProperties[i] - 1);
+						properties[newSlot] = oldProperties[i];
+						sketches[newSlot] = oldSketches[i];
+					}
+				}
+				slot = getSlot(property);
+			}
+			properties[slot] = property + 1;
+			sketches[slot] = new PredicateSketch(numberOfChunks);
+			numberOfProperties++;
+		}
+		return sketches[slot];
+	}
+
+	/**
+	 * Adds the sketches of other to this instance.
+	 * 
+	 * @param other
+	 *            must not be modified concurrently
+	 */
+	public void merge(PredicateStatistics other) {
+		lock.writeLock().lock();
+		try {
+			for (int i = 0; i < other.properties.length; i++) {
+				if (other.sketches[i] != null) {
+					getSketch(other.properties[i] - 1, true).merge(other.sketches[i]);
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @param property
+	 * @param chunk
+	 *            if negative, the distinct subjects of all chunks are estimated
+	 * @return estimated number of distinct subjects of the property
+	 */
+	public long getNumberOfDistinctSubjects(long property, int chunk) {
+		lock.readLock().lock();
+		try {
+			PredicateSketch sketch = getSketch(property, false);
+			return sketch == null ? 0 : sketch.estimateSubjects(chunk);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param property
+	 * @param chunk
+	 *            if negative, the distinct objects of all chunks are estimated
+	 * @return estimated number of distinct objects of the property
+	 */
+	public long getNumberOfDistinctObjects(long property, int chunk) {
+		lock.readLock().lock();
+		try {
+			PredicateSketch sketch = getSketch(property, false);
+			return sketch == null ? 0 : sketch.estimateObjects(chunk);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param property
+	 * @param numberOfTriples
+	 *            the number of triples with this property, which is distributed over the buckets
+	 * @return the histogram of the objects of the property or <code>null</code> if the property does not occur
+	 */
+	public ObjectHistogram getObjectHistogram(long property, long numberOfTriples) {
+		long[] sample;
+		lock.readLock().lock();
+		try {
+			PredicateSketch sketch = getSketch(property, false);
+			if ((sketch == null) || (sketch.sampleSize == 0)) {
+				return null;
+			}
+			sample = Arrays.copyOf(sketch.sampleObjects, sketch.sampleSize);
+		} finally {
+			lock.readLock().unlock();
+		}
+		Arrays.sort(sample);
+		int numberOfBuckets = Math.min(MAX_NUMBER_OF_BUCKETS, sample.length);
+		long[] upperBounds = new long[numberOfBuckets];
+		long[] frequencies = new long[numberOfBuckets];
+		int bucketStart = 0;
+		for (int i = 0; i < numberOfBuckets; i++) {
+			int bucketEnd = (int) ((((long) i) + 1) * sample.length) / numberOfBuckets;
+			upperBounds[i] = sample[bucketEnd - 1];
+			frequencies[i] = Math.round((numberOfTriples * ((double) (bucketEnd - bucketStart))) / sample.length);
+			bucketStart = bucketEnd;
+		}
+		return new ObjectHistogram(sample[0], upperBounds, frequencies);
+	}
+
+
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			properties = new long[64];
+			sketches = new PredicateSketch[properties.length];
+			numberOfProperties = 0;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void save(File file) {
+		lock.readLock().lock();
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)));) {
+			out.writeInt(numberOfChunks);
+			out.writeInt(numberOfProperties);
+			for (int i = 0; i < properties.length; i++) {
+				PredicateSketch sketch = sketches[i];
+				if (sketch == null) {
+					continue;
+				}
+				out.writeLong(properties[i] - 1);
+				for (int chunk = 0; chunk < numberOfChunks; chunk++) {
+					writeSketch(out, sketch.subjects[chunk]);
+					writeSketch(out, sketch.objects[chunk]);
+				}
+				out.writeInt(sketch.sampleSize);
+				for (int j = 0; j < sketch.sampleSize; j++) {
+					out.writeLong(sketch.samplePriorities[j]);
+					out.writeLong(sketch.sampleObjects[j]);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void writeSketch(DataOutputStream out, HyperLogLog sketch) throws IOException {
+		out.writeBoolean(sketch != null);
+		if (sketch != null) {
+			sketch.write(out);
+		}
+	}
+
+	/**
+	 * Replaces the content of this instance by the content of the file.
+	 * 
+	 * @param file
+	 */
+	public void load(File file) {
+		lock.writeLock().lock();
+		clear();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));) {
+			if (in.readInt() != numberOfChunks) {
+				// the statistics belong to a graph with a different number of chunks
+				return;
+			}
+			int numberOfStoredProperties = in.readInt();
+			for (int i = 0; i < numberOfStoredProperties; i++) {
+				PredicateSketch sketch = getSketch(in.readLong(), true);
+				for (int chunk = 0; chunk < numberOfChunks; chunk++) {
+					sketch.subjects[chunk] = in.readBoolean() ? HyperLogLog.read(in) : null;
+					sketch.objects[chunk] = in.readBoolean() ? HyperLogLog.read(in) : null;
+				}
+				int sampleSize = in.readInt();
+				for (int j = 0; j < sampleSize; j++) {
+					sketch.offer(in.readLong(), in.readLong());
+				}
+				sketch.invalidateEstimations();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private static class PredicateSketch {
+
+		private final HyperLogLog[] subjects;
+
+		private final HyperLogLog[] objects;
+
+		/**
+		 * max heap of the smallest priorities
+		 */
+		private final long[] samplePriorities;
+
+		private final long[] sampleObjects;
+
+		private int sampleSize;
+
+		/**
+		 * estimated number of distinct subjects of all chunks or -1 if it has to be estimated again
+		 */
+		private volatile long distinctSubjectsOfAllChunks;
+
+		private volatile long distinctObjectsOfAllChunks;
+
+		public PredicateSketch(int numberOfChunks) {
+			distinctSubjectsOfAllChunks = -1;
+			distinctObjectsOfAllChunks = -1;
+			subjects = new HyperLogLog[numberOfChunks];
+			objects = new HyperLogLog[numberOfChunks];
+			samplePriorities = new long[SAMPLE_SIZE];
+			sampleObjects = new long[SAMPLE_SIZE];
+		}
+
+		public HyperLogLog getSubjects(int chunk) {
+			if (subjects[chunk] == null) {
+				subjects[chunk] = new HyperLogLog();
+			}
+			return subjects[chunk];
+		}
+
+		public HyperLogLog getObjects(int chunk) {
+			if (objects[chunk] == null) {
+				objects[chunk] = new HyperLogLog();
+			}
+			return objects[chunk];
+		}
+
+		public void offer(long priority, long object) {
+			if (sampleSize < SAMPLE_SIZE) {
+				// sift up
+				int i = sampleSize++;
+				while ((i > 0) && (samplePriorities[(i - 1) / 2] < priority)) {
+					samplePriorities[i] = samplePriorities[(i - 1) / 2];
+					sampleObjects[i] = sampleObjects[(i - 1) / 2];
+					i = (i - 1) / 2;
+				}
+				samplePriorities[i] = priority;
+				sampleObjects[i] = object;
+			} else if (priority < samplePriorities[0]) {
+				// replace the largest priority and sift down
+				int i = 0;
+				while (true) {
+					int child = (2 * i) + 1;
+					if (child >= sampleSize) {
+						break;
+					}
+					if (((child + 1) < sampleSize) && (samplePriorities[child + 1] > samplePriorities[child])) {
+						child++;
+					}
+					if (samplePriorities[child] <= priority) {
+						break;
+					}
+					samplePriorities[i] = samplePriorities[child];
+					sampleObjects[i] = sampleObjects[child];
+					i = child;
+				}
+				samplePriorities[i] = priority;
+				sampleObjects[i] = object;
+			}
+		}
+
+		public void merge(PredicateSketch other) {
+			for (int chunk = 0; chunk < subjects.length; chunk++) {
+				if (other.subjects[chunk] != null) {
+					getSubjects(chunk).merge(other.subjects[chunk]);
+				}
+				if (other.objects[chunk] != null) {
+					getObjects(chunk).merge(other.objects[chunk]);
+				}
+			}
+			for (int i = 0; i < other.sampleSize; i++) {
+				offer(other.samplePriorities[i], other.sampleObjects[i]);
+			}
+			invalidateEstimations();
+		}
+
+		public void invalidateEstimations() {
+			distinctSubjectsOfAllChunks = -1;
+			distinctObjectsOfAllChunks = -1;
+		}
+
+		/**
+		 * Concurrent readers may compute the same estimation twice.
+		 * 
+		 * @param chunk
+		 *            if negative, the cached estimation over all chunks is returned
+		 * @return estimated number of distinct subjects
+		 */
+		public long estimateSubjects(int chunk) {
+			if (chunk >= 0) {
+				return subjects[chunk] == null ? 0 : subjects[chunk].estimate();
+			}
+			long estimation = distinctSubjectsOfAllChunks;
+			if (estimation < 0) {
+				estimation = estimateUnion(subjects);
+				distinctSubjectsOfAllChunks = estimation;
+			}
+			return estimation;
+		}
+
+		public long estimateObjects(int chunk) {
+			if (chunk >= 0) {
+				return objects[chunk] == null ? 0 : objects[chunk].estimate();
+			}
+			long estimation = distinctObjectsOfAllChunks;
+			if (estimation < 0) {
+				estimation = estimateUnion(objects);
+				distinctObjectsOfAllChunks = estimation;
+			}
+			return estimation;
+		}
+
+		private long estimateUnion(HyperLogLog[] sketches) {
+			HyperLogLog union = null;
+			for (HyperLogLog sketch : sketches) {
+				if (sketch != null) {
+					if (union == null) {
+						union = new HyperLogLog();
+					}
+					union.merge(sketch);
+				}
+			}
+			return union == null ? 0 : union.estimate();
+		}
+
+	}
+
+}
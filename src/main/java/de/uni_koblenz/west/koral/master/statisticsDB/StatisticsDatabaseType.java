@@ -0,0 +1,55 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.statisticsDB;
+
+import de.uni_koblenz.west.koral.master.statisticsDB.impl.OffHeapGraphStatisticsDatabase;
+import de.uni_koblenz.west.koral.master.statisticsDB.impl.multi_file.MultiFileGraphStatisticsDatabase;
+
+/**
+ * The {@link GraphStatisticsDatabase} implementations that can be selected in
+ * the configuration.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public enum StatisticsDatabaseType {
+
+  /**
+   * {@link MultiFileGraphStatisticsDatabase}
+   */
+  MULTI_FILE {
+    @Override
+    public GraphStatisticsDatabase create(String statisticsDir, short numberOfChunks) {
+      return new MultiFileGraphStatisticsDatabase(statisticsDir, numberOfChunks);
+    }
+  },
+
+  /**
+   * {@link OffHeapGraphStatisticsDatabase}
+   */
+  OFF_HEAP {
+    @Override
+    public GraphStatisticsDatabase create(String statisticsDir, short numberOfChunks) {
+      return new OffHeapGraphStatisticsDatabase(statisticsDir, numberOfChunks);
+    }
+  };
+
+  public abstract GraphStatisticsDatabase create(String statisticsDir, short numberOfChunks);
+
+}
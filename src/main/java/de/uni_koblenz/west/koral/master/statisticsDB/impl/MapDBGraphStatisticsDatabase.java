@@ -148,11 +148,33 @@ public class MapDBGraphStatisticsDatabase implements GraphStatisticsDatabase {
     }
   }
 
+  @Override
+  public void addOccurrences(long id, long[] occurrences) {
+    try {
+      long[] statistics = map.get(id);
+      if (statistics == null) {
+        statistics = new long[(3 * numberOfChunks) + 1];
+      }
+      for (int i = 0; i < occurrences.length; i++) {
+        statistics[i] += occurrences[i];
+      }
+      map.put(id, statistics);
+    } catch (Throwable e) {
+      close();
+      throw e;
+    }
+  }
+
   @Override
   public void incrementNumberOfTriplesPerChunk(int chunk) {
     numberOfTriplesPerChunk[chunk]++;
   }
 
+  @Override
+  public void addNumberOfTriplesPerChunk(int chunk, long numberOfTriples) {
+    numberOfTriplesPerChunk[chunk] += numberOfTriples;
+  }
+
   @Override
   public long[] getStatisticsForResource(long id) {
     long[] statistics = map.get(id);
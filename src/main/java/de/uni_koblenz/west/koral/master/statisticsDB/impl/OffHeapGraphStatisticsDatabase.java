@@ -0,0 +1,437 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.statisticsDB.impl;
+
+import de.uni_koblenz.west.koral.master.statisticsDB.GraphStatisticsDatabase;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link GraphStatisticsDatabase} that keeps all statistics outside of the Java heap. An open addressing hash table
+ * maps each resource id to a row of <code>3*numberOfChunks</code> packed counters. The rows are appended to a
+ * separate array so that growing the hash table only moves the table entries. Reading the statistics with
+ * {@link #getStatisticsForResource(long, long[])} does not allocate any objects.
+ * 
+ * The statistics are persisted as a sequential snapshot by {@link #flush()} and {@link #close()}. In the snapshot,
+ * each row only stores its non-zero counters as variable length encoded pairs of column gap and value.
+ * 
+ * This class is not thread-safe for writing. Concurrent reads are possible. Readers share a read lock, whereas the
+ * writer only locks exclusively while it creates a row, grows the hash table or replaces the content. Incrementing an
+ * existing counter is not locked, so that a concurrent reader may see the previous value.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class OffHeapGraphStatisticsDatabase implements GraphStatisticsDatabase {
+
+	private static final int SNAPSHOT_MAGIC_NUMBER = 0x4b4f5353;
+
+	private static final int INITIAL_TABLE_CAPACITY = 1 << 12;
+
+	private final File snapshotFile;
+
+	private final short numberOfChunks;
+
+	private final int rowLength;
+
+	private final long[] triplesPerChunk;
+
+	/**
+	 * Each slot consists of two longs: the resource id + 1 (0 marks an empty slot) and the index of its row.
+	 */
+	private OffHeapLongArray table;
+
+	private long tableCapacity;
+
+	private OffHeapLongArray rows;
+
+	private long numberOfRows;
+
+	private final ReadWriteLock lock;
+
+	public OffHeapGraphStatisticsDatabase(String statisticsDir, short numberOfChunks) {
+		File statisticsDirFile = new File(statisticsDir);
+		if (!statisticsDirFile.exists()) {
+			statisticsDirFile.mkdirs();
+		}
+		this.numberOfChunks = numberOfChunks;
+		rowLength = 3 * numberOfChunks;
+		triplesPerChunk = new long[numberOfChunks];
+		snapshotFile = new File(statisticsDirFile.getAbsolutePath() + File.separator + "statistics.snapshot");
+		lock = new ReentrantReadWriteLock();
+		initialize(INITIAL_TABLE_CAPACITY);
+		if (snapshotFile.exists()) {
+			loadSnapshot();
+		}
+	}
+
+	private void initialize(long capacity) {
+		tableCapacity = capacity;
+		table = new OffHeapLongArray(2 * capacity);
+		rows = new OffHeapLongArray(0);
+		numberOfRows = 0;
+	}
+
+	@Override
+	public void incrementSubjectCount(long subject, int chunk) {
+		incrementValue(subject, chunk, 1);
+	}
+
+	@Override
+	public void incrementPropertyCount(long property, int chunk) {
+		incrementValue(property, numberOfChunks + chunk, 1);
+	}
+
+	@Override
+	public void incrementObjectCount(long object, int chunk) {
+		incrementValue(object, (2 * numberOfChunks) + chunk, 1);
+	}
+
+	private void incrementValue(long resourceID, int column, long value) {
+		long row = getOrCreateRow(resourceID);
+		rows.add((row * rowLength) + column, value);
+	}
+
+	@Override
+	public void addOccurrences(long id, long[] occurrences) {
+		long rowStart = getOrCreateRow(id) * rowLength;
+		for (int i = 0; i < rowLength; i++) {
+			if (occurrences[i] != 0) {
+				rows.add(rowStart + i, occurrences[i]);
+			}
+		}
+	}
+
+	@Override
+	public void incrementNumberOfTriplesPerChunk(int chunk) {
+		triplesPerChunk[chunk]++;
+	}
+
+	@Override
+	public void addNumberOfTriplesPerChunk(int chunk, long numberOfTriples) {
+		triplesPerChunk[chunk] += numberOfTriples;
+	}
+
+	@Override
+	public long[] getChunkSizes() {
+		return triplesPerChunk;
+	}
+
+	@Override
+	public long[] getStatisticsForResource(long id) {
+		long[] statistics = new long[rowLength];
+		getStatisticsForResource(id, statistics);
+		return statistics;
+	}
+
+	@Override
+	public boolean getStatisticsForResource(long id, long[] statistics) {
+		lock.readLock().lock();
+		try {
+			long slot = findSlot(id);
+			if (table.get(2 * slot) == 0) {
+				Arrays.fill(statistics, 0, rowLength, 0);
+				return false;
+			}
+			long rowStart = table.get((2 * slot) + 1) * rowLength;
+			for (int i = 0; i < rowLength; i++) {
+				statistics[i] = rows.get(rowStart + i);
+			}
+			return true;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param id
+	 * @return the slot that contains the resource or the empty slot where it would be inserted
+	 */
+	private long findSlot(long id) {
+		long mask = tableCapacity - 1;
+		long slot = (id * 0x9E3779B97F4A7C15L) >>> 20;
+		slot &= mask;
+		long key = id + 1;
+		for (long storedKey = table.get(2 * slot); (storedKey != 0) && (storedKey != key); storedKey = table
+				.get(2 * slot)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private long getOrCreateRow(long id) {
+		// only the writer modifies the table, so it can find existing rows without locking
+		long slot = findSlot(id);
+		if (table.get(2 * slot) != 0) {
+			return table.get((2 * slot) + 1);
+		}
+		lock.writeLock().lock();
+		try {
+			if ((2 * (numberOfRows + 1)) > tableCapacity) {
+				growTable();
+				slot = findSlot(id);
+			}
+			long row = numberOfRows++;
+			rows.ensureCapacity(numberOfRows * rowLength);
+			table.set(2 * slot, id + 1);
+			table.set((2 * slot) + 1, row);
+			return row;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void growTable() {
+		OffHeapLongArray oldTable = table;
+		long oldCapacity = tableCapacity;
+		tableCapacity = 2 * oldCapacity;
+		table = new OffHeapLongArray(2 * tableCapacity);
+		for (long slot = 0; slot < oldCapacity; slot++) {
+			long key = oldTable.get(2 * slot);
+			if (key != 0) {
+				long newSlot = findSlot(key - 1);
+				table.set(2 * newSlot, key);
+				table.set((2 * newSlot) + 1, oldTable.get((2 * slot) + 1));
+			}
+		}
+	}
+
+	/**
+	 * Writes all statistics sequentially into a new snapshot that replaces the previous one.
+	 */
+	@Override
+	public void flush() {
+		File tmpFile = new File(snapshotFile.getAbsolutePath() + ".tmp");
+		lock.readLock().lock();
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16));) {
+			out.writeInt(SNAPSHOT_MAGIC_NUMBER);
+			out.writeShort(numberOfChunks);
+			for (long triples : triplesPerChunk) {
+				out.writeLong(triples);
+			}
+			out.writeLong(numberOfRows);
+			for (long slot = 0; slot < tableCapacity; slot++) {
+				long key = table.get(2 * slot);
+				if (key == 0) {
+					continue;
+				}
+				long rowStart = table.get((2 * slot) + 1) * rowLength;
+				writeVarLong(out, key - 1);
+				int numberOfValues = 0;
+				for (int i = 0; i < rowLength; i++) {
+					if (rows.get(rowStart + i) != 0) {
+						numberOfValues++;
+					}
+				}
+				writeVarLong(out, numberOfValues);
+				int previousColumn = -1;
+				for (int i = 0; i < rowLength; i++) {
+					long value = rows.get(rowStart + i);
+					if (value != 0) {
+						writeVarLong(out, i - previousColumn - 1);
+						writeVarLong(out, value);
+						previousColumn = i;
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock.readLock().unlock();
+		}
+		try {
+			Files.move(tmpFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void loadSnapshot() {
+		lock.writeLock().lock();
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(snapshotFile), 1 << 16));) {
+			if (in.readInt() != SNAPSHOT_MAGIC_NUMBER) {
+				throw new IOException(snapshotFile + " is not a statistics snapshot.");
+			}
+			if (in.readShort() != numberOfChunks) {
+				throw new IOException(snapshotFile + " contains statistics of a different number of chunks.");
+			}
+			for (int i = 0; i < numberOfChunks; i++) {
+				triplesPerChunk[i] = in.readLong();
+			}
+			long numberOfResources = in.readLong();
+			initialize(Math.max(INITIAL_TABLE_CAPACITY, Long.highestOneBit(numberOfResources) << 2));
+			rows.ensureCapacity(numberOfResources * rowLength);
+			for (long r = 0; r < numberOfResources; r++) {
+				long id = readVarLong(in);
+				long rowStart = getOrCreateRow(id) * rowLength;
+				long numberOfValues = readVarLong(in);
+				int column = -1;
+				for (long i = 0; i < numberOfValues; i++) {
+					column += readVarLong(in) + 1;
+					rows.set(rowStart + column, readVarLong(in));
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private static void writeVarLong(OutputStream out, long value) throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			out.write((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static long readVarLong(InputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new IOException("Unexpected end of the statistics snapshot.");
+			}
+			value |= ((long) (b & 0x7f)) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			Arrays.fill(triplesPerChunk, 0);
+			initialize(INITIAL_TABLE_CAPACITY);
+			snapshotFile.delete();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void close() {
+		if (table == null) {
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			lock.writeLock().lock();
+			table = null;
+			rows = null;
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * A growable array of longs stored in direct byte buffers.
+	 */
+	private static class OffHeapLongArray {
+
+		private static final int SEGMENT_BITS = 24;
+
+		private static final int SEGMENT_LENGTH = 1 << SEGMENT_BITS;
+
+		private static final int SEGMENT_MASK = SEGMENT_LENGTH - 1;
+
+		private ByteBuffer[] segments;
+
+		private long capacity;
+
+		public OffHeapLongArray(long length) {
+			segments = new ByteBuffer[0];
+			capacity = 0;
+			ensureCapacity(length);
+		}
+
+		public void ensureCapacity(long length) {
+			if (length <= capacity) {
+				return;
+			}
+			if (length <= SEGMENT_LENGTH) {
+				// the first segment grows until it reaches its maximal size
+				long newCapacity = Math.max(1024, capacity);
+				while (newCapacity < length) {
+					newCapacity *= 2;
+				}
+				ByteBuffer segment = allocate((int) Math.min(newCapacity, SEGMENT_LENGTH));
+				if (segments.length > 0) {
+					ByteBuffer oldSegment = segments[0].duplicate();
+					oldSegment.clear();
+					segment.put(oldSegment);
+					segment.clear();
+				}
+				segments = new ByteBuffer[] { segment };
+				capacity = segment.capacity() / Long.BYTES;
+				return;
+			}
+			ensureCapacity(SEGMENT_LENGTH);
+			int numberOfSegments = (int) (((length + SEGMENT_LENGTH) - 1) >>> SEGMENT_BITS);
+			int oldNumberOfSegments = segments.length;
+			segments = Arrays.copyOf(segments, numberOfSegments);
+			for (int i = oldNumberOfSegments; i < numberOfSegments; i++) {
+				segments[i] = allocate(SEGMENT_LENGTH);
+			}
+			capacity = ((long) numberOfSegments) << SEGMENT_BITS;
+		}
+
+		private static ByteBuffer allocate(int numberOfLongs) {
+			return ByteBuffer.allocateDirect(numberOfLongs * Long.BYTES).order(ByteOrder.nativeOrder());
+		}
+
+		public long get(long index) {
+			return segments[(int) (index >>> SEGMENT_BITS)].getLong(((int) index & SEGMENT_MASK) << 3);
+		}
+
+		public void set(long index, long value) {
+			segments[(int) (index >>> SEGMENT_BITS)].putLong(((int) index & SEGMENT_MASK) << 3, value);
+		}
+
+		public void add(long index, long value) {
+			ByteBuffer segment = segments[(int) (index >>> SEGMENT_BITS)];
+			int offset = ((int) index & SEGMENT_MASK) << 3;
+			segment.putLong(offset, segment.getLong(offset) + value);
+		}
+
+	}
+
+}
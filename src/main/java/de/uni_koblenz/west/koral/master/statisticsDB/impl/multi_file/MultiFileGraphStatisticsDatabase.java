@@ -93,6 +93,11 @@ public class MultiFileGraphStatisticsDatabase implements GraphStatisticsDatabase
 		triplesPerChunk[chunk]++;
 	}
 
+	@Override
+	public void addNumberOfTriplesPerChunk(int chunk, long numberOfTriples) {
+		triplesPerChunk[chunk] += numberOfTriples;
+	}
+
 	@Override
 	public long[] getChunkSizes() {
 		return triplesPerChunk;
@@ -157,6 +162,57 @@ public class MultiFileGraphStatisticsDatabase implements GraphStatisticsDatabase
 		}
 	}
 
+	/**
+	 * Adds all occurrences of a resource with one update of its row.
+	 */
+	@Override
+	public void addOccurrences(long resourceId, long[] occurrences) {
+		try {
+			long[] newOccurrences = occurrences;
+			boolean wasDataExternal = false;
+			long fileIdRead = -1;
+			long extraFileRowId = -1;
+			if (loadRow(resourceId)) {
+				newOccurrences = rowManager.decodeOccurenceData();
+				for (int i = 0; i < newOccurrences.length; i++) {
+					newOccurrences[i] += occurrences[i];
+				}
+				wasDataExternal = rowManager.isDataExternal();
+				fileIdRead = rowManager.getFileId();
+				extraFileRowId = rowManager.getExternalFileRowId();
+			}
+			if (Utils.isArrayZero(newOccurrences)) {
+				return;
+			}
+			rowManager.create(newOccurrences);
+			if (rowManager.isTooLongForMain()) {
+				long fileIdWrite = rowManager.getFileId();
+				long newExtraFileRowId;
+				if (wasDataExternal && (fileIdWrite == fileIdRead)) {
+					// Overwrite old extra file entry
+					newExtraFileRowId = extraFileRowId;
+					fileManager.writeExternalRow(fileIdWrite, newExtraFileRowId, rowManager.getDataBytes());
+				} else {
+					if (wasDataExternal) {
+						// Move entry into different extra file
+						fileManager.deleteExternalRow(fileIdRead, extraFileRowId);
+					}
+					newExtraFileRowId = fileManager.writeExternalRow(fileIdWrite, rowManager.getDataBytes());
+				}
+				rowManager.updateRowExtraOffset(newExtraFileRowId);
+			} else {
+				if (wasDataExternal) {
+					fileManager.deleteExternalRow(fileIdRead, extraFileRowId);
+				}
+				rowManager.mergeDataBytesIntoRow();
+			}
+			fileManager.writeIndexRow(resourceId, rowManager.getRow());
+		} catch (IOException e) {
+			close();
+			throw new RuntimeException(e);
+		}
+	}
+
 	@Override
 	public long[] getStatisticsForResource(long id) {
 		boolean rowFound = loadRow(id);
@@ -193,7 +249,8 @@ public class MultiFileGraphStatisticsDatabase implements GraphStatisticsDatabase
 		return true;
 	}
 
-	private void flush() {
+	@Override
+	public void flush() {
 		fileManager.flush();
 		byte[] bytes = new byte[Long.BYTES * triplesPerChunk.length];
 		for (int i = 0; i < triplesPerChunk.length; i++) {
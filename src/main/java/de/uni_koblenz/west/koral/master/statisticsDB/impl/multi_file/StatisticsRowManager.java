@@ -284,6 +284,32 @@ public class StatisticsRowManager {
 		return row;
 	}
 
+	/**
+	 * Creates a row that contains the given occurence values. Afterwards, {@link #row} contains the metadata bits and
+	 * {@link #dataBytes} contains the occurence data.
+	 *
+	 * @param occurences
+	 *            An array that maps each column number to its occurences. At least one value must not be zero.
+	 */
+	void create(long[] occurences) {
+		long maxOccurences = 0;
+		positionCount = 0;
+		for (long occurence : occurences) {
+			if (occurence != 0) {
+				positionCount++;
+				maxOccurences = Math.max(maxOccurences, occurence);
+			}
+		}
+		bytesPerValue = (byte) Math.max(1,
+				((Long.SIZE - Long.numberOfLeadingZeros(maxOccurences)) + Byte.SIZE - 1) / Byte.SIZE);
+		positionEncoding = optimalPositionEncoding(positionCount);
+		row = new byte[mainfileRowLength];
+		metadataBits = 0;
+		updatePositionCount();
+		updateBytesPerValue();
+		encodeOccurenceData(occurences);
+	}
+
 	/**
 	 * Writes internal dataBytes into internal row.
 	 */
@@ -122,4 +122,20 @@ class Utils {
 		}
 		return true;
 	}
+
+	/**
+	 * Checks if every field of the array is equal to zero.
+	 *
+	 * @param array
+	 *            A long array with arbitrary length
+	 * @return True if every entry is equal to zero, false if at least one entry is different from zero.
+	 */
+	public static boolean isArrayZero(long[] array) {
+		for (int i = 0; i < array.length; i++) {
+			if (array[i] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
 }
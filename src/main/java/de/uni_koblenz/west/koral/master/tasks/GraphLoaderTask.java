@@ -17,6 +17,9 @@
 package de.uni_koblenz.west.koral.master.tasks;
 
 import de.uni_koblenz.west.koral.common.ftp.FTPServer;
+import de.uni_koblenz.west.koral.common.ftp.FileStreamServer;
+import de.uni_koblenz.west.koral.common.io.BlockCodec;
+import de.uni_koblenz.west.koral.common.io.ChunkStatistics;
 import de.uni_koblenz.west.koral.common.io.EncodingFileFormat;
 import de.uni_koblenz.west.koral.common.measurement.MeasurementCollector;
 import de.uni_koblenz.west.koral.common.measurement.MeasurementType;
@@ -26,6 +29,7 @@ import de.uni_koblenz.west.koral.common.messages.MessageUtils;
 import de.uni_koblenz.west.koral.common.networManager.NetworkManager;
 import de.uni_koblenz.west.koral.common.utils.GraphFileFilter;
 import de.uni_koblenz.west.koral.common.utils.NumberConversion;
+import de.uni_koblenz.west.koral.master.CheckpointManager;
 import de.uni_koblenz.west.koral.master.client_manager.ClientConnectionManager;
 import de.uni_koblenz.west.koral.master.dictionary.DictionaryEncoder;
 import de.uni_koblenz.west.koral.master.graph_cover_creator.CoverStrategyType;
@@ -33,9 +37,12 @@ import de.uni_koblenz.west.koral.master.graph_cover_creator.GraphCoverCreator;
 import de.uni_koblenz.west.koral.master.graph_cover_creator.GraphCoverCreatorFactory;
 import de.uni_koblenz.west.koral.master.graph_cover_creator.NHopReplicator;
 import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.MoleculeHashCoverCreator;
+import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.ParallelGreedyEdgeColoringCoverCreator;
 import de.uni_koblenz.west.koral.master.statisticsDB.GraphStatistics;
 import de.uni_koblenz.west.koral.slave.KoralSlave;
 
+import org.apache.commons.io.FileUtils;
+
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileReader;
@@ -45,6 +52,8 @@ import java.io.LineNumberReader;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 /**
@@ -53,7 +62,8 @@ import java.util.logging.Logger;
  * <li>Requesting graph files from client.</li>
  * <li>Creating the requested graph cover.</li>
  * <li>Encoding the graph chunks and collecting statistical information.</li>
- * <li>Sending encoded graph chunks to the {@link KoralSlave}s.</li>
+ * <li>Streaming the encoded graph chunks to the {@link KoralSlave}s while their
+ * ownership is adjusted.</li>
  * <li>Waiting for loading finished messages off all {@link KoralSlave}s.</li>
  * </ol>
  * 
@@ -62,6 +72,14 @@ import java.util.logging.Logger;
  */
 public class GraphLoaderTask extends Thread implements Closeable {
 
+  /**
+   * number of most frequent properties sent to the slaves for warming up their
+   * caches after a restart
+   */
+  private static final int NUMBER_OF_FREQUENT_PROPERTIES = 100;
+
+  private static final String WORKING_DIR_PREFIX = "koral_client_";
+
   private final Logger logger;
 
   private final MeasurementCollector measurementCollector;
@@ -76,6 +94,18 @@ public class GraphLoaderTask extends Thread implements Closeable {
 
   private final GraphStatistics statistics;
 
+  private final CheckpointManager checkpointManager;
+
+  /**
+   * in MB
+   */
+  private final int coverCreationMemoryBudget;
+
+  /**
+   * codec of the graph chunks written by the cover creation
+   */
+  private final BlockCodec encodedFileCodec;
+
   private final File workingDir;
 
   private final File graphFilesDir;
@@ -86,6 +116,10 @@ public class GraphLoaderTask extends Thread implements Closeable {
 
   private int numberOfGraphChunks;
 
+  private boolean isIncremental;
+
+  private boolean areStatisticsCollectedWhileEncoding;
+
   private ClientConnectionKeepAliveTask keepAliveThread;
 
   private boolean graphIsLoadingOrLoaded;
@@ -100,8 +134,16 @@ public class GraphLoaderTask extends Thread implements Closeable {
 
   private final FTPServer ftpServer;
 
+  private final FileStreamServer chunkStreamServer;
+
   private volatile int numberOfBusySlaves;
 
+  /**
+   * serialized {@link ChunkStatistics} reported by each slave after it has
+   * stored its graph chunk
+   */
+  private final Map<Integer, byte[]> reportedChunkStatistics;
+
   private boolean isStarted;
 
   private LoadingState state;
@@ -110,9 +152,10 @@ public class GraphLoaderTask extends Thread implements Closeable {
 
   public GraphLoaderTask(int clientID, ClientConnectionManager clientConnections,
           NetworkManager slaveConnections, String externalFtpIpAddress, String internalFtpIpAddress,
-          String ftpPort, DictionaryEncoder dictionary, GraphStatistics statistics, File tmpDir,
-          MessageNotifier messageNotifier, Logger logger, MeasurementCollector collector,
-          boolean contactSlaves) {
+          String ftpPort, DictionaryEncoder dictionary, GraphStatistics statistics,
+          CheckpointManager checkpointManager, File tmpDir, int coverCreationMemoryBudget,
+          BlockCodec encodedFileCodec, MessageNotifier messageNotifier, Logger logger,
+          MeasurementCollector collector, boolean contactSlaves) {
     setDaemon(true);
     graphIsLoadingOrLoaded = true;
     this.contactSlaves = contactSlaves;
@@ -122,6 +165,9 @@ public class GraphLoaderTask extends Thread implements Closeable {
     this.slaveConnections = slaveConnections;
     this.dictionary = dictionary;
     this.statistics = statistics;
+    this.checkpointManager = checkpointManager;
+    this.coverCreationMemoryBudget = coverCreationMemoryBudget;
+    this.encodedFileCodec = encodedFileCodec;
     this.messageNotifier = messageNotifier;
     this.logger = logger;
     measurementCollector = collector;
@@ -129,8 +175,9 @@ public class GraphLoaderTask extends Thread implements Closeable {
     this.internalFtpIpAddress = internalFtpIpAddress;
     this.ftpPort = ftpPort;
     ftpServer = new FTPServer();
-    workingDir = new File(
-            tmpDir.getAbsolutePath() + File.separatorChar + "koral_client_" + clientId);
+    chunkStreamServer = new FileStreamServer(logger);
+    reportedChunkStatistics = new ConcurrentHashMap<>();
+    workingDir = GraphLoaderTask.getWorkingDir(tmpDir, clientId);
     if (workingDir.exists()) {
       loadState();
       if (state == LoadingState.START) {
@@ -146,6 +193,32 @@ public class GraphLoaderTask extends Thread implements Closeable {
     graphFilesDir = new File(workingDir.getAbsolutePath() + File.separatorChar + "graphFiles");
   }
 
+  private static File getWorkingDir(File tmpDir, int clientId) {
+    return new File(tmpDir.getAbsolutePath() + File.separatorChar
+            + GraphLoaderTask.WORKING_DIR_PREFIX + clientId);
+  }
+
+  /**
+   * Deletes the working directories of interrupted loads so that they are not
+   * resumed.
+   * 
+   * @param tmpDir
+   */
+  public static void discardInterruptedLoads(File tmpDir) {
+    File[] workingDirs = tmpDir
+            .listFiles((dir, name) -> name.startsWith(GraphLoaderTask.WORKING_DIR_PREFIX));
+    if (workingDirs == null) {
+      return;
+    }
+    for (File workingDir : workingDirs) {
+      try {
+        FileUtils.deleteDirectory(workingDir);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
   private void setState(LoadingState state) {
     try (FileWriter fw = new FileWriter(
             workingDir.getAbsolutePath() + File.separator + "GraphLoaderTaskState.txt");) {
@@ -185,17 +258,18 @@ public class GraphLoaderTask extends Thread implements Closeable {
   }
 
   public void loadGraph(byte[][] args, int numberOfGraphChunks) {
-    if (args.length < 4) {
+    if (args.length < 5) {
       throw new IllegalArgumentException(
-              "Loading a graph requires at least 4 arguments, but received only " + args.length
+              "Loading a graph requires at least 5 arguments, but received only " + args.length
                       + " arguments.");
     }
     CoverStrategyType coverStrategy = CoverStrategyType.values()[NumberConversion
             .bytes2int(args[0])];
     int replicationPathLength = NumberConversion.bytes2int(args[1]);
     int numberOfFiles = NumberConversion.bytes2int(args[3]);
+    boolean isIncremental = NumberConversion.bytes2int(args[4]) != 0;
     loadGraph(coverStrategy, replicationPathLength, numberOfGraphChunks, numberOfFiles,
-            getFileExtensions(args, 4), NumberConversion.bytes2int(args[2]));
+            getFileExtensions(args, 5), NumberConversion.bytes2int(args[2]), isIncremental);
   }
 
   private String[] getFileExtensions(byte[][] args, int startIndex) {
@@ -209,20 +283,54 @@ public class GraphLoaderTask extends Thread implements Closeable {
   public void loadGraph(CoverStrategyType coverStrategy, int replicationPathLength,
           int numberOfGraphChunks, int numberOfFiles, String[] fileExtensions,
           int maxMoleculeDiameter) {
+    loadGraph(coverStrategy, replicationPathLength, numberOfGraphChunks, numberOfFiles,
+            fileExtensions, maxMoleculeDiameter, false);
+  }
+
+  /**
+   * @param coverStrategy
+   * @param replicationPathLength
+   * @param numberOfGraphChunks
+   * @param numberOfFiles
+   * @param fileExtensions
+   * @param maxMoleculeDiameter
+   * @param isIncremental
+   *          if <code>true</code>, the graph is added to the already loaded
+   *          graph. This is only supported for {@link CoverStrategyType#HASH},
+   *          {@link CoverStrategyType#FAST_HASH} and
+   *          {@link CoverStrategyType#MOLECULE_HASH} without n-hop
+   *          replication.
+   */
+  public void loadGraph(CoverStrategyType coverStrategy, int replicationPathLength,
+          int numberOfGraphChunks, int numberOfFiles, String[] fileExtensions,
+          int maxMoleculeDiameter, boolean isIncremental) {
     if (logger != null) {
       logger.finer("loadGraph(coverStrategy=" + coverStrategy.name() + ", replicationPathLength="
-              + replicationPathLength + ", numberOfFiles=" + numberOfFiles + ")");
+              + replicationPathLength + ", numberOfFiles=" + numberOfFiles + ", isIncremental="
+              + isIncremental + ")");
     }
+    if (isIncremental
+            && (!coverStrategy.supportsIncrementalLoading() || (replicationPathLength != 0))) {
+      throw new IllegalArgumentException("Incremental loading is only supported for the cover "
+              + "strategies " + CoverStrategyType.getIncrementalStrategyNames()
+              + " without n-hop replication.");
+    }
+    this.isIncremental = isIncremental;
     if ((state == LoadingState.START) && (measurementCollector != null)) {
       measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_START,
               System.currentTimeMillis(), coverStrategy.toString(),
               new Integer(replicationPathLength).toString(),
               new Integer(numberOfGraphChunks).toString());
     }
-    coverCreator = GraphCoverCreatorFactory.getGraphCoverCreator(coverStrategy, logger,
-            measurementCollector);
+    coverCreator = GraphCoverCreatorFactory.getGraphCoverCreator(coverStrategy, encodedFileCodec,
+            logger, measurementCollector);
     if (coverCreator instanceof MoleculeHashCoverCreator) {
       ((MoleculeHashCoverCreator) coverCreator).setMaxMoleculeDiameter(maxMoleculeDiameter);
+      ((MoleculeHashCoverCreator) coverCreator)
+              .setMemoryBudget(coverCreationMemoryBudget * 1024L * 1024L);
+    } else if (coverCreator instanceof ParallelGreedyEdgeColoringCoverCreator) {
+      ((ParallelGreedyEdgeColoringCoverCreator) coverCreator)
+              .setMemoryBudget(coverCreationMemoryBudget * 1024L * 1024L);
     }
     this.replicationPathLength = replicationPathLength;
     this.numberOfGraphChunks = numberOfGraphChunks;
@@ -257,25 +365,65 @@ public class GraphLoaderTask extends Thread implements Closeable {
       keepAliveThread = new ClientConnectionKeepAliveTask(clientConnections, clientId);
       keepAliveThread.start();
 
+      if (checkpointManager != null) {
+        // the checkpoint of a replaced graph must not be restored
+        checkpointManager.beginModification(!isIncremental);
+      }
+      // the owners of resources might change
+      dictionary.invalidateTermIndex();
+      dictionary.invalidatePartitions();
+
       File encodedGraphFile = encodeGraphFilesInitially();
       File[] chunks = createGraphChunks(encodedGraphFile);
       File[] encodedFiles = encodeGraphChunks(chunks,
               replicationPathLength != 0 ? EncodingFileFormat.EEE
-                      : coverCreator.getRequiredInputEncoding());
-      collectStatistis(encodedFiles);
-      encodedFiles = adjustOwnership(encodedFiles);
+                      : coverCreator.getRequiredInputEncoding(),
+              !isIncremental);
+      encodedFiles = collectStatistis(encodedFiles);
 
+      long partitionVersion = 0;
       if (state != LoadingState.FINISHED) {
-        setState(LoadingState.TRANSMITTING);
+        numberOfBusySlaves = 0;
+        List<GraphLoaderListener> listeners = new ArrayList<>();
+        File[] partitionFiles = null;
         if (contactSlaves) {
-          ftpServer.start(internalFtpIpAddress, ftpPort, workingDir, numberOfGraphChunks);
-          numberOfBusySlaves = 0;
-          List<GraphLoaderListener> listeners = new ArrayList<>();
-          for (int i = 0; i < encodedFiles.length; i++) {
-            File file = encodedFiles[i];
-            if (file == null) {
+          // the slaves start loading while the ownership is adjusted
+          chunkStreamServer.start(internalFtpIpAddress, ftpPort);
+          long[] properties = statistics
+                  .getMostFrequentProperties(GraphLoaderTask.NUMBER_OF_FREQUENT_PROPERTIES);
+          byte[] frequentProperties = new byte[properties.length * Long.BYTES];
+          for (int i = 0; i < properties.length; i++) {
+            NumberConversion.long2bytes(properties[i], frequentProperties, i * Long.BYTES);
+          }
+          boolean isOwnershipAdjusted = state == LoadingState.TRANSMITTING;
+          File[] adjustedFiles = statistics.getAdjustedFiles(workingDir);
+          if (dictionary.isPartitioningEnabled()) {
+            partitionFiles = dictionary.getDictionaryPartitionFiles(workingDir,
+                    adjustedFiles.length);
+          }
+          for (int i = 0; i < adjustedFiles.length; i++) {
+            File sourceFile = isOwnershipAdjusted ? adjustedFiles[i] : encodedFiles[i];
+            if ((sourceFile == null) || !sourceFile.exists()) {
+              if (partitionFiles != null) {
+                partitionFiles[i] = null;
+              }
               continue;
             }
+            String partitionFileName = "";
+            if (partitionFiles != null) {
+              // the partition is written after the ownership is adjusted
+              partitionFiles[i].delete();
+              chunkStreamServer.offerFile(partitionFiles[i]);
+              partitionFileName = partitionFiles[i].getName();
+            }
+            if (isOwnershipAdjusted) {
+              chunkStreamServer.offerFile(adjustedFiles[i]);
+              chunkStreamServer.completeFile(adjustedFiles[i]);
+            } else {
+              // remove partially written files of an interrupted previous run
+              adjustedFiles[i].delete();
+              chunkStreamServer.offerFile(adjustedFiles[i]);
+            }
             numberOfBusySlaves++;
             // slave ids start with 1!
             GraphLoaderListener listener = new GraphLoaderListener(this, i + 1);
@@ -285,9 +433,20 @@ public class GraphLoaderTask extends Thread implements Closeable {
                     new byte[] { MessageType.START_FILE_TRANSFER.getValue() });
             slaveConnections.sendMore(i + 1,
                     (internalFtpIpAddress + ":" + ftpPort).getBytes("UTF-8"));
-            slaveConnections.send(i + 1, file.getName().getBytes("UTF-8"));
+            slaveConnections.sendMore(i + 1, adjustedFiles[i].getName().getBytes("UTF-8"));
+            slaveConnections.sendMore(i + 1, new byte[] { (byte) (isIncremental ? 1 : 0) });
+            slaveConnections.sendMore(i + 1, frequentProperties);
+            slaveConnections.send(i + 1, partitionFileName.getBytes("UTF-8"));
           }
+        }
 
+        adjustOwnership(encodedFiles);
+        if (partitionFiles != null) {
+          partitionVersion = writeDictionaryPartitions(partitionFiles);
+        }
+
+        setState(LoadingState.TRANSMITTING);
+        if (contactSlaves) {
           while (!isInterrupted() && (numberOfBusySlaves > 0)) {
             long currentTime = System.currentTimeMillis();
             long timeToSleep = 100 - (System.currentTimeMillis() - currentTime);
@@ -300,6 +459,7 @@ public class GraphLoaderTask extends Thread implements Closeable {
             }
           }
 
+          chunkStreamServer.close();
           for (GraphLoaderListener listener : listeners) {
             messageNotifier.unregisterMessageListener(GraphLoaderListener.class, listener);
           }
@@ -309,6 +469,16 @@ public class GraphLoaderTask extends Thread implements Closeable {
       keepAliveThread.interrupt();
 
       if (numberOfBusySlaves == 0) {
+        applyReportedStatistics();
+        dictionary.buildTermIndex(statistics);
+        if (partitionVersion != 0) {
+          dictionary.setPartitionVersion(partitionVersion);
+        }
+        // the dictionary is persisted already, so the statistics must not get lost in a crash
+        statistics.flush();
+        if (contactSlaves && (checkpointManager != null)) {
+          checkpointManager.createCheckpoint(dictionary, statistics);
+        }
         clientConnections.send(clientId,
                 new byte[] { MessageType.CLIENT_COMMAND_SUCCEEDED.getValue() });
         if (contactSlaves) {
@@ -322,6 +492,7 @@ public class GraphLoaderTask extends Thread implements Closeable {
                         logger));
       }
     } catch (Throwable e) {
+      chunkStreamServer.close();
       e.printStackTrace(System.out);
       if (logger != null) {
         logger.throwing(e.getStackTrace()[0].getClassName(), e.getStackTrace()[0].getMethodName(),
@@ -342,6 +513,9 @@ public class GraphLoaderTask extends Thread implements Closeable {
     }
     switch (messageType) {
       case GRAPH_LOADING_COMPLETE:
+        if (message.length > (Byte.BYTES + Short.BYTES)) {
+          reportedChunkStatistics.put((int) NumberConversion.bytes2short(message, 1), message);
+        }
         numberOfBusySlaves--;
         break;
       case GRAPH_LOADING_FAILED:
@@ -370,6 +544,38 @@ public class GraphLoaderTask extends Thread implements Closeable {
     }
   }
 
+  /**
+   * Replaces the statistics of each graph chunk by the exact statistics
+   * reported by the slave that has stored it.
+   */
+  private void applyReportedStatistics() {
+    if (reportedChunkStatistics.isEmpty()) {
+      return;
+    }
+    if (measurementCollector != null) {
+      measurementCollector.measureValue(
+              MeasurementType.LOAD_GRAPH_APPLYING_SLAVE_STATISTICS_START,
+              System.currentTimeMillis());
+    }
+    for (Map.Entry<Integer, byte[]> report : reportedChunkStatistics.entrySet()) {
+      // slave ids start with 1!
+      int chunk = report.getKey() - 1;
+      ChunkStatistics chunkStatistics =
+              ChunkStatistics.deserialize(report.getValue(), Byte.BYTES + Short.BYTES);
+      statistics.setChunkStatistics(chunk, chunkStatistics);
+      if (logger != null) {
+        logger.finer("applied the statistics of " + chunkStatistics.getNumberOfTriples()
+                + " triples reported for chunk " + chunk);
+      }
+    }
+    reportedChunkStatistics.clear();
+    if (measurementCollector != null) {
+      measurementCollector.measureValue(
+              MeasurementType.LOAD_GRAPH_APPLYING_SLAVE_STATISTICS_END,
+              System.currentTimeMillis());
+    }
+  }
+
   private File encodeGraphFilesInitially() {
     File encodedFiles = null;
     if ((state == LoadingState.START) || (state == LoadingState.INITIAL_ENCODING)) {
@@ -388,7 +594,7 @@ public class GraphLoaderTask extends Thread implements Closeable {
               ? graphFilesDir.listFiles(new GraphFileFilter())
               : new File[] { graphFilesDir };
       encodedFiles = dictionary.encodeOriginalGraphFiles(graphFiles, workingDir,
-              coverCreator.getRequiredInputEncoding(), numberOfGraphChunks);
+              coverCreator.getRequiredInputEncoding(), numberOfGraphChunks, isIncremental);
 
       for (File file : graphFiles) {
         if (file != null) {
@@ -428,7 +634,7 @@ public class GraphLoaderTask extends Thread implements Closeable {
       }
       chunks = coverCreator.createGraphCover(dictionary, encodedGraphFile, workingDir,
               numberOfGraphChunks);
-      encodedGraphFile.delete();
+      FileUtils.deleteQuietly(encodedGraphFile);
       if (measurementCollector != null) {
         measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_COVER_CREATION_END,
                 System.currentTimeMillis());
@@ -439,12 +645,13 @@ public class GraphLoaderTask extends Thread implements Closeable {
 
     if (replicationPathLength != 0) {
       if (state == LoadingState.GRAPH_COVER_CREATION) {
-        chunks = encodeGraphChunks(chunks, coverCreator.getRequiredInputEncoding());
+        chunks = encodeGraphChunks(chunks, coverCreator.getRequiredInputEncoding(), false);
         setState(LoadingState.N_HOP_REPLICATION);
       } else {
         chunks = dictionary.getFullyEncodedGraphChunks(workingDir, numberOfGraphChunks);
       }
       NHopReplicator replicator = new NHopReplicator(logger, measurementCollector);
+      replicator.setEncodedFileCodec(encodedFileCodec);
       if ((state == LoadingState.GRAPH_COVER_CREATION)
               || (state == LoadingState.N_HOP_REPLICATION)) {
         setState(LoadingState.N_HOP_REPLICATION);
@@ -472,8 +679,18 @@ public class GraphLoaderTask extends Thread implements Closeable {
     return chunks;
   }
 
+  /**
+   * @param plainGraphChunks
+   * @param inputEncodingFormat
+   * @param collectStatistics
+   *          if <code>true</code>, the statistics are cleared and the triples
+   *          are counted during the final encoding so that
+   *          {@link #collectStatistis(File[])} does not have to read the
+   *          chunks again
+   * @return the fully encoded graph chunks
+   */
   private File[] encodeGraphChunks(File[] plainGraphChunks,
-          EncodingFileFormat inputEncodingFormat) {
+          EncodingFileFormat inputEncodingFormat, boolean collectStatistics) {
     File[] encodedFiles = null;
     if ((state == LoadingState.GRAPH_COVER_CREATION) || (state == LoadingState.N_HOP_REPLICATION)
             || (state == LoadingState.FINAL_ENCODING)) {
@@ -489,8 +706,12 @@ public class GraphLoaderTask extends Thread implements Closeable {
               MessageUtils.createStringMessage(MessageType.MASTER_WORK_IN_PROGRESS,
                       "Started final encoding of graph chunks.", logger));
 
+      areStatisticsCollectedWhileEncoding = collectStatistics;
+      if (collectStatistics) {
+        statistics.clear();
+      }
       encodedFiles = dictionary.encodeGraphChunksCompletely(plainGraphChunks, workingDir,
-              inputEncodingFormat);
+              inputEncodingFormat, collectStatistics ? statistics : null);
 
       if (measurementCollector != null) {
         measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_FINAL_ENCODING_END,
@@ -508,8 +729,21 @@ public class GraphLoaderTask extends Thread implements Closeable {
     return encodedFiles;
   }
 
-  private void collectStatistis(File[] encodedChunks) {
+  private File[] collectStatistis(File[] encodedChunks) {
+    File[] result = encodedChunks;
     if ((state == LoadingState.FINAL_ENCODING) || (state == LoadingState.STATISTIC_COLLECTION)) {
+      if (isIncremental && (state == LoadingState.STATISTIC_COLLECTION)) {
+        // the statistics are not cleared before an incremental load
+        throw new IllegalStateException("The incremental collection of statistics was interrupted. "
+                + "The statistics may be inconsistent and the graph has to be reloaded.");
+      }
+      if ((state == LoadingState.FINAL_ENCODING) && areStatisticsCollectedWhileEncoding) {
+        setState(LoadingState.STATISTIC_COLLECTION);
+        if (logger != null) {
+          logger.finer("statistics have been collected during the final encoding");
+        }
+        return result;
+      }
       setState(LoadingState.STATISTIC_COLLECTION);
       if (logger != null) {
         logger.finer("collecting statistics");
@@ -521,7 +755,11 @@ public class GraphLoaderTask extends Thread implements Closeable {
       clientConnections.send(clientId, MessageUtils.createStringMessage(
               MessageType.MASTER_WORK_IN_PROGRESS, "Started collecting statistics.", logger));
 
-      statistics.collectStatistics(encodedChunks);
+      if (isIncremental) {
+        result = statistics.collectStatisticsIncrementally(encodedChunks, workingDir);
+      } else {
+        statistics.collectStatistics(encodedChunks);
+      }
 
       if (measurementCollector != null) {
         measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_COLLECTING_STATISTICS_END,
@@ -532,10 +770,32 @@ public class GraphLoaderTask extends Thread implements Closeable {
       }
       clientConnections.send(clientId, MessageUtils.createStringMessage(
               MessageType.MASTER_WORK_IN_PROGRESS, "Finished collecting statistics.", logger));
+    } else if (isIncremental) {
+      result = statistics.getIncrementalFiles(workingDir);
+      for (int i = 0; i < result.length; i++) {
+        if (!result[i].exists()) {
+          result[i] = null;
+        }
+      }
     }
+    return result;
   }
 
-  private File[] adjustOwnership(File[] encodedChunks) {
+  private long writeDictionaryPartitions(File[] partitionFiles) {
+    if (logger != null) {
+      logger.finer("writing dictionary partitions");
+    }
+    clientConnections.send(clientId, MessageUtils.createStringMessage(
+            MessageType.MASTER_WORK_IN_PROGRESS, "Started writing dictionary partitions.", logger));
+    long version = dictionary.writeDictionaryPartitions(partitionFiles, statistics,
+            chunkStreamServer::completeFile);
+    if (logger != null) {
+      logger.finer("writing dictionary partitions finished");
+    }
+    return version;
+  }
+
+  private void adjustOwnership(File[] encodedChunks) {
     if ((state == LoadingState.STATISTIC_COLLECTION) || (state == LoadingState.SETTING_OWNERSHIP)) {
       setState(LoadingState.SETTING_OWNERSHIP);
       if (logger != null) {
@@ -548,7 +808,11 @@ public class GraphLoaderTask extends Thread implements Closeable {
       clientConnections.send(clientId, MessageUtils.createStringMessage(
               MessageType.MASTER_WORK_IN_PROGRESS, "Started adjusting ownership.", logger));
 
-      File[] result = statistics.adjustOwnership(encodedChunks, workingDir);
+      // in case of an incremental load, the owners of previously loaded
+      // resources are looked up individually
+      statistics.adjustOwnership(encodedChunks, workingDir,
+              contactSlaves ? chunkStreamServer::completeFile : null,
+              isIncremental ? 0 : dictionary.size(), Runtime.getRuntime().availableProcessors());
 
       if (measurementCollector != null) {
         measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_ADJUSTING_OWNERSHIP_END,
@@ -559,9 +823,6 @@ public class GraphLoaderTask extends Thread implements Closeable {
       }
       clientConnections.send(clientId, MessageUtils.createStringMessage(
               MessageType.MASTER_WORK_IN_PROGRESS, "Finished adjusting ownership.", logger));
-      return result;
-    } else {
-      return statistics.getAdjustedFiles(workingDir);
     }
   }
 
@@ -586,12 +847,17 @@ public class GraphLoaderTask extends Thread implements Closeable {
         keepAliveThread.interrupt();
       }
       ftpServer.close();
+      chunkStreamServer.close();
       if ((state == LoadingState.START) || (state == LoadingState.FINISHED)) {
         cleanWorkingDirs();
-      } else if (state == LoadingState.INITIAL_ENCODING) {
-        dictionary.clear();
-      } else if (state == LoadingState.STATISTIC_COLLECTION) {
-        statistics.clear();
+      } else if (!isIncremental) {
+        // in case of an incremental load, the already loaded graph is kept
+        if (state == LoadingState.INITIAL_ENCODING) {
+          dictionary.clear();
+        } else if ((state == LoadingState.STATISTIC_COLLECTION)
+                || ((state == LoadingState.FINAL_ENCODING) && areStatisticsCollectedWhileEncoding)) {
+          statistics.clear();
+        }
       }
     } finally {
       if (measurementCollector != null) {
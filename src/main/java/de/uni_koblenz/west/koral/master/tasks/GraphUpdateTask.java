@@ -0,0 +1,372 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.tasks;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.modify.request.UpdateDataDelete;
+import org.apache.jena.sparql.modify.request.UpdateDataInsert;
+import org.apache.jena.update.Update;
+import org.apache.jena.update.UpdateFactory;
+import org.apache.jena.update.UpdateRequest;
+
+import de.uni_koblenz.west.koral.common.io.TripleUpdateBatch;
+import de.uni_koblenz.west.koral.common.messages.MessageNotifier;
+import de.uni_koblenz.west.koral.common.messages.MessageType;
+import de.uni_koblenz.west.koral.common.messages.MessageUtils;
+import de.uni_koblenz.west.koral.common.networManager.NetworkManager;
+import de.uni_koblenz.west.koral.common.utils.NumberConversion;
+import de.uni_koblenz.west.koral.master.CheckpointManager;
+import de.uni_koblenz.west.koral.master.client_manager.ClientConnectionManager;
+import de.uni_koblenz.west.koral.master.dictionary.DictionaryEncoder;
+import de.uni_koblenz.west.koral.master.graph_cover_creator.impl.HashCoverCreator;
+import de.uni_koblenz.west.koral.master.statisticsDB.GraphStatistics;
+import de.uni_koblenz.west.koral.master.utils.DeSerializer;
+import de.uni_koblenz.west.koral.slave.KoralSlave;
+
+import java.io.Closeable;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Thread that applies a SPARQL update request consisting of
+ * <code>INSERT DATA</code> and <code>DELETE DATA</code> operations, i.e.,
+ * <ol>
+ * <li>Encoding the triples and routing each of them to the graph chunks that
+ * store (insertion) or may store (deletion) the triple.</li>
+ * <li>Sending one {@link TripleUpdateBatch} to each affected
+ * {@link KoralSlave}, which applies it atomically to all its indices.</li>
+ * <li>Adjusting the {@link GraphStatistics} by the operations that have
+ * actually changed the triple stores.</li>
+ * <li>Creating a checkpoint of the dictionary and the statistics. Since each
+ * slave creates a checkpoint of its triple store after it has applied its
+ * batch, a later restored checkpoint contains this update on all
+ * computers.</li>
+ * </ol>
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class GraphUpdateTask extends Thread implements Closeable {
+
+  private final Logger logger;
+
+  private final int updateId;
+
+  private final int clientId;
+
+  private final ClientConnectionManager clientConnections;
+
+  private final NetworkManager slaveConnections;
+
+  private final DictionaryEncoder dictionary;
+
+  private final GraphStatistics statistics;
+
+  private final CheckpointManager checkpointManager;
+
+  private final MessageNotifier messageNotifier;
+
+  private final int numberOfGraphChunks;
+
+  private final HashCoverCreator hashCover;
+
+  private String updateRequest;
+
+  private ClientConnectionKeepAliveTask keepAliveThread;
+
+  private final BitSet[] effectiveOperations;
+
+  private final AtomicInteger numberOfBusySlaves;
+
+  private volatile String errorMessage;
+
+  public GraphUpdateTask(int updateId, int clientID, ClientConnectionManager clientConnections,
+          NetworkManager slaveConnections, DictionaryEncoder dictionary,
+          GraphStatistics statistics, CheckpointManager checkpointManager,
+          MessageNotifier messageNotifier, Logger logger) {
+    setDaemon(true);
+    this.updateId = updateId;
+    clientId = clientID;
+    this.clientConnections = clientConnections;
+    this.slaveConnections = slaveConnections;
+    this.dictionary = dictionary;
+    this.statistics = statistics;
+    this.checkpointManager = checkpointManager;
+    this.messageNotifier = messageNotifier;
+    this.logger = logger;
+    numberOfGraphChunks = statistics.getNumberOfChunks();
+    hashCover = new HashCoverCreator(logger, null);
+    effectiveOperations = new BitSet[numberOfGraphChunks];
+    numberOfBusySlaves = new AtomicInteger();
+  }
+
+  public void processUpdateRequest(byte[][] arguments) {
+    if (arguments.length < 1) {
+      throw new IllegalArgumentException("An update requires the SPARQL update request.");
+    }
+    updateRequest = MessageUtils.convertToString(arguments[0], logger);
+    if (logger != null) {
+      logger.fine("Started update " + updateId + ": " + updateRequest.replace('\n', ' '));
+    }
+  }
+
+  @Override
+  public void run() {
+    List<GraphUpdateListener> listeners = new ArrayList<>();
+    try {
+      keepAliveThread = new ClientConnectionKeepAliveTask(clientConnections, clientId);
+      keepAliveThread.start();
+
+      if (checkpointManager != null) {
+        checkpointManager.beginModification(false);
+      }
+      TripleUpdateBatch[] batches = createBatches(UpdateFactory.create(updateRequest));
+      // new resources have to be decodable before the slaves apply the updates
+      dictionary.flush();
+
+      int numberOfAffectedSlaves = 0;
+      for (int i = 0; i < batches.length; i++) {
+        if (batches[i].isEmpty()) {
+          continue;
+        }
+        numberOfAffectedSlaves++;
+        // slave ids start with 1!
+        GraphUpdateListener listener = new GraphUpdateListener(this, i + 1);
+        listeners.add(listener);
+        messageNotifier.registerMessageListener(GraphUpdateListener.class, listener);
+      }
+      numberOfBusySlaves.set(numberOfAffectedSlaves);
+      for (int i = 0; i < batches.length; i++) {
+        if (batches[i].isEmpty()) {
+          continue;
+        }
+        byte[] batch = batches[i].serialize();
+        slaveConnections.send(i + 1,
+                ByteBuffer.allocate(Byte.BYTES + Integer.BYTES + batch.length)
+                        .put(MessageType.UPDATE_BATCH.getValue()).putInt(updateId).put(batch)
+                        .array());
+      }
+
+      while (!isInterrupted() && (numberOfBusySlaves.get() > 0)) {
+        try {
+          Thread.sleep(10);
+        } catch (InterruptedException e) {
+          break;
+        }
+      }
+
+      long[] numberOfChanges = adjustStatistics(batches);
+      statistics.flush();
+      if (checkpointManager != null) {
+        checkpointManager.createCheckpoint(dictionary, statistics);
+      }
+      keepAliveThread.interrupt();
+      if (errorMessage != null) {
+        clientConnections.send(clientId, MessageUtils.createStringMessage(
+                MessageType.CLIENT_COMMAND_FAILED, errorMessage, logger));
+      } else if (numberOfBusySlaves.get() > 0) {
+        clientConnections.send(clientId,
+                MessageUtils.createStringMessage(MessageType.CLIENT_COMMAND_FAILED,
+                        "The update was interrupted before all slaves have applied it.", logger));
+      } else {
+        clientConnections.send(clientId,
+                MessageUtils.createStringMessage(MessageType.CLIENT_COMMAND_SUCCEEDED,
+                        "Inserted " + numberOfChanges[0] + " and deleted " + numberOfChanges[1]
+                                + " triples.",
+                        logger));
+      }
+    } catch (Throwable e) {
+      if (logger != null) {
+        logger.throwing(e.getStackTrace()[0].getClassName(), e.getStackTrace()[0].getMethodName(),
+                e);
+      }
+      if (keepAliveThread != null) {
+        keepAliveThread.interrupt();
+      }
+      clientConnections.send(clientId,
+              MessageUtils.createStringMessage(MessageType.CLIENT_COMMAND_FAILED,
+                      e.getClass().getName() + ":" + e.getMessage(), logger));
+    } finally {
+      for (GraphUpdateListener listener : listeners) {
+        messageNotifier.unregisterMessageListener(GraphUpdateListener.class, listener);
+      }
+    }
+  }
+
+  private TripleUpdateBatch[] createBatches(UpdateRequest request) {
+    TripleUpdateBatch[] batches = new TripleUpdateBatch[numberOfGraphChunks];
+    for (int i = 0; i < batches.length; i++) {
+      batches[i] = new TripleUpdateBatch();
+    }
+    // chunks that receive triples with a subject within this request
+    Map<Long, BitSet> insertedSubjects = new HashMap<>();
+    for (Update update : request.getOperations()) {
+      boolean isInsertion;
+      List<Quad> quads;
+      if (update instanceof UpdateDataInsert) {
+        isInsertion = true;
+        quads = ((UpdateDataInsert) update).getQuads();
+      } else if (update instanceof UpdateDataDelete) {
+        isInsertion = false;
+        quads = ((UpdateDataDelete) update).getQuads();
+      } else {
+        throw new UnsupportedOperationException(
+                "Only INSERT DATA and DELETE DATA are supported, but the update contains "
+                        + update.getClass().getSimpleName() + ".");
+      }
+      for (Quad quad : quads) {
+        if (!quad.isDefaultGraph()) {
+          throw new UnsupportedOperationException("Named graphs are not supported.");
+        }
+        Node[] triple = new Node[] { quad.getSubject(), quad.getPredicate(), quad.getObject() };
+        dictionary.transformBlankNodes(triple);
+        long subject = dictionary.encodeWithoutOwnership(triple[0], isInsertion);
+        long property = dictionary.encodeWithoutOwnership(triple[1], isInsertion);
+        long object = dictionary.encodeWithoutOwnership(triple[2], isInsertion);
+        if ((subject == 0) || (property == 0) || (object == 0)) {
+          // a triple with an unknown resource cannot be deleted
+          continue;
+        }
+        if (isInsertion) {
+          int chunk = statistics.getMainSubjectChunk(subject);
+          boolean isNewSubject = chunk < 0;
+          if (isNewSubject) {
+            int hash = hashCover.computeHash(DeSerializer.serializeNode(triple[0]))
+                    % numberOfGraphChunks;
+            chunk = hash < 0 ? -hash : hash;
+          }
+          subject = statistics.getIDWithPinnedOwner(subject, (short) chunk);
+          if (isNewSubject) {
+            // triples of new subjects are stored together with the owner
+            chunk = (int) (subject >>> 48);
+          }
+          batches[chunk].addInsertion(subject,
+                  statistics.getIDWithPinnedOwner(property, (short) chunk),
+                  statistics.getIDWithPinnedOwner(object, (short) chunk));
+          BitSet chunks = insertedSubjects.get(subject);
+          if (chunks == null) {
+            chunks = new BitSet(numberOfGraphChunks);
+            insertedSubjects.put(subject, chunks);
+          }
+          chunks.set(chunk);
+        } else {
+          BitSet chunks = statistics.getChunksWithSubject(subject);
+          subject = statistics.getIDWithPinnedOwner(subject, (short) 0);
+          property = statistics.getIDWithPinnedOwner(property, (short) 0);
+          object = statistics.getIDWithPinnedOwner(object, (short) 0);
+          BitSet newChunks = insertedSubjects.get(subject);
+          if (newChunks != null) {
+            chunks.or(newChunks);
+          }
+          for (int chunk = chunks.nextSetBit(0); chunk >= 0; chunk = chunks
+                  .nextSetBit(chunk + 1)) {
+            batches[chunk].addDeletion(subject, property, object);
+          }
+        }
+      }
+    }
+    return batches;
+  }
+
+  /**
+   * @param batches
+   * @return number of inserted triples, number of deleted triples
+   */
+  private long[] adjustStatistics(TripleUpdateBatch[] batches) {
+    long[] numberOfChanges = new long[2];
+    for (int chunk = 0; chunk < effectiveOperations.length; chunk++) {
+      BitSet operations = effectiveOperations[chunk];
+      if (operations == null) {
+        continue;
+      }
+      TripleUpdateBatch batch = batches[chunk];
+      for (int i = operations.nextSetBit(0); (i >= 0) && (i < batch.size()); i = operations
+              .nextSetBit(i + 1)) {
+        long subject = batch.getSubject(i) & 0x00_00_ff_ff_ff_ff_ff_ffL;
+        long property = batch.getProperty(i) & 0x00_00_ff_ff_ff_ff_ff_ffL;
+        long object = batch.getObject(i) & 0x00_00_ff_ff_ff_ff_ff_ffL;
+        if (batch.isInsertion(i)) {
+          statistics.count(subject, property, object, chunk);
+          numberOfChanges[0]++;
+        } else {
+          statistics.uncount(subject, property, object, chunk);
+          numberOfChanges[1]++;
+        }
+      }
+    }
+    return numberOfChanges;
+  }
+
+  public void processSlaveResponse(byte[] message) {
+    MessageType messageType = MessageType.valueOf(message[0]);
+    short slaveID = NumberConversion.bytes2short(message, Byte.BYTES);
+    int responseUpdateId = NumberConversion.bytes2int(message, Byte.BYTES + Short.BYTES);
+    if (responseUpdateId != updateId) {
+      // the response belongs to another update
+      return;
+    }
+    int offset = Byte.BYTES + Short.BYTES + Integer.BYTES;
+    switch (messageType) {
+      case UPDATE_BATCH_APPLIED:
+        // slave ids start with 1!
+        effectiveOperations[slaveID - 1] = BitSet
+                .valueOf(Arrays.copyOfRange(message, offset, message.length));
+        numberOfBusySlaves.decrementAndGet();
+        break;
+      case UPDATE_BATCH_FAILED:
+        String errorMessage = null;
+        try {
+          errorMessage = new String(message, offset, message.length - offset, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+          errorMessage = e.getMessage();
+        }
+        if (logger != null) {
+          logger.finer(errorMessage);
+        }
+        this.errorMessage = errorMessage;
+        numberOfBusySlaves.decrementAndGet();
+        break;
+      default:
+        if (logger != null) {
+          logger.finest("Ignoring message of type " + messageType);
+        }
+    }
+  }
+
+  @Override
+  public void close() {
+    if (isAlive()) {
+      interrupt();
+    }
+    if ((keepAliveThread != null) && keepAliveThread.isAlive()) {
+      keepAliveThread.interrupt();
+    }
+    hashCover.close();
+  }
+
+}
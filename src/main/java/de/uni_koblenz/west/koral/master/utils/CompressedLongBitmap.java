@@ -0,0 +1,234 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.utils;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of long values. The values are grouped by
+ * their upper 48 bits. The lower 16 bits of each group are stored either as a
+ * sorted array, if the group is sparse, or as an uncompressed bitmap, if the
+ * group is dense. Thus, dense ranges of ids require one bit per value and
+ * sparse ranges two bytes per value.<br>
+ * This class is not thread-safe.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class CompressedLongBitmap {
+
+  private static final int CONTAINER_BITS = 16;
+
+  private static final int CONTAINER_MASK = (1 << CompressedLongBitmap.CONTAINER_BITS) - 1;
+
+  /**
+   * an array container with more values would require more memory than a
+   * bitmap container
+   */
+  private static final int MAX_ARRAY_CONTAINER_SIZE = 4096;
+
+  private static final int BITMAP_CONTAINER_LENGTH = (1 << CompressedLongBitmap.CONTAINER_BITS)
+          / Long.SIZE;
+
+  /**
+   * sorted upper bits of the values
+   */
+  private long[] keys;
+
+  /**
+   * either a char[] of sorted lower bits or a long[] bitmap
+   */
+  private Object[] containers;
+
+  /**
+   * number of values in each container
+   */
+  private int[] containerSizes;
+
+  private int numberOfContainers;
+
+  private long cardinality;
+
+  public CompressedLongBitmap() {
+    keys = new long[4];
+    containers = new Object[4];
+    containerSizes = new int[4];
+  }
+
+  public long getCardinality() {
+    return cardinality;
+  }
+
+  public boolean isEmpty() {
+    return cardinality == 0;
+  }
+
+  public boolean contains(long value) {
+    int index = Arrays.binarySearch(keys, 0, numberOfContainers,
+            value >>> CompressedLongBitmap.CONTAINER_BITS);
+    if (index < 0) {
+      return false;
+    }
+    int lowBits = (int) (value & CompressedLongBitmap.CONTAINER_MASK);
+    Object container = containers[index];
+    if (container instanceof long[]) {
+      return (((long[]) container)[lowBits >>> 6] & (1L << lowBits)) != 0;
+    } else {
+      return Arrays.binarySearch((char[]) container, 0, containerSizes[index],
+              (char) lowBits) >= 0;
+    }
+  }
+
+  /**
+   * @param value
+   * @return <code>true</code> if the value was not contained before
+   */
+  public boolean add(long value) {
+    long key = value >>> CompressedLongBitmap.CONTAINER_BITS;
+    int index = Arrays.binarySearch(keys, 0, numberOfContainers, key);
+    if (index < 0) {
+      index = -index - 1;
+      insertContainer(index, key, new char[4], 0);
+    }
+    int lowBits = (int) (value & CompressedLongBitmap.CONTAINER_MASK);
+    Object container = containers[index];
+    if (container instanceof long[]) {
+      long[] bitmap = (long[]) container;
+      long mask = 1L << lowBits;
+      if ((bitmap[lowBits >>> 6] & mask) != 0) {
+        return false;
+      }
+      bitmap[lowBits >>> 6] |= mask;
+      containerSizes[index]++;
+    } else {
+      char[] array = (char[]) container;
+      int size = containerSizes[index];
+      int position = Arrays.binarySearch(array, 0, size, (char) lowBits);
+      if (position >= 0) {
+        return false;
+      }
+      position = -position - 1;
+      if (size == CompressedLongBitmap.MAX_ARRAY_CONTAINER_SIZE) {
+        long[] bitmap = toBitmap(array, size);
+        bitmap[lowBits >>> 6] |= 1L << lowBits;
+        containers[index] = bitmap;
+      } else {
+        if (size == array.length) {
+          array = Arrays.copyOf(array,
+                  Math.min(array.length * 2, CompressedLongBitmap.MAX_ARRAY_CONTAINER_SIZE));
+          containers[index] = array;
+        }
+        System.arraycopy(array, position, array, position + 1, size - position);
+        array[position] = (char) lowBits;
+      }
+      containerSizes[index] = size + 1;
+    }
+    cardinality++;
+    return true;
+  }
+
+  /**
+   * Adds all values of <code>other</code> to this bitmap.
+   * 
+   * @param other
+   */
+  public void or(CompressedLongBitmap other) {
+    for (int otherIndex = 0; otherIndex < other.numberOfContainers; otherIndex++) {
+      long key = other.keys[otherIndex];
+      Object otherContainer = other.containers[otherIndex];
+      int otherSize = other.containerSizes[otherIndex];
+      int index = Arrays.binarySearch(keys, 0, numberOfContainers, key);
+      if (index < 0) {
+        index = -index - 1;
+        Object copy = otherContainer instanceof long[] ? ((long[]) otherContainer).clone()
+                : Arrays.copyOf((char[]) otherContainer, Math.max(otherSize, 1));
+        insertContainer(index, key, copy, otherSize);
+        cardinality += otherSize;
+        continue;
+      }
+      int oldSize = containerSizes[index];
+      long[] bitmap = containers[index] instanceof long[] ? (long[]) containers[index]
+              : toBitmap((char[]) containers[index], oldSize);
+      if (otherContainer instanceof long[]) {
+        long[] otherBitmap = (long[]) otherContainer;
+        for (int i = 0; i < bitmap.length; i++) {
+          bitmap[i] |= otherBitmap[i];
+        }
+      } else {
+        char[] otherArray = (char[]) otherContainer;
+        for (int i = 0; i < otherSize; i++) {
+          bitmap[otherArray[i] >>> 6] |= 1L << otherArray[i];
+        }
+      }
+      int newSize = 0;
+      for (long word : bitmap) {
+        newSize += Long.bitCount(word);
+      }
+      containers[index] = newSize > CompressedLongBitmap.MAX_ARRAY_CONTAINER_SIZE ? bitmap
+              : toArray(bitmap, newSize);
+      containerSizes[index] = newSize;
+      cardinality += newSize - oldSize;
+    }
+  }
+
+  public void clear() {
+    Arrays.fill(containers, 0, numberOfContainers, null);
+    numberOfContainers = 0;
+    cardinality = 0;
+  }
+
+  private void insertContainer(int index, long key, Object container, int size) {
+    if (numberOfContainers == keys.length) {
+      int newLength = keys.length * 2;
+      keys = Arrays.copyOf(keys, newLength);
+      containers = Arrays.copyOf(containers, newLength);
+      containerSizes = Arrays.copyOf(containerSizes, newLength);
+    }
+    int numberOfMovedContainers = numberOfContainers - index;
+    System.arraycopy(keys, index, keys, index + 1, numberOfMovedContainers);
+    System.arraycopy(containers, index, containers, index + 1, numberOfMovedContainers);
+    System.arraycopy(containerSizes, index, containerSizes, index + 1, numberOfMovedContainers);
+    keys[index] = key;
+    containers[index] = container;
+    containerSizes[index] = size;
+    numberOfContainers++;
+  }
+
+  private long[] toBitmap(char[] array, int size) {
+    long[] bitmap = new long[CompressedLongBitmap.BITMAP_CONTAINER_LENGTH];
+    for (int i = 0; i < size; i++) {
+      bitmap[array[i] >>> 6] |= 1L << array[i];
+    }
+    return bitmap;
+  }
+
+  private char[] toArray(long[] bitmap, int size) {
+    char[] array = new char[Math.max(size, 1)];
+    int nextIndex = 0;
+    for (int i = 0; i < bitmap.length; i++) {
+      long word = bitmap[i];
+      while (word != 0) {
+        array[nextIndex++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+        word &= word - 1;
+      }
+    }
+    return array;
+  }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.utils;
+
+import de.uni_koblenz.west.koral.common.io.LongOutputWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects long values in memory in order to write them later on.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+class LongBuffer implements LongOutputWriter {
+
+  private static final int BLOCK_SIZE = 0x10000;
+
+  private final List<long[]> blocks;
+
+  private long[] currentBlock;
+
+  private int nextIndex;
+
+  public LongBuffer() {
+    blocks = new ArrayList<>();
+  }
+
+  @Override
+  public void writeLong(long value) {
+    if ((currentBlock == null) || (nextIndex == currentBlock.length)) {
+      currentBlock = new long[LongBuffer.BLOCK_SIZE];
+      blocks.add(currentBlock);
+      nextIndex = 0;
+    }
+    currentBlock[nextIndex++] = value;
+  }
+
+  public void writeTo(LongOutputWriter output) throws java.io.IOException {
+    for (long[] block : blocks) {
+      int size = block == currentBlock ? nextIndex : block.length;
+      for (int i = 0; i < size; i++) {
+        output.writeLong(block[i]);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    blocks.clear();
+    currentBlock = null;
+  }
+
+}
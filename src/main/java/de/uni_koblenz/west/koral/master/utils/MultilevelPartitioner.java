@@ -0,0 +1,638 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Partitions an undirected graph into balanced partitions with a small edge
+ * cut. It follows the multilevel scheme of METIS: the graph is coarsened by
+ * heavy edge matching, the coarsest graph is partitioned by greedy graph
+ * growing and the partitioning is projected back level by level. After each
+ * projection, the boundary vertices are refined greedily. The move candidates
+ * of a refinement pass are computed in parallel and applied afterwards if they
+ * still reduce the edge cut.<br>
+ * The graph is held in memory in compressed sparse row format.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class MultilevelPartitioner {
+
+  private static final int COARSENING_LIMIT_PER_PARTITION = 30;
+
+  private static final int MIN_COARSENING_LIMIT = 200;
+
+  /**
+   * coarsening stops if a level is not at least 5% smaller than the previous
+   * one
+   */
+  private static final double MAX_COARSENING_RATIO = 0.95;
+
+  private static final double MAX_IMBALANCE = 1.03;
+
+  private static final int NUMBER_OF_INITIAL_PARTITIONINGS = 8;
+
+  private static final int NUMBER_OF_REFINEMENT_PASSES = 10;
+
+  private static final int MIN_VERTICES_PER_THREAD = 4096;
+
+  private final int numberOfPartitions;
+
+  private final int numberOfThreads;
+
+  private final Random random;
+
+  private ExecutorService executor;
+
+  private long edgeCut;
+
+  public MultilevelPartitioner(int numberOfPartitions) {
+    this(numberOfPartitions, Runtime.getRuntime().availableProcessors(), 0);
+  }
+
+  public MultilevelPartitioner(int numberOfPartitions, int numberOfThreads, long seed) {
+    if (numberOfPartitions < 1) {
+      throw new IllegalArgumentException("The number of partitions must be at least 1.");
+    }
+    this.numberOfPartitions = numberOfPartitions;
+    this.numberOfThreads = Math.max(1, numberOfThreads);
+    random = new Random(seed);
+  }
+
+  /**
+   * @param adjacencyMatrix
+   *          undirected graph without self loops and with vertices 1 to
+   *          {@link AdjacencyMatrix#getNumberOfVertices()}
+   * @return partitions[vertex-1] is the partition of vertex
+   */
+  public int[] partition(AdjacencyMatrix adjacencyMatrix) {
+    Graph graph = Graph.create(adjacencyMatrix);
+    edgeCut = 0;
+    if (numberOfPartitions == 1) {
+      return new int[graph.numberOfVertices];
+    }
+    if (numberOfThreads > 1) {
+      executor = Executors.newFixedThreadPool(numberOfThreads);
+    }
+    try {
+      // coarsening
+      List<Graph> levels = new ArrayList<>();
+      levels.add(graph);
+      long maxVertexWeight = (long) ((1.5 * graph.totalVertexWeight)
+              / Math.max(MIN_COARSENING_LIMIT, COARSENING_LIMIT_PER_PARTITION * numberOfPartitions));
+      Graph coarsestGraph = graph;
+      while (coarsestGraph.numberOfVertices > Math.max(MIN_COARSENING_LIMIT,
+              COARSENING_LIMIT_PER_PARTITION * numberOfPartitions)) {
+        Graph coarserGraph = coarsen(coarsestGraph, Math.max(2, maxVertexWeight));
+        if (coarserGraph.numberOfVertices > (MAX_COARSENING_RATIO
+                * coarsestGraph.numberOfVertices)) {
+          coarsestGraph.coarseVertices = null;
+          break;
+        }
+        levels.add(coarserGraph);
+        coarsestGraph = coarserGraph;
+      }
+
+      int[] partitions = createInitialPartitioning(coarsestGraph);
+
+      // uncoarsening
+      for (int level = levels.size() - 2; level >= 0; level--) {
+        Graph fineGraph = levels.get(level);
+        int[] finePartitions = new int[fineGraph.numberOfVertices];
+        for (int vertex = 0; vertex < finePartitions.length; vertex++) {
+          finePartitions[vertex] = partitions[fineGraph.coarseVertices[vertex]];
+        }
+        fineGraph.coarseVertices = null;
+        levels.set(level + 1, null);
+        partitions = finePartitions;
+        refine(fineGraph, partitions);
+      }
+      edgeCut = getEdgeCut(graph, partitions);
+      return partitions;
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+        executor = null;
+      }
+    }
+  }
+
+  /**
+   * @return the number of edges between different partitions in the last
+   *         partitioning
+   */
+  public long getEdgeCut() {
+    return edgeCut;
+  }
+
+  /**
+   * Collapses each vertex with the unmatched neighbour it shares the heaviest
+   * edge with.
+   */
+  private Graph coarsen(Graph graph, long maxVertexWeight) {
+    int[] match = new int[graph.numberOfVertices];
+    Arrays.fill(match, -1);
+    for (int vertex : getRandomPermutation(graph.numberOfVertices)) {
+      if (match[vertex] != -1) {
+        continue;
+      }
+      int bestNeighbour = vertex;
+      int bestEdgeWeight = 0;
+      for (int edge = graph.offsets[vertex]; edge < graph.offsets[vertex + 1]; edge++) {
+        int neighbour = graph.adjacencies[edge];
+        if ((match[neighbour] == -1) && (neighbour != vertex)
+                && (graph.edgeWeights[edge] > bestEdgeWeight)
+                && ((graph.vertexWeights[vertex]
+                        + (long) graph.vertexWeights[neighbour]) <= maxVertexWeight)) {
+          bestNeighbour = neighbour;
+          bestEdgeWeight = graph.edgeWeights[edge];
+        }
+      }
+      match[vertex] = bestNeighbour;
+      match[bestNeighbour] = vertex;
+    }
+
+    int[] coarseVertices = new int[graph.numberOfVertices];
+    int numberOfCoarseVertices = 0;
+    for (int vertex = 0; vertex < graph.numberOfVertices; vertex++) {
+      if (vertex <= match[vertex]) {
+        coarseVertices[vertex] = numberOfCoarseVertices;
+        coarseVertices[match[vertex]] = numberOfCoarseVertices;
+        numberOfCoarseVertices++;
+      }
+    }
+
+    int[] offsets = new int[numberOfCoarseVertices + 1];
+    int[] adjacencies = new int[graph.adjacencies.length];
+    int[] edgeWeights = new int[graph.adjacencies.length];
+    int[] vertexWeights = new int[numberOfCoarseVertices];
+    // position of the edge to the coarse vertex in the current adjacency list
+    int[] edgePositions = new int[numberOfCoarseVertices];
+    Arrays.fill(edgePositions, -1);
+    int nextEdge = 0;
+    for (int vertex = 0; vertex < graph.numberOfVertices; vertex++) {
+      if (vertex > match[vertex]) {
+        continue;
+      }
+      int coarseVertex = coarseVertices[vertex];
+      int firstEdge = nextEdge;
+      offsets[coarseVertex] = firstEdge;
+      int member = vertex;
+      while (true) {
+        vertexWeights[coarseVertex] += graph.vertexWeights[member];
+        for (int edge = graph.offsets[member]; edge < graph.offsets[member + 1]; edge++) {
+          int coarseNeighbour = coarseVertices[graph.adjacencies[edge]];
+          if (coarseNeighbour == coarseVertex) {
+            continue;
+          }
+          int position = edgePositions[coarseNeighbour];
+          if (position < firstEdge) {
+            edgePositions[coarseNeighbour] = nextEdge;
+            adjacencies[nextEdge] = coarseNeighbour;
+            edgeWeights[nextEdge] = graph.edgeWeights[edge];
+            nextEdge++;
+          } else {
+            edgeWeights[position] += graph.edgeWeights[edge];
+          }
+        }
+        if (member == match[vertex]) {
+          break;
+        }
+        member = match[vertex];
+      }
+    }
+    offsets[numberOfCoarseVertices] = nextEdge;
+    graph.coarseVertices = coarseVertices;
+    return new Graph(offsets, Arrays.copyOf(adjacencies, nextEdge),
+            Arrays.copyOf(edgeWeights, nextEdge), vertexWeights);
+  }
+
+  private int[] createInitialPartitioning(Graph graph) {
+    int[] bestPartitions = null;
+    long bestOverweight = Long.MAX_VALUE;
+    long bestEdgeCut = Long.MAX_VALUE;
+    long maxPartitionWeight = getMaxPartitionWeight(graph);
+    for (int i = 0; i < NUMBER_OF_INITIAL_PARTITIONINGS; i++) {
+      int[] partitions = growPartitions(graph);
+      refine(graph, partitions);
+      long overweight = 0;
+      for (long partitionWeight : getPartitionWeights(graph, partitions)) {
+        overweight += Math.max(0, partitionWeight - maxPartitionWeight);
+      }
+      long edgeCut = getEdgeCut(graph, partitions);
+      if ((overweight < bestOverweight)
+              || ((overweight == bestOverweight) && (edgeCut < bestEdgeCut))) {
+        bestPartitions = partitions;
+        bestOverweight = overweight;
+        bestEdgeCut = edgeCut;
+      }
+    }
+    return bestPartitions;
+  }
+
+  /**
+   * Grows each partition by a breadth-first search from a random seed vertex
+   * until it has reached its share of the total vertex weight. The remaining
+   * vertices are assigned to the last partition.
+   */
+  private int[] growPartitions(Graph graph) {
+    int[] partitions = new int[graph.numberOfVertices];
+    Arrays.fill(partitions, -1);
+    int[] seeds = getRandomPermutation(graph.numberOfVertices);
+    int nextSeed = 0;
+    int[] queue = new int[graph.numberOfVertices];
+    long remainingWeight = graph.totalVertexWeight;
+    for (int partition = 0; partition < (numberOfPartitions - 1); partition++) {
+      double targetWeight = ((double) remainingWeight) / (numberOfPartitions - partition);
+      long weight = 0;
+      int head = 0;
+      int tail = 0;
+      while (weight < targetWeight) {
+        if (head == tail) {
+          while ((nextSeed < seeds.length) && (partitions[seeds[nextSeed]] != -1)) {
+            nextSeed++;
+          }
+          if (nextSeed == seeds.length) {
+            break;
+          }
+          int seed = seeds[nextSeed];
+          partitions[seed] = partition;
+          weight += graph.vertexWeights[seed];
+          queue[tail++] = seed;
+          continue;
+        }
+        int vertex = queue[head++];
+        for (int edge = graph.offsets[vertex]; (edge < graph.offsets[vertex + 1])
+                && (weight < targetWeight); edge++) {
+          int neighbour = graph.adjacencies[edge];
+          if (partitions[neighbour] == -1) {
+            partitions[neighbour] = partition;
+            weight += graph.vertexWeights[neighbour];
+            queue[tail++] = neighbour;
+          }
+        }
+      }
+      remainingWeight -= weight;
+    }
+    for (int vertex = 0; vertex < partitions.length; vertex++) {
+      if (partitions[vertex] == -1) {
+        partitions[vertex] = numberOfPartitions - 1;
+      }
+    }
+    return partitions;
+  }
+
+  /**
+   * Greedy k-way refinement of the boundary vertices. In order to prevent
+   * neighbouring vertices from swapping their partitions in the same pass,
+   * vertices are only moved to partitions with a higher id in even passes and
+   * to partitions with a lower id in odd passes.
+   */
+  private void refine(Graph graph, int[] partitions) {
+    long[] partitionWeights = getPartitionWeights(graph, partitions);
+    long maxPartitionWeight = getMaxPartitionWeight(graph);
+    int[] moves = new int[graph.numberOfVertices];
+    int passesWithoutMoves = 0;
+    for (int pass = 0; (pass < NUMBER_OF_REFINEMENT_PASSES) && (passesWithoutMoves < 2); pass++) {
+      balance(graph, partitions, partitionWeights, maxPartitionWeight);
+      boolean isUpwards = (pass % 2) == 0;
+      runInParallel(graph.numberOfVertices, (from, to) -> computeMoves(graph, partitions,
+              partitionWeights, maxPartitionWeight, isUpwards, moves, from, to));
+      if (applyMoves(graph, partitions, partitionWeights, maxPartitionWeight, moves) == 0) {
+        passesWithoutMoves++;
+      } else {
+        passesWithoutMoves = 0;
+      }
+    }
+    balance(graph, partitions, partitionWeights, maxPartitionWeight);
+  }
+
+  private void computeMoves(Graph graph, int[] partitions, long[] partitionWeights,
+          long maxPartitionWeight, boolean isUpwards, int[] moves, int from, int to) {
+    int[] connectivity = new int[numberOfPartitions];
+    int[] adjacentPartitions = new int[numberOfPartitions];
+    for (int vertex = from; vertex < to; vertex++) {
+      moves[vertex] = -1;
+      int ownPartition = partitions[vertex];
+      int internalDegree = 0;
+      int numberOfAdjacentPartitions = 0;
+      for (int edge = graph.offsets[vertex]; edge < graph.offsets[vertex + 1]; edge++) {
+        int partition = partitions[graph.adjacencies[edge]];
+        if (partition == ownPartition) {
+          internalDegree += graph.edgeWeights[edge];
+          continue;
+        }
+        if (connectivity[partition] == 0) {
+          adjacentPartitions[numberOfAdjacentPartitions++] = partition;
+        }
+        connectivity[partition] += graph.edgeWeights[edge];
+      }
+      int vertexWeight = graph.vertexWeights[vertex];
+      int bestPartition = -1;
+      int bestGain = 0;
+      for (int i = 0; i < numberOfAdjacentPartitions; i++) {
+        int partition = adjacentPartitions[i];
+        int gain = connectivity[partition] - internalDegree;
+        connectivity[partition] = 0;
+        if ((isUpwards && (partition < ownPartition))
+                || (!isUpwards && (partition > ownPartition))
+                || ((partitionWeights[partition] + vertexWeight) > maxPartitionWeight)) {
+          continue;
+        }
+        if ((gain > bestGain) || ((gain == bestGain) && isLighter(partitionWeights, vertexWeight,
+                partition, bestPartition == -1 ? ownPartition : bestPartition))) {
+          bestPartition = partition;
+          bestGain = gain;
+        }
+      }
+      moves[vertex] = bestPartition;
+    }
+  }
+
+  private boolean isLighter(long[] partitionWeights, int vertexWeight, int targetPartition,
+          int currentPartition) {
+    return (partitionWeights[targetPartition] + vertexWeight) < partitionWeights[currentPartition];
+  }
+
+  /**
+   * Applies the move candidates one after the other. Since neighbouring
+   * vertices might have been moved in the meantime, the gain is recomputed.
+   * 
+   * @return number of moved vertices
+   */
+  private int applyMoves(Graph graph, int[] partitions, long[] partitionWeights,
+          long maxPartitionWeight, int[] moves) {
+    int numberOfMoves = 0;
+    for (int vertex = 0; vertex < graph.numberOfVertices; vertex++) {
+      int targetPartition = moves[vertex];
+      if (targetPartition == -1) {
+        continue;
+      }
+      int vertexWeight = graph.vertexWeights[vertex];
+      if ((partitionWeights[targetPartition] + vertexWeight) > maxPartitionWeight) {
+        continue;
+      }
+      int ownPartition = partitions[vertex];
+      int gain = 0;
+      for (int edge = graph.offsets[vertex]; edge < graph.offsets[vertex + 1]; edge++) {
+        int partition = partitions[graph.adjacencies[edge]];
+        if (partition == ownPartition) {
+          gain -= graph.edgeWeights[edge];
+        } else if (partition == targetPartition) {
+          gain += graph.edgeWeights[edge];
+        }
+      }
+      if ((gain > 0) || ((gain == 0)
+              && isLighter(partitionWeights, vertexWeight, targetPartition, ownPartition))) {
+        partitions[vertex] = targetPartition;
+        partitionWeights[ownPartition] -= vertexWeight;
+        partitionWeights[targetPartition] += vertexWeight;
+        numberOfMoves++;
+      }
+    }
+    return numberOfMoves;
+  }
+
+  /**
+   * Moves vertices out of overweight partitions. Boundary vertices are moved
+   * first to the adjacent partition with the highest gain.
+   */
+  private void balance(Graph graph, int[] partitions, long[] partitionWeights,
+          long maxPartitionWeight) {
+    if (!isOverweight(partitionWeights, maxPartitionWeight)) {
+      return;
+    }
+    int[] connectivity = new int[numberOfPartitions];
+    for (boolean isBoundaryOnly : new boolean[] { true, false }) {
+      for (int vertex = 0; vertex < graph.numberOfVertices; vertex++) {
+        int ownPartition = partitions[vertex];
+        if (partitionWeights[ownPartition] <= maxPartitionWeight) {
+          continue;
+        }
+        int vertexWeight = graph.vertexWeights[vertex];
+        for (int edge = graph.offsets[vertex]; edge < graph.offsets[vertex + 1]; edge++) {
+          connectivity[partitions[graph.adjacencies[edge]]] += graph.edgeWeights[edge];
+        }
+        int targetPartition = -1;
+        for (int edge = graph.offsets[vertex]; edge < graph.offsets[vertex + 1]; edge++) {
+          int partition = partitions[graph.adjacencies[edge]];
+          if ((partition != ownPartition)
+                  && ((partitionWeights[partition] + vertexWeight) <= maxPartitionWeight)
+                  && ((targetPartition == -1)
+                          || (connectivity[partition] > connectivity[targetPartition]))) {
+            targetPartition = partition;
+          }
+        }
+        for (int edge = graph.offsets[vertex]; edge < graph.offsets[vertex + 1]; edge++) {
+          connectivity[partitions[graph.adjacencies[edge]]] = 0;
+        }
+        if ((targetPartition == -1) && !isBoundaryOnly) {
+          targetPartition = getLightestPartition(partitionWeights);
+          if ((partitionWeights[targetPartition] + vertexWeight) > maxPartitionWeight) {
+            targetPartition = -1;
+          }
+        }
+        if (targetPartition != -1) {
+          partitions[vertex] = targetPartition;
+          partitionWeights[ownPartition] -= vertexWeight;
+          partitionWeights[targetPartition] += vertexWeight;
+        }
+      }
+      if (!isOverweight(partitionWeights, maxPartitionWeight)) {
+        return;
+      }
+    }
+  }
+
+  private boolean isOverweight(long[] partitionWeights, long maxPartitionWeight) {
+    for (long partitionWeight : partitionWeights) {
+      if (partitionWeight > maxPartitionWeight) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int getLightestPartition(long[] partitionWeights) {
+    int lightestPartition = 0;
+    for (int partition = 1; partition < partitionWeights.length; partition++) {
+      if (partitionWeights[partition] < partitionWeights[lightestPartition]) {
+        lightestPartition = partition;
+      }
+    }
+    return lightestPartition;
+  }
+
+  private long[] getPartitionWeights(Graph graph, int[] partitions) {
+    long[] partitionWeights = new long[numberOfPartitions];
+    for (int vertex = 0; vertex < graph.numberOfVertices; vertex++) {
+      partitionWeights[partitions[vertex]] += graph.vertexWeights[vertex];
+    }
+    return partitionWeights;
+  }
+
+  /**
+   * On coarse levels, the partitions may additionally exceed the imbalance
+   * tolerance by the heaviest vertex. Otherwise, the coarse vertices could not
+   * be moved at all.
+   */
+  private long getMaxPartitionWeight(Graph graph) {
+    long averageWeight = ((graph.totalVertexWeight + numberOfPartitions) - 1) / numberOfPartitions;
+    long maxPartitionWeight = Math.max(averageWeight,
+            (long) ((MAX_IMBALANCE * graph.totalVertexWeight) / numberOfPartitions));
+    if (graph.maxVertexWeight > 1) {
+      maxPartitionWeight += graph.maxVertexWeight;
+    }
+    return maxPartitionWeight;
+  }
+
+  private long getEdgeCut(Graph graph, int[] partitions) {
+    long edgeCut = 0;
+    for (int vertex = 0; vertex < graph.numberOfVertices; vertex++) {
+      for (int edge = graph.offsets[vertex]; edge < graph.offsets[vertex + 1]; edge++) {
+        if (partitions[vertex] != partitions[graph.adjacencies[edge]]) {
+          edgeCut += graph.edgeWeights[edge];
+        }
+      }
+    }
+    return edgeCut / 2;
+  }
+
+  private int[] getRandomPermutation(int size) {
+    int[] permutation = new int[size];
+    for (int i = 0; i < size; i++) {
+      permutation[i] = i;
+    }
+    for (int i = size - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int tmp = permutation[i];
+      permutation[i] = permutation[j];
+      permutation[j] = tmp;
+    }
+    return permutation;
+  }
+
+  private void runInParallel(int numberOfVertices, RangeTask task) {
+    int numberOfTasks = Math.min(numberOfThreads, numberOfVertices / MIN_VERTICES_PER_THREAD);
+    if ((executor == null) || (numberOfTasks <= 1)) {
+      task.run(0, numberOfVertices);
+      return;
+    }
+    List<Future<?>> futures = new ArrayList<>(numberOfTasks);
+    for (int i = 0; i < numberOfTasks; i++) {
+      int from = (int) (((long) numberOfVertices * i) / numberOfTasks);
+      int to = (int) (((long) numberOfVertices * (i + 1)) / numberOfTasks);
+      futures.add(executor.submit(() -> task.run(from, to)));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  private static interface RangeTask {
+
+    public void run(int from, int to);
+
+  }
+
+  /**
+   * Graph in compressed sparse row format. The adjacencies of vertex v are
+   * stored in adjacencies[offsets[v]] to adjacencies[offsets[v+1]-1].
+   */
+  private static class Graph {
+
+    final int numberOfVertices;
+
+    final int[] offsets;
+
+    final int[] adjacencies;
+
+    final int[] edgeWeights;
+
+    final int[] vertexWeights;
+
+    final long totalVertexWeight;
+
+    final int maxVertexWeight;
+
+    /**
+     * the vertex of the next coarser level into which a vertex is collapsed
+     */
+    int[] coarseVertices;
+
+    Graph(int[] offsets, int[] adjacencies, int[] edgeWeights, int[] vertexWeights) {
+      numberOfVertices = vertexWeights.length;
+      this.offsets = offsets;
+      this.adjacencies = adjacencies;
+      this.edgeWeights = edgeWeights;
+      this.vertexWeights = vertexWeights;
+      long totalVertexWeight = 0;
+      int maxVertexWeight = 0;
+      for (int vertexWeight : vertexWeights) {
+        totalVertexWeight += vertexWeight;
+        maxVertexWeight = Math.max(maxVertexWeight, vertexWeight);
+      }
+      this.totalVertexWeight = totalVertexWeight;
+      this.maxVertexWeight = maxVertexWeight;
+    }
+
+    static Graph create(AdjacencyMatrix adjacencyMatrix) {
+      long numberOfDirectedEdges = 2 * adjacencyMatrix.getNumberOfEdges();
+      long numberOfVertices = adjacencyMatrix.getNumberOfVertices();
+      if ((numberOfVertices >= Integer.MAX_VALUE) || (numberOfDirectedEdges >= Integer.MAX_VALUE)) {
+        throw new IllegalArgumentException("The graph with " + numberOfVertices + " vertices and "
+                + adjacencyMatrix.getNumberOfEdges() + " edges is too large.");
+      }
+      int[] offsets = new int[(int) numberOfVertices + 1];
+      int[] adjacencies = new int[(int) numberOfDirectedEdges];
+      int nextEdge = 0;
+      for (int vertex = 0; vertex < numberOfVertices; vertex++) {
+        offsets[vertex] = nextEdge;
+        LongIterator iterator = adjacencyMatrix.getAdjacencyList(vertex + 1);
+        while (iterator.hasNext()) {
+          adjacencies[nextEdge++] = (int) (iterator.next() - 1);
+        }
+        iterator.close();
+      }
+      offsets[(int) numberOfVertices] = nextEdge;
+      int[] edgeWeights = new int[nextEdge];
+      Arrays.fill(edgeWeights, 1);
+      int[] vertexWeights = new int[(int) numberOfVertices];
+      Arrays.fill(vertexWeights, 1);
+      return new Graph(offsets, adjacencies, edgeWeights, vertexWeights);
+    }
+
+  }
+
+}
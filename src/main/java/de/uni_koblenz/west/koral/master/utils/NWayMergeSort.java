@@ -10,16 +10,50 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * 
- * Performs an n-way merge sort.
+ * Performs an n-way merge sort. The smallest elements are determined with a
+ * tournament tree. If an executor is given, the chunks are read ahead by its
+ * threads during the merge. Optionally, each sorted initial chunk is written in
+ * the background while the next chunk is loaded and sorted.
  * 
  * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
  *
  */
 public class NWayMergeSort {
 
+  private final ExecutorService executor;
+
+  private final boolean writeChunksInBackground;
+
+  /**
+   * Reads and writes all chunks synchronously.
+   */
+  public NWayMergeSort() {
+    this(null, false);
+  }
+
+  /**
+   * @param executor
+   *          reads the chunks ahead; it may be shared by several sorts, but its
+   *          threads must not wait for one of these sorts. If it is
+   *          <code>null</code>, the chunks are read synchronously.
+   * @param writeChunksInBackground
+   *          if <code>true</code> and an executor is given, a sorted initial
+   *          chunk is copied into memory and written by the executor while the
+   *          next chunk is loaded. The producer has to reserve the memory for
+   *          this copy, i.e., its chunks should not exceed half of its memory
+   *          budget.
+   */
+  public NWayMergeSort(ExecutorService executor, boolean writeChunksInBackground) {
+    this.executor = executor;
+    this.writeChunksInBackground = writeChunksInBackground;
+  }
+
   public void sort(InitialChunkProducer producer, Merger merger, Comparator<long[]> comparator,
           File workingDir, int maxNumberOfOpenFiles, File outputFile) {
     try (EncodedLongFileOutputStream output = new EncodedLongFileOutputStream(outputFile);) {
@@ -36,19 +70,8 @@ public class NWayMergeSort {
       maxNumberOfOpenFiles = 3;
     }
     try {
-      List<File> chunks = new ArrayList<>();
-      // create initial chunks
-      producer.loadNextChunk();
-      while (producer.hasNextChunk()) {
-        File chunk = File.createTempFile("initialChunk-", "", workingDir);
-        chunks.add(chunk);
-        try (EncodedLongFileOutputStream chunkOut = new EncodedLongFileOutputStream(chunk);) {
-          producer.sort(comparator);
-          producer.writeChunk(chunkOut);
-        }
-        producer.loadNextChunk();
-      }
-      producer.close();
+      List<File> chunks = createInitialChunks(producer, comparator, workingDir,
+              writeChunksInBackground ? executor : null);
       // merge
       while (!chunks.isEmpty()) {
         List<File> mergedChunks = new ArrayList<>();
@@ -65,14 +88,9 @@ public class NWayMergeSort {
             // initialize merge step
             for (int i = 0; i < numberOfProcessedFiles; i++) {
               inputs[i] = new EncodedLongFileInputStream(chunks.get(iterationStart + i));
-              iterators[i] = inputs[i].iterator();
-              if (iterators[i].hasNext()) {
-                nextElements[i] = merger.readNextElement(iterators[i]);
-              } else {
-                nextElements[i] = null;
-                iterators[i].close();
-                iterators[i] = null;
-              }
+              iterators[i] = executor != null ? new PrefetchingLongIterator(inputs[i], executor)
+                      : inputs[i].iterator();
+              readNextElement(merger, nextElements, iterators, i);
             }
             if ((chunks.size() == 1) || (chunks.size() <= (maxNumberOfOpenFiles - 1))) {
               out = output;
@@ -82,21 +100,18 @@ public class NWayMergeSort {
               out = new EncodedLongFileOutputStream(chunk);
             }
             // perform merge step
-            for (BitSet indicesOfSmallestElement = getIndicesOfSmallestElement(nextElements,
-                    comparator); !indicesOfSmallestElement
-                            .isEmpty(); indicesOfSmallestElement = getIndicesOfSmallestElement(
-                                    nextElements, comparator)) {
+            TournamentTree tournamentTree = new TournamentTree(nextElements, comparator);
+            BitSet indicesOfSmallestElement = new BitSet(numberOfProcessedFiles);
+            for (tournamentTree.getIndicesOfSmallestElement(
+                    indicesOfSmallestElement); !indicesOfSmallestElement
+                            .isEmpty(); tournamentTree
+                                    .getIndicesOfSmallestElement(indicesOfSmallestElement)) {
               merger.mergeAndWrite(indicesOfSmallestElement, nextElements, iterators, out);
               // update next elements
               for (int i = indicesOfSmallestElement
                       .nextSetBit(0); i >= 0; i = indicesOfSmallestElement.nextSetBit(i + 1)) {
-                if (iterators[i].hasNext()) {
-                  nextElements[i] = merger.readNextElement(iterators[i]);
-                } else {
-                  nextElements[i] = null;
-                  iterators[i].close();
-                  iterators[i] = null;
-                }
+                readNextElement(merger, nextElements, iterators, i);
+                tournamentTree.update(i);
               }
             }
 
@@ -131,22 +146,161 @@ public class NWayMergeSort {
     }
   }
 
-  private BitSet getIndicesOfSmallestElement(long[][] elements, Comparator<long[]> comparator) {
-    long[] smallestElement = null;
-    BitSet smallestIndices = new BitSet(elements.length);
-    for (int i = 0; i < elements.length; i++) {
-      if (elements[i] == null) {
-        continue;
+  /**
+   * If an executor is given, each sorted chunk is buffered in memory and
+   * written to its file in the background while the next chunk is loaded and
+   * sorted. At most one chunk is written at a time.
+   */
+  private List<File> createInitialChunks(InitialChunkProducer producer,
+          Comparator<long[]> comparator, File workingDir, ExecutorService executor)
+          throws IOException {
+    List<File> chunks = new ArrayList<>();
+    Future<?> chunkWriter = null;
+    try {
+      producer.loadNextChunk();
+      while (producer.hasNextChunk()) {
+        File chunk = File.createTempFile("initialChunk-", "", workingDir);
+        chunks.add(chunk);
+        producer.sort(comparator);
+        if (executor == null) {
+          try (EncodedLongFileOutputStream chunkOut = new EncodedLongFileOutputStream(chunk);) {
+            producer.writeChunk(chunkOut);
+          }
+        } else {
+          LongBuffer buffer = new LongBuffer();
+          producer.writeChunk(buffer);
+          waitFor(chunkWriter);
+          chunkWriter = executor.submit(() -> {
+            try (EncodedLongFileOutputStream chunkOut = new EncodedLongFileOutputStream(chunk);) {
+              buffer.writeTo(chunkOut);
+            }
+            buffer.close();
+            return null;
+          });
+        }
+        producer.loadNextChunk();
       }
-      if ((smallestElement == null) || (comparator.compare(elements[i], smallestElement) < 0)) {
-        smallestElement = elements[i];
-        smallestIndices.clear();
-        smallestIndices.set(i);
-      } else if (comparator.compare(elements[i], smallestElement) == 0) {
-        smallestIndices.set(i);
+      waitFor(chunkWriter);
+      chunkWriter = null;
+    } finally {
+      if (chunkWriter != null) {
+        chunkWriter.cancel(true);
       }
+      producer.close();
     }
-    return smallestIndices;
+    return chunks;
+  }
+
+  private void waitFor(Future<?> task) {
+    if (task == null) {
+      return;
+    }
+    try {
+      task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  private void readNextElement(Merger merger, long[][] nextElements, LongIterator[] iterators,
+          int index) throws IOException {
+    if (iterators[index].hasNext()) {
+      nextElements[index] = merger.readNextElement(iterators[index]);
+    } else {
+      nextElements[index] = null;
+      iterators[index].close();
+      iterators[index] = null;
+    }
+  }
+
+  /**
+   * Tournament tree whose inner nodes store the index of the input with the
+   * smallest element in their subtree. After the next element of an input has
+   * been read, only the path from its leaf to the root has to be recomputed.
+   * Exhausted inputs are treated as larger than every element.
+   */
+  private static class TournamentTree {
+
+    private final long[][] elements;
+
+    private final Comparator<long[]> comparator;
+
+    private final int size;
+
+    /**
+     * tree[1] is the root. The leaf of input i is size+i.
+     */
+    private final int[] tree;
+
+    /**
+     * Inputs that are temporarily treated as exhausted while the ties of the
+     * smallest element are collected.
+     */
+    private final BitSet removed;
+
+    public TournamentTree(long[][] elements, Comparator<long[]> comparator) {
+      this.elements = elements;
+      this.comparator = comparator;
+      size = elements.length;
+      tree = new int[2 * size];
+      removed = new BitSet(size);
+      for (int i = 0; i < size; i++) {
+        tree[size + i] = i;
+      }
+      for (int node = size - 1; node > 0; node--) {
+        tree[node] = getWinner(tree[2 * node], tree[(2 * node) + 1]);
+      }
+    }
+
+    private int getRoot() {
+      return size == 1 ? 0 : tree[1];
+    }
+
+    private int getWinner(int input1, int input2) {
+      long[] element1 = removed.get(input1) ? null : elements[input1];
+      long[] element2 = removed.get(input2) ? null : elements[input2];
+      if (element1 == null) {
+        return element2 == null ? Math.min(input1, input2) : input2;
+      } else if (element2 == null) {
+        return input1;
+      }
+      int comparison = comparator.compare(element1, element2);
+      return (comparison < 0) || ((comparison == 0) && (input1 < input2)) ? input1 : input2;
+    }
+
+    /**
+     * Recomputes the path from the leaf of the input to the root.
+     */
+    public void update(int input) {
+      for (int node = (input + size) >>> 1; node > 0; node >>>= 1) {
+        tree[node] = getWinner(tree[2 * node], tree[(2 * node) + 1]);
+      }
+    }
+
+    /**
+     * All returned inputs have to be updated afterwards with
+     * {@link #update(int)}.
+     */
+    public void getIndicesOfSmallestElement(BitSet indicesOfSmallestElement) {
+      indicesOfSmallestElement.clear();
+      int winner = getRoot();
+      long[] smallestElement = elements[winner];
+      if (smallestElement == null) {
+        return;
+      }
+      do {
+        indicesOfSmallestElement.set(winner);
+        removed.set(winner);
+        update(winner);
+        winner = getRoot();
+      } while (!removed.get(winner) && (elements[winner] != null)
+              && (comparator.compare(elements[winner], smallestElement) == 0));
+      removed.clear();
+    }
+
   }
 
 }
@@ -0,0 +1,94 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * An int array outside of the Java heap that is addressed by long indices.
+ * It is split into direct {@link IntBuffer}s of at most 128 MB that are
+ * allocated when the array grows. Its initial values are 0.<br>
+ * Concurrent reads are safe as long as no thread writes.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class OffHeapIntArray {
+
+  private static final int SEGMENT_BITS = 25;
+
+  private static final int SEGMENT_MASK = (1 << OffHeapIntArray.SEGMENT_BITS) - 1;
+
+  private IntBuffer[] segments;
+
+  private long capacity;
+
+  public OffHeapIntArray(long capacity) {
+    segments = new IntBuffer[0];
+    ensureCapacity(capacity);
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @param capacity
+   *          the minimal number of elements that can be stored
+   */
+  public void ensureCapacity(long capacity) {
+    if (capacity <= this.capacity) {
+      return;
+    }
+    int numberOfSegments = (int) ((capacity
+            + OffHeapIntArray.SEGMENT_MASK) >>> OffHeapIntArray.SEGMENT_BITS);
+    segments = Arrays.copyOf(segments, numberOfSegments);
+    for (int i = 0; i < numberOfSegments; i++) {
+      int segmentSize = i < (numberOfSegments - 1) ? 1 << OffHeapIntArray.SEGMENT_BITS
+              : (int) (capacity - ((long) i << OffHeapIntArray.SEGMENT_BITS));
+      if ((segments[i] == null) || (segments[i].capacity() < segmentSize)) {
+        IntBuffer segment = ByteBuffer.allocateDirect(segmentSize * Integer.BYTES)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+        if (segments[i] != null) {
+          // copy the partially filled last segment
+          IntBuffer oldSegment = segments[i].duplicate();
+          oldSegment.clear();
+          segment.put(oldSegment);
+          segment.clear();
+        }
+        segments[i] = segment;
+      }
+    }
+    this.capacity = capacity;
+  }
+
+  public int get(long index) {
+    return segments[(int) (index >>> OffHeapIntArray.SEGMENT_BITS)]
+            .get((int) (index & OffHeapIntArray.SEGMENT_MASK));
+  }
+
+  public void set(long index, int value) {
+    segments[(int) (index >>> OffHeapIntArray.SEGMENT_BITS)]
+            .put((int) (index & OffHeapIntArray.SEGMENT_MASK), value);
+  }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link SimpleLongMap} that stores its entries in an open addressing hash
+ * table outside of the Java heap. Each entry occupies 16 bytes. Since the key
+ * 0 marks empty slots, its value is stored separately.<br>
+ * The table is split into direct {@link ByteBuffer}s of at most 128 MB. Thus,
+ * its size is limited by -XX:MaxDirectMemorySize instead of the heap size.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class OffHeapSimpleLongMap implements SimpleLongMap {
+
+  private static final int MAX_SEGMENT_BITS = 23;
+
+  private static final int ENTRY_SIZE = 2 * Long.BYTES;
+
+  private static final double MAX_LOAD_FACTOR = 0.75;
+
+  private ByteBuffer[] segments;
+
+  private int segmentBits;
+
+  private long capacity;
+
+  private long size;
+
+  private boolean containsZeroKey;
+
+  private long zeroKeyValue;
+
+  public OffHeapSimpleLongMap() {
+    this(1 << 16);
+  }
+
+  public OffHeapSimpleLongMap(long expectedSize) {
+    long capacity = 1024;
+    while ((capacity * MAX_LOAD_FACTOR) < expectedSize) {
+      capacity *= 2;
+    }
+    allocate(capacity);
+  }
+
+  private void allocate(long capacity) {
+    this.capacity = capacity;
+    segmentBits = Math.min(MAX_SEGMENT_BITS, Long.numberOfTrailingZeros(capacity));
+    int numberOfSegments = (int) (capacity >>> segmentBits);
+    segments = new ByteBuffer[numberOfSegments];
+    for (int i = 0; i < numberOfSegments; i++) {
+      segments[i] = ByteBuffer.allocateDirect((1 << segmentBits) * ENTRY_SIZE)
+              .order(ByteOrder.nativeOrder());
+    }
+  }
+
+  public long size() {
+    return size + (containsZeroKey ? 1 : 0);
+  }
+
+  @Override
+  public void put(long key, long value) {
+    if (key == 0) {
+      containsZeroKey = true;
+      zeroKeyValue = value;
+      return;
+    }
+    if ((size + 1) > (capacity * MAX_LOAD_FACTOR)) {
+      grow();
+    }
+    long slot = findSlot(key);
+    if (getKey(slot) == 0) {
+      setKey(slot, key);
+      size++;
+    }
+    setValue(slot, value);
+  }
+
+  @Override
+  public long get(long key) throws NoSuchElementException {
+    if (key == 0) {
+      if (!containsZeroKey) {
+        throw new NoSuchElementException();
+      }
+      return zeroKeyValue;
+    }
+    long slot = findSlot(key);
+    if (getKey(slot) == 0) {
+      throw new NoSuchElementException();
+    }
+    return getValue(slot);
+  }
+
+  /**
+   * @param key
+   * @param defaultValue
+   * @return the value of key or defaultValue, if key is not contained
+   */
+  public long get(long key, long defaultValue) {
+    if (key == 0) {
+      return containsZeroKey ? zeroKeyValue : defaultValue;
+    }
+    long slot = findSlot(key);
+    return getKey(slot) == 0 ? defaultValue : getValue(slot);
+  }
+
+  private long findSlot(long key) {
+    long mask = capacity - 1;
+    long slot = hash(key) & mask;
+    while (true) {
+      long storedKey = getKey(slot);
+      if ((storedKey == 0) || (storedKey == key)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private static long hash(long key) {
+    // finalization mix of MurmurHash3
+    long hash = key;
+    hash ^= hash >>> 33;
+    hash *= 0xff51_afd7_ed55_8ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ce_b9fe_1a85_ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private void grow() {
+    ByteBuffer[] oldSegments = segments;
+    int oldSegmentBits = segmentBits;
+    long oldCapacity = capacity;
+    allocate(2 * oldCapacity);
+    for (long oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+      ByteBuffer oldSegment = oldSegments[(int) (oldSlot >>> oldSegmentBits)];
+      int offset = (int) (oldSlot & ((1 << oldSegmentBits) - 1)) * ENTRY_SIZE;
+      long key = oldSegment.getLong(offset);
+      if (key != 0) {
+        long slot = findSlot(key);
+        setKey(slot, key);
+        setValue(slot, oldSegment.getLong(offset + Long.BYTES));
+      }
+    }
+  }
+
+  private ByteBuffer getSegment(long slot) {
+    return segments[(int) (slot >>> segmentBits)];
+  }
+
+  private int getOffset(long slot) {
+    return (int) (slot & ((1 << segmentBits) - 1)) * ENTRY_SIZE;
+  }
+
+  private long getKey(long slot) {
+    return getSegment(slot).getLong(getOffset(slot));
+  }
+
+  private void setKey(long slot, long key) {
+    getSegment(slot).putLong(getOffset(slot), key);
+  }
+
+  private long getValue(long slot) {
+    return getSegment(slot).getLong(getOffset(slot) + Long.BYTES);
+  }
+
+  private void setValue(long slot, long value) {
+    getSegment(slot).putLong(getOffset(slot) + Long.BYTES, value);
+  }
+
+  @Override
+  public Iterator<long[]> iterator() {
+    return new Iterator<long[]>() {
+
+      private boolean isZeroKeyReturned = !containsZeroKey;
+
+      private long nextSlot = findNextSlot(0);
+
+      private long findNextSlot(long slot) {
+        while ((slot < capacity) && (getKey(slot) == 0)) {
+          slot++;
+        }
+        return slot;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return !isZeroKeyReturned || (nextSlot < capacity);
+      }
+
+      @Override
+      public long[] next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        if (!isZeroKeyReturned) {
+          isZeroKeyReturned = true;
+          return new long[] { 0, zeroKeyValue };
+        }
+        long[] entry = new long[] { getKey(nextSlot), getValue(nextSlot) };
+        nextSlot = findNextSlot(nextSlot + 1);
+        return entry;
+      }
+    };
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public void close() {
+    // the direct buffers are released by the garbage collector
+    segments = new ByteBuffer[0];
+    capacity = 0;
+    size = 0;
+    containsZeroKey = false;
+  }
+
+}
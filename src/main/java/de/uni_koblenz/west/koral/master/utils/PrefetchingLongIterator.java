@@ -0,0 +1,186 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.master.utils;
+
+import de.uni_koblenz.west.koral.common.io.EncodedLongFileInputStream;
+
+import java.io.EOFException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * {@link LongIterator} that decodes the following blocks of its input in the
+ * background. The blocks are read by tasks of the given
+ * {@link ExecutorService} that never block. Thus, many iterators can share a
+ * small thread pool.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class PrefetchingLongIterator implements LongIterator {
+
+  private static final int BLOCK_SIZE = 0x400;
+
+  private static final int NUMBER_OF_PREFETCHED_BLOCKS = 2;
+
+  private static final long[] EMPTY_BLOCK = new long[0];
+
+  private final EncodedLongFileInputStream input;
+
+  private final ExecutorService executor;
+
+  private final BlockingQueue<long[]> prefetchedBlocks;
+
+  private final Runnable readTask;
+
+  private Future<?> lastReadTask;
+
+  private boolean isReadTaskScheduled;
+
+  private boolean isEndReached;
+
+  private boolean isClosed;
+
+  private volatile Throwable readFailure;
+
+  private long[] currentBlock;
+
+  private int nextIndex;
+
+  public PrefetchingLongIterator(EncodedLongFileInputStream input, ExecutorService executor) {
+    this.input = input;
+    this.executor = executor;
+    prefetchedBlocks = new ArrayBlockingQueue<>(
+            PrefetchingLongIterator.NUMBER_OF_PREFETCHED_BLOCKS);
+    readTask = this::readNextBlock;
+    synchronized (this) {
+      scheduleReadTaskIfRequired();
+    }
+  }
+
+  /**
+   * Must be called while holding the lock of this iterator. At most one read
+   * task is scheduled at a time and it is only scheduled if there is space for
+   * its block.
+   */
+  private void scheduleReadTaskIfRequired() {
+    if (!isReadTaskScheduled && !isEndReached && !isClosed
+            && (prefetchedBlocks.size() < PrefetchingLongIterator.NUMBER_OF_PREFETCHED_BLOCKS)) {
+      isReadTaskScheduled = true;
+      lastReadTask = executor.submit(readTask);
+    }
+  }
+
+  private void readNextBlock() {
+    long[] block = PrefetchingLongIterator.EMPTY_BLOCK;
+    boolean isLastBlock = true;
+    try {
+      block = new long[PrefetchingLongIterator.BLOCK_SIZE];
+      int size = 0;
+      try {
+        while (size < block.length) {
+          block[size] = input.readLong();
+          size++;
+        }
+      } catch (EOFException e) {
+        // the last block is shorter
+      }
+      isLastBlock = size < block.length;
+      if (isLastBlock) {
+        long[] lastBlock = new long[size];
+        System.arraycopy(block, 0, lastBlock, 0, size);
+        block = lastBlock;
+      }
+    } catch (Throwable e) {
+      // a terminal block is enqueued anyway, otherwise the consumer would wait
+      // forever
+      readFailure = e;
+      block = PrefetchingLongIterator.EMPTY_BLOCK;
+      isLastBlock = true;
+    }
+    prefetchedBlocks.add(block);
+    synchronized (this) {
+      isReadTaskScheduled = false;
+      isEndReached = isLastBlock;
+      scheduleReadTaskIfRequired();
+    }
+  }
+
+  private boolean loadNextBlock() {
+    if ((currentBlock != null) && (currentBlock.length < PrefetchingLongIterator.BLOCK_SIZE)) {
+      // the last block is consumed
+      return false;
+    }
+    try {
+      currentBlock = prefetchedBlocks.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    if (readFailure != null) {
+      throw new RuntimeException(readFailure);
+    }
+    nextIndex = 0;
+    synchronized (this) {
+      scheduleReadTaskIfRequired();
+    }
+    return currentBlock.length > 0;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if ((currentBlock != null) && (nextIndex < currentBlock.length)) {
+      return true;
+    }
+    return loadNextBlock();
+  }
+
+  @Override
+  public long next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return currentBlock[nextIndex++];
+  }
+
+  /**
+   * Waits until the last read task has finished. The input has to be closed
+   * afterwards.
+   */
+  @Override
+  public void close() {
+    Future<?> task;
+    synchronized (this) {
+      isClosed = true;
+      task = lastReadTask;
+    }
+    try {
+      task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+}
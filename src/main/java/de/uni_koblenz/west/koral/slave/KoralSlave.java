@@ -18,6 +18,7 @@ package de.uni_koblenz.west.koral.slave;
 
 import java.io.File;
 import java.nio.BufferUnderflowException;
+import java.util.BitSet;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
@@ -25,6 +26,7 @@ import org.apache.commons.cli.ParseException;
 
 import de.uni_koblenz.west.koral.common.config.impl.Configuration;
 import de.uni_koblenz.west.koral.common.executor.messagePassing.MessageReceiverListener;
+import de.uni_koblenz.west.koral.common.io.TripleUpdateBatch;
 import de.uni_koblenz.west.koral.common.messages.MessageType;
 import de.uni_koblenz.west.koral.common.system.ConfigurationException;
 import de.uni_koblenz.west.koral.common.system.KoralSystem;
@@ -109,20 +111,35 @@ public class KoralSlave extends KoralSystem {
             clear();
             break;
           case START_FILE_TRANSFER:
-            clear();
-            byte[][] message = new byte[3][];
+            byte[][] message = new byte[6][];
             message[0] = new byte[] {receivedMessage[0]};
             message[1] = getNetworkManager().receive(true);
             message[2] = getNetworkManager().receive(true);
-            File workingDir =
-                new File(tmpDir.getAbsolutePath() + File.separatorChar + "graphLoader" + slaveID);
+            message[3] = getNetworkManager().receive(true);
+            message[4] = getNetworkManager().receive(true);
+            message[5] = getNetworkManager().receive(true);
+            boolean isIncremental = (message[3] != null) && (message[3].length > 0)
+                && (message[3][0] != 0);
+            if (!isIncremental) {
+              clear();
+            }
+            if (message[4] != null) {
+              long[] frequentProperties = new long[message[4].length / Long.BYTES];
+              for (int i = 0; i < frequentProperties.length; i++) {
+                frequentProperties[i] = NumberConversion.bytes2long(message[4], i * Long.BYTES);
+              }
+              tripleStore.setFrequentProperties(frequentProperties);
+            }
             GraphChunkListener loader =
-                new GraphChunkLoader(slaveID, getNetworkManager().getNumberOfSlaves(), workingDir,
+                new GraphChunkLoader(slaveID, getNetworkManager().getNumberOfSlaves(),
                     (SlaveNetworkManager) getNetworkManager(), tripleStore, this, logger,
                     measurementCollector);
             registerMessageListener(GraphChunkListener.class, loader);
             notifyMessageListener(messageType.getListenerType(), slaveID, message);
             break;
+          case UPDATE_BATCH:
+            applyUpdates(slaveID, receivedMessage);
+            break;
           case QUERY_CREATE:
             getWorkerManager().createQuery(receivedMessage);
             break;
@@ -164,6 +181,28 @@ public class KoralSlave extends KoralSystem {
     }
   }
 
+  private void applyUpdates(int slaveID, byte[] receivedMessage) {
+    int updateID = NumberConversion.bytes2int(receivedMessage, Byte.BYTES);
+    SlaveNetworkManager networkManager = (SlaveNetworkManager) getNetworkManager();
+    try {
+      TripleUpdateBatch batch =
+          TripleUpdateBatch.deserialize(receivedMessage, Byte.BYTES + Integer.BYTES);
+      int numberOfSlaves = networkManager.getNumberOfSlaves();
+      byte[] containment = new byte[(numberOfSlaves / Byte.SIZE)
+          + ((numberOfSlaves % Byte.SIZE) == 0 ? 0 : 1)];
+      // slave ids start with 1
+      containment[(slaveID - 1) / Byte.SIZE] |= (byte) (0x80 >>> ((slaveID - 1) % Byte.SIZE));
+      BitSet effectiveOperations = tripleStore.applyUpdates(batch, containment);
+      networkManager.sendUpdateResult(slaveID, updateID, effectiveOperations);
+    } catch (RuntimeException e) {
+      if (logger != null) {
+        logger.throwing(e.getStackTrace()[0].getClassName(), e.getStackTrace()[0].getMethodName(),
+            e);
+      }
+      networkManager.sendUpdateFailure(slaveID, updateID, e.getMessage());
+    }
+  }
+
   @Override
   public void shutDown() {
     super.shutDown();
@@ -19,12 +19,14 @@
 package de.uni_koblenz.west.koral.slave.networkManager;
 
 import de.uni_koblenz.west.koral.common.config.impl.Configuration;
+import de.uni_koblenz.west.koral.common.io.ChunkStatistics;
 import de.uni_koblenz.west.koral.common.messages.MessageType;
 import de.uni_koblenz.west.koral.common.messages.MessageUtils;
 import de.uni_koblenz.west.koral.common.networManager.NetworkManager;
 import de.uni_koblenz.west.koral.slave.KoralSlave;
 
 import java.nio.ByteBuffer;
+import java.util.BitSet;
 
 /**
  * Implementation of network manager methods specific for {@link KoralSlave}.
@@ -38,9 +40,17 @@ public class SlaveNetworkManager extends NetworkManager {
     super(conf, currentServer);
   }
 
-  public void sendFinish(int clientID) {
-    byte[] message = ByteBuffer.allocate(Byte.BYTES + Short.BYTES)
-            .put(MessageType.GRAPH_LOADING_COMPLETE.getValue()).putShort((short) clientID).array();
+  /**
+   * @param clientID
+   * @param statistics
+   *          the statistics of the stored graph chunk or <code>null</code>, if
+   *          they should not be reported
+   */
+  public void sendFinish(int clientID, ChunkStatistics statistics) {
+    byte[] serializedStatistics = statistics == null ? new byte[0] : statistics.serialize();
+    byte[] message = ByteBuffer.allocate(Byte.BYTES + Short.BYTES + serializedStatistics.length)
+            .put(MessageType.GRAPH_LOADING_COMPLETE.getValue()).putShort((short) clientID)
+            .put(serializedStatistics).array();
     send(0, message);
   }
 
@@ -53,4 +63,23 @@ public class SlaveNetworkManager extends NetworkManager {
     send(0, messageB);
   }
 
+  public void sendUpdateResult(int slaveID, int updateID, BitSet effectiveOperations) {
+    byte[] operations = effectiveOperations.toByteArray();
+    byte[] message = ByteBuffer
+            .allocate(Byte.BYTES + Short.BYTES + Integer.BYTES + operations.length)
+            .put(MessageType.UPDATE_BATCH_APPLIED.getValue()).putShort((short) slaveID)
+            .putInt(updateID).put(operations).array();
+    send(0, message);
+  }
+
+  public void sendUpdateFailure(int slaveID, int updateID, String message) {
+    byte[] messageBytes = MessageUtils.createStringMessage(MessageType.UPDATE_BATCH_FAILED,
+            "Update failed on slave " + slaveID + ". Cause: " + message, null);
+    byte[] messageB = ByteBuffer
+            .allocate((Byte.BYTES + Short.BYTES + Integer.BYTES + messageBytes.length) - 1)
+            .put(messageBytes[0]).putShort((short) slaveID).putInt(updateID)
+            .put(messageBytes, 1, messageBytes.length - 1).array();
+    send(0, messageB);
+  }
+
 }
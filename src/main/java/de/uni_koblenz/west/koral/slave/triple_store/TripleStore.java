@@ -18,11 +18,17 @@
  */
 package de.uni_koblenz.west.koral.slave.triple_store;
 
+import de.uni_koblenz.west.koral.common.io.ChunkStatistics;
+import de.uni_koblenz.west.koral.common.io.Statement;
+import de.uni_koblenz.west.koral.common.io.TripleUpdateBatch;
 import de.uni_koblenz.west.koral.common.query.Mapping;
 import de.uni_koblenz.west.koral.common.query.MappingRecycleCache;
 import de.uni_koblenz.west.koral.common.query.TriplePattern;
 
 import java.io.Closeable;
+import java.io.File;
+import java.util.BitSet;
+import java.util.logging.Logger;
 
 /**
  * Declares all methods required by {@link TripleStoreAccessor} to interact with
@@ -35,10 +41,59 @@ public interface TripleStore extends Closeable, AutoCloseable {
 
   public void storeTriple(long subject, long property, long object, byte[] containment);
 
+  /**
+   * Stores all statements. The statements are read by the calling thread
+   * whereas the different indices are written by separate threads.
+   * 
+   * @param statements
+   * @param numberOfWritersPerIndex
+   *          number of threads writing into each index
+   * @param queueCapacity
+   *          maximal number of triple batches waiting for each writer thread
+   * @param statistics
+   *          if not <code>null</code>, the number of stored statements and the
+   *          occurrences of each resource as subject, property and object are
+   *          added
+   * @param logger
+   * @return number of stored statements
+   */
+  public long storeTriples(Iterable<Statement> statements, int numberOfWritersPerIndex,
+          int queueCapacity, ChunkStatistics statistics, Logger logger);
+
+  /**
+   * Applies the insertions and deletions to all indices. The changes of the
+   * batch are either applied completely or not at all, even if the slave
+   * crashes in between.
+   * 
+   * @param batch
+   * @param insertionContainment
+   *          containment bitset that is stored with each inserted triple
+   * @return the indices of the operations that have changed the triple store,
+   *         i.e., insertions of triples that did not exist and deletions of
+   *         existing triples
+   */
+  public BitSet applyUpdates(TripleUpdateBatch batch, byte[] insertionContainment);
+
   public Iterable<Mapping> lookup(MappingRecycleCache cache, TriplePattern triplePattern);
 
   public void flush();
 
+  /**
+   * Writes a consistent copy of all indices into the directory.
+   * 
+   * @param checkpointDir
+   */
+  public void createCheckpoint(File checkpointDir);
+
+  /**
+   * Reads the first triples with the given property in order to load the
+   * index and filter blocks as well as the first data blocks into the caches.
+   * 
+   * @param property
+   * @param maxNumberOfTriples
+   */
+  public void warmup(long property, int maxNumberOfTriples);
+
   public void clear();
 
   @Override
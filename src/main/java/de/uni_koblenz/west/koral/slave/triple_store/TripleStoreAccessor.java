@@ -16,19 +16,31 @@
  */
 package de.uni_koblenz.west.koral.slave.triple_store;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
+import java.util.function.LongFunction;
 import java.util.logging.Logger;
 
 import de.uni_koblenz.west.koral.common.config.impl.Configuration;
+import de.uni_koblenz.west.koral.common.io.ChunkStatistics;
 import de.uni_koblenz.west.koral.common.io.EncodedFileInputStream;
 import de.uni_koblenz.west.koral.common.io.EncodingFileFormat;
-import de.uni_koblenz.west.koral.common.io.Statement;
+import de.uni_koblenz.west.koral.common.io.TripleUpdateBatch;
 import de.uni_koblenz.west.koral.common.mapDB.MapDBStorageOptions;
 import de.uni_koblenz.west.koral.common.query.Mapping;
 import de.uni_koblenz.west.koral.common.query.MappingRecycleCache;
 import de.uni_koblenz.west.koral.common.query.TriplePattern;
+import de.uni_koblenz.west.koral.common.utils.Checkpoints;
+import de.uni_koblenz.west.koral.slave.triple_store.impl.DictionaryPartition;
 
 /**
  * Provides access to the local triple store. I.e., methods to store all triples of a graph file and
@@ -43,11 +55,42 @@ public class TripleStoreAccessor implements Closeable, AutoCloseable {
 
   private final TripleStore tripleStore;
   
+  private final int numberOfWritersPerIndex;
+
+  private final int loaderQueueCapacity;
+
+  /**
+   * number of triples that are read for each property during the warmup
+   */
+  private static final int WARMUP_TRIPLES_PER_PROPERTY = 100_000;
+
+  private final File tripleStoreDir;
+
+  private final File checkpointDir;
+
+  private final boolean createCheckpoints;
+
+  private final File frequentPropertiesFile;
+
+  private final DictionaryPartition dictionaryPartition;
+
+  private Thread warmupThread;
+
   private long size;
 
   public TripleStoreAccessor(Configuration conf, Logger logger) {
     this.logger = logger;
-    if (conf.getTripleStoreStorageType() == MapDBStorageOptions.MEMORY) {
+    numberOfWritersPerIndex = conf.getTripleStoreWritersPerIndex();
+    loaderQueueCapacity = conf.getTripleStoreLoaderQueueSize();
+    boolean isPersistent = conf.getTripleStoreStorageType() != MapDBStorageOptions.MEMORY;
+    tripleStoreDir = new File(conf.getTripleStoreDir(false));
+    checkpointDir = new File(conf.getTripleStoreDir(false) + "Checkpoint");
+    frequentPropertiesFile = new File(tripleStoreDir, "frequentProperties");
+    createCheckpoints = isPersistent && conf.isCheckpointCreationEnabled();
+    if (isPersistent && Checkpoints.isModificationInterrupted(tripleStoreDir)) {
+      restoreCheckpoint();
+    }
+    if (!isPersistent) {
       tripleStore = new de.uni_koblenz.west.koral.slave.triple_store.impl.TripleStore(
           conf.getTripleStoreStorageType(), conf.getTripleStoreDir(false),
           conf.useTransactionsForTripleStore(), conf.isTripleStoreAsynchronouslyWritten(),
@@ -56,30 +99,219 @@ public class TripleStoreAccessor implements Closeable, AutoCloseable {
       tripleStore = new de.uni_koblenz.west.koral.slave.triple_store.impl.TripleStore(
           conf.getTripleStoreDir(false));
     }
+    dictionaryPartition =
+        new DictionaryPartition(new File(tripleStoreDir.getParentFile(), "dictionaryPartition"));
+    if (isPersistent && (conf.getNumberOfWarmedUpProperties() > 0)) {
+      startWarmup(conf.getNumberOfWarmedUpProperties());
+    }
   }
 
-  public void storeTriples(File file) {
-    try (EncodedFileInputStream in = new EncodedFileInputStream(EncodingFileFormat.EEE, file);) {
-      long alreadyLoadedTriples = 0;
-      for (Statement statement : in) {
-        tripleStore.storeTriple(statement.getSubjectAsLong(), statement.getPropertyAsLong(),
-            statement.getObjectAsLong(), statement.getContainment());
-        alreadyLoadedTriples++;
-        if ((logger != null) && ((alreadyLoadedTriples % 10000) == 0)) {
-          logger.finer("loaded " + alreadyLoadedTriples + " triples");
-        }
+  private void restoreCheckpoint() {
+    File checkpoint = Checkpoints.getCheckpoint(checkpointDir);
+    if (checkpoint != null) {
+      de.uni_koblenz.west.koral.slave.triple_store.impl.TripleStore.restoreCheckpoint(checkpoint,
+          tripleStoreDir.getAbsolutePath());
+      if (logger != null) {
+        logger.info("The loading of the triple store was interrupted. The checkpoint "
+            + checkpoint.getAbsolutePath() + " has been restored.");
+      }
+    } else if (logger != null) {
+      logger.warning("The loading of the triple store was interrupted and there is no checkpoint "
+          + "to restore. The triple store may be incomplete.");
+    }
+    Checkpoints.markModificationEnd(tripleStoreDir);
+  }
+
+  /**
+   * Reads the indices of the most frequent properties in background.
+   * 
+   * @param numberOfProperties
+   */
+  private void startWarmup(int numberOfProperties) {
+    long[] frequentProperties = getFrequentProperties();
+    if (frequentProperties.length == 0) {
+      return;
+    }
+    warmupThread = new Thread(() -> {
+      long start = System.currentTimeMillis();
+      int i = 0;
+      for (; (i < Math.min(numberOfProperties, frequentProperties.length))
+          && !Thread.currentThread().isInterrupted(); i++) {
+        tripleStore.warmup(frequentProperties[i], TripleStoreAccessor.WARMUP_TRIPLES_PER_PROPERTY);
       }
-      tripleStore.flush();
-      size = alreadyLoadedTriples;
       if (logger != null) {
-        logger.finer("finished loading of " + alreadyLoadedTriples + " triples from file "
-            + file.getAbsolutePath());
+        logger.finer("warmed up the triple store for " + i + " properties in "
+            + (System.currentTimeMillis() - start) + " msec");
+      }
+    }, "TripleStoreWarmup");
+    warmupThread.setDaemon(true);
+    warmupThread.start();
+  }
+
+  private void stopWarmup() {
+    if (warmupThread != null) {
+      warmupThread.interrupt();
+      try {
+        warmupThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      warmupThread = null;
+    }
+  }
+
+  /**
+   * Persists the most frequent properties of the graph. They are used to warm
+   * up the caches after a restart.
+   * 
+   * @param properties
+   *          properties sorted by descending frequency
+   */
+  public void setFrequentProperties(long[] properties) {
+    tripleStoreDir.mkdirs();
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(frequentPropertiesFile)));) {
+      out.writeInt(properties.length);
+      for (long property : properties) {
+        out.writeLong(property);
       }
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
+  private long[] getFrequentProperties() {
+    if (!frequentPropertiesFile.exists()) {
+      return new long[0];
+    }
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(frequentPropertiesFile)));) {
+      long[] properties = new long[in.readInt()];
+      for (int i = 0; i < properties.length; i++) {
+        properties[i] = in.readLong();
+      }
+      return properties;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @param file
+   * @return the number of stored triples and the occurrences of their
+   *         resources
+   */
+  public ChunkStatistics storeTriples(File file) {
+    try (EncodedFileInputStream in = new EncodedFileInputStream(EncodingFileFormat.EEE, file);) {
+      return storeTriples(in, "file " + file.getAbsolutePath());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Stores the triples while they are read from the gzip compressed input.
+   * 
+   * @param encodedTriples
+   *          is closed after all triples are stored
+   * @param sourceName
+   *          name of the input used for logging
+   * @return the number of stored triples and the occurrences of their
+   *         resources
+   */
+  public ChunkStatistics storeTriples(InputStream encodedTriples, String sourceName) {
+    try (EncodedFileInputStream in = new EncodedFileInputStream(EncodingFileFormat.EEE,
+        encodedTriples);) {
+      return storeTriples(in, sourceName);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private ChunkStatistics storeTriples(EncodedFileInputStream in, String sourceName) {
+    if (createCheckpoints) {
+      Checkpoints.markModificationStart(tripleStoreDir);
+    }
+    ChunkStatistics statistics = new ChunkStatistics();
+    long alreadyLoadedTriples = tripleStore.storeTriples(in, numberOfWritersPerIndex,
+        loaderQueueCapacity, statistics, logger);
+    tripleStore.flush();
+    size += alreadyLoadedTriples;
+    if (createCheckpoints) {
+      File checkpoint = Checkpoints.beginCheckpoint(checkpointDir);
+      tripleStore.createCheckpoint(checkpoint);
+      Checkpoints.commitCheckpoint(checkpointDir);
+      Checkpoints.markModificationEnd(tripleStoreDir);
+    }
+    if (logger != null) {
+      logger.finer("finished loading of " + alreadyLoadedTriples + " triples from " + sourceName);
+    }
+    return statistics;
+  }
+
+  /**
+   * Replaces the local dictionary partition while it is received.
+   * 
+   * @param partition
+   *          is closed after all entries are stored
+   * @param sourceName
+   *          name of the input used for logging
+   */
+  public void storeDictionaryPartition(InputStream partition, String sourceName) {
+    dictionaryPartition.store(partition);
+    if (logger != null) {
+      logger.finer("finished loading of dictionary partition " + dictionaryPartition.getVersion()
+          + " from " + sourceName);
+    }
+  }
+
+  /**
+   * @param version
+   *          version of the dictionary partitions the query coordinator
+   *          expects
+   * @return a function that returns the serialized query result of an id or
+   *         <code>null</code> if the id is not stored in the local dictionary
+   *         partition
+   */
+  public LongFunction<byte[]> getResultDecoder(long version) {
+    if (dictionaryPartition.getVersion() != version) {
+      // the local partition is outdated
+      return id -> null;
+    }
+    return dictionaryPartition::decode;
+  }
+
+  /**
+   * @param batch
+   * @param insertionContainment
+   * @return the indices of the operations that have changed the triple store.
+   *         If checkpoints are enabled, a checkpoint of the updated triple
+   *         store has been created before.
+   * @see TripleStore#applyUpdates(TripleUpdateBatch, byte[])
+   */
+  public BitSet applyUpdates(TripleUpdateBatch batch, byte[] insertionContainment) {
+    if (createCheckpoints) {
+      Checkpoints.markModificationStart(tripleStoreDir);
+    }
+    BitSet effectiveOperations = tripleStore.applyUpdates(batch, insertionContainment);
+    if (createCheckpoints) {
+      // otherwise, restoring the checkpoint of the last load would discard this update
+      File checkpoint = Checkpoints.beginCheckpoint(checkpointDir);
+      tripleStore.createCheckpoint(checkpoint);
+      Checkpoints.commitCheckpoint(checkpointDir);
+      Checkpoints.markModificationEnd(tripleStoreDir);
+    }
+    for (int i = effectiveOperations.nextSetBit(0); i >= 0;
+        i = effectiveOperations.nextSetBit(i + 1)) {
+      size += batch.isInsertion(i) ? 1 : -1;
+    }
+    if (logger != null) {
+      logger.finer("applied " + effectiveOperations.cardinality() + " of " + batch.size()
+          + " updates");
+    }
+    return effectiveOperations;
+  }
+
   public Iterable<Mapping> lookup(MappingRecycleCache cache, TriplePattern triplePattern) {
     return tripleStore.lookup(cache, triplePattern);
   }
@@ -89,11 +321,21 @@ public class TripleStoreAccessor implements Closeable, AutoCloseable {
   }
   
   public void clear() {
+    stopWarmup();
+    if (createCheckpoints) {
+      // the cleared triples must not be restored
+      Checkpoints.discardCheckpoint(checkpointDir);
+    }
+    frequentPropertiesFile.delete();
+    dictionaryPartition.clear();
     tripleStore.clear();
+    size = 0;
   }
 
   @Override
   public void close() {
+    stopWarmup();
+    dictionaryPartition.close();
     tripleStore.close();
   }
 
@@ -0,0 +1,220 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.slave.triple_store.impl;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+import de.uni_koblenz.west.koral.common.query.execution.QueryExecutionCoordinator;
+import de.uni_koblenz.west.koral.common.utils.NumberConversion;
+import de.uni_koblenz.west.koral.master.utils.DeSerializer;
+
+/**
+ * Stores the dictionary entries of the resources that occur in the graph chunk
+ * of this slave. It is used to decode the query results on the slave.<br>
+ * A partition is received as gzip compressed stream that starts with the
+ * version of the partition followed by entries of the form
+ * <code>long id, int length, byte[] value</code>. The stream ends with the id
+ * 0.<br>
+ * Reading and writing entries share a read lock. Clearing and closing the
+ * database require the write lock, so that the database is not closed while
+ * it is accessed.
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+public class DictionaryPartition implements Closeable {
+
+  private static final int MAX_BATCH_ENTRIES = 100000;
+
+  private final File storageDir;
+
+  private final File versionFile;
+
+  private RocksDB database;
+
+  /**
+   * 0 if no complete partition is stored
+   */
+  private volatile long version;
+
+  private final ReadWriteLock lock;
+
+  public DictionaryPartition(File storageDir) {
+    this.storageDir = storageDir;
+    lock = new ReentrantReadWriteLock();
+    versionFile = new File(storageDir, "version");
+    open();
+  }
+
+  private void open() {
+    File databaseDir = new File(storageDir, "values");
+    databaseDir.mkdirs();
+    try {
+      Options options = new Options();
+      options.setCreateIfMissing(true);
+      options.setMaxOpenFiles(100);
+      database = RocksDB.open(options, databaseDir.getAbsolutePath());
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    }
+    version = readVersion();
+  }
+
+  private long readVersion() {
+    if (!versionFile.exists()) {
+      return 0;
+    }
+    try (DataInputStream in = new DataInputStream(new FileInputStream(versionFile));) {
+      return in.readLong();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @return the version of the stored partition or 0 if no complete partition
+   *         is stored
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Replaces the stored entries by the received partition.
+   * 
+   * @param partition
+   *          is closed after all entries are stored
+   */
+  public void store(InputStream partition) {
+    clear();
+    long receivedVersion;
+    lock.readLock().lock();
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new GZIPInputStream(partition)));
+        WriteOptions writeOptions = new WriteOptions();) {
+      receivedVersion = in.readLong();
+      WriteBatch batch = new WriteBatch();
+      int entriesInBatch = 0;
+      for (long id = in.readLong(); id != 0; id = in.readLong()) {
+        byte[] value = new byte[in.readInt()];
+        in.readFully(value);
+        batch.put(NumberConversion.long2bytes(id), value);
+        entriesInBatch++;
+        if (entriesInBatch == DictionaryPartition.MAX_BATCH_ENTRIES) {
+          database.write(writeOptions, batch);
+          batch.close();
+          batch = new WriteBatch();
+          entriesInBatch = 0;
+        }
+      }
+      database.write(writeOptions, batch);
+      batch.close();
+    } catch (IOException | RocksDBException e) {
+      throw new RuntimeException(e);
+    } finally {
+      lock.readLock().unlock();
+    }
+    // the version is only persisted after all entries are stored
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(versionFile));) {
+      out.writeLong(receivedVersion);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    version = receivedVersion;
+  }
+
+  /**
+   * @param id
+   * @return the UTF-8 encoded serialization of the resource as it is returned
+   *         to the client or <code>null</code> if the resource is not stored in
+   *         this partition
+   */
+  public byte[] decode(long id) {
+    byte[] value;
+    lock.readLock().lock();
+    try {
+      if ((database == null) || (version == 0)) {
+        return null;
+      }
+      value = database.get(NumberConversion.long2bytes(id & 0x00_00_ff_ff_ff_ff_ff_ffL));
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    } finally {
+      lock.readLock().unlock();
+    }
+    if (value == null) {
+      return null;
+    }
+    try {
+      return QueryExecutionCoordinator
+          .serializeResult(DeSerializer.deserializeNode(new String(value, "UTF-8")))
+          .getBytes("UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      version = 0;
+      versionFile.delete();
+      close();
+      FileUtils.deleteDirectory(new File(storageDir, "values"));
+      open();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    lock.writeLock().lock();
+    try {
+      if (database != null) {
+        database.close();
+        database = null;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+}
@@ -32,6 +32,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.NavigableSet;
 
@@ -138,6 +139,22 @@ public class MapDBMultiMap implements MultiMap {
     multiMap.add(content);
   }
 
+  @Override
+  public void putAll(Collection<byte[]> contents) {
+    int maxLength = 0;
+    for (byte[] content : contents) {
+      if (content.length > maxLength) {
+        maxLength = content.length;
+      }
+      multiMap.add(content);
+    }
+    synchronized (maxLengthFile) {
+      if (maxLength > maxElementLength) {
+        maxElementLength = maxLength;
+      }
+    }
+  }
+
   @Override
   public void removeAll(byte[] prefix) {
     NavigableSet<byte[]> subSet = multiMap.subSet(prefix, true, getMaxValue(prefix), true);
@@ -225,6 +242,12 @@ public class MapDBMultiMap implements MultiMap {
   public void flush() {
   }
 
+  @Override
+  public void createCheckpoint(File checkpointDir) {
+    throw new UnsupportedOperationException(
+            "Checkpoints are only supported for the RocksDB based triple store.");
+  }
+
   @Override
   public void clear() {
     multiMap.clear();
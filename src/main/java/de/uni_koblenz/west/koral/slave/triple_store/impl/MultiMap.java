@@ -19,6 +19,8 @@
 package de.uni_koblenz.west.koral.slave.triple_store.impl;
 
 import java.io.Closeable;
+import java.io.File;
+import java.util.Collection;
 import java.util.Iterator;
 
 /**
@@ -39,6 +41,14 @@ public interface MultiMap extends Closeable, AutoCloseable, Iterable<byte[]> {
 
   public void put(byte[] content);
 
+  /**
+   * Stores all contents at once. In contrast to {@link #put(byte[])}, this
+   * method may be called by several threads concurrently.
+   * 
+   * @param contents
+   */
+  public void putAll(Collection<byte[]> contents);
+
   public void removeAll(byte[] prefix);
 
   public void remove(byte[] content);
@@ -48,6 +58,14 @@ public interface MultiMap extends Closeable, AutoCloseable, Iterable<byte[]> {
 
   public void flush();
 
+  /**
+   * Writes a consistent copy of this map into the directory. The copy has the
+   * same layout as the directory of this map.
+   * 
+   * @param checkpointDir
+   */
+  public void createCheckpoint(File checkpointDir);
+
   public void clear();
 
   @Override
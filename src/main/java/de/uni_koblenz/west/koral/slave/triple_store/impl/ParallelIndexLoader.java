@@ -0,0 +1,373 @@
+/*
+ * This file is part of Koral.
+ *
+ * Koral is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Koral is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Leser General Public License
+ * along with Koral.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2016 Daniel Janke
+ */
+package de.uni_koblenz.west.koral.slave.triple_store.impl;
+
+import de.uni_koblenz.west.koral.common.io.ChunkStatistics;
+import de.uni_koblenz.west.koral.common.io.Statement;
+import de.uni_koblenz.west.koral.common.utils.NumberConversion;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Stores the triples of a graph chunk in the SPO, OSP and POS index in
+ * parallel. The calling thread decodes the statements and distributes them in
+ * batches via bounded queues to the writer threads. Each index has its own
+ * writer threads so that the three indices are written concurrently.
+ * </p>
+ * 
+ * <p>
+ * If more than one writer per index is requested, the triples of an index are
+ * split into disjoint ranges of the key space according to the first element
+ * of the index key. Each writer stores the triples of exactly one range.
+ * </p>
+ * 
+ * <p>
+ * The statistics are counted after all writers have finished by scanning the
+ * stored indices. Thereby, duplicate triples that were not stored again are
+ * not counted. Since the keys of an index are sorted by their first element,
+ * each scan only has to count the lengths of the runs of equal first elements
+ * and appends them in ascending order to the {@link ChunkStatistics}.
+ * </p>
+ * 
+ * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
+ *
+ */
+class ParallelIndexLoader {
+
+  static final int BATCH_SIZE = 10_000;
+
+  private static final TripleBatch END_OF_INPUT = new TripleBatch(0);
+
+  private final Logger logger;
+
+  private final MultiMap[] indices;
+
+  private final IndexType[] indexTypes;
+
+  /**
+   * position of the first key element of each index in a triple
+   */
+  private final int[] firstKeyPositions;
+
+  private final int numberOfWritersPerIndex;
+
+  private final int queueCapacity;
+
+  private volatile Throwable failure;
+
+  public ParallelIndexLoader(MultiMap spo, MultiMap osp, MultiMap pos,
+          int numberOfWritersPerIndex, int queueCapacity, Logger logger) {
+    this.logger = logger;
+    indices = new MultiMap[] { spo, osp, pos };
+    indexTypes = new IndexType[] { IndexType.SPO, IndexType.OSP, IndexType.POS };
+    firstKeyPositions =
+            new int[] { ChunkStatistics.SUBJECT, ChunkStatistics.OBJECT, ChunkStatistics.PROPERTY };
+    this.numberOfWritersPerIndex = numberOfWritersPerIndex < 1 ? 1 : numberOfWritersPerIndex;
+    this.queueCapacity = queueCapacity < 1 ? 1 : queueCapacity;
+  }
+
+  /**
+   * @param statements
+   * @param statistics
+   *          if not <code>null</code>, the number of triples stored in the
+   *          indices and the occurrences of each resource as subject, property
+   *          and object are added, including the triples that were already
+   *          stored before
+   * @return number of read statements
+   */
+  public long storeTriples(Iterable<Statement> statements, ChunkStatistics statistics) {
+    IndexWriter[][] writers = new IndexWriter[indices.length][numberOfWritersPerIndex];
+    TripleBatch[][] openBatches = new TripleBatch[indices.length][numberOfWritersPerIndex];
+    for (int index = 0; index < indices.length; index++) {
+      for (int range = 0; range < numberOfWritersPerIndex; range++) {
+        writers[index][range] = new IndexWriter(indexTypes[index].name() + range,
+                indices[index], queueCapacity);
+        writers[index][range].start();
+        openBatches[index][range] = new TripleBatch(ParallelIndexLoader.BATCH_SIZE);
+      }
+    }
+
+    long numberOfTriples = 0;
+    boolean isFinished = false;
+    try {
+      for (Statement statement : statements) {
+        long subject = statement.getSubjectAsLong();
+        long property = statement.getPropertyAsLong();
+        long object = statement.getObjectAsLong();
+        byte[] containment = statement.getContainment();
+        addTriple(writers[0], openBatches[0], subject, property, object, containment);
+        addTriple(writers[1], openBatches[1], object, subject, property, containment);
+        addTriple(writers[2], openBatches[2], property, object, subject, containment);
+        numberOfTriples++;
+        if ((logger != null) && ((numberOfTriples % 100000) == 0)) {
+          logger.finer("decoded " + numberOfTriples + " triples");
+        }
+      }
+      for (int index = 0; index < indices.length; index++) {
+        for (int range = 0; range < numberOfWritersPerIndex; range++) {
+          if (openBatches[index][range].size() > 0) {
+            enqueue(writers[index][range], openBatches[index][range]);
+          }
+          enqueue(writers[index][range], ParallelIndexLoader.END_OF_INPUT);
+        }
+      }
+      for (IndexWriter[] writersOfIndex : writers) {
+        for (IndexWriter writer : writersOfIndex) {
+          writer.join();
+        }
+      }
+      isFinished = true;
+    } catch (InterruptedException e) {
+      failure = e;
+    } finally {
+      if (!isFinished) {
+        // the statements could not be read completely, hence, the writers would wait for further batches
+        stopWriters(writers);
+      }
+    }
+    if (failure != null) {
+      throw new RuntimeException("Storing of triples failed.", failure);
+    }
+    if (statistics != null) {
+      countStoredTriples(statistics);
+    }
+    return numberOfTriples;
+  }
+
+  private void stopWriters(IndexWriter[][] writers) {
+    for (IndexWriter[] writersOfIndex : writers) {
+      for (IndexWriter writer : writersOfIndex) {
+        writer.interrupt();
+      }
+    }
+    boolean isInterrupted = false;
+    for (IndexWriter[] writersOfIndex : writers) {
+      for (IndexWriter writer : writersOfIndex) {
+        while (writer.isAlive()) {
+          try {
+            writer.join();
+          } catch (InterruptedException e) {
+            isInterrupted = true;
+          }
+        }
+      }
+    }
+    if (isInterrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void countStoredTriples(ChunkStatistics statistics) {
+    IndexCounter[] counters = new IndexCounter[indices.length];
+    for (int index = 0; index < indices.length; index++) {
+      counters[index] = new IndexCounter(indexTypes[index].name(), indices[index],
+              firstKeyPositions[index], statistics);
+      counters[index].start();
+    }
+    try {
+      for (IndexCounter counter : counters) {
+        counter.join();
+      }
+    } catch (InterruptedException e) {
+      failure = e;
+    }
+    if (failure != null) {
+      throw new RuntimeException("Counting of stored triples failed.", failure);
+    }
+    // each stored triple is contained once in every index
+    statistics.addNumberOfTriples(counters[0].numberOfKeys);
+  }
+
+  private void addTriple(IndexWriter[] writers, TripleBatch[] openBatches, long first,
+          long second, long third, byte[] containment) throws InterruptedException {
+    int range = getRange(first);
+    TripleBatch batch = openBatches[range];
+    batch.add(first, second, third, containment);
+    if (batch.isFull()) {
+      enqueue(writers[range], batch);
+      openBatches[range] = new TripleBatch(ParallelIndexLoader.BATCH_SIZE);
+    }
+  }
+
+  private int getRange(long firstKeyElement) {
+    if (numberOfWritersPerIndex == 1) {
+      return 0;
+    }
+    // mix the bits since the upper two bytes contain the owner
+    long hash = firstKeyElement * 0x9E37_79B9_7F4A_7C15L;
+    hash ^= hash >>> 32;
+    return (int) ((hash & Long.MAX_VALUE) % numberOfWritersPerIndex);
+  }
+
+  private void enqueue(IndexWriter writer, TripleBatch batch) throws InterruptedException {
+    while (!writer.queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+      if (failure != null) {
+        throw new RuntimeException("Storing of triples failed.", failure);
+      }
+    }
+  }
+
+  /**
+   * Writes the received batches into one index.
+   */
+  private class IndexWriter extends Thread {
+
+    private final MultiMap index;
+
+    private final BlockingQueue<TripleBatch> queue;
+
+    public IndexWriter(String name, MultiMap index, int queueCapacity) {
+      super("IndexWriter-" + name);
+      setDaemon(true);
+      this.index = index;
+      queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @Override
+    public void run() {
+      List<byte[]> keys = new ArrayList<>(ParallelIndexLoader.BATCH_SIZE);
+      try {
+        for (TripleBatch batch = queue.take(); batch != ParallelIndexLoader.END_OF_INPUT; batch = queue
+                .take()) {
+          for (int i = 0; i < batch.size(); i++) {
+            keys.add(batch.createKey(i));
+          }
+          index.putAll(keys);
+          keys.clear();
+        }
+      } catch (InterruptedException e) {
+        // the loading was aborted
+      } catch (Throwable e) {
+        if (logger != null) {
+          logger.throwing(e.getStackTrace()[0].getClassName(),
+                  e.getStackTrace()[0].getMethodName(), e);
+        }
+        failure = e;
+      }
+    }
+
+  }
+
+  /**
+   * Counts the occurrences of the first key elements of one index. Each counter
+   * fills a different position of the statistics.
+   */
+  private class IndexCounter extends Thread {
+
+    private final MultiMap index;
+
+    private final int firstKeyPosition;
+
+    private final ChunkStatistics statistics;
+
+    private long numberOfKeys;
+
+    /**
+     * @param name
+     * @param index
+     * @param firstKeyPosition
+     *          position under which the first key elements are counted
+     * @param statistics
+     */
+    public IndexCounter(String name, MultiMap index, int firstKeyPosition,
+            ChunkStatistics statistics) {
+      super("IndexCounter-" + name);
+      setDaemon(true);
+      this.index = index;
+      this.firstKeyPosition = firstKeyPosition;
+      this.statistics = statistics;
+    }
+
+    @Override
+    public void run() {
+      try {
+        long currentResource = 0;
+        long runLength = 0;
+        for (Iterator<byte[]> keys = index.iterator(); keys.hasNext();) {
+          long resource = NumberConversion.bytes2long(keys.next(), 0);
+          if ((runLength > 0) && (resource != currentResource)) {
+            statistics.add(currentResource, firstKeyPosition, runLength);
+            runLength = 0;
+          }
+          currentResource = resource;
+          runLength++;
+          numberOfKeys++;
+        }
+        if (runLength > 0) {
+          statistics.add(currentResource, firstKeyPosition, runLength);
+        }
+      } catch (Throwable e) {
+        if (logger != null) {
+          logger.throwing(e.getStackTrace()[0].getClassName(),
+                  e.getStackTrace()[0].getMethodName(), e);
+        }
+        failure = e;
+      }
+    }
+
+  }
+
+  /**
+   * Triples already ordered according to the key of one index.
+   */
+  private static class TripleBatch {
+
+    private final long[] triples;
+
+    private final byte[][] containments;
+
+    private int size;
+
+    public TripleBatch(int capacity) {
+      triples = new long[3 * capacity];
+      containments = new byte[capacity][];
+      size = 0;
+    }
+
+    public void add(long first, long second, long third, byte[] containment) {
+      triples[3 * size] = first;
+      triples[(3 * size) + 1] = second;
+      triples[(3 * size) + 2] = third;
+      containments[size] = containment;
+      size++;
+    }
+
+    public boolean isFull() {
+      return size == containments.length;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public byte[] createKey(int i) {
+      return TripleStore.createByteArray(triples[3 * i], triples[(3 * i) + 1],
+              triples[(3 * i) + 2], containments[i]);
+    }
+
+  }
+
+}
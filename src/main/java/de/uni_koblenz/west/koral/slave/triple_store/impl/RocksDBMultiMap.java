@@ -22,10 +22,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.io.FileUtils;
 import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
@@ -33,6 +36,7 @@ import org.rocksdb.RocksIterator;
 import org.rocksdb.WriteBatch;
 import org.rocksdb.WriteOptions;
 
+import de.uni_koblenz.west.koral.common.utils.Checkpoints;
 import de.uni_koblenz.west.koral.common.utils.NumberConversion;
 
 /**
@@ -55,6 +59,11 @@ public class RocksDBMultiMap implements MultiMap {
 
   private final int maxBatchEntries;
 
+  /**
+   * number of puts and removals since the last compaction
+   */
+  private final AtomicLong numberOfUncompactedEntries;
+
   private final File numberOfTriplesFile;
 
   private long numberOfTriples;
@@ -68,6 +77,7 @@ public class RocksDBMultiMap implements MultiMap {
     rocksDBFile = new File(storageDir);
     initializeDB(storageDir);
     maxBatchEntries = 100000;
+    numberOfUncompactedEntries = new AtomicLong();
 
     numberOfTriplesFile =
         new File(databaseFile + File.separator + indexDir.getName() + ".numberOfTriples");
@@ -142,12 +152,26 @@ public class RocksDBMultiMap implements MultiMap {
         batch = new WriteBatch();
       }
       batch.put(key, RocksDBMultiMap.EMPTY_BYTE_ARRAY);
+      numberOfUncompactedEntries.incrementAndGet();
       if (entriesInBatch.size() == maxBatchEntries) {
         internalFlush();
       }
     }
   }
 
+  @Override
+  public void putAll(Collection<byte[]> contents) {
+    try (WriteBatch writeBatch = new WriteBatch(); WriteOptions writeOpts = new WriteOptions();) {
+      for (byte[] content : contents) {
+        writeBatch.put(content, RocksDBMultiMap.EMPTY_BYTE_ARRAY);
+      }
+      multiMap.write(writeOpts, writeBatch);
+      numberOfUncompactedEntries.addAndGet(contents.size());
+    } catch (RocksDBException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   @Override
   public void removeAll(byte[] prefix) {
     for (byte[] key : get(prefix)) {
@@ -161,6 +185,11 @@ public class RocksDBMultiMap implements MultiMap {
       batch = new WriteBatch();
     }
     batch.remove(content);
+    numberOfUncompactedEntries.incrementAndGet();
+    if (entriesInBatch != null) {
+      // a later put of the same key has to be written again
+      entriesInBatch.remove(new ArrayWrapper(content));
+    }
   }
 
   @Override
@@ -171,19 +200,45 @@ public class RocksDBMultiMap implements MultiMap {
 
   @Override
   public void flush() {
-    internalFlush();
+    internalFlush(true);
+    if (numberOfUncompactedEntries.get() < maxBatchEntries) {
+      // compacting the complete index does not pay off for a few new entries, e.g., after an update
+      return;
+    }
     try {
       multiMap.compactRange();
+      numberOfUncompactedEntries.set(0);
     } catch (RocksDBException e) {
       close();
       throw new RuntimeException(e);
     }
   }
 
-  private void internalFlush() {
+  @Override
+  public void createCheckpoint(File checkpointDir) {
+    internalFlush();
+    saveNumberOfTriples();
+    Checkpoints.createRocksDBCheckpoint(multiMap, new File(checkpointDir, rocksDBFile.getName()));
     try {
-      WriteOptions writeOpts = new WriteOptions();
+      FileUtils.copyFile(numberOfTriplesFile,
+          new File(checkpointDir, numberOfTriplesFile.getName()));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void internalFlush() {
+    internalFlush(false);
+  }
+
+  /**
+   * @param sync
+   *          if <code>true</code>, the write ahead log is synced to disk
+   */
+  private void internalFlush(boolean sync) {
+    try (WriteOptions writeOpts = new WriteOptions();) {
       if (batch != null) {
+        writeOpts.setSync(sync);
         multiMap.write(writeOpts, batch);
         batch = null;
       }
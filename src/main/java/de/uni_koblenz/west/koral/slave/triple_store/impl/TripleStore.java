@@ -18,15 +18,37 @@
  */
 package de.uni_koblenz.west.koral.slave.triple_store.impl;
 
+import de.uni_koblenz.west.koral.common.io.ChunkStatistics;
+import de.uni_koblenz.west.koral.common.io.Statement;
+import de.uni_koblenz.west.koral.common.io.TripleUpdateBatch;
 import de.uni_koblenz.west.koral.common.mapDB.MapDBCacheOptions;
 import de.uni_koblenz.west.koral.common.mapDB.MapDBStorageOptions;
 import de.uni_koblenz.west.koral.common.query.Mapping;
 import de.uni_koblenz.west.koral.common.query.MappingRecycleCache;
 import de.uni_koblenz.west.koral.common.query.TriplePattern;
+import de.uni_koblenz.west.koral.common.utils.Checkpoints;
 import de.uni_koblenz.west.koral.common.utils.NumberConversion;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
 
 /**
  * A MapDB implementation of the local triple store. Each triple is stored in
@@ -43,6 +65,12 @@ public class TripleStore implements de.uni_koblenz.west.koral.slave.triple_store
 
   private final MultiMap pos;
 
+  /**
+   * Redo log of the update batch that is currently applied. It only exists if
+   * all its operations are logged completely.
+   */
+  private final File updateLog;
+
   public TripleStore(MapDBStorageOptions storageType, String tripleStoreDir,
           boolean useTransactions, boolean writeAsynchronously, MapDBCacheOptions cacheType) {
     File dir = new File(tripleStoreDir);
@@ -55,6 +83,8 @@ public class TripleStore implements de.uni_koblenz.west.koral.slave.triple_store
             useTransactions, writeAsynchronously, cacheType, "osp");
     pos = new MapDBMultiMap(storageType, tripleStoreDir + File.separatorChar + "pos",
             useTransactions, writeAsynchronously, cacheType, "pos");
+    updateLog = new File(tripleStoreDir + File.separatorChar + "update.log");
+    recoverUpdates();
   }
 
   public TripleStore(String tripleStoreDir) {
@@ -62,9 +92,29 @@ public class TripleStore implements de.uni_koblenz.west.koral.slave.triple_store
     if (!dir.exists()) {
       dir.mkdirs();
     }
-    spo = new RocksDBMultiMap(tripleStoreDir + File.separatorChar + "spo");
-    osp = new RocksDBMultiMap(tripleStoreDir + File.separatorChar + "osp");
-    pos = new RocksDBMultiMap(tripleStoreDir + File.separatorChar + "pos");
+    // the indices are opened in parallel
+    CompletableFuture<MultiMap> ospFuture = CompletableFuture
+            .supplyAsync(() -> new RocksDBMultiMap(tripleStoreDir + File.separatorChar + "osp"));
+    CompletableFuture<MultiMap> posFuture = CompletableFuture
+            .supplyAsync(() -> new RocksDBMultiMap(tripleStoreDir + File.separatorChar + "pos"));
+    MultiMap spo = null;
+    try {
+      spo = new RocksDBMultiMap(tripleStoreDir + File.separatorChar + "spo");
+      CompletableFuture.allOf(ospFuture, posFuture).join();
+    } catch (RuntimeException e) {
+      for (CompletableFuture<MultiMap> future : Arrays.asList(ospFuture, posFuture)) {
+        future.thenAccept(MultiMap::close);
+      }
+      if (spo != null) {
+        spo.close();
+      }
+      throw e;
+    }
+    this.spo = spo;
+    osp = ospFuture.join();
+    pos = posFuture.join();
+    updateLog = new File(tripleStoreDir + File.separatorChar + "update.log");
+    recoverUpdates();
   }
 
   @Override
@@ -74,7 +124,130 @@ public class TripleStore implements de.uni_koblenz.west.koral.slave.triple_store
     pos.put(createByteArray(property, object, subject, containment));
   }
 
-  private byte[] createByteArray(long value1, long value2, long value3, byte[] containment) {
+  @Override
+  public long storeTriples(Iterable<Statement> statements, int numberOfWritersPerIndex,
+          int queueCapacity, ChunkStatistics statistics, Logger logger) {
+    ParallelIndexLoader loader = new ParallelIndexLoader(spo, osp, pos, numberOfWritersPerIndex,
+            queueCapacity, logger);
+    return loader.storeTriples(statements, statistics);
+  }
+
+  @Override
+  public BitSet applyUpdates(TripleUpdateBatch batch, byte[] insertionContainment) {
+    BitSet effectiveOperations = new BitSet(batch.size());
+    // the keys of the spo index that have to be inserted or removed
+    List<byte[]> changedKeys = new ArrayList<>();
+    BitSet insertedKeys = new BitSet();
+    // the spo keys of each updated triple after the already processed
+    // operations of this batch
+    Map<ByteBuffer, List<byte[]>> currentKeys = new HashMap<>();
+    for (int i = 0; i < batch.size(); i++) {
+      byte[] prefix = createByteArray(batch.getSubject(i), batch.getProperty(i),
+              batch.getObject(i), new byte[0]);
+      List<byte[]> keys = currentKeys.get(ByteBuffer.wrap(prefix));
+      if (keys == null) {
+        keys = new ArrayList<>();
+        for (byte[] key : spo.get(prefix)) {
+          keys.add(key);
+        }
+        currentKeys.put(ByteBuffer.wrap(prefix), keys);
+      }
+      if (batch.isInsertion(i)) {
+        if (keys.isEmpty()) {
+          byte[] key = createByteArray(batch.getSubject(i), batch.getProperty(i),
+                  batch.getObject(i), insertionContainment);
+          insertedKeys.set(changedKeys.size());
+          changedKeys.add(key);
+          keys.add(key);
+          effectiveOperations.set(i);
+        }
+      } else if (!keys.isEmpty()) {
+        changedKeys.addAll(keys);
+        keys.clear();
+        effectiveOperations.set(i);
+      }
+    }
+    if (!changedKeys.isEmpty()) {
+      writeUpdateLog(changedKeys, insertedKeys);
+      applyUpdateLog();
+    }
+    return effectiveOperations;
+  }
+
+  /**
+   * The log is written into a temporary file which is renamed after it has been
+   * synchronized with the disk. Thus, an existing log is always complete.
+   */
+  private void writeUpdateLog(List<byte[]> changedKeys, BitSet insertedKeys) {
+    File tmpLog = new File(updateLog.getAbsolutePath() + ".tmp");
+    try (FileOutputStream fileOut = new FileOutputStream(tmpLog);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));) {
+      out.writeInt(changedKeys.size());
+      for (int i = 0; i < changedKeys.size(); i++) {
+        byte[] key = changedKeys.get(i);
+        out.writeBoolean(insertedKeys.get(i));
+        out.writeShort(key.length);
+        out.write(key);
+      }
+      out.flush();
+      fileOut.getFD().sync();
+    } catch (IOException e) {
+      tmpLog.delete();
+      throw new RuntimeException(e);
+    }
+    try {
+      Files.move(tmpLog.toPath(), updateLog.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      tmpLog.delete();
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Replays the update log. Since insertions and deletions are idempotent, an
+   * update log that has been applied partially before can be applied again.
+   */
+  private void applyUpdateLog() {
+    try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(updateLog)));) {
+      int numberOfKeys = in.readInt();
+      for (int i = 0; i < numberOfKeys; i++) {
+        boolean isInsertion = in.readBoolean();
+        byte[] key = new byte[in.readShort() & 0xff_ff];
+        in.readFully(key);
+        long subject = NumberConversion.bytes2long(key, 0);
+        long property = NumberConversion.bytes2long(key, Long.BYTES);
+        long object = NumberConversion.bytes2long(key, 2 * Long.BYTES);
+        byte[] containment = Arrays.copyOfRange(key, 3 * Long.BYTES, key.length);
+        if (isInsertion) {
+          spo.put(key);
+          osp.put(createByteArray(object, subject, property, containment));
+          pos.put(createByteArray(property, object, subject, containment));
+        } else {
+          spo.remove(key);
+          osp.remove(createByteArray(object, subject, property, containment));
+          pos.remove(createByteArray(property, object, subject, containment));
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    flush();
+    updateLog.delete();
+  }
+
+  private void recoverUpdates() {
+    File tmpLog = new File(updateLog.getAbsolutePath() + ".tmp");
+    if (tmpLog.exists()) {
+      // the batch was not logged completely, so none of its changes was applied
+      tmpLog.delete();
+    }
+    if (updateLog.exists()) {
+      applyUpdateLog();
+    }
+  }
+
+  static byte[] createByteArray(long value1, long value2, long value3, byte[] containment) {
     byte[] result = new byte[(3 * Long.BYTES) + containment.length];
     NumberConversion.long2bytes(value1, result, 0);
     NumberConversion.long2bytes(value2, result, Long.BYTES);
@@ -149,8 +322,46 @@ public class TripleStore implements de.uni_koblenz.west.koral.slave.triple_store
     pos.flush();
   }
 
+  @Override
+  public void createCheckpoint(File checkpointDir) {
+    spo.createCheckpoint(new File(checkpointDir, "spo"));
+    osp.createCheckpoint(new File(checkpointDir, "osp"));
+    pos.createCheckpoint(new File(checkpointDir, "pos"));
+  }
+
+  /**
+   * Replaces the indices in <code>tripleStoreDir</code> by the ones of the
+   * checkpoint. The triple store must not be opened.
+   * 
+   * @param checkpointDir
+   * @param tripleStoreDir
+   */
+  public static void restoreCheckpoint(File checkpointDir, String tripleStoreDir) {
+    for (String index : new String[] { "spo", "osp", "pos" }) {
+      Checkpoints.restore(new File(checkpointDir, index),
+              new File(tripleStoreDir + File.separatorChar + index));
+    }
+    // an update log belongs to a state after the checkpoint
+    new File(tripleStoreDir + File.separatorChar + "update.log").delete();
+  }
+
+  @Override
+  public void warmup(long property, int maxNumberOfTriples) {
+    byte[] prefix = NumberConversion.long2bytes(property);
+    int numberOfReadTriples = 0;
+    Iterator<byte[]> iterator = pos.get(prefix).iterator();
+    while ((numberOfReadTriples < maxNumberOfTriples) && iterator.hasNext()) {
+      iterator.next();
+      numberOfReadTriples++;
+    }
+    if (iterator instanceof RocksIteratorKeyWrapper) {
+      ((RocksIteratorKeyWrapper) iterator).close();
+    }
+  }
+
   @Override
   public void clear() {
+    updateLog.delete();
     spo.clear();
     osp.clear();
     pos.clear();
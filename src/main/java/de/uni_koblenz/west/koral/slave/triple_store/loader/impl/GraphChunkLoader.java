@@ -18,7 +18,8 @@
  */
 package de.uni_koblenz.west.koral.slave.triple_store.loader.impl;
 
-import de.uni_koblenz.west.koral.common.ftp.FTPClient;
+import de.uni_koblenz.west.koral.common.ftp.FileStreamClient;
+import de.uni_koblenz.west.koral.common.io.ChunkStatistics;
 import de.uni_koblenz.west.koral.common.measurement.MeasurementCollector;
 import de.uni_koblenz.west.koral.common.measurement.MeasurementType;
 import de.uni_koblenz.west.koral.common.messages.MessageNotifier;
@@ -28,15 +29,18 @@ import de.uni_koblenz.west.koral.slave.networkManager.SlaveNetworkManager;
 import de.uni_koblenz.west.koral.slave.triple_store.TripleStoreAccessor;
 import de.uni_koblenz.west.koral.slave.triple_store.loader.GraphChunkListener;
 
-import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.nio.BufferUnderflowException;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 /**
- * Requests the corresponding graph chunk from {@link KoralMaster}. If the chunk
- * is received completely, it is loaded into the local triple store.
+ * Requests the corresponding graph chunk from {@link KoralMaster}. The triples
+ * are loaded into the local triple store while the chunk is received, i.e.,
+ * without storing the chunk file locally. Afterwards, the dictionary partition
+ * of this slave is received, if the dictionary is partitioned. If a complete
+ * graph is loaded, the occurrences of the stored resources are reported to the
+ * master together with the completion notification.
  * 
  * @author Daniel Janke &lt;danijankATuni-koblenz.de&gt;
  *
@@ -49,8 +53,6 @@ public class GraphChunkLoader extends Thread implements GraphChunkListener {
 
   private final int slaveID;
 
-  private final File workingDir;
-
   private final SlaveNetworkManager connection;
 
   private final TripleStoreAccessor tripleStore;
@@ -61,24 +63,18 @@ public class GraphChunkLoader extends Thread implements GraphChunkListener {
 
   private String remoteGraphChunkFileName;
 
-  public GraphChunkLoader(int slaveID, int numberOfSlaves, File workingDir,
-          SlaveNetworkManager networkManager, TripleStoreAccessor tripleStore,
+  private String remoteDictionaryPartitionFileName;
+
+  private boolean isIncremental;
+
+  public GraphChunkLoader(int slaveID, int numberOfSlaves, SlaveNetworkManager networkManager, TripleStoreAccessor tripleStore,
           MessageNotifier messageNotifier, Logger logger, MeasurementCollector collector) {
     this.logger = logger;
     measurementCollector = collector;
     this.slaveID = slaveID;
     connection = networkManager;
     this.tripleStore = tripleStore;
-    this.workingDir = workingDir;
     this.messageNotifier = messageNotifier;
-    if (workingDir.exists()) {
-      deleteContent(workingDir);
-    } else {
-      if (!workingDir.mkdirs()) {
-        throw new RuntimeException(
-                "The working directory " + workingDir.getAbsolutePath() + " could not be created!");
-      }
-    }
   }
 
   @Override
@@ -94,6 +90,11 @@ public class GraphChunkLoader extends Thread implements GraphChunkListener {
           case START_FILE_TRANSFER:
             ftpServer = new String(message[1], "UTF-8").split(Pattern.quote(":"));
             remoteGraphChunkFileName = new String(message[2], "UTF-8");
+            isIncremental =
+                    (message[3] != null) && (message[3].length > 0) && (message[3][0] != 0);
+            remoteDictionaryPartitionFileName =
+                    (message.length > 5) && (message[5] != null) ? new String(message[5], "UTF-8")
+                            : "";
             start();
             break;
           default:
@@ -135,30 +136,32 @@ public class GraphChunkLoader extends Thread implements GraphChunkListener {
       if (measurementCollector != null) {
         measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_FILE_TRANSFER_TO_SLAVES_START,
                 System.currentTimeMillis());
+        measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_STORING_TRIPLES_START,
+                System.currentTimeMillis());
       }
-      File graphChunk = new File(
-              workingDir.getAbsolutePath() + File.separator + remoteGraphChunkFileName);
-      FTPClient ftpClient = new FTPClient(logger);
-      ftpClient.downloadFile(remoteGraphChunkFileName, graphChunk, ftpServer[0], ftpServer[1]);
+      FileStreamClient streamClient = new FileStreamClient();
+      ChunkStatistics statistics = tripleStore.storeTriples(
+              streamClient.openFile(remoteGraphChunkFileName, ftpServer[0], ftpServer[1]),
+              remoteGraphChunkFileName + " streamed from " + ftpServer[0] + ":" + ftpServer[1]);
+      if (!remoteDictionaryPartitionFileName.isEmpty()) {
+        tripleStore.storeDictionaryPartition(
+                streamClient.openFile(remoteDictionaryPartitionFileName, ftpServer[0],
+                        ftpServer[1]),
+                remoteDictionaryPartitionFileName + " streamed from " + ftpServer[0] + ":"
+                        + ftpServer[1]);
+      }
+      long finishTime = System.currentTimeMillis();
       if (measurementCollector != null) {
         measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_FILE_TRANSFER_TO_SLAVES_END,
-                System.currentTimeMillis());
-      }
-
-      if (graphChunk.exists()) {
-        if (measurementCollector != null) {
-          measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_STORING_TRIPLES_START,
-                  System.currentTimeMillis());
-        }
-        tripleStore.storeTriples(graphChunk);
-        if (measurementCollector != null) {
-          measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_STORING_TRIPLES_END,
-                  System.currentTimeMillis());
-        }
+                finishTime);
+        measurementCollector.measureValue(MeasurementType.LOAD_GRAPH_STORING_TRIPLES_END,
+                finishTime);
       }
 
       if (!isInterrupted()) {
-        connection.sendFinish(slaveID);
+        // the statistics of incrementally loaded triples cannot replace the
+        // statistics of the complete chunk
+        connection.sendFinish(slaveID, isIncremental ? null : statistics);
       }
       close();
     } catch (RuntimeException e) {
@@ -179,16 +182,6 @@ public class GraphChunkLoader extends Thread implements GraphChunkListener {
   @Override
   public void close() {
     messageNotifier.unregisterMessageListener(GraphChunkListener.class, this);
-    deleteContent(workingDir);
-    workingDir.delete();
-  }
-
-  private void deleteContent(File workingDir) {
-    if (workingDir.exists()) {
-      for (File containedFile : workingDir.listFiles()) {
-        containedFile.delete();
-      }
-    }
   }
 
 }